@@ -3,6 +3,34 @@ package com.facetoe.jreader.githubapi;
 /**
  * Created by facetoe on 21/01/14.
  */
-public abstract class AbstractGithubQuery {
-    public abstract String getEncodedQuery();
-}
\ No newline at end of file
+public abstract class AbstractGithubQuery<T extends GithubResponse> {
+    /**
+     * @param apiRoot The root of the api the query is sent to, for example https://api.github.com
+     * @return The URL of the query.
+     */
+    public abstract String getEncodedQuery(String apiRoot);
+
+    /**
+     * @return The type the response is parsed into.
+     */
+    public abstract Class<T> getResponseType();
+
+    /**
+     * @return How long a cached response to this query is used without asking github whether it changed, in
+     * milliseconds. After that the cached response is revalidated with its ETag.
+     */
+    public long getCacheTtl() {
+        return 0;
+    }
+
+    /**
+     * @return Which of github's rate limits the query counts against.
+     */
+    public String getRateLimitResource() {
+        return GithubRateLimits.CORE;
+    }
+
+    public String getEncodedQuery() {
+        return getEncodedQuery(GitHubAPI.DEFAULT_API_ROOT);
+    }
+}
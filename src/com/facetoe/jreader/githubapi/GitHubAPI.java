@@ -1,13 +1,38 @@
 package com.facetoe.jreader.githubapi;
 
+import com.facetoe.jreader.githubapi.GithubResponseCache.CachedResponse;
 import com.facetoe.jreader.githubapi.apiobjects.*;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.apache.log4j.Logger;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.*;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Created by facetoe on 19/01/14.
@@ -15,74 +40,545 @@ import java.net.*;
 
 
 /**
- * Sends a query to the github api and returns a result object.
+ * Sends queries to the github api and returns result objects.
+ * <p/>
+ * Each request keeps its connection and query to itself, so one instance can be shared by every search panel and
+ * listener. Responses are parsed straight from the connection and the body is always read to the end, which lets
+ * HttpURLConnection hand the connection back to its keep-alive cache for the next request to the same host.
+ * <p/>
+ * If there's a GithubResponseCache, a cached response younger than its query's TTL is used without a request, and an
+ * older one is revalidated with If-None-Match. New responses are gzipped into the cache as they're parsed.
+ * <p/>
+ * Requests made with a GithubCancellationToken are canceled with it. One that's being sent has its connection
+ * closed, so the worker sending it is free for the next request straight away.
  */
 public final class GitHubAPI {
+    private static final Logger log = Logger.getLogger(GitHubAPI.class);
+
+    public static final String DEFAULT_API_ROOT = "https://api.github.com";
+
     private static final String USER_AGENT = "Mozilla/5.0";
-    private static HttpsURLConnection connection;
-    private static final Gson gson = new Gson();
-    private static AbstractGithubQuery query;
+    private static final String ACCEPT = "application/vnd.github.v3.text-match+json";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // How many requests are sent at once, the rest wait their turn in priority order.
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    // How long to wait for github to accept the connection and to send the response, in milliseconds.
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 30000;
+
+    // How many times a request that failed because of the network or a server error is tried again, and how long
+    // to wait before the first retry. The wait doubles each time.
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_DELAY = 1000;
+
+    // How long an interactive request waits for a rate limit to reset before settling for a stale cached response.
+    // The search limit resets every minute, the core limit only every hour.
+    private static final long MAX_INTERACTIVE_WAIT = 60 * 1000;
+
+    // How many requests of each rate limit background requests leave for interactive ones.
+    private static final int BACKGROUND_RESERVE = 2;
+
+    /**
+     * How urgent a request is. Interactive requests are sent before background ones, and background requests leave
+     * some of each rate limit for them.
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private final Gson gson = new Gson();
+    private final String apiRoot;
+    private final GithubResponseCache responseCache;
+    private final GithubRateLimits rateLimits = new GithubRateLimits();
+
+    private final PriorityBlockingQueue<PendingRequest<?>> queue = new PriorityBlockingQueue<PendingRequest<?>>();
+    // Every request that hasn't finished, queued, waiting or being sent, so identical queries can share one.
+    private final HashMap<String, PendingRequest<?>> pendingRequests = new HashMap<String, PendingRequest<?>>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService workers;
+    // Puts requests that are waiting for a rate limit or a retry back in the queue.
+    private final ScheduledExecutorService timer;
+    private volatile boolean shutdown;
+
+    public GitHubAPI() {
+        this(DEFAULT_API_ROOT);
+    }
+
+    /**
+     * @param apiRoot Where to send the queries, for example a local server when testing.
+     */
+    public GitHubAPI(String apiRoot) {
+        this(apiRoot, null);
+    }
+
+    /**
+     * @param apiRoot       Where to send the queries, for example a local server when testing.
+     * @param responseCache Where to keep responses, or null to always ask github.
+     */
+    public GitHubAPI(String apiRoot, GithubResponseCache responseCache) {
+        this.responseCache = responseCache;
+        this.apiRoot = apiRoot.endsWith("/") ? apiRoot.substring(0, apiRoot.length() - 1) : apiRoot;
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "GitHubAPI-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        workers = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS, threadFactory);
+        timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        for (int i = 0; i < MAX_CONCURRENT_REQUESTS; i++) {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    processRequests();
+                }
+            });
+        }
+    }
 
-    // Don't let the class be instantiated.
-    private GitHubAPI() {}
+    public String getApiRoot() {
+        return apiRoot;
+    }
+
+    /**
+     * @return The response cache, or null if there isn't one.
+     */
+    public GithubResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return What github has said about its rate limits.
+     */
+    public GithubRateLimits getRateLimits() {
+        return rateLimits;
+    }
 
-    public static GithubResponse sendRequest(AbstractGithubQuery query) throws GithubAPIException {
+    /**
+     * Send an interactive query and wait for the response.
+     *
+     * @param query The query.
+     * @return The response, of the type the query asks for. If github couldn't be asked it may be a stale response
+     * from the cache.
+     * @throws GithubAPIException If the request failed or github returned an error.
+     */
+    public <T extends GithubResponse> T sendRequest(AbstractGithubQuery<T> query) throws GithubAPIException {
+        Future<T> response = sendRequestAsync(query, Priority.INTERACTIVE);
         try {
-            URL url = generateURL(query);
-            return sendRequest(url);
-        } catch (Exception e) {
-            throw new GithubAPIException("Error executing query: " + e.getMessage(), e);
+            return response.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GithubAPIException) {
+                throw (GithubAPIException) e.getCause();
+            }
+            throw new GithubAPIException("Error executing query: " + e.getCause().getMessage(), e.getCause());
+        } catch (CancellationException e) {
+            throw new GithubAPIException("The query was canceled", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GithubAPIException("Interrupted while waiting for github", e);
         }
     }
 
-    private static URL generateURL(AbstractGithubQuery githubQuery) throws MalformedURLException {
-        query = githubQuery;
-        return new URL(query.getEncodedQuery());
+    /**
+     * Queue an interactive query.
+     *
+     * @see #sendRequestAsync(AbstractGithubQuery, Priority)
+     */
+    public <T extends GithubResponse> Future<T> sendRequestAsync(AbstractGithubQuery<T> query) {
+        return sendRequestAsync(query, Priority.INTERACTIVE);
     }
 
-    private static GithubResponse sendRequest(URL url) throws Exception {
-        System.out.println(url.toString());
-        connection = (HttpsURLConnection) url.openConnection();
-        initConnection();
-        return getResponse();
+    /**
+     * Queue a query that can't be canceled except through its future.
+     *
+     * @see #sendRequestAsync(AbstractGithubQuery, Priority, GithubCancellationToken)
+     */
+    public <T extends GithubResponse> Future<T> sendRequestAsync(AbstractGithubQuery<T> query, Priority priority) {
+        return sendRequestAsync(query, priority, null);
     }
 
-    private static void initConnection() throws ProtocolException {
-        connection.setRequestProperty("Accept", "application/vnd.github.v3.text-match+json");
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("User-Agent", USER_AGENT);
-        connection.setInstanceFollowRedirects(true);
+    /**
+     * Queue a query to be sent on one of this client's threads. If the same query is already waiting or being sent
+     * the two share one request, which is moved up the queue if the new one is more urgent.
+     * <p/>
+     * A shared request is only canceled once every caller's token has been. Canceling the future itself cancels it
+     * for everyone, and cancel(true) aborts it if it's being sent.
+     *
+     * @param query             The query.
+     * @param priority          How urgent it is.
+     * @param cancellationToken Cancels the request, or null if only the future can.
+     * @return A future for the response. If the request fails get() throws an ExecutionException caused by a
+     * GithubAPIException.
+     */
+    public <T extends GithubResponse> Future<T> sendRequestAsync(AbstractGithubQuery<T> query, Priority priority,
+                                                                 GithubCancellationToken cancellationToken) {
+        String url = query.getEncodedQuery(apiRoot);
+        String key = query.getResponseType().getName() + " " + url;
+        PendingRequest<?> request;
+        synchronized (pendingRequests) {
+            request = pendingRequests.get(key);
+            if (request != null && !request.isDone()) {
+                if (priority.compareTo(request.priority) < 0) {
+                    request.raisePriority(priority);
+                }
+            } else {
+                PendingRequest<T> newRequest = new PendingRequest<T>(key, url, query, priority);
+                if (shutdown) {
+                    newRequest.fail(new GithubAPIException("The github client has been shut down", null));
+                    return newRequest;
+                }
+                pendingRequests.put(key, newRequest);
+                queue.add(newRequest);
+                request = newRequest;
+            }
+            request.callers++;
+        }
+
+        if (cancellationToken != null) {
+            final PendingRequest<?> canceledRequest = request;
+            cancellationToken.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    canceledRequest.release();
+                }
+            });
+        }
+        @SuppressWarnings("unchecked")
+        Future<T> response = (Future<T>) request;
+        return response;
+    }
+
+    /**
+     * Stop sending requests. Requests that haven't finished are canceled.
+     */
+    public void shutdown() {
+        shutdown = true;
+        workers.shutdownNow();
+        timer.shutdownNow();
+        ArrayList<PendingRequest<?>> unfinished;
+        synchronized (pendingRequests) {
+            unfinished = new ArrayList<PendingRequest<?>>(pendingRequests.values());
+        }
+        for (PendingRequest<?> request : unfinished) {
+            request.cancel(true);
+        }
     }
 
-    private static GithubResponse getResponse() throws Exception {
-        if (responseOK()) {
-            return readResponse();
+    private void processRequests() {
+        while (!shutdown) {
+            PendingRequest<?> request;
+            try {
+                request = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!request.isDone()) {
+                process(request);
+            }
+        }
+    }
+
+    private <T extends GithubResponse> void process(PendingRequest<T> request) {
+        AbstractGithubQuery<T> query = request.query;
+        URL url = null;
+        try {
+            url = new URL(request.url);
+            CachedResponse cached = getCached(url);
+            if (cached != null && cached.isFresh(query.getCacheTtl())) {
+                log.debug("Using cached response: " + url);
+                responseCache.recordHit();
+                request.complete(readResponse(cached.openBody(), query.getResponseType()));
+                return;
+            }
+
+            int reserved = request.priority == Priority.BACKGROUND ? BACKGROUND_RESERVE : 0;
+            long wait = rateLimits.reserve(query.getRateLimitResource(), reserved);
+            if (wait > 0) {
+                waitForRateLimit(request, wait);
+            } else {
+                request.complete(fetch(request, url, cached));
+            }
+
+        } catch (GithubRateLimitException e) {
+            log.debug("Rate limited: " + url);
+            waitForRateLimit(request, e.getResetAt() - System.currentTimeMillis());
+        } catch (GithubAPIException e) {
+            if (e.getResponseCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                retry(request, e);
+            } else {
+                request.fail(e);
+            }
+        } catch (IOException e) {
+            if (request.isCancelled()) {
+                log.debug("Aborted canceled request: " + url);
+            } else {
+                retry(request, new GithubAPIException("Error executing query: " + e.getMessage(), e));
+            }
+        } catch (RuntimeException e) {
+            // Gson wraps the IOException thrown when a canceled request's connection is closed while it's parsed.
+            if (request.isCancelled()) {
+                log.debug("Aborted canceled request: " + url);
+            } else {
+                request.fail(new GithubAPIException("Error executing query: " + e.getMessage(), e));
+            }
+        }
+    }
+
+    private void waitForRateLimit(PendingRequest<?> request, long wait) {
+        if (request.priority == Priority.INTERACTIVE && wait > MAX_INTERACTIVE_WAIT) {
+            String resetTime = DateFormat.getTimeInstance().format(new Date(System.currentTimeMillis() + wait));
+            degrade(request, new GithubRateLimitException("GitHub's rate limit has been reached, try again after "
+                    + resetTime, System.currentTimeMillis() + wait, -1));
         } else {
-            throw new GithubAPIException(buildErrorMessage(), null);
+            requeue(request, Math.max(wait, 0));
+        }
+    }
+
+    // Try again later, or if it's been tried enough times make do with the cache.
+    private void retry(PendingRequest<?> request, GithubAPIException e) {
+        if (request.attempts >= MAX_RETRIES) {
+            degrade(request, e);
+            return;
         }
+        long delay = RETRY_DELAY << request.attempts;
+        request.attempts++;
+        log.debug("Retrying in " + delay + "ms: " + request.url + ": " + e.getMessage());
+        requeue(request, delay);
     }
 
-    private static boolean responseOK() throws IOException {
-        return connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+    private void requeue(final PendingRequest<?> request, long delay) {
+        if (shutdown) {
+            request.cancel(false);
+            return;
+        }
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (pendingRequests) {
+                    if (!request.isDone()) {
+                        queue.add(request);
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
     }
 
-    private static GithubResponse readResponse() throws IOException {
-        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        GithubResponse response;
-        if (query instanceof SearchQuery) {
-            response = gson.fromJson(read(in), SearchResponse.class);
-        } else if (query instanceof ObjectQuery) {
-            response = gson.fromJson(read(in), ObjectResponse.class);
+    // Github can't be asked, so answer with the cached response however old it is, or fail if there isn't one.
+    private <T extends GithubResponse> void degrade(PendingRequest<T> request, GithubAPIException e) {
+        try {
+            CachedResponse cached = getCached(new URL(request.url));
+            if (cached != null) {
+                T response = readResponse(cached.openBody(), request.query.getResponseType());
+                if (response != null) {
+                    log.debug("Using stale cached response: " + request.url + ": " + e.getMessage());
+                    response.setStale(true);
+                    responseCache.recordHit();
+                    request.complete(response);
+                    return;
+                }
+            }
+        } catch (Exception cacheException) {
+            log.warn("Couldn't read stale cached response for " + request.url, cacheException);
+        }
+        request.fail(e);
+    }
+
+    private <T extends GithubResponse> T fetch(PendingRequest<T> request, URL url, CachedResponse cached)
+            throws IOException, GithubAPIException {
+        log.debug("Sending request: " + url);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        initConnection(connection);
+        if (cached != null && cached.getEtag() != null) {
+            connection.setRequestProperty("If-None-Match", cached.getEtag());
+        }
+
+        // From here canceling the request closes the connection. If it was canceled while connecting the connection
+        // may not have been there to close, so check again once it's open.
+        request.connection = connection;
+        try {
+            connection.connect();
+            if (request.isCancelled()) {
+                connection.disconnect();
+                throw new IOException("Request canceled");
+            }
+            return readConnection(connection, url, request.query, cached);
+        } finally {
+            request.connection = null;
+        }
+    }
+
+    private <T extends GithubResponse> T readConnection(HttpURLConnection connection, URL url,
+                                                        AbstractGithubQuery<T> query, CachedResponse cached)
+            throws IOException, GithubAPIException {
+        Class<T> responseType = query.getResponseType();
+        int responseCode = connection.getResponseCode();
+        String resource = updateRateLimits(connection, query.getRateLimitResource());
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            InputStream in = connection.getInputStream();
+            try {
+                drain(in);
+            } finally {
+                in.close();
+            }
+            responseCache.recordHit();
+            String etag = connection.getHeaderField("ETag");
+            store(url, etag != null ? etag : cached.getEtag(), cached.getBody());
+            return readResponse(cached.openBody(), responseType);
+
+        } else if (responseCode == HttpURLConnection.HTTP_OK) {
+            T response;
+            if (responseCache == null) {
+                response = readResponse(connection.getInputStream(), responseType);
+            } else {
+                responseCache.recordMiss();
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(body);
+                try {
+                    response = readResponse(new CopyingInputStream(connection.getInputStream(), gzip), responseType);
+                } finally {
+                    // Also frees the Deflater's native memory if the response couldn't be read.
+                    gzip.close();
+                }
+                store(url, connection.getHeaderField("ETag"), body.toByteArray());
+            }
+            if (response == null) {
+                throw new GithubAPIException("Empty response from " + url, null, responseCode);
+            }
+            return response;
+
+        } else if (isRateLimited(connection, responseCode, resource)) {
+            String errorMessage = buildErrorMessage(connection);
+            long resetAt = getRetryAfter(connection);
+            if (resetAt == 0) {
+                long wait = rateLimits.getWait(resource);
+                resetAt = System.currentTimeMillis() + (wait > 0 ? wait : MAX_INTERACTIVE_WAIT);
+            }
+            rateLimits.update(resource, 0, resetAt);
+            throw new GithubRateLimitException(errorMessage, resetAt, responseCode);
+
         } else {
-            throw new UnsupportedOperationException("What have you done!");
+            throw new GithubAPIException(buildErrorMessage(connection), null, responseCode);
+        }
+    }
+
+    /**
+     * Record the rate limit headers github sends with every response. The reset time is moved to our clock using
+     * the Date header, so it doesn't matter if the clocks disagree.
+     *
+     * @return Which limit the request counted against.
+     */
+    private String updateRateLimits(HttpURLConnection connection, String resource) {
+        String remaining = connection.getHeaderField("X-RateLimit-Remaining");
+        String reset = connection.getHeaderField("X-RateLimit-Reset");
+        if (connection.getHeaderField("X-RateLimit-Resource") != null) {
+            resource = connection.getHeaderField("X-RateLimit-Resource");
+        }
+        if (remaining == null || reset == null) {
+            return resource;
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            long serverNow = connection.getDate() > 0 ? connection.getDate() : now;
+            long resetAt = now + Math.max(0, Long.parseLong(reset.trim()) * 1000 - serverNow);
+            rateLimits.update(resource, Integer.parseInt(remaining.trim()), resetAt);
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring bad rate limit headers: " + remaining + ", " + reset);
+        }
+        return resource;
+    }
+
+    // Github answers 403 when a rate limit is used up, and 403 or 429 with Retry-After when requests come too fast.
+    private boolean isRateLimited(HttpURLConnection connection, int responseCode, String resource) {
+        if (responseCode == 429) {
+            return true;
+        }
+        return responseCode == HttpURLConnection.HTTP_FORBIDDEN
+                && (connection.getHeaderField("Retry-After") != null || rateLimits.getRemaining(resource) == 0);
+    }
+
+    // When the Retry-After header says to try again, or 0 if there isn't one.
+    private static long getRetryAfter(HttpURLConnection connection) {
+        String retryAfter = connection.getHeaderField("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return System.currentTimeMillis() + Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring bad Retry-After header: " + retryAfter);
+            }
+        }
+        return 0;
+    }
+
+    // The cache is only there to save requests, so if it's broken just send them.
+    private CachedResponse getCached(URL url) {
+        if (responseCache == null) {
+            return null;
+        }
+        try {
+            return responseCache.get(url.toString());
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cached response for " + url, e);
+            return null;
         }
-        in.close();
-        return response;
     }
 
-    private static String buildErrorMessage() throws IOException {
-        GitHubErrorResponse errorResponse = readError();
-        String errorMessage = errorResponse.getMessage() + "\n";
+    private void store(URL url, String etag, byte[] body) {
+        try {
+            responseCache.put(url.toString(), etag, body);
+        } catch (IOException e) {
+            log.warn("Failed to cache response for " + url, e);
+        }
+    }
+
+    private static void initConnection(HttpURLConnection connection) throws IOException {
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", ACCEPT);
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        connection.setInstanceFollowRedirects(true);
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+    }
+
+    // Parse the JSON as it arrives rather than reading it all into a String first.
+    private <T> T readResponse(InputStream in, Class<T> responseType) throws IOException {
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8));
+            T response = gson.fromJson(reader, responseType);
+            drain(in);
+            return response;
+        } finally {
+            in.close();
+        }
+    }
+
+    private String buildErrorMessage(HttpURLConnection connection) throws IOException {
+        String errorMessage = "HTTP " + connection.getResponseCode() + " " + connection.getResponseMessage() + "\n";
+        InputStream err = connection.getErrorStream();
+        if (err == null) {
+            return errorMessage;
+        }
+
+        GitHubErrorResponse errorResponse;
+        try {
+            errorResponse = readResponse(err, GitHubErrorResponse.class);
+        } catch (RuntimeException e) {
+            // Not JSON, a proxy's error page for example.
+            log.debug("Couldn't parse error response: " + e.getMessage());
+            return errorMessage;
+        }
+        if (errorResponse == null) {
+            return errorMessage;
+        }
+
+        errorMessage = errorResponse.getMessage() + "\n";
         for (GitHubErrorItem errorItem : errorResponse.getGitHubErrorItems()) {
             errorMessage += "Message: " + errorItem.getMessage() + "\n";
             errorMessage += "Code: " + errorItem.getCode() + "\n";
@@ -92,21 +588,147 @@ public final class GitHubAPI {
         return errorMessage;
     }
 
-    private static GitHubErrorResponse readError() throws IOException {
-        BufferedReader err = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-        return gson.fromJson(read(err), GitHubErrorResponse.class);
+    // The connection only goes back into the keep-alive cache once everything sent has been read.
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer) != -1) {
+            // Discard.
+        }
     }
 
-    private static String read(BufferedReader in) throws IOException {
-        String inputLine;
-        StringBuilder response = new StringBuilder();
-        try {
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
+    /**
+     * Copies everything read from a stream into another stream, so a response can be cached while it's parsed.
+     */
+    private static class CopyingInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        CopyingInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                copy.write(b);
             }
-        } finally {
-            in.close();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                copy.write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            int read = read(buffer, 0, buffer.length);
+            return read < 0 ? 0 : read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * A query waiting to be sent, which is also the future its response is delivered through. Interactive requests
+     * come first, then requests are sent in the order they were made.
+     */
+    private class PendingRequest<T extends GithubResponse> extends FutureTask<T>
+            implements Comparable<PendingRequest<?>> {
+        final String key;
+        final String url;
+        final AbstractGithubQuery<T> query;
+        final long sequenceNumber = sequence.incrementAndGet();
+        volatile Priority priority;
+        int attempts;
+        // How many callers still want the response, guarded by pendingRequests.
+        int callers;
+        // The connection while the request is being sent.
+        volatile HttpURLConnection connection;
+
+        PendingRequest(String key, String url, AbstractGithubQuery<T> query, Priority priority) {
+            super(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    throw new IllegalStateException("Requests are completed by the workers");
+                }
+            });
+            this.key = key;
+            this.url = url;
+            this.query = query;
+            this.priority = priority;
+        }
+
+        void complete(T response) {
+            set(response);
+        }
+
+        void fail(Throwable cause) {
+            setException(cause);
+        }
+
+        /*
+         * Move the request up the queue. A worker can take it at any moment, so it's only put back if it was still
+         * in the queue when it was removed, otherwise it would be sent twice. Called holding pendingRequests, which
+         * requeue() also holds, so a request waiting to be retried isn't added by both.
+         */
+        void raisePriority(Priority priority) {
+            boolean queued = queue.remove(this);
+            this.priority = priority;
+            if (queued) {
+                queue.add(this);
+            }
+        }
+
+        // A caller's token was canceled, so cancel the request if nobody else is waiting for it.
+        void release() {
+            synchronized (pendingRequests) {
+                if (--callers > 0) {
+                    return;
+                }
+            }
+            log.debug("Canceling request: " + url);
+            cancel(true);
+        }
+
+        // No thread runs this future, so rather than interrupting one cancel(true) closes the connection.
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean canceled = super.cancel(false);
+            HttpURLConnection sending = connection;
+            if (canceled && mayInterruptIfRunning && sending != null) {
+                sending.disconnect();
+            }
+            return canceled;
+        }
+
+        // Called however the request finishes, including when it's canceled.
+        @Override
+        protected void done() {
+            synchronized (pendingRequests) {
+                if (pendingRequests.get(key) == this) {
+                    pendingRequests.remove(key);
+                }
+                queue.remove(this);
+            }
+        }
+
+        @Override
+        public int compareTo(PendingRequest<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            return sequenceNumber < other.sequenceNumber ? -1 : (sequenceNumber == other.sequenceNumber ? 0 : 1);
         }
-        return response.toString();
     }
-}
\ No newline at end of file
+}
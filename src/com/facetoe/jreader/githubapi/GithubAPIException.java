@@ -5,7 +5,24 @@ package com.facetoe.jreader.githubapi;
  * Created by facetoe on 22/01/14.
  */
 public class GithubAPIException extends Exception {
+    private final int responseCode;
+
     public GithubAPIException(String message, Throwable cause) {
+        this(message, cause, -1);
+    }
+
+    /**
+     * @param responseCode The HTTP status github answered with.
+     */
+    public GithubAPIException(String message, Throwable cause, int responseCode) {
         super(message, cause);
+        this.responseCode = responseCode;
+    }
+
+    /**
+     * @return The HTTP status github answered with, or -1 if the request didn't get that far.
+     */
+    public int getResponseCode() {
+        return responseCode;
     }
-}
\ No newline at end of file
+}
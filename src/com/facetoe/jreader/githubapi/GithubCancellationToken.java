@@ -0,0 +1,49 @@
+package com.facetoe.jreader.githubapi;
+
+import java.util.ArrayList;
+
+/**
+ * Lets whoever made some requests take them back, for example when a new search replaces the one that's loading.
+ * <p/>
+ * Canceling the token cancels every request made with it, and a request that's being sent is aborted by closing its
+ * connection. A request shared with callers that haven't canceled is left alone until they all have.
+ */
+public class GithubCancellationToken {
+    private final ArrayList<Runnable> listeners = new ArrayList<Runnable>();
+    private boolean canceled;
+
+    /**
+     * Cancel every request made with this token, and any made with it later.
+     */
+    public void cancel() {
+        ArrayList<Runnable> toRun;
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            canceled = true;
+            toRun = new ArrayList<Runnable>(listeners);
+            listeners.clear();
+        }
+        for (Runnable listener : toRun) {
+            listener.run();
+        }
+    }
+
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * @param listener Run when the token is canceled, straight away if it already has been.
+     */
+    void onCancel(Runnable listener) {
+        synchronized (this) {
+            if (!canceled) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+}
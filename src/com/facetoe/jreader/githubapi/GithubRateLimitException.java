@@ -0,0 +1,25 @@
+package com.facetoe.jreader.githubapi;
+
+/**
+ * Thrown when github refuses a request because a rate limit has been used up.
+ */
+public class GithubRateLimitException extends GithubAPIException {
+    private static final long serialVersionUID = 1L;
+
+    private final long resetAt;
+
+    /**
+     * @param resetAt When the limit resets, in milliseconds since the epoch by our clock.
+     */
+    public GithubRateLimitException(String message, long resetAt, int responseCode) {
+        super(message, null, responseCode);
+        this.resetAt = resetAt;
+    }
+
+    /**
+     * @return When the limit resets, in milliseconds since the epoch by our clock.
+     */
+    public long getResetAt() {
+        return resetAt;
+    }
+}
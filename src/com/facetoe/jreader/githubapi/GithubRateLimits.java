@@ -0,0 +1,87 @@
+package com.facetoe.jreader.githubapi;
+
+import java.util.HashMap;
+
+/**
+ * Keeps track of how many requests github will still accept for each of its rate limits, from the
+ * X-RateLimit-Remaining and X-RateLimit-Reset headers of its responses. Searches and everything else ("core") are
+ * limited separately.
+ * <p/>
+ * Each request that's sent is counted straight away, so requests sent at the same time can't use more than what's
+ * left before github's answers catch up. Until github has said what the limit is every request is allowed.
+ */
+public class GithubRateLimits {
+    public static final String CORE = "core";
+    public static final String SEARCH = "search";
+
+    private final HashMap<String, Limit> limits = new HashMap<String, Limit>();
+
+    /**
+     * Record what github said about a limit.
+     *
+     * @param resource  Which limit.
+     * @param remaining How many more requests it will accept.
+     * @param resetAt   When the limit resets, in milliseconds since the epoch by our clock.
+     */
+    public synchronized void update(String resource, int remaining, long resetAt) {
+        limits.put(resource, new Limit(remaining, resetAt));
+    }
+
+    /**
+     * Count a request against a limit if there's room for it.
+     *
+     * @param resource Which limit.
+     * @param reserved How many requests to leave for more important ones.
+     * @return 0 if the request may be sent, otherwise how many milliseconds until the limit resets.
+     */
+    public synchronized long reserve(String resource, int reserved) {
+        long wait = getWait(resource, reserved);
+        Limit limit = limits.get(resource);
+        if (wait == 0 && limit != null) {
+            limit.remaining--;
+        }
+        return wait;
+    }
+
+    /**
+     * @param resource Which limit.
+     * @return How many milliseconds until a request can be sent, 0 if one can be sent now.
+     */
+    public synchronized long getWait(String resource) {
+        return getWait(resource, 0);
+    }
+
+    /**
+     * @param resource Which limit.
+     * @return How many more requests github will accept, or -1 if it hasn't said.
+     */
+    public synchronized int getRemaining(String resource) {
+        getWait(resource, 0);
+        Limit limit = limits.get(resource);
+        return limit == null ? -1 : limit.remaining;
+    }
+
+    private long getWait(String resource, int reserved) {
+        Limit limit = limits.get(resource);
+        if (limit == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        if (limit.resetAt <= now) {
+            // A new window has started and we don't know how much of it is left until github tells us.
+            limits.remove(resource);
+            return 0;
+        }
+        return limit.remaining > reserved ? 0 : limit.resetAt - now;
+    }
+
+    private static class Limit {
+        int remaining;
+        final long resetAt;
+
+        Limit(int remaining, long resetAt) {
+            this.remaining = remaining;
+            this.resetAt = resetAt;
+        }
+    }
+}
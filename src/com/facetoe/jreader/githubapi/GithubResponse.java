@@ -4,5 +4,17 @@ package com.facetoe.jreader.githubapi;
  * Created by facetoe on 21/01/14.
  */
 abstract public class GithubResponse {
+    // Set when github couldn't be asked, so the response came from the cache however old it was.
+    private transient boolean stale;
 
+    /**
+     * @return Whether this is an out of date response from the cache, used because github couldn't be asked.
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    void setStale(boolean stale) {
+        this.stale = stale;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+package com.facetoe.jreader.githubapi;
+
+import com.facetoe.jreader.helpers.Util;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Keeps github responses on disk so a query that was sent recently doesn't have to go to the network again.
+ * Each response is stored in its own file named after a hash of the query URL, with the body gzipped. When the cache
+ * grows past its size limit the least recently used responses are deleted.
+ * <p/>
+ * GitHubAPI decides whether a cached response is fresh enough to use as it is, and if it isn't, sends its ETag in
+ * If-None-Match so github can answer "not modified" instead of sending the whole body again.
+ * <p/>
+ * Cache file layout, all integers big endian:
+ * <pre>
+ *   int magic, int version, UTF query URL, long time stored, boolean has ETag, [UTF ETag]
+ *   the gzipped body
+ * </pre>
+ */
+public class GithubResponseCache {
+    private static final Logger log = Logger.getLogger(GithubResponseCache.class);
+
+    private static final int MAGIC = 0x4A524843; // "JRHC"
+    private static final int VERSION = 1;
+    private static final String CACHE_FILE_EXTENSION = ".response";
+
+    private final File cacheDir;
+    private final long maxBytes;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    // The size of each cache file by name, least recently used first. Read from the cache directory on first use.
+    private LinkedHashMap<String, Long> entries;
+    private long totalBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheDir Where to write the responses. It's created if it doesn't exist.
+     * @param maxBytes How much disk space the responses may use.
+     */
+    public GithubResponseCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the cached response to a query.
+     *
+     * @param url The encoded query URL.
+     * @return The response, or null if there isn't one.
+     * @throws IOException If the cache file couldn't be read.
+     */
+    public CachedResponse get(String url) throws IOException {
+        File cacheFile = getCacheFile(url);
+        if (!cacheFile.exists()) {
+            return null;
+        }
+
+        CachedResponse response;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(url)) {
+                return null;
+            }
+            long storedAt = in.readLong();
+            String etag = in.readBoolean() ? in.readUTF() : null;
+            ByteArrayOutputStream body = new ByteArrayOutputStream((int) cacheFile.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            response = new CachedResponse(etag, storedAt, body.toByteArray());
+        } catch (EOFException e) {
+            throw new IOException("Response cache file is truncated", e);
+        } finally {
+            in.close();
+        }
+
+        // Remember it was used so it's evicted last, the modification time keeps the order between runs.
+        synchronized (this) {
+            loadEntries();
+            if (entries.remove(cacheFile.getName()) != null) {
+                entries.put(cacheFile.getName(), cacheFile.length());
+            }
+        }
+        if (!cacheFile.setLastModified(System.currentTimeMillis())) {
+            log.debug("Couldn't touch " + cacheFile.getAbsolutePath());
+        }
+        return response;
+    }
+
+    /**
+     * Store the response to a query, replacing any older one, then evict responses until the cache is within
+     * its size limit again.
+     *
+     * @param url  The encoded query URL.
+     * @param etag The ETag github sent with the response, or null if it didn't send one.
+     * @param body The gzipped response body.
+     * @return The cached response.
+     * @throws IOException If the cache file couldn't be written.
+     */
+    public CachedResponse put(String url, String etag, byte[] body) throws IOException {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            throw new IOException("Failed to create " + cacheDir.getAbsolutePath());
+        }
+
+        CachedResponse response = new CachedResponse(etag, System.currentTimeMillis(), body);
+        File cacheFile = getCacheFile(url);
+        File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(url);
+                out.writeLong(response.storedAt);
+                out.writeBoolean(etag != null);
+                if (etag != null) {
+                    out.writeUTF(etag);
+                }
+                out.write(body);
+            } finally {
+                out.close();
+            }
+            Util.moveOver(tempFile, cacheFile);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Failed to delete " + tempFile.getAbsolutePath());
+            }
+        }
+
+        synchronized (this) {
+            loadEntries();
+            Long previous = entries.remove(cacheFile.getName());
+            if (previous != null) {
+                totalBytes -= previous;
+            }
+            entries.put(cacheFile.getName(), cacheFile.length());
+            totalBytes += cacheFile.length();
+            evict();
+        }
+        return response;
+    }
+
+    /**
+     * Count a query that was answered from the cache, either straight away or after github said it hadn't changed.
+     */
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Count a query that github had to send a body for.
+     */
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return How many bytes the cached responses are using.
+     */
+    public synchronized long getSize() {
+        loadEntries();
+        return totalBytes;
+    }
+
+    /**
+     * @return The hit and miss counts, for the status bar.
+     */
+    public String getStatistics() {
+        return "Response cache: " + getHits() + " hits, " + getMisses() + " misses";
+    }
+
+    // Delete the least recently used responses until the rest fit, always keeping the newest.
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            File file = new File(cacheDir, eldest.getKey());
+            if (file.exists() && !file.delete()) {
+                log.warn("Failed to delete " + file.getAbsolutePath());
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void loadEntries() {
+        if (entries != null) {
+            return;
+        }
+
+        entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        File[] files = cacheDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(CACHE_FILE_EXTENSION);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+
+        final long[] lastUsed = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastUsed[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(lastUsed[a], lastUsed[b]);
+            }
+        });
+        for (Integer i : order) {
+            entries.put(files[i].getName(), files[i].length());
+            totalBytes += files[i].length();
+        }
+        evict();
+    }
+
+    /**
+     * Each query gets its own cache file named after a hash of its URL.
+     */
+    File getCacheFile(String url) {
+        return new File(cacheDir, Util.md5Hex(url) + CACHE_FILE_EXTENSION);
+    }
+
+    /**
+     * A response read from the cache.
+     */
+    public static class CachedResponse {
+        private final String etag;
+        private final long storedAt;
+        private final byte[] body;
+
+        CachedResponse(String etag, long storedAt, byte[] body) {
+            this.etag = etag;
+            this.storedAt = storedAt;
+            this.body = body;
+        }
+
+        /**
+         * @return The ETag github sent with the response, or null if it didn't send one.
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return When the response was received or last revalidated.
+         */
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        /**
+         * @param ttlMillis How long a response is good for without asking github.
+         * @return Whether the response can be used without asking github.
+         */
+        public boolean isFresh(long ttlMillis) {
+            long age = System.currentTimeMillis() - storedAt;
+            return age >= 0 && age < ttlMillis;
+        }
+
+        /**
+         * @return The gzipped body.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return The body, uncompressed.
+         */
+        public InputStream openBody() throws IOException {
+            return new GZIPInputStream(new ByteArrayInputStream(body));
+        }
+    }
+}
@@ -4,15 +4,29 @@ package com.facetoe.jreader.githubapi;
 /**
  * Sends a request for a github "object" - basically a source file.
  */
-public class ObjectQuery extends AbstractGithubQuery {
+public class ObjectQuery extends AbstractGithubQuery<ObjectResponse> {
+    // Object URLs name the commit the file comes from, so the response hardly ever changes.
+    private static final long CACHE_TTL = 60 * 60 * 1000;
+
     public final String objectURL;
 
     public ObjectQuery(String objectURL) {
         this.objectURL = objectURL;
     }
 
+    // Github gives us the full URL of the object, so it doesn't depend on the api root.
     @Override
-    public String getEncodedQuery() {
+    public String getEncodedQuery(String apiRoot) {
         return objectURL;
     }
+
+    @Override
+    public long getCacheTtl() {
+        return CACHE_TTL;
+    }
+
+    @Override
+    public Class<ObjectResponse> getResponseType() {
+        return ObjectResponse.class;
+    }
 }
@@ -4,34 +4,86 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 
 /**
- * A github search request.
+ * A github search request, for one page of the results.
  */
-public class SearchQuery extends AbstractGithubQuery {
+public class SearchQuery extends AbstractGithubQuery<SearchResponse> {
+    // Search results don't change much, and searches have the lowest rate limit.
+    private static final long CACHE_TTL = 10 * 60 * 1000;
+
+    // How many files github returns in each page, and how many it returns at most for one search.
+    public static final int PER_PAGE = 30;
+    public static final int MAX_RESULTS = 1000;
+
     private final String LANGUAGE = "java";
-    private final String DEFAULT_USER = "apache";
+    private static final String DEFAULT_USER = "apache";
     private final String USER;
     private final String searchQuery;
+    private final int page;
 
     public SearchQuery(String searchQuery) {
-        USER = DEFAULT_USER;
-        this.searchQuery = searchQuery;
+        this(searchQuery, DEFAULT_USER);
     }
 
     public SearchQuery(String searchQuery, String user) {
+        this(searchQuery, user, 1);
+    }
+
+    /**
+     * @param page Which page of the results to get, starting from 1.
+     */
+    public SearchQuery(String searchQuery, String user, int page) {
         this.searchQuery = searchQuery;
         this.USER = user;
+        this.page = page;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * @return The same search for the page after this one.
+     */
+    public SearchQuery nextPage() {
+        return new SearchQuery(searchQuery, USER, page + 1);
     }
 
-    public String getEncodedQuery() {
+    /**
+     * @param response The response to this query.
+     * @return Whether github has another page of results after this one.
+     */
+    public boolean hasNextPage(SearchResponse response) {
+        int totalCount = response.getTotal_count() == null ? 0 : response.getTotal_count().intValue();
+        return page * PER_PAGE < Math.min(totalCount, MAX_RESULTS);
+    }
+
+    @Override
+    public String getEncodedQuery(String apiRoot) {
         try {
-            return "https://api.github.com/search/code?q=" +
+            return apiRoot + "/search/code?q=" +
                     URLEncoder.encode(searchQuery, "UTF-8") +
                     "+in:file+language:" + LANGUAGE + "+extension:java" +
-                    "+user:" + USER;
+                    "+user:" + USER +
+                    "&per_page=" + PER_PAGE + "&page=" + page;
         } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
         }
         return "";
     }
+
+    @Override
+    public long getCacheTtl() {
+        return CACHE_TTL;
+    }
+
+    @Override
+    public String getRateLimitResource() {
+        return GithubRateLimits.SEARCH;
+    }
+
+    @Override
+    public Class<SearchResponse> getResponseType() {
+        return SearchResponse.class;
+    }
 }
 
@@ -0,0 +1,532 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * A Trie that keeps all of its nodes in a few primitive arrays instead of a HashMap and
+ * a boxed Character per node. A node is just an index into those arrays.
+ * <p/>
+ * Each node stores its character, its first child and its next sibling. Siblings are kept
+ * sorted by character, so walking the tree produces words in lexicographic order.
+ * This uses a fraction of the memory of Trie, which matters once the JDK and a few
+ * library profiles are loaded.
+ * <p/>
+ * In ranked mode every node also keeps the RANKED_SUGGESTIONS best words below it, scored by how
+ * often they have been used and then by length. A lookup then only walks the prefix. The lists are
+ * rebuilt on the first lookup after the words or usage counts change.
+ */
+public class CompactTrie implements PrefixTree {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * How many words each node remembers in ranked mode.
+     */
+    public static final int RANKED_SUGGESTIONS = 10;
+
+    /* Rank keys are packed as [inverted usage | length | lexicographic ordinal], so smaller is better. */
+    private static final int MAX_USAGE = (1 << 23) - 1;
+    private static final int MAX_LENGTH = (1 << 12) - 1;
+    private static final int ORDINAL_BITS = 28;
+    private static final int LENGTH_SHIFT = ORDINAL_BITS;
+    private static final int USAGE_SHIFT = ORDINAL_BITS + 12;
+    private static final long ORDINAL_MASK = (1L << ORDINAL_BITS) - 1;
+
+    /* The character each node represents. The root's character is unused. */
+    private char[] chars;
+
+    /* Index of each node's first child, or NONE. */
+    private int[] firstChild;
+
+    /* Index of each node's next sibling, or NONE. Also links the free list. */
+    private int[] nextSibling;
+
+    /* Index of each node's parent, used to spell out ranked words. */
+    private int[] parent;
+
+    /* Set if the node marks the end of a word. */
+    private final BitSet wordEnds = new BitSet();
+
+    /* Number of slots used in the arrays, including freed ones. */
+    private int nodeCount;
+
+    /* Head of the list of nodes freed by removeWord(), linked through nextSibling. */
+    private int freeList = NONE;
+
+    private int wordCount;
+
+    private boolean ranked;
+
+    /* How often each word has been used. Owned by the caller, may be null. */
+    private Map<String, Integer> usageCounts;
+
+    /* Set when the words or usage counts have changed since the ranked lists were built. */
+    private boolean rankingIsStale = true;
+
+    /* The ranked lists. Node n's best words are rankedWords[rankedStart[n]] to rankedWords[rankedStart[n] + rankedCount[n] - 1]. */
+    private int[] rankedWords;
+    private int[] rankedStart;
+    private byte[] rankedCount;
+
+    public CompactTrie() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public CompactTrie(ArrayList<String> words) {
+        /* Class names average around 8 new nodes each once prefixes are shared. */
+        this(Math.max(INITIAL_CAPACITY, words.size() * 8));
+        addWords(words);
+    }
+
+    private CompactTrie(int capacity) {
+        chars = new char[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        parent = new int[capacity];
+        firstChild[ROOT] = NONE;
+        nextSibling[ROOT] = NONE;
+        parent[ROOT] = NONE;
+        nodeCount = 1;
+    }
+
+    /**
+     * Add words to the Trie
+     *
+     * @param words
+     */
+    @Override
+    public void addWords(ArrayList<String> words) {
+        for (String word : words) {
+            addWord(word);
+        }
+    }
+
+    /**
+     * Remove words from the Trie
+     *
+     * @param words
+     */
+    @Override
+    public void removeWords(ArrayList<String> words) {
+        for (String word : words) {
+            removeWord(word);
+        }
+    }
+
+    /**
+     * Add a word to the trie
+     *
+     * @param word
+     */
+    void addWord(String word) {
+        if (word.isEmpty()) {
+            return;
+        }
+
+        int node = ROOT;
+        for (int i = 0; i < word.length(); i++) {
+            char ch = word.charAt(i);
+            int child = findChild(node, ch);
+            if (child == NONE) {
+                child = insertChild(node, ch);
+            }
+            node = child;
+        }
+
+        if (!wordEnds.get(node)) {
+            wordEnds.set(node);
+            wordCount++;
+            rankingIsStale = true;
+        }
+    }
+
+    /**
+     * Removes a word from the Trie. Any nodes that no longer lead to a word are
+     * unlinked and reused by later additions.
+     *
+     * @param word to be removed
+     */
+    void removeWord(String word) {
+        if (word.isEmpty()) {
+            return;
+        }
+
+        /* Remember the path so we can prune it from the bottom up. */
+        int[] path = new int[word.length() + 1];
+        path[0] = ROOT;
+        int node = ROOT;
+        for (int i = 0; i < word.length(); i++) {
+            node = findChild(node, word.charAt(i));
+            if (node == NONE) {
+                return;
+            }
+            path[i + 1] = node;
+        }
+
+        if (!wordEnds.get(node)) {
+            return;
+        }
+        wordEnds.clear(node);
+        wordCount--;
+        rankingIsStale = true;
+
+        for (int i = word.length(); i > 0; i--) {
+            int current = path[i];
+            if (wordEnds.get(current) || firstChild[current] != NONE) {
+                break;
+            }
+            unlinkChild(path[i - 1], current);
+            freeNode(current);
+        }
+    }
+
+    /**
+     * Return all words that have prefix
+     *
+     * @param prefix
+     * @return ArrayList containing the found words, sorted
+     */
+    @Override
+    public ArrayList<String> getWordsForPrefix(String prefix) {
+        final ArrayList<String> foundWords = new ArrayList<String>();
+        forEachWordWithPrefix(prefix, Integer.MAX_VALUE, new WordConsumer() {
+            @Override
+            public void accept(String word) {
+                foundWords.add(word);
+            }
+        });
+        return foundWords;
+    }
+
+    /**
+     * Pass the words that start with prefix to consumer, stopping after limit words. In ranked mode
+     * the best scoring words come first and at most RANKED_SUGGESTIONS are visited, otherwise the
+     * words are visited in lexicographic order.
+     *
+     * @param prefix   The prefix to search for.
+     * @param limit    The maximum number of words to visit.
+     * @param consumer Receives each word.
+     */
+    @Override
+    public void forEachWordWithPrefix(String prefix, int limit, WordConsumer consumer) {
+        if (prefix.isEmpty() || limit <= 0) {
+            return;
+        }
+
+        int node = getNodeByPrefix(prefix);
+        if (node == NONE) {
+            return;
+        }
+
+        if (ranked) {
+            visitRankedWords(node, limit, consumer);
+        } else {
+            visitWords(node, new StringBuilder(prefix), limit, consumer);
+        }
+    }
+
+    /**
+     * Turn ranked mode on or off.
+     *
+     * @param ranked Whether lookups should return the best scoring words first.
+     */
+    public void setRanked(boolean ranked) {
+        this.ranked = ranked;
+    }
+
+    public boolean isRanked() {
+        return ranked;
+    }
+
+    /**
+     * Set the usage counts used to score words in ranked mode. The map is not copied, call
+     * usageCountsChanged() after modifying it.
+     *
+     * @param usageCounts How often each word has been used, or null to score on length alone.
+     */
+    public void setUsageCounts(Map<String, Integer> usageCounts) {
+        this.usageCounts = usageCounts;
+        rankingIsStale = true;
+    }
+
+    /**
+     * Let the Trie know the usage counts have changed so the ranked lists get rebuilt on the next lookup.
+     */
+    public void usageCountsChanged() {
+        rankingIsStale = true;
+    }
+
+    /**
+     * @return The number of words in the Trie.
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * @return The number of nodes currently in use.
+     */
+    public int getNodeCount() {
+        return nodeCount - countFreeNodes();
+    }
+
+    /*
+     * Depth first walk appending to a single buffer. Children are sorted so the words come out sorted too.
+     * Returns how many more words the consumer wants.
+     */
+    private int visitWords(int node, StringBuilder word, int remaining, WordConsumer consumer) {
+        if (wordEnds.get(node)) {
+            consumer.accept(word.toString());
+            if (--remaining == 0) {
+                return 0;
+            }
+        }
+
+        int length = word.length();
+        for (int child = firstChild[node]; child != NONE && remaining > 0; child = nextSibling[child]) {
+            word.append(chars[child]);
+            remaining = visitWords(child, word, remaining, consumer);
+            word.setLength(length);
+        }
+        return remaining;
+    }
+
+    private void visitRankedWords(int node, int limit, WordConsumer consumer) {
+        if (rankingIsStale) {
+            rebuildRanking();
+        }
+
+        int start = rankedStart[node];
+        int count = Math.min(limit, rankedCount[node]);
+        StringBuilder word = new StringBuilder();
+        for (int i = start; i < start + count; i++) {
+            consumer.accept(spellWord(rankedWords[i], word));
+        }
+    }
+
+    /* Follow the parent links back to the root to get the word ending at node. */
+    private String spellWord(int node, StringBuilder word) {
+        word.setLength(0);
+        for (int current = node; current != ROOT; current = parent[current]) {
+            word.append(chars[current]);
+        }
+        return word.reverse().toString();
+    }
+
+    /*
+     * Rebuild every node's ranked list bottom up. Each word gets a key from its usage count, its length
+     * and its position in lexicographic order, then each node keeps the smallest keys from itself and its children.
+     */
+    private void rebuildRanking() {
+        long[] wordKeys = new long[nodeCount];
+        int[] wordNodes = new int[wordCount];
+        assignRankKeys(ROOT, new StringBuilder(), wordKeys, wordNodes, 0);
+
+        rankedStart = new int[nodeCount];
+        rankedCount = new byte[nodeCount];
+        rankedWords = new int[Math.max(INITIAL_CAPACITY, nodeCount * 2)];
+        RankBuilder builder = new RankBuilder(wordKeys, wordNodes);
+        builder.rank(ROOT);
+        rankedWords = Arrays.copyOf(rankedWords, builder.used);
+        rankingIsStale = false;
+    }
+
+    /* Walk the words in order, giving each one a key. Returns the next free ordinal. */
+    private int assignRankKeys(int node, StringBuilder word, long[] wordKeys, int[] wordNodes, int ordinal) {
+        if (wordEnds.get(node)) {
+            long usage = Math.min(MAX_USAGE, getUsageCount(word.toString()));
+            long length = Math.min(MAX_LENGTH, word.length());
+            wordKeys[node] = ((MAX_USAGE - usage) << USAGE_SHIFT) | (length << LENGTH_SHIFT) | ordinal;
+            wordNodes[ordinal++] = node;
+        }
+
+        int length = word.length();
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            word.append(chars[child]);
+            ordinal = assignRankKeys(child, word, wordKeys, wordNodes, ordinal);
+            word.setLength(length);
+        }
+        return ordinal;
+    }
+
+    private int getUsageCount(String word) {
+        if (usageCounts == null) {
+            return 0;
+        }
+        Integer count = usageCounts.get(word);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Fills in the ranked lists for a subtree. Children are ranked first so a node only
+     * has to merge their already trimmed lists with its own word.
+     */
+    private class RankBuilder {
+        private final long[] wordKeys;
+        private final int[] wordNodes;
+        private long[] candidates = new long[RANKED_SUGGESTIONS * 4];
+        private int used;
+
+        RankBuilder(long[] wordKeys, int[] wordNodes) {
+            this.wordKeys = wordKeys;
+            this.wordNodes = wordNodes;
+        }
+
+        void rank(int node) {
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                rank(child);
+            }
+
+            int count = 0;
+            if (wordEnds.get(node)) {
+                count = addCandidate(count, wordKeys[node]);
+            }
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                int start = rankedStart[child];
+                for (int i = start; i < start + rankedCount[child]; i++) {
+                    count = addCandidate(count, wordKeys[rankedWords[i]]);
+                }
+            }
+            Arrays.sort(candidates, 0, count);
+
+            count = Math.min(count, RANKED_SUGGESTIONS);
+            if (used + count > rankedWords.length) {
+                rankedWords = Arrays.copyOf(rankedWords, Math.max(used + count, rankedWords.length * 2));
+            }
+            rankedStart[node] = used;
+            rankedCount[node] = (byte) count;
+            for (int i = 0; i < count; i++) {
+                rankedWords[used++] = wordNodes[(int) (candidates[i] & ORDINAL_MASK)];
+            }
+        }
+
+        private int addCandidate(int count, long key) {
+            if (count == candidates.length) {
+                candidates = Arrays.copyOf(candidates, candidates.length * 2);
+            }
+            candidates[count] = key;
+            return count + 1;
+        }
+    }
+
+    /**
+     * Return the node at the end of the prefix
+     *
+     * @param prefix
+     * @return The node or NONE if nothing found
+     */
+    private int getNodeByPrefix(String prefix) {
+        int node = ROOT;
+        for (int i = 0; i < prefix.length() && node != NONE; i++) {
+            node = findChild(node, prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private int findChild(int node, char ch) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (chars[child] == ch) {
+                return child;
+            }
+            /* Siblings are sorted, so we can stop early. */
+            if (chars[child] > ch) {
+                return NONE;
+            }
+        }
+        return NONE;
+    }
+
+    /* Adds a child to node, keeping the siblings sorted by character. */
+    private int insertChild(int node, char ch) {
+        int child = allocateNode(ch);
+
+        int previous = NONE;
+        int current = firstChild[node];
+        while (current != NONE && chars[current] < ch) {
+            previous = current;
+            current = nextSibling[current];
+        }
+
+        nextSibling[child] = current;
+        parent[child] = node;
+        if (previous == NONE) {
+            firstChild[node] = child;
+        } else {
+            nextSibling[previous] = child;
+        }
+        return child;
+    }
+
+    private void unlinkChild(int node, int child) {
+        if (firstChild[node] == child) {
+            firstChild[node] = nextSibling[child];
+            return;
+        }
+        for (int sibling = firstChild[node]; sibling != NONE; sibling = nextSibling[sibling]) {
+            if (nextSibling[sibling] == child) {
+                nextSibling[sibling] = nextSibling[child];
+                return;
+            }
+        }
+    }
+
+    private int allocateNode(char ch) {
+        int node;
+        if (freeList != NONE) {
+            node = freeList;
+            freeList = nextSibling[node];
+        } else {
+            if (nodeCount == chars.length) {
+                grow();
+            }
+            node = nodeCount++;
+        }
+        chars[node] = ch;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        firstChild[node] = NONE;
+        nextSibling[node] = freeList;
+        freeList = node;
+    }
+
+    private int countFreeNodes() {
+        int free = 0;
+        for (int node = freeList; node != NONE; node = nextSibling[node]) {
+            free++;
+        }
+        return free;
+    }
+
+    private void grow() {
+        int capacity = chars.length + (chars.length >> 1) + 1;
+        chars = Arrays.copyOf(chars, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+    }
+}
@@ -20,10 +20,7 @@ package com.facetoe.jreader.helpers;
 import org.apache.log4j.Logger;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Properties;
 
 
 /**
@@ -55,7 +52,41 @@ public class Config {
     public static final String JAVA_DOCS_ZIP_FILE_NAME = "jdk-7u51-apidocs";
 
     // The name of the profile class data files.
-    public static final String CLASS_DATA_FILE_NAME = "classData.ser";
+    public static final String CLASS_DATA_FILE_NAME = "classData.idx";
+
+    // Class data used to be a serialized HashMap. These files are converted the first time they're loaded.
+    public static final String LEGACY_CLASS_DATA_FILE_NAME = "classData.ser";
+
+    // The name of the profile files that map class members to their anchors.
+    public static final String MEMBER_DATA_FILE_NAME = "memberData.idx";
+
+    // The name of the profile full text search index files.
+    public static final String DOC_SEARCH_INDEX_FILE_NAME = "docSearch.idx";
+
+    // The name of the profile files that map qualified names in the source to file and line.
+    public static final String SYMBOL_DATA_FILE_NAME = "symbolData.idx";
+
+    // The name of the profile files that record where each identifier is used in the source.
+    public static final String SOURCE_USAGES_FILE_NAME = "sourceUsages.idx";
+
+    // The name of the profile files that record how often each class is opened.
+    public static final String USAGE_DATA_FILE_NAME = "usageData.ser";
+
+    // The directory in the data directory where parsed source outlines are cached.
+    public static final String SOURCE_OUTLINE_CACHE_DIR_NAME = "outlineCache";
+
+    // The directory in the data directory where github responses are cached.
+    public static final String GITHUB_CACHE_DIR_NAME = "githubCache";
+
+    // Whether every source file is parsed in the background.
+    public static final String INDEX_SOURCES = "indexSources";
+
+    // The percentage of the CPUs the background indexer may use.
+    public static final String INDEXER_CPU_SHARE = "indexerCpuShare";
+    public static final int DEFAULT_INDEXER_CPU_SHARE = 25;
+
+    // Which parser reads source files, "javaparser" or "outline". JavaParser is used if this isn't set.
+    public static final String SOURCE_PARSER = "sourceParser";
 
     // The target file for JavaDocParser.
     public static final String ALL_CLASSSES_DOC_FILE = "allclasses-noframe.html";
@@ -64,7 +95,12 @@ public class Config {
     public static final String DATA_DIR_NAME = ".jreader";
 
     private static final String CONFIG_FILE_NAME = "config.properties";
-    private static final Properties properties = new Properties();
+
+    // How long to wait after a change before saving the config file.
+    private static final long WRITE_DELAY_MILLIS = 500;
+
+    // How often to check whether the config file was edited by someone else.
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
 
     /**
      * The full path to our data directory.
@@ -81,6 +117,19 @@ public class Config {
             CONFIG_FILE_NAME +
             File.separator;
 
+    private static final PropertiesFile configFile =
+            new PropertiesFile(new File(configFilePath), WRITE_DELAY_MILLIS, CHECK_INTERVAL_MILLIS);
+
+    static {
+        // Make sure pending changes are saved however we exit.
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, "ConfigFlush"));
+    }
+
     /**
      * Set a config String value.
      */
@@ -109,41 +158,38 @@ public class Config {
         return getEntry(key);
     }
 
-    private static void setEntry(String key, String value) {
-        FileInputStream in = null;
+    /**
+     * Get a config int value, or defaultValue if it isn't set or isn't a number.
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getEntry(key);
+        if (value == null) {
+            return defaultValue;
+        }
         try {
-            in = new FileInputStream(configFilePath);
-            properties.load(in);
-            properties.setProperty(key, value);
-            properties.store(new FileOutputStream(configFilePath), null);
-        } catch (IOException ex) {
-            log.error(ex);
-        } finally {
-            try {
-                if (in != null) {
-                    in.close();
-                }
-            } catch (IOException e) {}
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring bad value for " + key + ": " + value);
+            return defaultValue;
         }
     }
 
-
-    private static String getEntry(String key) {
-        FileInputStream in = null;
+    /**
+     * Write any config changes that haven't been saved yet.
+     */
+    public static void flush() {
         try {
-            in = new FileInputStream(configFilePath);
-            properties.load(in);
+            configFile.flush();
         } catch (IOException ex) {
             log.error(ex);
-        } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
         }
-        return properties.getProperty(key);
     }
-}
\ No newline at end of file
+
+    private static void setEntry(String key, String value) {
+        configFile.set(key, value);
+    }
+
+    private static String getEntry(String key) {
+        return configFile.get(key);
+    }
+}
@@ -0,0 +1,602 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A full text index of the pages in a Javadoc directory, stored in a file that is memory mapped.
+ * <p/>
+ * Every word on a page is indexed in lower case. Words that name a member anchor on the page, such as
+ * the putIfAbsent in {@code <a name="putIfAbsent(K, V)">}, or the page's own class name count for
+ * more, so a search for a method finds the classes that declare it before the ones that mention it.
+ * <p/>
+ * The layout is:
+ * <pre>
+ *   int magic, int version, int page count, int term count
+ *   page count * int path offset
+ *   term count * (int term offset, int postings offset, int page frequency), sorted by term
+ *   postings, for each term page frequency * (varint page id delta, varint weight)
+ *   string pool, each string is an unsigned short length followed by that many UTF-8 bytes
+ * </pre>
+ */
+public class DocSearchIndex {
+    private static final Logger log = Logger.getLogger(DocSearchIndex.class);
+
+    private static final int MAGIC = 0x4A524453; // "JRDS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TERM_ENTRY_SIZE = 12;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // How much an occurrence counts for in different parts of a page.
+    private static final int TEXT_WEIGHT = 1;
+    private static final int ANCHOR_WEIGHT = 10;
+    private static final int PAGE_NAME_WEIGHT = 20;
+
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+
+    // The most pages a fork/join task scans before splitting.
+    private static final int PAGES_PER_TASK = 16;
+
+    // These pages list everything in the docs so they would match every search.
+    private static final String[] SKIPPED_PAGES = {
+            "index-all.html", "index-files", "allclasses", "overview-tree.html", "package-tree.html",
+            "deprecated-list.html", "constant-values.html", "serialized-form.html", "help-doc.html"
+    };
+
+    private final ByteBuffer buffer;
+    private final int pageCount;
+    private final int termCount;
+    private final int termTableOffset;
+
+    private DocSearchIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a search index file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported search index version: " + buffer.getInt(4));
+        }
+        pageCount = buffer.getInt(8);
+        termCount = buffer.getInt(12);
+        termTableOffset = HEADER_SIZE + pageCount * 4;
+        if (pageCount < 0 || termCount < 0
+                || termTableOffset + (long) termCount * TERM_ENTRY_SIZE > buffer.limit()) {
+            throw new IOException("Search index file is corrupt");
+        }
+        // The page paths are written last, so in a file that was cut short the last one runs past the end.
+        int end = pageCount == 0 ? termTableOffset : IndexFormat.stringEnd(buffer, pathOffset(pageCount - 1));
+        if ((termCount > 0 && pageCount == 0) || end != buffer.limit()) {
+            throw new IOException("Search index file is corrupt");
+        }
+    }
+
+    /**
+     * Indexes every page under docDir using a fork/join pool.
+     *
+     * @param docDir The Javadoc directory.
+     * @return The index, held in memory until it is written.
+     */
+    public static DocSearchIndex build(File docDir) {
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool();
+        ArrayList<Page> pages;
+        try {
+            pages = pool.invoke(new DirectoryTask(docDir, "", new ConcurrentHashMap<String, String>()));
+        } finally {
+            pool.shutdown();
+        }
+        Collections.sort(pages, new Comparator<Page>() {
+            @Override
+            public int compare(Page first, Page second) {
+                return first.path.compareTo(second.path);
+            }
+        });
+
+        DocSearchIndex index = fromPages(pages);
+        log.debug("Indexed " + index.pageCount + " pages and " + index.termCount + " terms in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return index;
+    }
+
+    /**
+     * Memory maps an index file written by write().
+     *
+     * @param file The file to open.
+     * @return The index.
+     * @throws IOException If the file can't be read or isn't a search index.
+     */
+    public static DocSearchIndex open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return new DocSearchIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes this index to a file. The file is replaced in one go, so it's never left half written.
+     *
+     * @param file The file to write to.
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        IndexFormat.write(buffer, file);
+    }
+
+    /**
+     * @return The number of pages indexed.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return The number of distinct terms.
+     */
+    public int getTermCount() {
+        return termCount;
+    }
+
+    /**
+     * Find the pages that best match the words in query. Pages that contain more of the words,
+     * or rarer ones, or declare them as members, come first.
+     *
+     * @param query The words to search for.
+     * @param limit The most pages to return.
+     * @return Paths relative to the doc directory, best match first.
+     */
+    public ArrayList<String> search(String query, int limit) {
+        float[] scores = new float[pageCount];
+        boolean foundAny = false;
+        for (String term : tokenize(query)) {
+            int termIndex = indexOfTerm(term.getBytes(UTF_8));
+            if (termIndex == -1) {
+                continue;
+            }
+            foundAny = true;
+
+            int entry = termTableOffset + termIndex * TERM_ENTRY_SIZE;
+            int position = buffer.getInt(entry + 4);
+            int pageFrequency = buffer.getInt(entry + 8);
+            double inverseFrequency = Math.log(1 + (double) pageCount / pageFrequency);
+            int page = 0;
+            int[] next = new int[1];
+            for (int i = 0; i < pageFrequency; i++) {
+                position = readVarInt(position, next);
+                page += next[0];
+                position = readVarInt(position, next);
+                scores[page] += (1 + Math.log(next[0])) * inverseFrequency;
+            }
+        }
+
+        ArrayList<String> results = new ArrayList<String>();
+        if (!foundAny || limit <= 0) {
+            return results;
+        }
+
+        ArrayList<Integer> matches = new ArrayList<Integer>();
+        for (int page = 0; page < pageCount; page++) {
+            if (scores[page] > 0) {
+                matches.add(page);
+            }
+        }
+        final float[] pageScores = scores;
+        Collections.sort(matches, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                int result = Float.compare(pageScores[second], pageScores[first]);
+                return result != 0 ? result : first - second;
+            }
+        });
+        for (int i = 0; i < Math.min(limit, matches.size()); i++) {
+            results.add(getPagePath(matches.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * @param page The page id, from 0 to getPageCount() - 1.
+     * @return The path of the page relative to the doc directory.
+     */
+    public String getPagePath(int page) {
+        return getString(pathOffset(page));
+    }
+
+    private int pathOffset(int page) {
+        return buffer.getInt(HEADER_SIZE + page * 4);
+    }
+
+    private int indexOfTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int result = compareString(buffer.getInt(termTableOffset + mid * TERM_ENTRY_SIZE), term);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareString(int offset, byte[] bytes) {
+        return IndexFormat.compareString(buffer, offset, bytes, false);
+    }
+
+    private String getString(int offset) {
+        return IndexFormat.getString(buffer, offset);
+    }
+
+    // Reads a varint at position into value[0] and returns the position after it.
+    private int readVarInt(int position, int[] value) {
+        return IndexFormat.readVarInt(buffer, position, value);
+    }
+
+    /*
+     * Lays the pages out in the file format. Postings are written page by page, so each term's page
+     * ids are already in increasing order and only the gaps need to be stored.
+     */
+    private static DocSearchIndex fromPages(ArrayList<Page> pages) {
+        HashMap<String, Postings> postingsByTerm = new HashMap<String, Postings>();
+        for (int page = 0; page < pages.size(); page++) {
+            Page scanned = pages.get(page);
+            for (int i = 0; i < scanned.terms.length; i++) {
+                Postings postings = postingsByTerm.get(scanned.terms[i]);
+                if (postings == null) {
+                    postings = new Postings();
+                    postingsByTerm.put(scanned.terms[i], postings);
+                }
+                postings.add(page, scanned.weights[i]);
+            }
+        }
+
+        int termCount = postingsByTerm.size();
+        byte[][] terms = new byte[termCount][];
+        Postings[] postings = new Postings[termCount];
+        int i = 0;
+        for (Map.Entry<String, Postings> entry : postingsByTerm.entrySet()) {
+            terms[i] = entry.getKey().getBytes(UTF_8);
+            postings[i] = entry.getValue();
+            i++;
+        }
+        Integer[] order = IndexFormat.sortedOrder(terms);
+
+        byte[][] paths = new byte[pages.size()][];
+        int size = HEADER_SIZE + pages.size() * 4 + termCount * TERM_ENTRY_SIZE;
+        for (i = 0; i < paths.length; i++) {
+            paths[i] = pages.get(i).path.getBytes(UTF_8);
+            size += 2 + paths[i].length;
+        }
+        for (i = 0; i < termCount; i++) {
+            size += postings[i].length + 2 + terms[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(pages.size()).putInt(termCount);
+        int termTableOffset = HEADER_SIZE + pages.size() * 4;
+        int offset = termTableOffset + termCount * TERM_ENTRY_SIZE;
+        for (i = 0; i < termCount; i++) {
+            Postings termPostings = postings[order[i]];
+            int entry = termTableOffset + i * TERM_ENTRY_SIZE;
+            buffer.putInt(entry + 8, termPostings.count);
+            offset = IndexFormat.putBytes(buffer, entry + 4, offset, termPostings.bytes, termPostings.length);
+        }
+        for (i = 0; i < termCount; i++) {
+            offset = IndexFormat.putString(buffer, termTableOffset + i * TERM_ENTRY_SIZE, offset, terms[order[i]]);
+        }
+        for (i = 0; i < paths.length; i++) {
+            offset = IndexFormat.putString(buffer, HEADER_SIZE + i * 4, offset, paths[i]);
+        }
+        buffer.clear();
+
+        try {
+            return new DocSearchIndex(buffer);
+        } catch (IOException e) {
+            // Can't happen, we just wrote the header.
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Splits text into lower case search terms the same way pages are indexed.
+     */
+    static ArrayList<String> tokenize(String text) {
+        final ArrayList<String> terms = new ArrayList<String>();
+        addTerms(text, new TermConsumer() {
+            @Override
+            public void accept(String term) {
+                terms.add(term);
+            }
+        });
+        return terms;
+    }
+
+    private static void addTerms(CharSequence text, TermConsumer consumer) {
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean isTermChar = i < length && isTermChar(text.charAt(i));
+            if (isTermChar && start == -1) {
+                start = i;
+            } else if (!isTermChar && start != -1) {
+                int termLength = i - start;
+                if (termLength >= MIN_TERM_LENGTH && termLength <= MAX_TERM_LENGTH
+                        && !Character.isDigit(text.charAt(start))) {
+                    consumer.accept(text.subSequence(start, i).toString().toLowerCase());
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static boolean isTermChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_';
+    }
+
+    private interface TermConsumer {
+        void accept(String term);
+    }
+
+    /* The terms on one page, sorted, with how much each one counts for. */
+    private static class Page {
+        final String path;
+        final String[] terms;
+        final int[] weights;
+
+        Page(String path, String[] terms, int[] weights) {
+            this.path = path;
+            this.terms = terms;
+            this.weights = weights;
+        }
+    }
+
+    /* A growing list of varint encoded (page id delta, weight) pairs for one term. */
+    private static class Postings {
+        byte[] bytes = new byte[8];
+        int length;
+        int count;
+        int lastPage;
+
+        void add(int page, int weight) {
+            writeVarInt(page - lastPage);
+            writeVarInt(weight);
+            lastPage = page;
+            count++;
+        }
+
+        private void writeVarInt(int value) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            length = IndexFormat.writeVarInt(bytes, length, value);
+        }
+    }
+
+    /*
+     * Scans a directory. Sub directories are scanned by their own tasks and the pages are split
+     * between tasks of at most PAGES_PER_TASK pages.
+     */
+    private static class DirectoryTask extends RecursiveTask<ArrayList<Page>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File dir;
+        private final String relativePath;
+        private final ConcurrentHashMap<String, String> termPool;
+
+        DirectoryTask(File dir, String relativePath, ConcurrentHashMap<String, String> termPool) {
+            this.dir = dir;
+            this.relativePath = relativePath;
+            this.termPool = termPool;
+        }
+
+        @Override
+        protected ArrayList<Page> compute() {
+            File[] files = dir.listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return !isSkipped(file.getName())
+                            && (file.isDirectory() || file.getName().endsWith(".html"));
+                }
+            });
+            ArrayList<Page> pages = new ArrayList<Page>();
+            if (files == null) {
+                return pages;
+            }
+
+            ArrayList<RecursiveTask<ArrayList<Page>>> tasks = new ArrayList<RecursiveTask<ArrayList<Page>>>();
+            ArrayList<File> pageFiles = new ArrayList<File>();
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    tasks.add(new DirectoryTask(file, relativePath + file.getName() + "/", termPool));
+                } else {
+                    pageFiles.add(file);
+                }
+            }
+            for (int start = 0; start < pageFiles.size(); start += PAGES_PER_TASK) {
+                List<File> taskFiles = pageFiles.subList(start, Math.min(start + PAGES_PER_TASK, pageFiles.size()));
+                tasks.add(new PageTask(new ArrayList<File>(taskFiles), relativePath, termPool));
+            }
+
+            invokeAll(tasks);
+            for (RecursiveTask<ArrayList<Page>> task : tasks) {
+                pages.addAll(task.join());
+            }
+            return pages;
+        }
+
+        private static boolean isSkipped(String name) {
+            for (String skipped : SKIPPED_PAGES) {
+                if (name.startsWith(skipped)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class PageTask extends RecursiveTask<ArrayList<Page>> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<File> files;
+        private final String relativePath;
+        private final ConcurrentHashMap<String, String> termPool;
+
+        PageTask(ArrayList<File> files, String relativePath, ConcurrentHashMap<String, String> termPool) {
+            this.files = files;
+            this.relativePath = relativePath;
+            this.termPool = termPool;
+        }
+
+        @Override
+        protected ArrayList<Page> compute() {
+            ArrayList<Page> pages = new ArrayList<Page>(files.size());
+            for (File file : files) {
+                try {
+                    pages.add(scanPage(file));
+                } catch (IOException e) {
+                    log.error("Failed to index " + file.getAbsolutePath(), e);
+                }
+            }
+            return pages;
+        }
+
+        private Page scanPage(File file) throws IOException {
+            String html = new String(Files.readAllBytes(file.toPath()), UTF_8);
+            String lowerCaseHtml = html.toLowerCase();
+            final HashMap<String, int[]> weights = new HashMap<String, int[]>();
+
+            String pageName = file.getName().substring(0, file.getName().length() - ".html".length());
+            addWeightedTerms(pageName, PAGE_NAME_WEIGHT, weights);
+
+            StringBuilder text = new StringBuilder();
+            int length = html.length();
+            int i = 0;
+            while (i < length) {
+                char ch = html.charAt(i);
+                if (ch == '<') {
+                    int end = html.indexOf('>', i);
+                    if (end == -1) {
+                        break;
+                    }
+                    String tag = lowerCaseHtml.substring(i + 1, end);
+                    if (tag.startsWith("script") || tag.startsWith("style")) {
+                        // Skip to the closing tag.
+                        int close = lowerCaseHtml.indexOf("</" + (tag.startsWith("script") ? "script" : "style"), end);
+                        end = close == -1 ? length - 1 : html.indexOf('>', close);
+                        if (end == -1) {
+                            break;
+                        }
+                    } else if (tag.startsWith("a ") || tag.startsWith("section ") || tag.startsWith("span ")) {
+                        addAnchorTerms(html.substring(i + 1, end), weights);
+                    }
+                    // Tags separate words.
+                    text.append(' ');
+                    i = end + 1;
+                } else if (ch == '&') {
+                    int end = html.indexOf(';', i);
+                    text.append(' ');
+                    i = end != -1 && end - i < 10 ? end + 1 : i + 1;
+                } else {
+                    text.append(ch);
+                    i++;
+                }
+            }
+            addWeightedTerms(text, TEXT_WEIGHT, weights);
+
+            String[] terms = weights.keySet().toArray(new String[weights.size()]);
+            Arrays.sort(terms);
+            int[] termWeights = new int[terms.length];
+            for (int term = 0; term < terms.length; term++) {
+                termWeights[term] = weights.get(terms[term])[0];
+                terms[term] = pool(terms[term]);
+            }
+            return new Page(relativePath + file.getName(), terms, termWeights);
+        }
+
+        // Member anchors look like <a name="putIfAbsent(K, V)"> or <section id="putIfAbsent(K,V)">.
+        private void addAnchorTerms(String tag, HashMap<String, int[]> weights) {
+            String lowerCaseTag = tag.toLowerCase();
+            for (String attribute : new String[]{" name=\"", " id=\""}) {
+                int start = lowerCaseTag.indexOf(attribute);
+                if (start == -1) {
+                    continue;
+                }
+                start += attribute.length();
+                int end = tag.indexOf('"', start);
+                if (end != -1) {
+                    // Only the member name counts, not the parameter types.
+                    String anchor = tag.substring(start, end);
+                    int nameEnd = 0;
+                    while (nameEnd < anchor.length() && isTermChar(anchor.charAt(nameEnd))) {
+                        nameEnd++;
+                    }
+                    addWeightedTerms(anchor.substring(0, nameEnd), ANCHOR_WEIGHT, weights);
+                }
+            }
+        }
+
+        private static void addWeightedTerms(CharSequence text, final int weight, final HashMap<String, int[]> weights) {
+            addTerms(text, new TermConsumer() {
+                @Override
+                public void accept(String term) {
+                    int[] termWeight = weights.get(term);
+                    if (termWeight == null) {
+                        weights.put(term, new int[]{weight});
+                    } else {
+                        termWeight[0] += weight;
+                    }
+                }
+            });
+        }
+
+        // Share one String per term across all pages.
+        private String pool(String term) {
+            String pooled = termPool.putIfAbsent(term, term);
+            return pooled != null ? pooled : term;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Finds class names from abbreviations. "CHM", "concHashMap" and "chmap" all find ConcurrentHashMap.
+ * <p/>
+ * A query matches a class name if it is a prefix of it, if its characters can be matched against the
+ * starts of the name's humps ("Concurrent", "Hash", "Map"), or failing that if its characters appear
+ * in the name in order. Matches are returned in that order, with hump matches that begin at the first
+ * hump ahead of the rest, then shortest name first.
+ * <p/>
+ * Each name has a 64 bit mask of the characters it contains and a signature mask of the characters that
+ * start its humps, so most names are rejected without looking at their characters. Prefix matches are
+ * found with a binary search, and the rest are looked for from the shortest name up, which lets the
+ * search stop as soon as no remaining name could make it into the results. The per name arrays, and
+ * the lower cased characters of every name, are kept in that order so the scan walks through memory
+ * sequentially instead of chasing a String per name.
+ */
+public class FuzzyClassIndex {
+
+    // Match quality, smaller is better.
+    private static final int PREFIX_MATCH = 0;
+    private static final int FIRST_HUMP_MATCH = 1;
+    private static final int HUMP_MATCH = 2;
+    private static final int SUBSEQUENCE_MATCH = 3;
+    private static final int NO_MATCH = -1;
+
+    /* Result keys are packed as [match quality | length | index], so smaller is better. */
+    private static final int INDEX_BITS = 32;
+    private static final int LENGTH_BITS = 16;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final int MAX_LENGTH = (1 << LENGTH_BITS) - 1;
+
+    /* Only the first 64 characters of a name can start a hump. */
+    private static final int MAX_HUMP_POSITION = 63;
+
+    /* Names sorted by length, then case insensitively. */
+    private final String[] names;
+    private final String[] lowerCaseNames;
+
+    /* The characters in each name, see charMask(). */
+    private final long[] charMasks;
+
+    /* The characters that start each name's humps. */
+    private final long[] signatureMasks;
+
+    /* Bit n is set if the nth character of the name starts a hump. */
+    private final long[] humpStarts;
+
+    /* Every name lower cased and run together. Name n is at offsets[n] up to offsets[n + 1]. */
+    private final char[] lowerCaseChars;
+    private final int[] offsets;
+
+    /* Indexes into names in case insensitive order, so the names starting with a prefix are next to each other. */
+    private final int[] alphabetical;
+
+    /**
+     * Builds the index.
+     *
+     * @param classNames The names to search.
+     */
+    public FuzzyClassIndex(Collection<String> classNames) {
+        names = classNames.toArray(new String[classNames.size()]);
+        Arrays.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                int result = first.length() - second.length();
+                return result != 0 ? result : compareIgnoringCase(first, second);
+            }
+        });
+
+        lowerCaseNames = new String[names.length];
+        charMasks = new long[names.length];
+        signatureMasks = new long[names.length];
+        humpStarts = new long[names.length];
+        offsets = new int[names.length + 1];
+        Integer[] indexes = new Integer[names.length];
+        for (int i = 0; i < names.length; i++) {
+            offsets[i + 1] = offsets[i] + names[i].length();
+            lowerCaseNames[i] = names[i].toLowerCase();
+            charMasks[i] = charMask(lowerCaseNames[i]);
+            humpStarts[i] = humpStarts(names[i]);
+            signatureMasks[i] = signatureMask(lowerCaseNames[i], humpStarts[i]);
+            indexes[i] = i;
+        }
+
+        lowerCaseChars = new char[offsets[names.length]];
+        for (int i = 0; i < names.length; i++) {
+            lowerCaseNames[i].getChars(0, lowerCaseNames[i].length(), lowerCaseChars, offsets[i]);
+        }
+
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return compareIgnoringCase(names[first], names[second]);
+            }
+        });
+        alphabetical = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            alphabetical[i] = indexes[i];
+        }
+    }
+
+    private static int compareIgnoringCase(String first, String second) {
+        int result = first.toLowerCase().compareTo(second.toLowerCase());
+        return result != 0 ? result : first.compareTo(second);
+    }
+
+    /**
+     * @return The number of names in the index.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Find the names that best match query.
+     *
+     * @param query The abbreviation that was typed.
+     * @param limit The maximum number of names to return.
+     * @return The matching names, best first.
+     */
+    public ArrayList<String> find(String query, int limit) {
+        ArrayList<String> results = new ArrayList<String>();
+        query = query.trim();
+        if (query.isEmpty() || limit <= 0) {
+            return results;
+        }
+
+        String lowerCaseQuery = query.toLowerCase();
+
+        /* The best keys found so far, kept sorted. */
+        long[] best = new long[limit];
+        int found = 0;
+
+        /* Prefix matches beat everything else, so if there are enough of them we're done. */
+        for (int i = lowerBound(lowerCaseQuery);
+             i < names.length && lowerCaseNames[alphabetical[i]].startsWith(lowerCaseQuery); i++) {
+            found = offer(best, found, key(PREFIX_MATCH, alphabetical[i]));
+        }
+        if (found == limit) {
+            return toNames(best, found, results);
+        }
+
+        long queryMask = charMask(lowerCaseQuery);
+        long capitalsMask = capitalsMask(query);
+        long firstCharMask = charMask(lowerCaseQuery.substring(0, 1));
+        for (int i = 0; i < names.length; i++) {
+            /* Every name from here on is at least this long, so if even a hump match this long
+             * wouldn't make the cut then nothing left will. */
+            if (found == limit && key(FIRST_HUMP_MATCH, i) > best[limit - 1]) {
+                break;
+            }
+            if ((charMasks[i] & queryMask) != queryMask) {
+                continue;
+            }
+
+            /* Only the names that get past the masks have their characters looked at. */
+            int quality = NO_MATCH;
+            long humps = humpStarts[i];
+            if ((signatureMasks[i] & capitalsMask) == capitalsMask && (signatureMasks[i] & firstCharMask) != 0) {
+                if (matchesHumps(i, humps, query, 0, 0, 1L)) {
+                    quality = FIRST_HUMP_MATCH;
+                } else if (matchesHumps(i, humps, query, 0, 0, humps)) {
+                    quality = HUMP_MATCH;
+                }
+            }
+            if (quality == NO_MATCH
+                    && (found < limit || key(SUBSEQUENCE_MATCH, i) < best[limit - 1])
+                    && isSubsequence(lowerCaseQuery, i)) {
+                quality = SUBSEQUENCE_MATCH;
+            }
+            // Prefix matches have already been added.
+            if (quality != NO_MATCH && !startsWith(i, lowerCaseQuery)) {
+                found = offer(best, found, key(quality, i));
+            }
+        }
+        return toNames(best, found, results);
+    }
+
+    /**
+     * Find the name that best matches query.
+     *
+     * @param query The abbreviation that was typed.
+     * @return The best matching name, or null if nothing matches.
+     */
+    public String findBestMatch(String query) {
+        ArrayList<String> results = find(query, 1);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    private long key(int quality, int index) {
+        return ((long) quality << (INDEX_BITS + LENGTH_BITS))
+                | ((long) Math.min(MAX_LENGTH, offsets[index + 1] - offsets[index]) << INDEX_BITS)
+                | index;
+    }
+
+    /* Keep key if it's one of the best. Returns the new count. */
+    private static int offer(long[] best, int found, long key) {
+        if (found < best.length) {
+            return insert(best, found, key);
+        }
+        if (key < best[found - 1]) {
+            insert(best, found - 1, key);
+        }
+        return found;
+    }
+
+    /* Inserts key into the first count entries of the sorted array. Returns the new count. */
+    private static int insert(long[] keys, int count, long key) {
+        int pos = count;
+        while (pos > 0 && keys[pos - 1] > key) {
+            keys[pos] = keys[pos - 1];
+            pos--;
+        }
+        keys[pos] = key;
+        return count + 1;
+    }
+
+    private ArrayList<String> toNames(long[] best, int found, ArrayList<String> results) {
+        for (int i = 0; i < found; i++) {
+            results.add(names[(int) (best[i] & INDEX_MASK)]);
+        }
+        return results;
+    }
+
+    /* The index of the first lower cased name that isn't less than key. */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lowerCaseNames[alphabetical[mid]].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Try to match query from queryPos against name from namePos. Each query character either carries on
+     * in the current hump or starts a later hump. Capitals in the query always start a hump.
+     * The first query character may only start one of the humps in firstHumps.
+     */
+    private boolean matchesHumps(int index, long humps, String query, int queryPos, int namePos, long firstHumps) {
+        if (queryPos == query.length()) {
+            return true;
+        }
+
+        int start = offsets[index];
+        char ch = query.charAt(queryPos);
+        char lowerCaseCh = Character.toLowerCase(ch);
+        if (queryPos > 0
+                && start + namePos < offsets[index + 1]
+                && !Character.isUpperCase(ch)
+                && !isHumpStart(humps, namePos)
+                && lowerCaseChars[start + namePos] == lowerCaseCh
+                && matchesHumps(index, humps, query, queryPos + 1, namePos + 1, firstHumps)) {
+            return true;
+        }
+
+        /* Visit the remaining humps by clearing the bits below namePos. */
+        long candidates = queryPos == 0 ? firstHumps : humps;
+        candidates = namePos > MAX_HUMP_POSITION ? 0 : candidates & (-1L << namePos);
+        while (candidates != 0) {
+            int hump = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            if (lowerCaseChars[start + hump] == lowerCaseCh
+                    && matchesHumps(index, humps, query, queryPos + 1, hump + 1, firstHumps)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHumpStart(long humps, int position) {
+        return position <= MAX_HUMP_POSITION && (humps & (1L << position)) != 0;
+    }
+
+    /* True if every character of lowerCaseQuery appears in the name in the same order. */
+    private boolean isSubsequence(String lowerCaseQuery, int index) {
+        int queryPos = 0;
+        for (int i = offsets[index]; i < offsets[index + 1] && queryPos < lowerCaseQuery.length(); i++) {
+            if (lowerCaseChars[i] == lowerCaseQuery.charAt(queryPos)) {
+                queryPos++;
+            }
+        }
+        return queryPos == lowerCaseQuery.length();
+    }
+
+    private boolean startsWith(int index, String lowerCaseQuery) {
+        int start = offsets[index];
+        if (offsets[index + 1] - start < lowerCaseQuery.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseQuery.length(); i++) {
+            if (lowerCaseChars[start + i] != lowerCaseQuery.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Letters take the first 26 bits and digits the next 10. Everything else shares the rest. */
+    private static long charMask(String lowerCaseStr) {
+        long mask = 0;
+        for (int i = 0; i < lowerCaseStr.length(); i++) {
+            mask |= charBit(lowerCaseStr.charAt(i));
+        }
+        return mask;
+    }
+
+    private static long charBit(char ch) {
+        if (ch >= 'a' && ch <= 'z') {
+            return 1L << (ch - 'a');
+        } else if (ch >= '0' && ch <= '9') {
+            return 1L << (26 + ch - '0');
+        } else {
+            return 1L << (36 + ch % 28);
+        }
+    }
+
+    /*
+     * A hump starts at the first character, at a digit following a non digit and after an underscore,
+     * dollar or dot. A capital starts a hump unless it's in the middle of an acronym, so HTMLEditor
+     * has the humps "HTML" and "Editor".
+     */
+    private static long humpStarts(String name) {
+        long humps = 0;
+        int end = Math.min(MAX_HUMP_POSITION, name.length() - 1);
+        for (int i = 0; i <= end; i++) {
+            char ch = name.charAt(i);
+            char previous = i > 0 ? name.charAt(i - 1) : 0;
+            char next = i < name.length() - 1 ? name.charAt(i + 1) : 0;
+            if (i == 0
+                    || (Character.isUpperCase(ch) && (!Character.isUpperCase(previous) || Character.isLowerCase(next)))
+                    || (Character.isDigit(ch) && !Character.isDigit(previous))
+                    || previous == '_'
+                    || previous == '$'
+                    || previous == '.') {
+                humps |= 1L << i;
+            }
+        }
+        return humps;
+    }
+
+    private static long signatureMask(String lowerCaseName, long humps) {
+        long mask = 0;
+        for (long remaining = humps; remaining != 0; remaining &= remaining - 1) {
+            mask |= charBit(lowerCaseName.charAt(Long.numberOfTrailingZeros(remaining)));
+        }
+        return mask;
+    }
+
+    /* The capitals in the query. Each one has to start a hump. */
+    private static long capitalsMask(String query) {
+        long mask = 0;
+        for (int i = 0; i < query.length(); i++) {
+            char ch = query.charAt(i);
+            if (Character.isUpperCase(ch)) {
+                mask |= charBit(Character.toLowerCase(ch));
+            }
+        }
+        return mask;
+    }
+}
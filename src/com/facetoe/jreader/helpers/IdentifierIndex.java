@@ -0,0 +1,189 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records where every run of identifier characters starts in a piece of text, so searching for a word and stepping
+ * through the places it appears don't have to scan the text.
+ * <p/>
+ * A word made of identifier characters can only appear inside one of those runs, so whole word searches are a
+ * lookup and other searches only check the distinct runs. Runs are keyed in lower case and checked against the
+ * text when case matters. Comments and strings are indexed too, the same as a text search would find them.
+ */
+public class IdentifierIndex {
+    private final String text;
+
+    // Where each run of identifier characters starts, in ascending order, keyed by the run in lower case.
+    private final HashMap<String, int[]> offsets = new HashMap<String, int[]>();
+
+    /**
+     * Index some text.
+     *
+     * @param text The text.
+     */
+    public IdentifierIndex(String text) {
+        this.text = text;
+        HashMap<String, OffsetList> found = new HashMap<String, OffsetList>();
+        StringBuilder key = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (!Character.isJavaIdentifierPart(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            key.setLength(0);
+            while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) {
+                key.append(Character.toLowerCase(text.charAt(i)));
+                i++;
+            }
+            String word = key.toString();
+            OffsetList wordOffsets = found.get(word);
+            if (wordOffsets == null) {
+                wordOffsets = new OffsetList();
+                found.put(word, wordOffsets);
+            }
+            wordOffsets.add(start);
+        }
+
+        for (Map.Entry<String, OffsetList> entry : found.entrySet()) {
+            offsets.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    /**
+     * Check whether some text can be searched for with find().
+     *
+     * @param text The text.
+     * @return true if it's made of nothing but identifier characters.
+     */
+    public static boolean isWord(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isJavaIdentifierPart(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find where a word appears.
+     *
+     * @param word      The word, which must pass isWord().
+     * @param matchCase Whether case matters.
+     * @param wholeWord Whether it has to be a whole run of identifier characters rather than part of one.
+     * @return Where it starts each time it appears, in ascending order.
+     */
+    public int[] find(String word, boolean matchCase, boolean wholeWord) {
+        String key = toKey(word);
+        OffsetList found = new OffsetList();
+        if (wholeWord) {
+            int[] wordOffsets = offsets.get(key);
+            if (wordOffsets != null) {
+                found.addAll(wordOffsets, 0);
+            }
+        } else {
+            for (Map.Entry<String, int[]> entry : offsets.entrySet()) {
+                String run = entry.getKey();
+                for (int at = run.indexOf(key); at >= 0; at = run.indexOf(key, at + key.length())) {
+                    found.addAll(entry.getValue(), at);
+                }
+            }
+            found.sort();
+        }
+
+        if (matchCase) {
+            found.retainMatches(text, word);
+        }
+        return found.toArray();
+    }
+
+    /**
+     * Get the run of identifier characters at an offset, or just before it if the offset is the end of one.
+     *
+     * @param offset The offset.
+     * @return The word, or null if there isn't one there.
+     */
+    public String getWordAt(int offset) {
+        int start = Math.min(offset, text.length());
+        if ((start == text.length() || !Character.isJavaIdentifierPart(text.charAt(start)))
+                && (start == 0 || !Character.isJavaIdentifierPart(text.charAt(start - 1)))) {
+            return null;
+        }
+        while (start > 0 && Character.isJavaIdentifierPart(text.charAt(start - 1))) {
+            start--;
+        }
+        int end = Math.max(start, offset);
+        while (end < text.length() && Character.isJavaIdentifierPart(text.charAt(end))) {
+            end++;
+        }
+        return text.substring(start, end);
+    }
+
+    /**
+     * Get the first offset at or after a position, going back to the first one if there are none after it.
+     *
+     * @param offsets Offsets from find().
+     * @param from    The position.
+     * @return The index of the offset, or -1 if there aren't any.
+     */
+    public static int next(int[] offsets, int from) {
+        if (offsets.length == 0) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(offsets, from);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < offsets.length ? index : 0;
+    }
+
+    /**
+     * Get the last offset before a position, going round to the last one if there are none before it.
+     *
+     * @param offsets Offsets from find().
+     * @param before  The position.
+     * @return The index of the offset, or -1 if there aren't any.
+     */
+    public static int previous(int[] offsets, int before) {
+        if (offsets.length == 0) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(offsets, before);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index > 0 ? index - 1 : offsets.length - 1;
+    }
+
+    private static String toKey(String word) {
+        StringBuilder key = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            key.append(Character.toLowerCase(word.charAt(i)));
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,236 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * What the index files have in common. Strings are kept as an unsigned short length followed by that many UTF-8
+ * bytes, and numbers that are usually small as varints, 7 bits to a byte with the high bit set on all but the last.
+ * Also finds the source files an index is built from.
+ */
+final class IndexFormat {
+    private static final Logger log = Logger.getLogger(IndexFormat.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The longest string that fits.
+    static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    private IndexFormat() {
+    }
+
+    /**
+     * Write an index to a file next to the target and move it over the target, so a crash or a full disk
+     * leaves the old file or no file rather than a truncated one.
+     *
+     * @param buffer The index, from 0 to its capacity.
+     * @param file   The file to write to.
+     * @throws IOException
+     */
+    static void write(ByteBuffer buffer, File file) throws IOException {
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            FileOutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                ByteBuffer contents = buffer.duplicate();
+                contents.clear();
+                FileChannel channel = outputStream.getChannel();
+                while (contents.hasRemaining()) {
+                    channel.write(contents);
+                }
+            } finally {
+                outputStream.close();
+            }
+            Util.moveOver(tempFile, file);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Failed to delete " + tempFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Write a string to the pool at offset and point a table entry at it.
+     *
+     * @param entry Where in the table the offset goes.
+     * @return The offset after the string.
+     */
+    static int putString(ByteBuffer buffer, int entry, int offset, byte[] bytes) {
+        buffer.putInt(entry, offset);
+        buffer.putShort(offset, (short) bytes.length);
+        buffer.position(offset + 2);
+        buffer.put(bytes);
+        return offset + 2 + bytes.length;
+    }
+
+    /**
+     * Write the first length bytes of an array to the pool at offset and point a table entry at them.
+     *
+     * @param entry Where in the table the offset goes.
+     * @return The offset after them.
+     */
+    static int putBytes(ByteBuffer buffer, int entry, int offset, byte[] bytes, int length) {
+        buffer.putInt(entry, offset);
+        buffer.position(offset);
+        buffer.put(bytes, 0, length);
+        return offset + length;
+    }
+
+    /**
+     * Work out the order strings are stored in, which is the order of their UTF-8 bytes so they can be
+     * binary searched with compareString().
+     *
+     * @param keys The encoded strings.
+     * @return The positions of the keys in sorted order.
+     */
+    static Integer[] sortedOrder(final byte[][] keys) {
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return compareBytes(keys[first], keys[second]);
+            }
+        });
+        return order;
+    }
+
+    private static int compareBytes(byte[] first, byte[] second) {
+        int common = Math.min(first.length, second.length);
+        for (int i = 0; i < common; i++) {
+            int result = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    /**
+     * @return The offset after the string at offset, or -1 if it doesn't start inside the buffer. Used to check
+     *         that the last string in an index ends where the file does, which it won't if the file was cut short.
+     */
+    static int stringEnd(ByteBuffer buffer, int offset) {
+        if (offset < 0 || offset > buffer.limit() - 2) {
+            return -1;
+        }
+        return offset + 2 + (buffer.getShort(offset) & MAX_STRING_LENGTH);
+    }
+
+    static String getString(ByteBuffer buffer, int offset) {
+        int length = buffer.getShort(offset) & MAX_STRING_LENGTH;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Compare the string stored at offset with bytes without decoding it. If prefixOnly is set only the
+     * first bytes.length bytes of the stored string are compared.
+     */
+    static int compareString(ByteBuffer buffer, int offset, byte[] bytes, boolean prefixOnly) {
+        int length = buffer.getShort(offset) & MAX_STRING_LENGTH;
+        int start = offset + 2;
+        int common = Math.min(length, bytes.length);
+        for (int i = 0; i < common; i++) {
+            int result = (buffer.get(start + i) & 0xFF) - (bytes[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        if (prefixOnly && length >= bytes.length) {
+            return 0;
+        }
+        return length - bytes.length;
+    }
+
+    /**
+     * Reads a varint at position into value[0].
+     *
+     * @return The position after it.
+     */
+    static int readVarInt(ByteBuffer buffer, int position, int[] value) {
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        value[0] = result;
+        return position;
+    }
+
+    /**
+     * Writes a varint at length, which needs up to 5 bytes of room.
+     *
+     * @return The length after it.
+     */
+    static int writeVarInt(byte[] bytes, int length, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+        return length;
+    }
+
+    /**
+     * Add the Java source files under a directory to a list.
+     */
+    static void findSourceFiles(File dir, ArrayList<File> sourceFiles) {
+        File[] contents = dir.listFiles();
+        if (contents != null) {
+            for (File content : contents) {
+                if (content.isDirectory()) {
+                    findSourceFiles(content, sourceFiles);
+                } else if (content.getName().endsWith(".java")) {
+                    sourceFiles.add(content);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The path of a source file relative to the source directory, separated by '/' on every platform.
+     */
+    static String relativePath(File srcDir, File sourceFile) {
+        String root = srcDir.getAbsolutePath();
+        String path = sourceFile.getAbsolutePath();
+        if (path.startsWith(root)) {
+            path = path.substring(root.length());
+        }
+        path = path.replace(File.separatorChar, '/');
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+}
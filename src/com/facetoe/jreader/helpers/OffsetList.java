@@ -0,0 +1,73 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of offsets into some text, to avoid boxing them all.
+ */
+class OffsetList {
+    private static final int[] NO_OFFSETS = new int[0];
+
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    void addAll(int[] others, int shift) {
+        if (size + others.length > values.length) {
+            values = Arrays.copyOf(values, Math.max(size * 2, size + others.length));
+        }
+        for (int other : others) {
+            values[size++] = other + shift;
+        }
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    // Keep the offsets where the text has exactly this word.
+    void retainMatches(String text, String word) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (text.regionMatches(values[i], word, 0, word.length())) {
+                values[kept++] = values[i];
+            }
+        }
+        size = kept;
+    }
+
+    int[] toArray() {
+        return size == 0 ? NO_OFFSETS : Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,42 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+/**
+ * Something that can list the words starting with a prefix, such as a prefix tree or a sorted index.
+ */
+public interface PrefixSearchable {
+
+    /**
+     * Pass the words that start with prefix to consumer, stopping after limit words. Words are visited in
+     * lexicographic order unless the implementation ranks them. Only the words handed to the consumer are
+     * turned into Strings.
+     *
+     * @param prefix   The prefix to search for.
+     * @param limit    The maximum number of words to visit.
+     * @param consumer Receives each word.
+     */
+    void forEachWordWithPrefix(String prefix, int limit, WordConsumer consumer);
+
+    /**
+     * Receives the words found by forEachWordWithPrefix().
+     */
+    interface WordConsumer {
+        void accept(String word);
+    }
+}
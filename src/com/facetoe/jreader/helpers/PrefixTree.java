@@ -0,0 +1,48 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import java.util.ArrayList;
+
+/**
+ * The operations the auto-complete fields need from a prefix tree.
+ */
+public interface PrefixTree extends PrefixSearchable {
+
+    /**
+     * Add words to the tree.
+     *
+     * @param words The words to add.
+     */
+    void addWords(ArrayList<String> words);
+
+    /**
+     * Remove words from the tree.
+     *
+     * @param words The words to remove.
+     */
+    void removeWords(ArrayList<String> words);
+
+    /**
+     * Return all words that start with prefix.
+     *
+     * @param prefix The prefix to search for.
+     * @return ArrayList containing the found words.
+     */
+    ArrayList<String> getWordsForPrefix(String prefix);
+}
@@ -17,14 +17,20 @@
 */
 package com.facetoe.jreader.helpers;
 
-import com.facetoe.jreader.parsers.JavaDocParser;
+import com.facetoe.jreader.parsers.JavaDocIndexBuilder;
+import com.facetoe.jreader.parsers.JavaDocMemberParser;
+import com.facetoe.jreader.parsers.SourceOutlineCache;
 import org.apache.log4j.Logger;
 import org.fife.ui.rtextarea.SearchContext;
 
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Created with IntelliJ IDEA.
@@ -35,6 +41,10 @@ import java.util.HashMap;
 
 /**
  * This class is responsible for creating, deleting and querying profiles.
+ * <p/>
+ * Profiles are loaded lazily. At startup only the profile directories are listed and the current
+ * profile is read, then its class data is loaded on a background thread. Other profiles are read
+ * when they are first selected.
  */
 public final class ProfileManager implements Serializable {
 
@@ -43,6 +53,41 @@ public final class ProfileManager implements Serializable {
 
     private Profile currentProfile;
     private final HashMap<String, Profile> profiles = new HashMap<String, Profile>();
+
+    // Profile directories that haven't been read yet, keyed by directory name.
+    private final HashMap<String, File> unloadedProfileDirs = new HashMap<String, File>();
+
+    // Loads class data in the background so it's ready by the time it's needed.
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ProfileLoader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // How many parsed source files to keep in memory. Older ones are read back from the cache directory.
+    private static final int RECENT_OUTLINES = 32;
+
+    private static final SourceOutlineCache outlineCache = new SourceOutlineCache(
+            new File(Config.dataDirectory, Config.SOURCE_OUTLINE_CACHE_DIR_NAME), RECENT_OUTLINES);
+
+    // How many source files to keep in memory so reopening one doesn't read it again.
+    private static final int RECENT_SOURCE_FILES = 8;
+
+    private static final SourceFileLoader sourceFileLoader = new SourceFileLoader(RECENT_SOURCE_FILES);
+
+    // Held while a usage index is updated. Updating takes seconds, so it can't hold a profile's monitor, which
+    // auto-complete needs on every keystroke.
+    private static final Object sourceUsageIndexLock = new Object();
+
+    // Guards the usage counts, which are changed on the EDT and saved from whichever thread calls saveProfiles().
+    private static final Object classUsageLock = new Object();
+
+    // Parses the current profiles source files in the background when enabled.
+    private static SourceIndexer sourceIndexer;
+    private static final ArrayList<ActionListener> indexListeners = new ArrayList<ActionListener>();
+
     private static final ProfileManager instance;
     private static final ArrayList<ActionListener> listeners = new ArrayList<ActionListener>();
 
@@ -59,8 +104,11 @@ public final class ProfileManager implements Serializable {
      * Private constructor for Singleton class.
      */
     private ProfileManager() throws IOException {
+        long start = System.currentTimeMillis();
         loadProfiles();
         setCurrentProfile(Config.getString(Config.CURRENT_PROFILE));
+        log.debug("Found " + getProfileNames().size() + " profiles and read "
+                + Config.getString(Config.CURRENT_PROFILE) + " in " + (System.currentTimeMillis() - start) + "ms");
     }
 
     /**
@@ -83,12 +131,16 @@ public final class ProfileManager implements Serializable {
         File docDir = Util.findDocDir(docRoot);
         Profile profile = new Profile(name, docDir, srcDir);
         profiles.put(profile.name, profile);
-        HashMap<String, String> classData = parseJavaDocs(profile.docDir);
-        createFilesAndSaveProfile(profile, classData);
+        unloadedProfileDirs.remove(profile.profileDirName);
+        SortedIndexFile classData = SortedIndexFile.fromMap(parseJavaDocs(profile.docDir));
+        SortedIndexFile memberData = SortedIndexFile.fromMap(parseMembers(profile.docDir, classData));
+        DocSearchIndex docSearchIndex = buildDocSearchIndex(profile.docDir);
+        createFilesAndSaveProfile(profile, classData, memberData, docSearchIndex);
         log.debug("Created profile: " + profile.name);
     }
 
-    private void createFilesAndSaveProfile(Profile profile, HashMap<String, String> classData) throws IOException {
+    private void createFilesAndSaveProfile(Profile profile, SortedIndexFile classData, SortedIndexFile memberData,
+                                           DocSearchIndex docSearchIndex) throws IOException {
         Util.checkAndCreateDirectoryIfNotPresent(
                 Util.getFileFromPathElements(
                         Config.getString(Config.PROFILE_DIR),
@@ -98,26 +150,53 @@ public final class ProfileManager implements Serializable {
                 Config.getString(Config.PROFILE_DIR),
                 profile.profileDirName,
                 Config.CLASS_DATA_FILE_NAME);
+        File memberDataFile = Util.getFileFromPathElements(
+                Config.getString(Config.PROFILE_DIR),
+                profile.profileDirName,
+                Config.MEMBER_DATA_FILE_NAME);
+        File docSearchIndexFile = Util.getFileFromPathElements(
+                Config.getString(Config.PROFILE_DIR),
+                profile.profileDirName,
+                Config.DOC_SEARCH_INDEX_FILE_NAME);
         writeProfile(profile);
-        writeClassData(classDataFile, classData);
+        classData.write(classDataFile);
+        memberData.write(memberDataFile);
+        docSearchIndex.write(docSearchIndexFile);
     }
 
-    private HashMap<String, String> parseJavaDocs(String docPath) {
-        JavaDocParser parser = new JavaDocParser();
+    private HashMap<String, String> parseMembers(String docPath, SortedIndexFile classData) {
+        fireProgress("Finding class members");
+        return new JavaDocMemberParser().parse(new File(docPath), classData);
+    }
+
+    private DocSearchIndex buildDocSearchIndex(String docPath) {
+        fireProgress("Building search index");
+        return DocSearchIndex.build(new File(docPath));
+    }
+
+    private void fireProgress(String message) {
+        ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, message, 100, 0);
+        for (ActionListener listener : listeners) {
+            listener.actionPerformed(event);
+        }
+    }
+
+    private HashMap<String, String> parseJavaDocs(String docPath) throws IOException {
+        JavaDocIndexBuilder builder = new JavaDocIndexBuilder();
         for (ActionListener listener : listeners) {
-            parser.addActionListener(listener);
+            builder.addActionListener(listener);
         }
-        return parser.parse(Util.getFileFromPathElements(docPath, Config.ALL_CLASSSES_DOC_FILE));
+        return builder.build(new File(docPath));
     }
 
     /**
-     * Loads all the profiles.
+     * Finds all the profiles. Nothing is read until a profile is selected with setCurrentProfile().
      *
      * @throws IOException
-     * @throws ClassNotFoundException
      */
     public void loadProfiles() throws IOException {
         profiles.clear();
+        unloadedProfileDirs.clear();
         File profileDir = new File(Config.getString(Config.PROFILE_DIR));
         File[] profileDirectories = profileDir.listFiles(new FileFilter() {
             @Override
@@ -125,35 +204,73 @@ public final class ProfileManager implements Serializable {
                 return file.isDirectory();
             }
         });
+        if (profileDirectories == null)
+            throw new FileNotFoundException("Failed to find profiles at: " + profileDir.getAbsolutePath());
+
         for (File profileDirectory : profileDirectories) {
-            loadProfileFiles(profileDirectory);
+            unloadedProfileDirs.put(profileDirectory.getName(), profileDirectory);
+        }
+
+        // Keep the current profile so changes to it aren't lost.
+        if (currentProfile != null && unloadedProfileDirs.remove(currentProfile.profileDirName) != null) {
+            profiles.put(currentProfile.name, currentProfile);
         }
     }
 
-    private void loadProfileFiles(File profileDir) throws IOException {
+    /**
+     * Reads a profile that was found by loadProfiles() but hasn't been read yet.
+     *
+     * @param profileName The name of the profile, or the name of its directory.
+     * @return The profile, or null if there is no such profile.
+     */
+    private Profile loadUnloadedProfile(String profileName) {
+        File profileDir = unloadedProfileDirs.get(profileName);
+        if (profileDir == null) {
+            profileDir = unloadedProfileDirs.get(profileName.replaceAll("[^a-zA-Z0-9.-]", "_"));
+        }
+        if (profileDir == null) {
+            return null;
+        }
+
+        try {
+            Profile profile = loadProfileFiles(profileDir);
+            unloadedProfileDirs.remove(profileDir.getName());
+            return profile;
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private Profile loadProfileFiles(File profileDir) throws IOException {
         File[] profFiles = profileDir.listFiles();
         if (profFiles == null)
             throw new FileNotFoundException("Failed to load profile at: " + profileDir.getAbsolutePath());
 
         for (File profFile : profFiles) {
             if (isProfileFile(profFile))
-                loadProfile(profFile);
+                return loadProfile(profFile);
         }
+        throw new FileNotFoundException("No profile file in: " + profileDir.getAbsolutePath());
     }
 
-    // There should only be two files in each profile directory,
-    // classData.ser and <profileName>.ser
+    // There should only be four to seven files in each profile directory, classData.idx, memberData.idx,
+    // docSearch.idx, <profileName>.ser, usageData.ser once a class has been opened, symbolData.idx
+    // once the source has been indexed and sourceUsages.idx.<generation> once usages have been searched for.
+    // Older profiles might still have classData.ser instead of classData.idx.
     private boolean isProfileFile(File profFile) {
         return profFile.getName().endsWith(".ser")
-                && !profFile.getName().equals(Config.CLASS_DATA_FILE_NAME);
+                && !profFile.getName().equals(Config.LEGACY_CLASS_DATA_FILE_NAME)
+                && !profFile.getName().equals(Config.USAGE_DATA_FILE_NAME);
     }
 
-    private void loadProfile(File profFile) throws IOException {
+    private Profile loadProfile(File profFile) throws IOException {
         Profile profile = readProfile(profFile);
         // SearchContext isn't serializable so we need to create it on load.
         profile.searchContext = new SearchContext();
         profiles.put(profile.name, profile);
         log.debug("Loaded profile: " + profile.name);
+        return profile;
     }
 
     /**
@@ -165,7 +282,30 @@ public final class ProfileManager implements Serializable {
         for (String s : profiles.keySet()) {
             log.debug("Saving: " + s);
             writeProfile(profiles.get(s));
+            writeClassUsage(profiles.get(s));
+        }
+    }
+
+    /**
+     * Writes the usage counts for a profile. Nothing is written until a class has been opened.
+     *
+     * @param profile The profile to save.
+     * @throws IOException
+     */
+    private void writeClassUsage(Profile profile) throws IOException {
+        HashMap<String, Integer> classUsage;
+        synchronized (classUsageLock) {
+            if (profile.classUsage == null || profile.classUsage.isEmpty()) {
+                return;
+            }
+            classUsage = new HashMap<String, Integer>(profile.classUsage);
         }
+        File usageFile = Util.getFileFromPathElements(
+                Config.getString(Config.PROFILE_DIR),
+                profile.profileDirName,
+                Config.USAGE_DATA_FILE_NAME);
+        Util.checkAndCreateFileIfNotPresent(usageFile);
+        Util.writeObject(usageFile, classUsage);
     }
 
     /**
@@ -188,11 +328,6 @@ public final class ProfileManager implements Serializable {
         Util.writeObject(outFile, profile);
     }
 
-    private void writeClassData(File classDataFile, HashMap<String, String> classData) throws IOException {
-        Util.checkAndCreateFileIfNotPresent(classDataFile);
-        Util.writeObject(classDataFile, classData);
-    }
-
     /**
      * Reads a profile and returns a Profile object.
      *
@@ -210,16 +345,163 @@ public final class ProfileManager implements Serializable {
      * @param profileName The name of the profile to be set.
      */
     public void setCurrentProfile(String profileName) {
-        if (profiles.containsKey(profileName)) {
-            currentProfile = profiles.get(profileName);
+        Profile profile = profiles.get(profileName);
+        if (profile == null) {
+            profile = loadUnloadedProfile(profileName);
+        }
+
+        if (profile != null) {
+            currentProfile = profile;
             currentProfile.searchContext = new SearchContext();
-            Config.setString(Config.CURRENT_PROFILE, profileName);
+            Config.setString(Config.CURRENT_PROFILE, profile.name);
             log.debug("Profile set to: " + Config.getString(Config.CURRENT_PROFILE));
+            preloadClassData(profile);
+            cancelSourceIndexer();
+            if (sourceIndexingIsEnabled()) {
+                startSourceIndexer(profile);
+            }
         } else {
             log.error("Failed to load profile: " + profileName);
         }
     }
 
+    /**
+     * Starts loading a profiles class data in the background.
+     */
+    private void preloadClassData(final Profile profile) {
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                profile.getClassNames();
+                log.debug("Loaded class data for " + profile.name + " in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        });
+    }
+
+    /**
+     * Starts indexing a profiles source files unless its symbol table is already written and opens. Outlines
+     * parsed by an earlier run that was canceled are read back from the outline cache rather than parsed again.
+     */
+    private static synchronized void startSourceIndexer(final Profile profile) {
+        if (!new File(profile.srcDir).isDirectory() || profile.getSymbolData() != null) {
+            return;
+        }
+
+        final File symbolDataFile = profile.getProfileFile(Config.SYMBOL_DATA_FILE_NAME);
+
+        double cpuShare = Config.getInt(Config.INDEXER_CPU_SHARE, Config.DEFAULT_INDEXER_CPU_SHARE) / 100.0;
+        final SourceIndexer indexer = new SourceIndexer(new File(profile.srcDir), symbolDataFile, outlineCache, cpuShare);
+        for (ActionListener listener : indexListeners) {
+            indexer.addActionListener(listener);
+        }
+        sourceIndexer = indexer;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    SortedIndexFile symbolData = indexer.index();
+                    if (symbolData != null) {
+                        profile.setSymbolData(symbolData);
+                    }
+                } catch (IOException e) {
+                    log.error(e);
+                } finally {
+                    synchronized (ProfileManager.class) {
+                        if (sourceIndexer == indexer) {
+                            sourceIndexer = null;
+                        }
+                    }
+                }
+            }
+        }, "SourceIndexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static synchronized void cancelSourceIndexer() {
+        if (sourceIndexer != null) {
+            sourceIndexer.cancel();
+            sourceIndexer = null;
+        }
+    }
+
+    /**
+     * Turn background indexing of source files on or off. Turning it off stops an index that's being built,
+     * turning it back on carries on from where it stopped.
+     *
+     * @param value Whether to index source files.
+     */
+    public void setSourceIndexingEnabled(boolean value) {
+        Config.setBool(Config.INDEX_SOURCES, value);
+        cancelSourceIndexer();
+        if (value) {
+            startSourceIndexer(currentProfile);
+        }
+    }
+
+    /**
+     * @return Whether source files are indexed in the background.
+     */
+    public boolean sourceIndexingIsEnabled() {
+        return Config.getBool(Config.INDEX_SOURCES);
+    }
+
+    /**
+     * Add a listener to be told about source indexing progress. It's called on the indexing threads.
+     *
+     * @param listener Listener.
+     */
+    public void addSourceIndexListener(ActionListener listener) {
+        synchronized (ProfileManager.class) {
+            indexListeners.add(listener);
+            if (sourceIndexer != null) {
+                sourceIndexer.addActionListener(listener);
+            }
+        }
+    }
+
+    /**
+     * Get the cache of parsed source file outlines.
+     *
+     * @return The cache.
+     */
+    public SourceOutlineCache getOutlineCache() {
+        return outlineCache;
+    }
+
+    /**
+     * Get the loader that reads source files for display.
+     *
+     * @return The loader.
+     */
+    public SourceFileLoader getSourceFileLoader() {
+        return sourceFileLoader;
+    }
+
+    /**
+     * Bring the index of where identifiers are used in this profiles source up to date, reading only the source
+     * files that changed since it was last updated. This blocks, so don't call it on the EDT.
+     *
+     * @param listener Told about progress while files are being read. May be null.
+     * @return The index.
+     * @throws IOException If the profile has no source or the index couldn't be written.
+     */
+    public SourceUsageIndex updateSourceUsageIndex(ActionListener listener) throws IOException {
+        return currentProfile.updateSourceUsageIndex(listener);
+    }
+
+    /**
+     * Get the symbol table for this profiles source, keyed by qualified name with members after a #,
+     * with the relative path and line of each declaration. It only exists once the source has been indexed.
+     *
+     * @return The symbol table or null.
+     */
+    public SortedIndexFile getSymbolData() {
+        return currentProfile.getSymbolData();
+    }
+
     /**
      * Deletes a profile and the enclosing directory.
      * If there are sub directories they will be deleted also.
@@ -227,7 +509,11 @@ public final class ProfileManager implements Serializable {
      * @param profileName The profile to be deleted.
      */
     public void deleteProfile(String profileName) {
-        if (profiles.containsKey(profileName)) {
+        File unloadedProfileDir = unloadedProfileDirs.remove(profileName);
+        if (unloadedProfileDir != null) {
+            Util.deleteDirectoryAndContents(unloadedProfileDir);
+            log.debug("Deleted: " + profileName);
+        } else if (profiles.containsKey(profileName)) {
             Profile profile = profiles.get(profileName);
             File profileDir = Util.getFileFromPathElements(
                     Config.getString(Config.PROFILE_DIR),
@@ -247,12 +533,15 @@ public final class ProfileManager implements Serializable {
     }
 
     /**
-     * Get all the profile names.
+     * Get all the profile names. Profiles that haven't been read yet are listed by their directory
+     * name, which is the profile name with anything unusual replaced by underscores.
      *
      * @return Profile names.
      */
     public ArrayList<String> getProfileNames() {
-        return new ArrayList<String>(profiles.keySet());
+        ArrayList<String> names = new ArrayList<String>(profiles.keySet());
+        names.addAll(unloadedProfileDirs.keySet());
+        return names;
     }
 
     /**
@@ -281,19 +570,72 @@ public final class ProfileManager implements Serializable {
      * @return Class names.
      */
     public ArrayList<String> getClassNames() {
-        return new ArrayList<String>(getClassData().keySet());
+        return currentProfile.getClassNames();
     }
 
     /**
-     * Get the HashMap containing class names and relative paths for
+     * Get the index of class names and relative paths for
      * this profile.
      *
      * @return Class data.
      */
-    public HashMap<String, String> getClassData() {
+    public SortedIndexFile getClassData() {
         return currentProfile.getClassData();
     }
 
+    /**
+     * Get the fuzzy search index over this profiles class names. It's built the first time it's needed.
+     *
+     * @return The index.
+     */
+    public FuzzyClassIndex getFuzzyClassIndex() {
+        return currentProfile.getFuzzyClassIndex();
+    }
+
+    /**
+     * Get the index of class members, keyed like Class#method(params), with the relative paths and
+     * anchors of their documentation. Profiles created before there was one get theirs built in the
+     * background, so this returns null until it's ready.
+     *
+     * @return The member index or null.
+     */
+    public SortedIndexFile getMemberData() {
+        return currentProfile.getMemberData();
+    }
+
+    /**
+     * Get the full text search index over this profiles documentation pages. Profiles created before
+     * there was one get theirs built in the background, so this returns null until it's ready.
+     *
+     * @return The index or null.
+     */
+    public DocSearchIndex getDocSearchIndex() {
+        return currentProfile.getDocSearchIndex();
+    }
+
+    /**
+     * Get how many times each class in this profile has been opened from the search bar.
+     * The map is live, it's updated by recordClassUsage() so it should only be read on the EDT.
+     *
+     * @return Usage counts keyed by class name.
+     */
+    public HashMap<String, Integer> getClassUsage() {
+        return currentProfile.getClassUsage();
+    }
+
+    /**
+     * Record that a class was opened from the search bar so it ranks higher in auto-complete.
+     *
+     * @param className The class that was opened.
+     */
+    public void recordClassUsage(String className) {
+        HashMap<String, Integer> classUsage = getClassUsage();
+        synchronized (classUsageLock) {
+            Integer count = classUsage.get(className);
+            classUsage.put(className, count == null ? 1 : count + 1);
+        }
+    }
+
     /**
      * Where this profiles documentation is located.
      *
@@ -350,6 +692,13 @@ public final class ProfileManager implements Serializable {
         return currentProfile.matchCaseIsEnabled;
     }
 
+    /**
+     * @return Whether the search bar falls back to fuzzy matching class names in this profile.
+     */
+    public boolean fuzzyClassSearchIsEnabled() {
+        return currentProfile.fuzzyClassSearchIsEnabled;
+    }
+
     /**
      * Set regexp enabled.
      *
@@ -377,6 +726,15 @@ public final class ProfileManager implements Serializable {
         currentProfile.matchCaseIsEnabled = value;
     }
 
+    /**
+     * Set fuzzy class search enabled.
+     *
+     * @param value Boolean.
+     */
+    public void setFuzzyClassSearchEnabled(boolean value) {
+        currentProfile.fuzzyClassSearchIsEnabled = value;
+    }
+
     /**
      * Class to represent a profile.
      */
@@ -388,8 +746,35 @@ public final class ProfileManager implements Serializable {
         private final String srcDir;
         private final String profileFileName;
 
-        // All the class names and relative paths.
-        private HashMap<String, String> classData;
+        // All the class names and relative paths. This used to be serialized along with the profile,
+        // it's transient now so old profiles still load but the class data is only kept in classData.idx.
+        private transient SortedIndexFile classData;
+
+        // How many times each class has been opened, guarded by classUsageLock. Saved separately in usageData.ser.
+        private transient HashMap<String, Integer> classUsage;
+
+        // Built from the class names when it's first needed.
+        private transient FuzzyClassIndex fuzzyClassIndex;
+
+        // The keys of classData, decoded once.
+        private transient ArrayList<String> classNames;
+
+        // Class members and their anchors, kept in memberData.idx.
+        private transient SortedIndexFile memberData;
+        private transient boolean memberDataIsBuilding;
+        // Set if building it failed, so it isn't tried again on every keystroke. A rebuilt profile tries again.
+        private transient boolean memberDataFailed;
+
+        // Full text index of the doc pages, kept in docSearch.idx.
+        private transient DocSearchIndex docSearchIndex;
+        private transient boolean docSearchIndexIsBuilding;
+
+        // Qualified names in the source and where they're declared, kept in symbolData.idx once the source is indexed.
+        private transient SortedIndexFile symbolData;
+
+        // Where each identifier is used in the source, kept in sourceUsages.idx. Only replaced under
+        // sourceUsageIndexLock.
+        private transient volatile SourceUsageIndex sourceUsageIndex;
 
         // The documentation HTML file that is set as home.
         private final String home;
@@ -399,6 +784,7 @@ public final class ProfileManager implements Serializable {
         private boolean regexpIsEnabled;
         private boolean wholeWordIsEnabled;
         private boolean matchCaseIsEnabled;
+        private boolean fuzzyClassSearchIsEnabled;
 
         public Profile(String name, File docDir, File srcDir) {
             this.name = name;
@@ -416,10 +802,11 @@ public final class ProfileManager implements Serializable {
 
         /**
          * Loads the class data if it isn't already loaded for this profile.
+         * This may be called from the loader thread as well as the EDT.
          *
          * @return The class data.
          */
-        HashMap<String, String> getClassData() {
+        synchronized SortedIndexFile getClassData() {
             if (classData == null) {
                 log.debug("Loading classData for: " + name);
                 File classDataFile = Util.getFileFromPathElements(
@@ -427,18 +814,244 @@ public final class ProfileManager implements Serializable {
                         profileDirName,
                         Config.CLASS_DATA_FILE_NAME);
                 try {
-                    //noinspection unchecked
-                    classData = (HashMap<String, String>) Util.readObject(classDataFile);
+                    classData = openClassData(classDataFile);
                 } catch (IOException e) {
                     log.error(e);
                     Util.showErrorDialog("Failed to load auto-complete data for this profile.\n" +
                             " Try deleting the it and adding it again. Sorry! ", "Error");
-                    classData = new HashMap<String, String>(); // Return an empty hashmap so we don't get a NPE
+                    // Return an empty index so we don't get a NPE
+                    classData = SortedIndexFile.fromMap(new HashMap<String, String>());
                 }
             }
             return classData;
         }
 
+        /**
+         * @return A copy of the class names.
+         */
+        synchronized ArrayList<String> getClassNames() {
+            if (classNames == null) {
+                classNames = getClassData().getKeys();
+            }
+            return new ArrayList<String>(classNames);
+        }
+
+        /**
+         * Opens classData.idx, converting an old classData.ser first if there is one. If the index is still missing
+         * or it's corrupt, say because writing it was interrupted, it's built again from the docs.
+         */
+        private SortedIndexFile openClassData(File classDataFile) throws IOException {
+            try {
+                if (!classDataFile.exists()) {
+                    migrateClassData(classDataFile);
+                }
+                return SortedIndexFile.open(classDataFile);
+            } catch (IOException e) {
+                log.warn("Rebuilding class data for " + name + ": " + e.getMessage());
+            }
+            SortedIndexFile index = SortedIndexFile.fromMap(new JavaDocIndexBuilder().build(new File(docDir)));
+            index.write(classDataFile);
+            return index;
+        }
+
+        /**
+         * Converts a classData.ser file written by an older version to the index format and deletes it.
+         *
+         * @param classDataFile Where the index should be written.
+         * @throws IOException If there's no old file either or it can't be converted.
+         */
+        private void migrateClassData(File classDataFile) throws IOException {
+            File legacyFile = Util.getFileFromPathElements(
+                    Config.getString(Config.PROFILE_DIR),
+                    profileDirName,
+                    Config.LEGACY_CLASS_DATA_FILE_NAME);
+            log.debug("Converting " + legacyFile.getAbsolutePath() + " to " + classDataFile.getName());
+
+            @SuppressWarnings("unchecked")
+            HashMap<String, String> legacyData = (HashMap<String, String>) Util.readObject(legacyFile);
+            if (legacyData == null) {
+                throw new IOException("Failed to read class data from: " + legacyFile.getAbsolutePath());
+            }
+            SortedIndexFile.fromMap(legacyData).write(classDataFile);
+            if (!legacyFile.delete()) {
+                log.warn("Failed to delete: " + legacyFile.getAbsolutePath());
+            }
+        }
+
+        /**
+         * Builds the fuzzy search index if it isn't already built for this profile.
+         *
+         * @return The index.
+         */
+        synchronized FuzzyClassIndex getFuzzyClassIndex() {
+            if (fuzzyClassIndex == null) {
+                fuzzyClassIndex = new FuzzyClassIndex(getClassNames());
+                log.debug("Built fuzzy class index for: " + name);
+            }
+            return fuzzyClassIndex;
+        }
+
+        /**
+         * Opens the member index, or starts building it if it's missing or can't be read, for example because
+         * an older version was interrupted while writing it. The new index replaces the file atomically.
+         *
+         * @return The index, or null if it's being built or couldn't be built.
+         */
+        synchronized SortedIndexFile getMemberData() {
+            if (memberData == null && !memberDataIsBuilding && !memberDataFailed) {
+                final File memberDataFile = Util.getFileFromPathElements(
+                        Config.getString(Config.PROFILE_DIR),
+                        profileDirName,
+                        Config.MEMBER_DATA_FILE_NAME);
+                if (memberDataFile.exists()) {
+                    try {
+                        memberData = SortedIndexFile.open(memberDataFile);
+                        return memberData;
+                    } catch (IOException e) {
+                        log.warn("Member index for " + name + " will be rebuilt: " + e.getMessage());
+                    }
+                }
+
+                memberDataIsBuilding = true;
+                loader.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        SortedIndexFile index = null;
+                        try {
+                            index = SortedIndexFile.fromMap(
+                                    new JavaDocMemberParser().parse(new File(docDir), getClassData()));
+                            index.write(memberDataFile);
+                        } catch (IOException e) {
+                            log.error(e);
+                        } finally {
+                            synchronized (Profile.this) {
+                                memberData = index;
+                                memberDataIsBuilding = false;
+                                memberDataFailed = index == null;
+                            }
+                        }
+                    }
+                });
+            }
+            return memberData;
+        }
+
+        /**
+         * Opens the search index, or starts building it if it's missing or can't be read.
+         *
+         * @return The index, or null if it's being built.
+         */
+        synchronized DocSearchIndex getDocSearchIndex() {
+            if (docSearchIndex == null && !docSearchIndexIsBuilding) {
+                final File indexFile = Util.getFileFromPathElements(
+                        Config.getString(Config.PROFILE_DIR),
+                        profileDirName,
+                        Config.DOC_SEARCH_INDEX_FILE_NAME);
+                if (indexFile.exists()) {
+                    try {
+                        docSearchIndex = DocSearchIndex.open(indexFile);
+                        return docSearchIndex;
+                    } catch (IOException e) {
+                        log.warn("Search index for " + name + " will be rebuilt: " + e.getMessage());
+                    }
+                }
+
+                docSearchIndexIsBuilding = true;
+                loader.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        DocSearchIndex index = null;
+                        try {
+                            index = DocSearchIndex.build(new File(docDir));
+                            index.write(indexFile);
+                        } catch (IOException e) {
+                            log.error(e);
+                        } finally {
+                            synchronized (Profile.this) {
+                                docSearchIndex = index;
+                                docSearchIndexIsBuilding = false;
+                            }
+                        }
+                    }
+                });
+            }
+            return docSearchIndex;
+        }
+
+        /**
+         * Opens the symbol table if the source has been indexed.
+         *
+         * @return The symbol table, or null if there isn't one yet or it can't be read, in which case
+         *         startSourceIndexer() indexes the source again.
+         */
+        synchronized SortedIndexFile getSymbolData() {
+            if (symbolData == null) {
+                File symbolDataFile = getProfileFile(Config.SYMBOL_DATA_FILE_NAME);
+                if (symbolDataFile.exists()) {
+                    try {
+                        symbolData = SortedIndexFile.open(symbolDataFile);
+                    } catch (IOException e) {
+                        log.warn("Symbol data for " + name + " will be rebuilt: " + e.getMessage());
+                    }
+                }
+            }
+            return symbolData;
+        }
+
+        synchronized void setSymbolData(SortedIndexFile symbolData) {
+            this.symbolData = symbolData;
+        }
+
+        SourceUsageIndex updateSourceUsageIndex(ActionListener listener) throws IOException {
+            File sourceDir = new File(srcDir);
+            if (!sourceDir.isDirectory()) {
+                throw new FileNotFoundException("No source directory at " + srcDir);
+            }
+            synchronized (sourceUsageIndexLock) {
+                SourceUsageIndex updated = SourceUsageIndex.update(sourceDir,
+                        getProfileFile(Config.SOURCE_USAGES_FILE_NAME), sourceUsageIndex, listener);
+                sourceUsageIndex = updated;
+                return updated;
+            }
+        }
+
+        File getProfileFile(String fileName) {
+            return Util.getFileFromPathElements(
+                    Config.getString(Config.PROFILE_DIR),
+                    profileDirName,
+                    fileName);
+        }
+
+        /**
+         * Loads the usage counts if they aren't already loaded for this profile.
+         *
+         * @return The usage counts.
+         */
+        HashMap<String, Integer> getClassUsage() {
+            synchronized (classUsageLock) {
+                if (classUsage == null) {
+                    File usageFile = Util.getFileFromPathElements(
+                            Config.getString(Config.PROFILE_DIR),
+                            profileDirName,
+                            Config.USAGE_DATA_FILE_NAME);
+                    if (usageFile.exists()) {
+                        try {
+                            @SuppressWarnings("unchecked")
+                            HashMap<String, Integer> savedUsage = (HashMap<String, Integer>) Util.readObject(usageFile);
+                            classUsage = savedUsage;
+                        } catch (IOException e) {
+                            // Not worth bothering the user about, they only lose the ranking.
+                            log.error(e);
+                        }
+                    }
+                    if (classUsage == null) {
+                        classUsage = new HashMap<String, Integer>();
+                    }
+                }
+                return classUsage;
+            }
+        }
+
         /**
          * Make sure the search context is up to date.
          */
@@ -0,0 +1,179 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A properties file that is kept in memory.
+ * <p/>
+ * Reads come from the cache. The file is only checked for outside changes every so often, and is
+ * reloaded if its size or modification time changed. Writes are collected and saved a short time
+ * later by writing a temporary file and moving it over the old one, so the file is never left half written.
+ */
+class PropertiesFile {
+    private static final Logger log = Logger.getLogger(PropertiesFile.class);
+
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PropertiesFileWriter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final File file;
+    private final long writeDelayMillis;
+    private final long checkIntervalMillis;
+
+    private Properties properties = new Properties();
+
+    // Values that have been set but not written yet. These win over whatever is in the file.
+    private final HashMap<String, String> pendingWrites = new HashMap<String, String>();
+    private ScheduledFuture<?> scheduledWrite;
+
+    // What the file looked like when we last read or wrote it.
+    private long knownModified = -1;
+    private long knownLength = -1;
+    private long lastChecked;
+
+    /**
+     * @param file                The properties file. It doesn't have to exist yet.
+     * @param writeDelayMillis    How long to wait after a change before writing the file.
+     * @param checkIntervalMillis How often to check whether the file was changed by someone else.
+     */
+    PropertiesFile(File file, long writeDelayMillis, long checkIntervalMillis) {
+        this.file = file;
+        this.writeDelayMillis = writeDelayMillis;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    /**
+     * @param key The key to look up.
+     * @return The value, or null if there is none.
+     */
+    synchronized String get(String key) {
+        long now = System.currentTimeMillis();
+        if (lastChecked == 0 || now - lastChecked >= checkIntervalMillis) {
+            lastChecked = now;
+            reloadIfChanged();
+        }
+        return properties.getProperty(key);
+    }
+
+    /**
+     * Sets a value and schedules the file to be written.
+     */
+    synchronized void set(String key, String value) {
+        properties.setProperty(key, value);
+        pendingWrites.put(key, value);
+        if (scheduledWrite == null) {
+            scheduledWrite = writer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (IOException e) {
+                        log.error("Failed to write " + file.getAbsolutePath(), e);
+                    }
+                }
+            }, writeDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes any pending changes now.
+     *
+     * @throws IOException
+     */
+    synchronized void flush() throws IOException {
+        if (scheduledWrite != null) {
+            scheduledWrite.cancel(false);
+            scheduledWrite = null;
+        }
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+
+        // Pick up anything written by someone else so we don't overwrite it.
+        reloadIfChanged();
+
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            OutputStream out = new FileOutputStream(tempFile);
+            try {
+                properties.store(out, null);
+            } finally {
+                out.close();
+            }
+            Util.moveOver(tempFile, file);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Failed to delete " + tempFile.getAbsolutePath());
+            }
+        }
+        pendingWrites.clear();
+        knownModified = file.lastModified();
+        knownLength = file.length();
+    }
+
+    private void reloadIfChanged() {
+        long modified = file.lastModified();
+        long length = file.length();
+        if (modified == knownModified && length == knownLength) {
+            return;
+        }
+
+        Properties loaded = new Properties();
+        if (file.exists()) {
+            try {
+                InputStream in = new FileInputStream(file);
+                try {
+                    loaded.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                log.error("Failed to read " + file.getAbsolutePath(), e);
+                return;
+            }
+        }
+        for (Map.Entry<String, String> entry : pendingWrites.entrySet()) {
+            loaded.setProperty(entry.getKey(), entry.getValue());
+        }
+        properties = loaded;
+        knownModified = modified;
+        knownLength = length;
+    }
+}
@@ -0,0 +1,287 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * An immutable map of Strings to Strings stored in a file that is memory mapped instead of read in.
+ * Lookups binary search the mapped file directly, so opening one costs next to nothing no matter how
+ * big it is and the entries never have to live on the heap.
+ * <p/>
+ * The layout is:
+ * <pre>
+ *   int magic, int version, int entry count
+ *   entry count * (int key offset, int value offset), sorted by key
+ *   string pool, each string is an unsigned short length followed by that many UTF-8 bytes
+ * </pre>
+ * Keys are sorted by their UTF-8 bytes, so all the keys starting with a prefix are next to each other.
+ */
+public class SortedIndexFile implements PrefixSearchable {
+    private static final int MAGIC = 0x4A524958; // "JRIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    private SortedIndexFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an index file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported index version: " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        if (size < 0 || HEADER_SIZE + (long) size * ENTRY_SIZE > buffer.limit()) {
+            throw new IOException("Index file is corrupt");
+        }
+        // The pool is written in entry order, so in a file that was cut short the last value runs past the end.
+        int poolStart = HEADER_SIZE + size * ENTRY_SIZE;
+        int poolEnd = size == 0 ? poolStart : IndexFormat.stringEnd(buffer, valueOffset(size - 1));
+        if ((size > 0 && keyOffset(0) != poolStart) || poolEnd != buffer.limit()) {
+            throw new IOException("Index file is corrupt");
+        }
+    }
+
+    /**
+     * Builds an index in memory.
+     *
+     * @param entries The keys and values to store.
+     * @return The index.
+     */
+    public static SortedIndexFile fromMap(Map<String, String> entries) {
+        byte[][] keys = new byte[entries.size()][];
+        byte[][] values = new byte[entries.size()][];
+        int poolSize = 0;
+        int i = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            keys[i] = encode(entry.getKey());
+            values[i] = encode(entry.getValue());
+            poolSize += 4 + keys[i].length + values[i].length;
+            i++;
+        }
+
+        Integer[] order = IndexFormat.sortedOrder(keys);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + keys.length * ENTRY_SIZE + poolSize);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(keys.length);
+        int poolOffset = HEADER_SIZE + keys.length * ENTRY_SIZE;
+        for (int entry = 0; entry < order.length; entry++) {
+            int tableEntry = HEADER_SIZE + entry * ENTRY_SIZE;
+            poolOffset = IndexFormat.putString(buffer, tableEntry, poolOffset, keys[order[entry]]);
+            poolOffset = IndexFormat.putString(buffer, tableEntry + 4, poolOffset, values[order[entry]]);
+        }
+        buffer.clear();
+
+        try {
+            return new SortedIndexFile(buffer);
+        } catch (IOException e) {
+            // Can't happen, we just wrote the header.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Memory maps an index file written by write().
+     *
+     * @param file The file to open.
+     * @return The index.
+     * @throws IOException If the file can't be read or isn't an index file.
+     */
+    public static SortedIndexFile open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel is closed.
+            return new SortedIndexFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes this index to a file. The file is replaced in one go, so it's never left half written.
+     *
+     * @param file The file to write to.
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        IndexFormat.write(buffer, file);
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Look up the value for key.
+     *
+     * @param key The key.
+     * @return The value, or null if there's no such key.
+     */
+    public String get(String key) {
+        int index = indexOf(key);
+        return index == -1 ? null : getValue(index);
+    }
+
+    public boolean containsKey(String key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * Find the position of key.
+     *
+     * @param key The key.
+     * @return The index of the entry or -1 if there's no such key.
+     */
+    public int indexOf(String key) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int index = lowerBound(keyBytes);
+        if (index < size && compareString(keyOffset(index), keyBytes, false) == 0) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * @param index Position of the entry, from 0 to size() - 1.
+     * @return The key of the entry.
+     */
+    public String getKey(int index) {
+        return getString(keyOffset(index));
+    }
+
+    /**
+     * @param index Position of the entry, from 0 to size() - 1.
+     * @return The value of the entry.
+     */
+    public String getValue(int index) {
+        return getString(valueOffset(index));
+    }
+
+    /**
+     * @return All the keys in sorted order.
+     */
+    public ArrayList<String> getKeys() {
+        ArrayList<String> keys = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            keys.add(getKey(i));
+        }
+        return keys;
+    }
+
+    /**
+     * Find the entries whose keys start with prefix.
+     *
+     * @param prefix The prefix.
+     * @return The first matching index and one past the last. They are equal if nothing matches.
+     */
+    public int[] getPrefixRange(String prefix) {
+        byte[] prefixBytes = prefix.getBytes(UTF_8);
+        int start = lowerBound(prefixBytes);
+        int end = start;
+        while (end < size && compareString(keyOffset(end), prefixBytes, true) == 0) {
+            end++;
+        }
+        return new int[]{start, end};
+    }
+
+    /**
+     * @param prefix The prefix.
+     * @return The keys that start with prefix, in sorted order.
+     */
+    public ArrayList<String> getKeysWithPrefix(String prefix) {
+        int[] range = getPrefixRange(prefix);
+        ArrayList<String> keys = new ArrayList<String>(range[1] - range[0]);
+        for (int i = range[0]; i < range[1]; i++) {
+            keys.add(getKey(i));
+        }
+        return keys;
+    }
+
+    /**
+     * Pass the keys that start with prefix to consumer in sorted order, stopping after limit keys.
+     */
+    @Override
+    public void forEachWordWithPrefix(String prefix, int limit, WordConsumer consumer) {
+        byte[] prefixBytes = prefix.getBytes(UTF_8);
+        int start = lowerBound(prefixBytes);
+        int end = Math.min(size, start + Math.max(limit, 0));
+        for (int i = start; i < end && compareString(keyOffset(i), prefixBytes, true) == 0; i++) {
+            consumer.accept(getKey(i));
+        }
+    }
+
+    private int keyOffset(int index) {
+        return buffer.getInt(HEADER_SIZE + index * ENTRY_SIZE);
+    }
+
+    private int valueOffset(int index) {
+        return buffer.getInt(HEADER_SIZE + index * ENTRY_SIZE + 4);
+    }
+
+    /* The index of the first key that isn't less than keyBytes. */
+    private int lowerBound(byte[] keyBytes) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareString(keyOffset(mid), keyBytes, false) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Compare the string stored at offset with bytes without decoding it. If prefixOnly is set only the
+     * first bytes.length bytes of the stored string are compared.
+     */
+    private int compareString(int offset, byte[] bytes, boolean prefixOnly) {
+        return IndexFormat.compareString(buffer, offset, bytes, prefixOnly);
+    }
+
+    private String getString(int offset) {
+        return IndexFormat.getString(buffer, offset);
+    }
+
+    private static byte[] encode(String str) {
+        byte[] bytes = str.getBytes(UTF_8);
+        if (bytes.length > IndexFormat.MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("String is too long for an index file: " + str.substring(0, 50) + "...");
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,185 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads source files so the code area and the parser can share one copy of the text.
+ * <p/>
+ * Big files are memory mapped rather than read into a byte array. The bytes are decoded into a char array in one go
+ * and line breaks are changed to \n in that array, so the text matches what the parsers use without another pass.
+ * The String is then copied from the array, String can't take it over.
+ * The last few files read are kept, so reopening one doesn't read it again unless it has changed.
+ */
+public class SourceFileLoader {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Files smaller than this are just read, mapping them is slower.
+    static final int MAP_THRESHOLD = 64 * 1024;
+
+    private final LinkedHashMap<String, LoadedFile> recentFiles;
+
+    /**
+     * Constructor.
+     *
+     * @param maxRecentFiles How many files to keep in memory.
+     */
+    public SourceFileLoader(final int maxRecentFiles) {
+        recentFiles = new LinkedHashMap<String, LoadedFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LoadedFile> eldest) {
+                return size() > maxRecentFiles;
+            }
+        };
+    }
+
+    /**
+     * Get the contents of a UTF-8 source file, only reading it if it isn't one of the recent files
+     * or it has changed since it was read.
+     *
+     * @param file The source file.
+     * @return The contents, with \n line breaks.
+     * @throws IOException If the file couldn't be read.
+     */
+    public String load(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long modified = file.lastModified();
+        long length = file.length();
+        synchronized (recentFiles) {
+            LoadedFile loaded = recentFiles.get(path);
+            if (loaded != null && loaded.modified == modified && loaded.length == length) {
+                return loaded.text;
+            }
+        }
+
+        String text = read(file, UTF_8);
+        synchronized (recentFiles) {
+            recentFiles.put(path, new LoadedFile(modified, length, text));
+        }
+        return text;
+    }
+
+    /**
+     * Read a file without keeping it, for when lots of files are read once.
+     *
+     * @param file     The file.
+     * @param encoding The encoding of the file.
+     * @return The contents, with \n line breaks.
+     * @throws IOException If the file couldn't be read.
+     */
+    public static String read(File file, Charset encoding) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too big to read");
+            }
+
+            ByteBuffer bytes;
+            if (size >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes) == -1) {
+                        break;
+                    }
+                }
+                bytes.flip();
+            }
+            return decode(bytes, encoding);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Decode bytes into a String, replacing bad input the way Charset.decode() does and changing \r\n and \r to \n.
+     * The chars are decoded into a scratch array which the String is copied from.
+     *
+     * @param bytes    The bytes to decode.
+     * @param encoding What they're encoded with.
+     * @return The text.
+     * @throws CharacterCodingException Shouldn't happen since bad input is replaced.
+     */
+    static String decode(ByteBuffer bytes, Charset encoding) throws CharacterCodingException {
+        CharsetDecoder decoder = encoding.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        // Big enough for whatever the bytes decode to, so it's decoded in one go.
+        char[] chars = new char[(int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte())];
+        CharBuffer out = CharBuffer.wrap(chars);
+        CoderResult result = decoder.decode(bytes, out, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        result = decoder.flush(out);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        return new String(chars, 0, normalizeLineBreaks(chars, out.position()));
+    }
+
+    /**
+     * Change \r\n and \r to \n in place.
+     *
+     * @param chars  The text.
+     * @param length How much of chars is text.
+     * @return The new length of the text.
+     */
+    private static int normalizeLineBreaks(char[] chars, int length) {
+        int end = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c == '\r') {
+                c = '\n';
+                if (i + 1 < length && chars[i + 1] == '\n') {
+                    i++;
+                }
+            }
+            chars[end++] = c;
+        }
+        return end;
+    }
+
+    private static class LoadedFile {
+        final long modified;
+        final long length;
+        final String text;
+
+        LoadedFile(long modified, long length, String text) {
+            this.modified = modified;
+            this.length = length;
+            this.text = text;
+        }
+    }
+}
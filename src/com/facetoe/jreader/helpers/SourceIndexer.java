@@ -0,0 +1,294 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import com.facetoe.jreader.parsers.*;
+import japa.parser.ParseException;
+import japa.parser.TokenMgrError;
+import org.apache.log4j.Logger;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses every source file in a directory in the background and builds a symbol table from the outlines.
+ * <p/>
+ * Each outline goes into the SourceOutlineCache as soon as it's parsed, so if indexing is canceled or JReader
+ * exits part way through, the next run only has to read the outlines back instead of parsing them again.
+ * The symbol table is only written once every file has been indexed.
+ * <p/>
+ * Symbols are keyed by their qualified name, with members after a #, like
+ * java.util.Map.Entry#getKey(). The values are the relative path of the source file and the line
+ * the declaration starts on, like java/util/Map.java:358.
+ * <p/>
+ * The workers run at low priority and sleep between files so that together they use roughly the
+ * requested share of the CPUs.
+ */
+public class SourceIndexer {
+    private static final Logger log = Logger.getLogger(SourceIndexer.class);
+
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+    private final File srcDir;
+    private final File symbolDataFile;
+    private final SourceOutlineCache outlineCache;
+    private final int threadCount;
+    private final double dutyCycle;
+
+    private final ArrayList<ActionListener> listeners = new ArrayList<ActionListener>();
+    private final ConcurrentHashMap<String, String> symbols = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger filesIndexed = new AtomicInteger();
+    private volatile boolean canceled;
+    private volatile ExecutorService workers;
+    private long lastProgressTime;
+
+    /**
+     * Constructor.
+     *
+     * @param srcDir         The directory containing the source files.
+     * @param symbolDataFile Where to write the symbol table.
+     * @param outlineCache   Where to keep the outline of each file.
+     * @param cpuShare       The fraction of all the CPUs to use, between 0 and 1.
+     */
+    public SourceIndexer(File srcDir, File symbolDataFile, SourceOutlineCache outlineCache, double cpuShare) {
+        this.srcDir = srcDir;
+        this.symbolDataFile = symbolDataFile;
+        this.outlineCache = outlineCache;
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        double share = Math.max(0.01, Math.min(1, cpuShare));
+        threadCount = Math.max(1, Math.min(processors, (int) Math.ceil(processors * share)));
+        dutyCycle = Math.min(1, processors * share / threadCount);
+    }
+
+    /**
+     * Parse all the source files and write the symbol table. This blocks until indexing is finished or canceled.
+     *
+     * @return The symbol table, or null if indexing was canceled.
+     * @throws IOException If the symbol table couldn't be written.
+     */
+    public SortedIndexFile index() throws IOException {
+        long start = System.currentTimeMillis();
+        final ArrayList<File> sourceFiles = new ArrayList<File>();
+        IndexFormat.findSourceFiles(srcDir, sourceFiles);
+        Collections.sort(sourceFiles);
+        log.debug("Indexing " + sourceFiles.size() + " files in " + srcDir + " with " + threadCount
+                + " threads at " + Math.round(dutyCycle * 100) + "% duty cycle");
+
+        workers = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SourceIndexer-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        if (canceled) {
+            workers.shutdownNow();
+        }
+
+        try {
+            for (final File sourceFile : sourceFiles) {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!canceled) {
+                            indexFile(sourceFile, sourceFiles.size());
+                        }
+                    }
+                });
+            }
+        } catch (RejectedExecutionException e) {
+            // Canceled while we were still queueing files.
+        }
+
+        workers.shutdown();
+        try {
+            while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (canceled) {
+                    workers.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+            canceled = true;
+        }
+
+        if (canceled) {
+            log.debug("Indexing canceled after " + filesIndexed.get() + " of " + sourceFiles.size() + " files");
+            return null;
+        }
+
+        SortedIndexFile symbolData = SortedIndexFile.fromMap(symbols);
+        symbolData.write(symbolDataFile);
+        fireEvent("Indexed " + sourceFiles.size() + " source files", 100);
+        log.debug("Indexed " + sourceFiles.size() + " files, " + symbols.size() + " symbols in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return symbolData;
+    }
+
+    /**
+     * Stop indexing. Outlines that have already been parsed stay in the cache.
+     */
+    public void cancel() {
+        canceled = true;
+        ExecutorService executor = workers;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    private void indexFile(File sourceFile, int totalFiles) {
+        long busyStart = cpuTime();
+        try {
+            JavaSourceFile outline = outlineCache.parse(sourceFile);
+            addSymbols(relativePath(sourceFile), outline);
+        } catch (ParseException e) {
+            log.warn("Failed to parse " + sourceFile + ": " + e.getMessage());
+        } catch (TokenMgrError e) {
+            // JavaParser's Error for characters it can't tokenize. Left alone it would end the worker.
+            log.warn("Failed to parse " + sourceFile + ": " + e.getMessage());
+        } catch (IOException e) {
+            log.warn("Failed to read " + sourceFile, e);
+        } catch (RuntimeException e) {
+            // The parser throws errors of its own for some files, don't let one file stop the rest.
+            log.warn("Failed to index " + sourceFile, e);
+        }
+
+        int indexed = filesIndexed.incrementAndGet();
+        maybeFireProgress(sourceFile.getName(), (long) Math.min(99, Util.percent(indexed, totalFiles)));
+        throttle(cpuTime() - busyStart);
+    }
+
+    /**
+     * Sleep long enough that this thread only works for dutyCycle of the time.
+     */
+    private void throttle(long busyNanos) {
+        if (dutyCycle >= 1 || busyNanos <= 0) {
+            return;
+        }
+        long sleepNanos = (long) (busyNanos * (1 - dutyCycle) / dutyCycle);
+        try {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long cpuTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads.isCurrentThreadCpuTimeSupported()) {
+            return threads.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+
+    private void addSymbols(String relativePath, JavaSourceFile outline) {
+        String packagePath = relativePath.lastIndexOf('/') < 0
+                ? ""
+                : relativePath.substring(0, relativePath.lastIndexOf('/') + 1).replace('/', '.');
+        for (AbstractJavaObject object : outline.getFileContents()) {
+            addSymbols(relativePath, packagePath + object.getDeclaration(), object);
+        }
+    }
+
+    private void addSymbols(String relativePath, String qualifiedName, AbstractJavaObject object) {
+        addSymbol(qualifiedName, relativePath, object);
+
+        if (object instanceof JavaClassOrInterface) {
+            JavaClassOrInterface classOrInterface = (JavaClassOrInterface) object;
+            addMembers(relativePath, qualifiedName, classOrInterface.getConstructors().values());
+            addMembers(relativePath, qualifiedName, classOrInterface.getMethods().values());
+            addMembers(relativePath, qualifiedName, classOrInterface.getFields().values());
+            for (JavaClassOrInterface nestedClass : classOrInterface.getNestedClasses().values()) {
+                addSymbols(relativePath, qualifiedName + "." + nestedClass.getDeclaration(), nestedClass);
+            }
+            for (JavaEnum javaEnum : classOrInterface.getEnums().values()) {
+                addSymbols(relativePath, qualifiedName + "." + javaEnum.getDeclaration(), javaEnum);
+            }
+            for (JavaAnnotation annotation : classOrInterface.getAnnotations().values()) {
+                addSymbols(relativePath, qualifiedName + "." + annotation.getDeclaration(), annotation);
+            }
+
+        } else if (object instanceof JavaEnum) {
+            addMembers(relativePath, qualifiedName, ((JavaEnum) object).getConstants().values());
+        }
+    }
+
+    private void addMembers(String relativePath, String qualifiedName, Iterable<? extends AbstractJavaObject> members) {
+        for (AbstractJavaObject member : members) {
+            addSymbol(qualifiedName + "#" + member.getDeclaration(), relativePath, member);
+        }
+    }
+
+    private void addSymbol(String name, String relativePath, AbstractJavaObject object) {
+        symbols.putIfAbsent(name, relativePath + ":" + object.getBeginLine());
+    }
+
+    private String relativePath(File sourceFile) {
+        return IndexFormat.relativePath(srcDir, sourceFile);
+    }
+
+    private void maybeFireProgress(String fileName, long progress) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (now - lastProgressTime < PROGRESS_INTERVAL_MILLIS) {
+                return;
+            }
+            lastProgressTime = now;
+        }
+        fireEvent("Indexing " + fileName, progress);
+    }
+
+    private void fireEvent(String message, long progress) {
+        ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, message, progress, 0);
+        synchronized (listeners) {
+            for (ActionListener listener : listeners) {
+                listener.actionPerformed(event);
+            }
+        }
+    }
+
+    /**
+     * Add a listener to be told about progress. getWhen() on the events is the percentage indexed.
+     * Events are fired on the indexing threads.
+     *
+     * @param listener Listener.
+     */
+    public void addActionListener(ActionListener listener) {
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,841 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.helpers;
+
+import org.apache.log4j.Logger;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An index of where every identifier is used in a directory of Java source files, stored in a file that is
+ * memory mapped.
+ * <p/>
+ * Identifiers in comments, strings and character literals aren't indexed, and neither are keywords. Offsets are
+ * into the text as SourceFileLoader reads it, so they match what a JSourcePanel shows.
+ * <p/>
+ * Each file's occurrences are kept in a table of their own, so when the index is updated only the files whose
+ * modification time or size changed are read again, the tables of the rest are copied from the old index.
+ * <p/>
+ * The old index is still mapped while the new one is written, and Windows won't replace or delete a mapped file.
+ * So each update is written to a file of its own, the index file's name followed by a generation number, and the
+ * newest generation is the one that's opened. Older generations are deleted once nothing has them mapped.
+ * <p/>
+ * The layout is:
+ * <pre>
+ *   int magic, int version, int file count, int identifier count
+ *   file count * (int path offset, long modified, long length, int table offset)
+ *   identifier count * (int name offset, int postings offset, int file frequency), sorted by name
+ *   postings, for each identifier file frequency * varint file id delta
+ *   file tables, for each file varint identifier count, then for each identifier it uses
+ *     varint identifier id delta, varint occurrence count, occurrence count * varint offset delta
+ *   string pool, each string is an unsigned short length followed by that many UTF-8 bytes
+ * </pre>
+ */
+public class SourceUsageIndex {
+    private static final Logger log = Logger.getLogger(SourceUsageIndex.class);
+
+    private static final int MAGIC = 0x4A525355; // "JRSU"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FILE_ENTRY_SIZE = 24;
+    private static final int IDENTIFIER_ENTRY_SIZE = 12;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+    // Longer names than this don't fit in the string pool, and nobody searches for them.
+    private static final int MAX_IDENTIFIER_LENGTH = 255;
+
+    private static final HashSet<String> KEYWORDS = new HashSet<String>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "false", "final", "finally", "float", "for", "goto",
+            "if", "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "null",
+            "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super", "switch",
+            "synchronized", "this", "throw", "throws", "transient", "true", "try", "void", "volatile", "while"));
+
+    private final File srcDir;
+    private final ByteBuffer buffer;
+    private final int fileCount;
+    private final int identifierCount;
+    private final int identifierTableOffset;
+
+    private SourceUsageIndex(File srcDir, ByteBuffer buffer) throws IOException {
+        this.srcDir = srcDir;
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a usage index file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported usage index version: " + buffer.getInt(4));
+        }
+        fileCount = buffer.getInt(8);
+        identifierCount = buffer.getInt(12);
+        identifierTableOffset = HEADER_SIZE + fileCount * FILE_ENTRY_SIZE;
+        if (fileCount < 0 || identifierCount < 0
+                || identifierTableOffset + (long) identifierCount * IDENTIFIER_ENTRY_SIZE > buffer.limit()) {
+            throw new IOException("Usage index file is corrupt");
+        }
+        // The paths are written last, so in a file that was cut short the last one runs past the end.
+        int end = fileCount == 0 ? identifierTableOffset : IndexFormat.stringEnd(buffer, pathOffset(fileCount - 1));
+        if ((identifierCount > 0 && fileCount == 0) || end != buffer.limit()) {
+            throw new IOException("Usage index file is corrupt");
+        }
+    }
+
+    /**
+     * Memory maps an index file.
+     *
+     * @param file   The file to open.
+     * @param srcDir The source directory it's an index of.
+     * @return The index.
+     * @throws IOException If the file can't be read or isn't a usage index.
+     */
+    public static SourceUsageIndex open(File file, File srcDir) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return new SourceUsageIndex(srcDir, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Bring the index of a source directory up to date, reading the files that changed since the previous index
+     * in parallel. If nothing changed the previous index is returned, otherwise the new one is written to the
+     * next generation of the file.
+     *
+     * @param srcDir   The source directory.
+     * @param file     Where the index is kept. The generations are kept next to it.
+     * @param previous The index as it was last time, or null to open the newest generation.
+     * @param listener Told about progress, getWhen() on the events is the percentage done. May be null.
+     * @return The up to date index.
+     * @throws IOException If the index couldn't be written.
+     */
+    public static SourceUsageIndex update(File srcDir, File file, SourceUsageIndex previous,
+                                          ActionListener listener) throws IOException {
+        long start = System.currentTimeMillis();
+        ArrayList<File> generations = findGenerations(file);
+        if (previous == null) {
+            for (File generation : generations) {
+                try {
+                    previous = open(generation, srcDir);
+                    break;
+                } catch (IOException e) {
+                    log.warn("Ignoring usage index " + generation + ": " + e.getMessage());
+                }
+            }
+        }
+
+        ArrayList<File> sourceFiles = new ArrayList<File>();
+        IndexFormat.findSourceFiles(srcDir, sourceFiles);
+        Collections.sort(sourceFiles);
+
+        HashMap<String, Integer> previousFiles = new HashMap<String, Integer>();
+        if (previous != null) {
+            for (int fileId = 0; fileId < previous.fileCount; fileId++) {
+                previousFiles.put(previous.getPath(fileId), fileId);
+            }
+        }
+
+        // Work out which files can be copied from the previous index and which have to be read.
+        int[] unchanged = new int[sourceFiles.size()];
+        ArrayList<Integer> changed = new ArrayList<Integer>();
+        for (int i = 0; i < unchanged.length; i++) {
+            File sourceFile = sourceFiles.get(i);
+            Integer previousId = previousFiles.remove(IndexFormat.relativePath(srcDir, sourceFile));
+            if (previousId != null && previous.getModified(previousId) == sourceFile.lastModified()
+                    && previous.getLength(previousId) == sourceFile.length()) {
+                unchanged[i] = previousId;
+            } else {
+                unchanged[i] = -1;
+                changed.add(i);
+            }
+        }
+        if (previous != null && changed.isEmpty() && previousFiles.isEmpty()) {
+            return previous;
+        }
+
+        ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<String, String>();
+        FileTable[] tables = new FileTable[sourceFiles.size()];
+        for (int i = 0; i < tables.length; i++) {
+            if (unchanged[i] != -1) {
+                tables[i] = previous.readTable(unchanged[i], pool);
+            }
+        }
+
+        readChangedFiles(srcDir, sourceFiles, changed, tables, pool, listener);
+        SourceUsageIndex index = fromTables(srcDir, tables);
+        long generation = generations.isEmpty() ? 1 : getGeneration(file, generations.get(0)) + 1;
+        index.write(new File(file.getPath() + "." + generation));
+        deleteGenerations(generations);
+        fireEvent(listener, "Indexed usages in " + tables.length + " source files", 100);
+        log.debug("Updated usage index of " + srcDir + ": read " + changed.size() + " of " + tables.length
+                + " files, " + index.identifierCount + " identifiers in " + (System.currentTimeMillis() - start) + "ms");
+        return index;
+    }
+
+    /**
+     * Find the generations of an index file, newest first. The file itself is the oldest, it's where versions
+     * before generations kept the index.
+     */
+    private static ArrayList<File> findGenerations(final File file) {
+        ArrayList<File> generations = new ArrayList<File>();
+        File[] contents = file.getAbsoluteFile().getParentFile().listFiles();
+        if (contents != null) {
+            for (File content : contents) {
+                if (getGeneration(file, content) >= 0) {
+                    generations.add(content);
+                }
+            }
+        }
+        Collections.sort(generations, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long firstGeneration = getGeneration(file, first);
+                long secondGeneration = getGeneration(file, second);
+                return firstGeneration > secondGeneration ? -1 : (firstGeneration == secondGeneration ? 0 : 1);
+            }
+        });
+        return generations;
+    }
+
+    // The generation number of a file, 0 for the index file itself or -1 if it isn't a generation of it.
+    private static long getGeneration(File file, File candidate) {
+        String name = candidate.getName();
+        if (name.equals(file.getName())) {
+            return 0;
+        }
+        String prefix = file.getName() + ".";
+        if (!name.startsWith(prefix) || name.length() == prefix.length() || name.length() - prefix.length() > 18) {
+            return -1;
+        }
+        for (int i = prefix.length(); i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return -1;
+            }
+        }
+        return Long.parseLong(name.substring(prefix.length()));
+    }
+
+    // On Windows a generation that's still mapped can't be deleted, so it's left for the next update.
+    private static void deleteGenerations(ArrayList<File> generations) {
+        for (File generation : generations) {
+            if (!generation.delete()) {
+                log.debug("Couldn't delete old usage index " + generation + ", will try again next update");
+            }
+        }
+    }
+
+    private static void readChangedFiles(File srcDir, ArrayList<File> sourceFiles, ArrayList<Integer> changed,
+                                         final FileTable[] tables, final ConcurrentHashMap<String, String> pool,
+                                         ActionListener listener) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadNumber = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "SourceUsageIndex-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            ExecutorCompletionService<Integer> completed = new ExecutorCompletionService<Integer>(workers);
+            for (final int i : changed) {
+                final File sourceFile = sourceFiles.get(i);
+                final String path = IndexFormat.relativePath(srcDir, sourceFile);
+                completed.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        tables[i] = scanFile(sourceFile, path, pool);
+                        return i;
+                    }
+                });
+            }
+
+            long lastProgressTime = 0;
+            for (int done = 1; done <= changed.size(); done++) {
+                int finished;
+                try {
+                    finished = completed.take().get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to index usages: " + e.getCause().getMessage(), e.getCause());
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastProgressTime >= PROGRESS_INTERVAL_MILLIS) {
+                    lastProgressTime = now;
+                    fireEvent(listener, "Indexing usages in " + tables[finished].path,
+                            (long) Math.min(99, Util.percent(done, changed.size())));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing usages");
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes this index to a file. The file is replaced in one go, so it's never left half written.
+     *
+     * @param file The file to write to.
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        IndexFormat.write(buffer, file);
+    }
+
+    /**
+     * @return The number of source files indexed.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return The number of distinct identifiers.
+     */
+    public int getIdentifierCount() {
+        return identifierCount;
+    }
+
+    /**
+     * @return The source directory this is an index of.
+     */
+    public File getSourceDir() {
+        return srcDir;
+    }
+
+    /**
+     * Find where an identifier is used, in order of path and then offset. The source files are read to get the
+     * line of each usage, so this should be called off the EDT.
+     *
+     * @param identifier The identifier, case matters.
+     * @param limit      The most usages to return.
+     * @return The usages.
+     */
+    public ArrayList<Usage> findUsages(String identifier, int limit) {
+        ArrayList<Usage> usages = new ArrayList<Usage>();
+        int identifierId = indexOfIdentifier(identifier.getBytes(UTF_8));
+        if (identifierId == -1) {
+            return usages;
+        }
+
+        int entry = identifierTableOffset + identifierId * IDENTIFIER_ENTRY_SIZE;
+        int position = buffer.getInt(entry + 4);
+        int fileFrequency = buffer.getInt(entry + 8);
+        int fileId = 0;
+        int[] next = new int[1];
+        for (int i = 0; i < fileFrequency && usages.size() < limit; i++) {
+            position = readVarInt(position, next);
+            fileId += next[0];
+            int[] offsets = findOffsets(fileId, identifierId);
+            String path = getPath(fileId);
+            addUsages(usages, path, new File(srcDir, path), identifier, offsets, limit);
+        }
+        return usages;
+    }
+
+    private void addUsages(ArrayList<Usage> usages, String path, File file, String identifier, int[] offsets,
+                           int limit) {
+        String text;
+        try {
+            text = SourceFileLoader.read(file, UTF_8);
+        } catch (IOException e) {
+            log.warn("Failed to read " + file, e);
+            text = "";
+        }
+
+        // The offsets are in order, so count lines from one to the next rather than from the start each time.
+        int line = 1;
+        int lineStart = 0;
+        for (int offset : offsets) {
+            if (usages.size() >= limit) {
+                return;
+            }
+            if (offset + identifier.length() > text.length()) {
+                // The file changed since it was indexed.
+                usages.add(new Usage(path, file, offset, -1, ""));
+                continue;
+            }
+            int newline;
+            while ((newline = text.indexOf('\n', lineStart)) != -1 && newline < offset) {
+                lineStart = newline + 1;
+                line++;
+            }
+            int lineEnd = text.indexOf('\n', offset);
+            usages.add(new Usage(path, file, offset, line,
+                    text.substring(lineStart, lineEnd == -1 ? text.length() : lineEnd).trim()));
+        }
+    }
+
+    // Looks through a file's table for an identifier's offsets.
+    private int[] findOffsets(int fileId, int identifierId) {
+        int[] next = new int[1];
+        int position = readVarInt(buffer.getInt(HEADER_SIZE + fileId * FILE_ENTRY_SIZE + 20), next);
+        int count = next[0];
+        int id = 0;
+        for (int i = 0; i < count; i++) {
+            position = readVarInt(position, next);
+            id += next[0];
+            position = readVarInt(position, next);
+            int occurrences = next[0];
+            if (id == identifierId) {
+                int[] offsets = new int[occurrences];
+                int offset = 0;
+                for (int j = 0; j < occurrences; j++) {
+                    position = readVarInt(position, next);
+                    offset += next[0];
+                    offsets[j] = offset;
+                }
+                return offsets;
+            }
+            if (id > identifierId) {
+                break;
+            }
+            for (int j = 0; j < occurrences; j++) {
+                position = readVarInt(position, next);
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Read a file's table back into the form scanFile() gives, so it can go into a new index.
+     */
+    private FileTable readTable(int fileId, ConcurrentHashMap<String, String> pool) {
+        int[] next = new int[1];
+        int start = buffer.getInt(HEADER_SIZE + fileId * FILE_ENTRY_SIZE + 20);
+        int position = readVarInt(start, next);
+        int count = next[0];
+        String[] identifiers = new String[count];
+        int[] blockEnds = new int[count];
+        Occurrences occurrences = new Occurrences();
+        int id = 0;
+        for (int i = 0; i < count; i++) {
+            position = readVarInt(position, next);
+            id += next[0];
+            identifiers[i] = pool(pool, getString(buffer.getInt(identifierTableOffset + id * IDENTIFIER_ENTRY_SIZE)));
+            int blockStart = position;
+            position = readVarInt(position, next);
+            for (int j = next[0]; j > 0; j--) {
+                position = readVarInt(position, next);
+            }
+            occurrences.copy(buffer, blockStart, position - blockStart);
+            blockEnds[i] = occurrences.length;
+        }
+        return new FileTable(getPath(fileId), getModified(fileId), getLength(fileId),
+                identifiers, occurrences.toArray(), blockEnds);
+    }
+
+    private String getPath(int fileId) {
+        return getString(pathOffset(fileId));
+    }
+
+    private int pathOffset(int fileId) {
+        return buffer.getInt(HEADER_SIZE + fileId * FILE_ENTRY_SIZE);
+    }
+
+    private long getModified(int fileId) {
+        return buffer.getLong(HEADER_SIZE + fileId * FILE_ENTRY_SIZE + 4);
+    }
+
+    private long getLength(int fileId) {
+        return buffer.getLong(HEADER_SIZE + fileId * FILE_ENTRY_SIZE + 12);
+    }
+
+    private int indexOfIdentifier(byte[] identifier) {
+        int low = 0;
+        int high = identifierCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int result = compareString(buffer.getInt(identifierTableOffset + mid * IDENTIFIER_ENTRY_SIZE), identifier);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareString(int offset, byte[] bytes) {
+        return IndexFormat.compareString(buffer, offset, bytes, false);
+    }
+
+    private String getString(int offset) {
+        return IndexFormat.getString(buffer, offset);
+    }
+
+    // Reads a varint at position into value[0] and returns the position after it.
+    private int readVarInt(int position, int[] value) {
+        return IndexFormat.readVarInt(buffer, position, value);
+    }
+
+    /*
+     * Lays the file tables out in the file format. Identifier ids are their position in name order, and each
+     * table's identifiers are already in that order so only the gaps between ids need to be stored.
+     */
+    private static SourceUsageIndex fromTables(File srcDir, FileTable[] tables) {
+        HashMap<String, Postings> postingsByIdentifier = new HashMap<String, Postings>();
+        for (int fileId = 0; fileId < tables.length; fileId++) {
+            for (String identifier : tables[fileId].identifiers) {
+                Postings postings = postingsByIdentifier.get(identifier);
+                if (postings == null) {
+                    postings = new Postings();
+                    postingsByIdentifier.put(identifier, postings);
+                }
+                postings.add(fileId);
+            }
+        }
+
+        int identifierCount = postingsByIdentifier.size();
+        String[] identifiers = sortByName(postingsByIdentifier.keySet());
+        byte[][] names = new byte[identifierCount][];
+        HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        for (int i = 0; i < identifierCount; i++) {
+            names[i] = identifiers[i].getBytes(UTF_8);
+            ids.put(identifiers[i], i);
+        }
+
+        byte[][] paths = new byte[tables.length][];
+        Postings[] encodedTables = new Postings[tables.length];
+        long size = HEADER_SIZE + (long) tables.length * FILE_ENTRY_SIZE + (long) identifierCount * IDENTIFIER_ENTRY_SIZE;
+        for (int fileId = 0; fileId < tables.length; fileId++) {
+            paths[fileId] = tables[fileId].path.getBytes(UTF_8);
+            encodedTables[fileId] = tables[fileId].encode(ids);
+            size += 2 + paths[fileId].length + encodedTables[fileId].length;
+        }
+        for (int i = 0; i < identifierCount; i++) {
+            size += postingsByIdentifier.get(identifiers[i]).length + 2 + names[i].length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many usages to index");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(tables.length).putInt(identifierCount);
+        int identifierTableOffset = HEADER_SIZE + tables.length * FILE_ENTRY_SIZE;
+        int offset = identifierTableOffset + identifierCount * IDENTIFIER_ENTRY_SIZE;
+        for (int i = 0; i < identifierCount; i++) {
+            Postings postings = postingsByIdentifier.get(identifiers[i]);
+            int entry = identifierTableOffset + i * IDENTIFIER_ENTRY_SIZE;
+            buffer.putInt(entry + 8, postings.count);
+            offset = IndexFormat.putBytes(buffer, entry + 4, offset, postings.bytes, postings.length);
+        }
+        for (int fileId = 0; fileId < tables.length; fileId++) {
+            Postings table = encodedTables[fileId];
+            int entry = HEADER_SIZE + fileId * FILE_ENTRY_SIZE;
+            buffer.putLong(entry + 4, tables[fileId].modified);
+            buffer.putLong(entry + 12, tables[fileId].length);
+            offset = IndexFormat.putBytes(buffer, entry + 20, offset, table.bytes, table.length);
+        }
+        for (int i = 0; i < identifierCount; i++) {
+            offset = IndexFormat.putString(buffer, identifierTableOffset + i * IDENTIFIER_ENTRY_SIZE, offset, names[i]);
+        }
+        for (int fileId = 0; fileId < tables.length; fileId++) {
+            offset = IndexFormat.putString(buffer, HEADER_SIZE + fileId * FILE_ENTRY_SIZE, offset, paths[fileId]);
+        }
+        buffer.clear();
+
+        try {
+            return new SourceUsageIndex(srcDir, buffer);
+        } catch (IOException e) {
+            // Can't happen, we just wrote the header.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Sorts identifiers into the order they're stored in, which is the order of their UTF-8 bytes.
+    private static String[] sortByName(Set<String> identifiers) {
+        String[] unsorted = identifiers.toArray(new String[identifiers.size()]);
+        byte[][] names = new byte[unsorted.length][];
+        for (int i = 0; i < unsorted.length; i++) {
+            names[i] = unsorted[i].getBytes(UTF_8);
+        }
+        Integer[] order = IndexFormat.sortedOrder(names);
+        String[] sorted = new String[unsorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = unsorted[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Read a source file and record where each identifier is used in it.
+     */
+    static FileTable scanFile(File file, String path, ConcurrentHashMap<String, String> pool) throws IOException {
+        long modified = file.lastModified();
+        long length = file.length();
+        HashMap<String, OffsetList> found = new HashMap<String, OffsetList>();
+        scanIdentifiers(SourceFileLoader.read(file, UTF_8), found);
+
+        String[] identifiers = sortByName(found.keySet());
+        Occurrences occurrences = new Occurrences();
+        int[] blockEnds = new int[identifiers.length];
+        for (int i = 0; i < identifiers.length; i++) {
+            OffsetList offsets = found.get(identifiers[i]);
+            occurrences.writeVarInt(offsets.size());
+            int last = 0;
+            for (int j = 0; j < offsets.size(); j++) {
+                occurrences.writeVarInt(offsets.get(j) - last);
+                last = offsets.get(j);
+            }
+            blockEnds[i] = occurrences.length;
+            identifiers[i] = pool(pool, identifiers[i]);
+        }
+        return new FileTable(path, modified, length, identifiers, occurrences.toArray(), blockEnds);
+    }
+
+    /**
+     * Find the identifiers in Java source, skipping comments, strings, character literals and numbers.
+     */
+    static void scanIdentifiers(String text, HashMap<String, OffsetList> found) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '/' && i + 1 < length && text.charAt(i + 1) == '/') {
+                int end = text.indexOf('\n', i);
+                i = end == -1 ? length : end + 1;
+            } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                int end = text.indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 2;
+            } else if (text.startsWith("\"\"\"", i)) {
+                i = skipQuoted(text, i + 3, "\"\"\"");
+            } else if (c == '"' || c == '\'') {
+                i = skipQuoted(text, i + 1, String.valueOf(c));
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start <= MAX_IDENTIFIER_LENGTH) {
+                    String identifier = text.substring(start, i);
+                    if (!KEYWORDS.contains(identifier)) {
+                        OffsetList offsets = found.get(identifier);
+                        if (offsets == null) {
+                            offsets = new OffsetList();
+                            found.put(identifier, offsets);
+                        }
+                        offsets.add(start);
+                    }
+                }
+            } else if (Character.isJavaIdentifierPart(c)) {
+                // Numbers like 0x1F and 10L.
+                while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+
+    // Returns the position after the closing quote. Strings that aren't closed end at the end of the line.
+    private static int skipQuoted(String text, int i, String quote) {
+        boolean textBlock = quote.length() > 1;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (text.startsWith(quote, i)) {
+                return i + quote.length();
+            } else if (c == '\n' && !textBlock) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return text.length();
+    }
+
+    private static String pool(ConcurrentHashMap<String, String> pool, String identifier) {
+        String pooled = pool.putIfAbsent(identifier, identifier);
+        return pooled != null ? pooled : identifier;
+    }
+
+    private static void fireEvent(ActionListener listener, String message, long progress) {
+        if (listener != null) {
+            listener.actionPerformed(new ActionEvent(SourceUsageIndex.class, ActionEvent.ACTION_PERFORMED, message,
+                    progress, 0));
+        }
+    }
+
+    /**
+     * A place an identifier is used.
+     */
+    public static class Usage {
+        private final String path;
+        private final File file;
+        private final int offset;
+        private final int line;
+        private final String text;
+
+        Usage(String path, File file, int offset, int line, String text) {
+            this.path = path;
+            this.file = file;
+            this.offset = offset;
+            this.line = line;
+            this.text = text;
+        }
+
+        /**
+         * @return The path of the source file relative to the source directory.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return Where the identifier starts in the file.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The line the identifier is on, starting from 1, or -1 if the file has changed.
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * @return The line the identifier is on, trimmed.
+         */
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return path + ":" + line + ": " + text;
+        }
+    }
+
+    /* The identifiers one file uses, in name order, each with a block of varint encoded occurrences. */
+    static class FileTable {
+        final String path;
+        final long modified;
+        final long length;
+        final String[] identifiers;
+        final byte[] occurrences;
+        final int[] blockEnds;
+
+        FileTable(String path, long modified, long length, String[] identifiers, byte[] occurrences, int[] blockEnds) {
+            this.path = path;
+            this.modified = modified;
+            this.length = length;
+            this.identifiers = identifiers;
+            this.occurrences = occurrences;
+            this.blockEnds = blockEnds;
+        }
+
+        Postings encode(HashMap<String, Integer> ids) {
+            Postings table = new Postings();
+            table.writeVarInt(identifiers.length);
+            int lastId = 0;
+            int blockStart = 0;
+            for (int i = 0; i < identifiers.length; i++) {
+                int id = ids.get(identifiers[i]);
+                table.writeVarInt(id - lastId);
+                table.write(occurrences, blockStart, blockEnds[i] - blockStart);
+                lastId = id;
+                blockStart = blockEnds[i];
+            }
+            return table;
+        }
+    }
+
+    /* A growing list of varint encoded file id deltas for one identifier, also used for the file tables. */
+    private static class Postings {
+        byte[] bytes = new byte[8];
+        int length;
+        int count;
+        int lastFileId;
+
+        void add(int fileId) {
+            writeVarInt(fileId - lastFileId);
+            lastFileId = fileId;
+            count++;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            length = IndexFormat.writeVarInt(bytes, length, value);
+        }
+
+        void write(byte[] source, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+
+    /* The occurrences of the identifiers in one file, while it's being scanned or copied. */
+    private static class Occurrences extends Postings {
+        void copy(ByteBuffer buffer, int position, int count) {
+            ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                bytes[length++] = buffer.get(position + i);
+            }
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package com.facetoe.jreader.helpers;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
@@ -27,8 +28,9 @@ import java.util.Scanner;
 
 /**
  * My implementation of the Trie data structure. This is used for efficient auto-completion.
+ * See CompactTrie for a version that uses much less memory with large word lists.
  */
-public class Trie {
+public class Trie implements PrefixTree {
     private final Map<Character, TrieNode> root = new HashMap<Character, TrieNode>();
 
     public Trie() {
@@ -100,6 +102,7 @@ public class Trie {
      *
      * @param words
      */
+    @Override
     public void removeWords(ArrayList<String> words) {
         for (String word : words) {
             removeWord(word);
@@ -111,6 +114,7 @@ public class Trie {
      *
      * @param words
      */
+    @Override
     public void addWords(ArrayList<String> words) {
         for (String word : words) {
             addWord(word);
@@ -139,38 +143,57 @@ public class Trie {
      * @param prefix
      * @return ArrayList containing the found words
      */
+    @Override
     public ArrayList<String> getWordsForPrefix(String prefix) {
-        if (prefix.isEmpty()) {
-            return new ArrayList<String>();
+        final ArrayList<String> foundWords = new ArrayList<String>();
+        forEachWordWithPrefix(prefix, Integer.MAX_VALUE, new WordConsumer() {
+            @Override
+            public void accept(String word) {
+                foundWords.add(word);
+            }
+        });
+        return foundWords;
+    }
+
+    @Override
+    public void forEachWordWithPrefix(String prefix, int limit, WordConsumer consumer) {
+        if (prefix.isEmpty() || limit <= 0) {
+            return;
         }
         TrieNode root = getNodeByPrefix(prefix);
 
-        /* If root is null there are no words with this prefix, return empty ArrayList */
-        if (root == null) {
-            return new ArrayList<String>();
+        /* If root is null there are no words with this prefix */
+        if (root != null) {
+            visitWords(root, new StringBuilder(prefix), limit, consumer);
         }
-        return getWordsForPrefix(prefix, "", root);
     }
 
     /**
-     * Return all words that have prefix
-     * Internal method for returning words with prefix
+     * Walk the words below root, appending to a single buffer rather than building a String per level.
+     * Internal method for visiting words with prefix
+     *
+     * @return How many more words the consumer wants.
      */
-    private ArrayList<String> getWordsForPrefix(String prefix, String word, TrieNode root) {
-        ArrayList<String> foundWords = new ArrayList<String>();
-        /* If we've got a word, add it to the list */
+    private int visitWords(TrieNode root, StringBuilder word, int remaining, WordConsumer consumer) {
+        /* If we've got a word, hand it over */
         if (root.isWord) {
-            foundWords.add(prefix + word);
+            consumer.accept(word.toString());
+            if (--remaining == 0) {
+                return 0;
+            }
         }
 
-        /* Get all the children for this node */
-        ArrayList<TrieNode> children = root.getChildren();
-
-        /* Recurse through each child gathering all the words */
-        for (TrieNode child : children) {
-            foundWords.addAll(getWordsForPrefix(prefix, word + child.getChar(), child));
+        /* Visit the children in order so the words come out sorted */
+        int length = word.length();
+        for (char ch : root.getSortedChars()) {
+            word.append(ch);
+            remaining = visitWords(root.getNode(ch), word, remaining, consumer);
+            word.setLength(length);
+            if (remaining == 0) {
+                break;
+            }
         }
-        return foundWords;
+        return remaining;
     }
 
     /**
@@ -249,16 +272,18 @@ public class Trie {
         }
 
         /**
-         * Return all the children for this node
+         * Return the characters of this node's children in ascending order
          *
-         * @return Returns an ArrayList containing all the children for this node
+         * @return char[]
          */
-        public ArrayList<TrieNode> getChildren() {
-            ArrayList<TrieNode> trieNodes = new ArrayList<TrieNode>();
-            for (TrieNode node : children.values()) {
-                trieNodes.add(node);
+        public char[] getSortedChars() {
+            char[] chars = new char[children.size()];
+            int i = 0;
+            for (char ch : children.keySet()) {
+                chars[i++] = ch;
             }
-            return trieNodes;
+            Arrays.sort(chars);
+            return chars;
         }
 
         /**
@@ -17,6 +17,7 @@
 */
 package com.facetoe.jreader.helpers;
 
+import com.facetoe.jreader.parsers.JavaDocIndexBuilder;
 import org.apache.log4j.Logger;
 import org.fife.ui.rsyntaxtextarea.Theme;
 import org.jsoup.Jsoup;
@@ -30,11 +31,14 @@ import java.io.*;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
-import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Scanner;
 
@@ -49,16 +53,16 @@ public class Util {
 
 
     /**
-     * Reads a file and returns a String.
+     * Reads a file and returns a String, with \n line breaks.
      *
      * @param path     to the file
      * @param encoding of the file
      * @return the file as a string
      * @throws IOException
+     * @see SourceFileLoader#read(File, Charset)
      */
     public static String readFile(String path, Charset encoding) throws IOException {
-        byte[] encoded = Files.readAllBytes(Paths.get(path));
-        return encoding.decode(ByteBuffer.wrap(encoded)).toString();
+        return SourceFileLoader.read(new File(path), encoding);
     }
 
     /**
@@ -236,6 +240,43 @@ public class Util {
         }
     }
 
+    /**
+     * Replace a file with one that's been written next to it, atomically if the file system can, so the
+     * target is never left half written.
+     *
+     * @param source The new file.
+     * @param target The file to replace.
+     * @throws IOException
+     */
+    public static void moveOver(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Hash a string, for naming cache files after something that can't be used as a file name.
+     *
+     * @param str The string.
+     * @return The MD5 of its UTF-8 bytes as 32 lower case hex digits.
+     */
+    public static String md5Hex(String str) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(str.getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
     /**
      * Reads a HashMap of class names and urls from classDataFile and returns it.
      *
@@ -310,8 +351,7 @@ public class Util {
     public static boolean isJavaDocsDir(File docDir) {
         docDir = findDocDir(docDir);
         File indexFile = new File(docDir.getAbsolutePath() + File.separator + "index.html");
-        File classFile = new File(docDir.getAbsolutePath() + File.separator + "allclasses-noframe.html");
-        if (!indexFile.exists() || !classFile.exists()) {
+        if (!indexFile.exists() || JavaDocIndexBuilder.findIndexFile(docDir) == null) {
             return false;
         }
 
@@ -450,6 +490,16 @@ public class Util {
         return loadTheme(DEFAULT_THEME);
     }
 
+    /**
+     * Get the default theme, which is only parsed the first time it's needed. A theme is only ever applied to code
+     * areas, so they can all share it.
+     *
+     * @return The default theme, or null if it couldn't be loaded.
+     */
+    public static Theme getTheme() {
+        return DefaultTheme.THEME;
+    }
+
     public static Theme loadTheme(String reference) {
         try {
             InputStream in = Util.class.getResourceAsStream(reference);
@@ -470,5 +520,8 @@ public class Util {
         return ((float)part * 100.0f) / whole;
     }
 
+    // Loads the default theme when it's first used, and only once however many threads want it.
+    private static class DefaultTheme {
+        static final Theme THEME = loadTheme();
+    }
 }
-
@@ -1,6 +1,5 @@
 package com.facetoe.jreader.listeners;
 
-import com.facetoe.jreader.githubapi.GitHubAPI;
 import com.facetoe.jreader.githubapi.ObjectQuery;
 import com.facetoe.jreader.githubapi.ObjectResponse;
 import com.facetoe.jreader.githubapi.apiobjects.TextMatch;
@@ -11,6 +10,7 @@ import org.apache.log4j.Logger;
 
 import javax.swing.*;
 import java.net.URL;
+import java.util.concurrent.ExecutionException;
 
 /**
  * JReader
@@ -22,6 +22,7 @@ import java.net.URL;
  * match is from.
  */
 public class TextMatchItemClickedListener implements OnTextMatchItemClickedListener {
+    private final Logger log = Logger.getLogger(this.getClass());
 
     JReader jreader;
     String searchTerm;
@@ -38,17 +39,27 @@ public class TextMatchItemClickedListener implements OnTextMatchItemClickedListe
 
                 @Override
                 protected Object doInBackground() throws Exception {
-                    ObjectResponse response = (ObjectResponse) GitHubAPI.sendRequest(new ObjectQuery(match.getObject_url()));
+                    ObjectResponse response = jreader.getGitHubAPI().sendRequest(new ObjectQuery(match.getObject_url()));
                     url = new URL(response.getHtml_url()
                             .replace("https://github.com", "https://raw.github.com")
                             .replace("/blob", ""));
-                    System.out.println("URL: " + url);
+                    log.debug("Requested object for " + match.getObject_url() + ": " + url);
                     title = Util.extractFileName(url.getFile());
                     return null;
                 }
 
                 @Override
                 protected void done() {
+                    try {
+                        get();
+                    } catch (Exception e) {
+                        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                        log.warn("Failed to request " + match.getObject_url(), cause);
+                        String message = cause.getMessage() == null
+                                ? cause.toString() : cause.getMessage().trim().split("\n")[0];
+                        updateStatus("Failed to request object: " + message);
+                        return;
+                    }
                     updateStatus("Downloading " + title);
                     jreader.createAndShowNewSourceTab(url, title, match.getFragment());
                     updateStatus("");
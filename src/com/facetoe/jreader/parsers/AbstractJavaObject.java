@@ -24,6 +24,10 @@ package com.facetoe.jreader.parsers;
  * Time: 12:41 PM
  */
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
 /**
  * Abstract class to represent different declarations.
  *
@@ -39,6 +43,16 @@ public abstract class AbstractJavaObject<T> {
     public static final int ENUM = 5;
     public static final int ANNOTATION = 6;
 
+    /**
+     * Orders objects by their short declaration.
+     */
+    public static final Comparator<AbstractJavaObject> DECLARATION_ORDER = new Comparator<AbstractJavaObject>() {
+        @Override
+        public int compare(AbstractJavaObject first, AbstractJavaObject second) {
+            return first.declaration.compareTo(second.declaration);
+        }
+    };
+
     /**
      * What sort of object this is.
      */
@@ -83,6 +97,17 @@ public abstract class AbstractJavaObject<T> {
      */
     int endColumn;
 
+    /**
+     * Offset in the source of the first character of this objects name, or -1 if it wasn't found.
+     * Line breaks count as one character, so this is an offset into a Swing document of the source.
+     */
+    int nameStart = -1;
+
+    /**
+     * Offset in the source just after the last character of this objects name, or -1 if it wasn't found.
+     */
+    int nameEnd = -1;
+
     /**
      * Constructor.
      *
@@ -94,6 +119,26 @@ public abstract class AbstractJavaObject<T> {
         extractFullDeclaration();
     }
 
+    /**
+     * Constructor for objects built from an outline rather than parsed by JavaParser. There is no type declaration
+     * so nothing is extracted.
+     *
+     * @param outline The fields of the object.
+     */
+    AbstractJavaObject(Outline outline) {
+        typeDeclaration = null;
+        type = outline.type;
+        modifiers = outline.modifiers;
+        declaration = outline.declaration;
+        fullDeclaration = outline.fullDeclaration;
+        beginLine = outline.beginLine;
+        endLine = outline.endLine;
+        beginColumn = outline.beginColumn;
+        endColumn = outline.endColumn;
+        nameStart = outline.nameStart;
+        nameEnd = outline.nameEnd;
+    }
+
     /**
      * Abstract method for extracting full declarations.
      */
@@ -107,6 +152,24 @@ public abstract class AbstractJavaObject<T> {
 
     public abstract int getModifiers();
 
+    /**
+     * Get the full declaration including modifiers.
+     *
+     * @return The full declaration.
+     */
+    String getFullDeclaration() {
+        return fullDeclaration;
+    }
+
+    /**
+     * Get the column where this declaration ends.
+     *
+     * @return the end column
+     */
+    int getEndColumn() {
+        return endColumn;
+    }
+
     /**
      * Get the short declaration.
      *
@@ -147,6 +210,37 @@ public abstract class AbstractJavaObject<T> {
         return beginColumn;
     }
 
+    /**
+     * Copy objects into an array sorted by declaration.
+     *
+     * @param objects The objects to sort.
+     * @param array   An empty array of the right type, like Collection.toArray().
+     * @return The sorted array.
+     */
+    static <T extends AbstractJavaObject> T[] sortByDeclaration(Collection<T> objects, T[] array) {
+        T[] sorted = objects.toArray(array);
+        Arrays.sort(sorted, DECLARATION_ORDER);
+        return sorted;
+    }
+
+    /**
+     * Get the offset of the start of this objects name in the source it was parsed from.
+     *
+     * @return The offset, or -1 if it isn't known.
+     */
+    public int getNameStart() {
+        return nameStart;
+    }
+
+    /**
+     * Get the offset just after the end of this objects name in the source it was parsed from.
+     *
+     * @return The offset, or -1 if it isn't known.
+     */
+    public int getNameEnd() {
+        return nameEnd;
+    }
+
     @Override
     public String toString() {
         return fullDeclaration;
@@ -31,6 +31,7 @@ public class JavaAnnotation extends AbstractJavaObject<AnnotationDeclaration> {
 
     public JavaAnnotation(AnnotationDeclaration typeDec) {
         super(typeDec);
+        modifiers = typeDec.getModifiers();
         beginColumn = typeDec.getBeginColumn();
         endColumn = typeDec.getEndColumn();
         beginLine = typeDec.getBeginLine();
@@ -38,6 +39,10 @@ public class JavaAnnotation extends AbstractJavaObject<AnnotationDeclaration> {
         type = ANNOTATION;
     }
 
+    JavaAnnotation(Outline outline) {
+        super(outline);
+    }
+
     @Override
     void extractFullDeclaration() {
         fullDeclaration = new AnnotationDeclaration(typeDeclaration.getModifiers(), typeDeclaration.getName())
@@ -54,6 +59,6 @@ public class JavaAnnotation extends AbstractJavaObject<AnnotationDeclaration> {
 
     @Override
     public int getModifiers() {
-        return typeDeclaration.getModifiers();
+        return modifiers;
     }
 }
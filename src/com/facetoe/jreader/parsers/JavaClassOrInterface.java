@@ -65,6 +65,15 @@ public class JavaClassOrInterface extends AbstractJavaObject<ClassOrInterfaceDec
      */
     private final HashMap<String, JavaAnnotation> annotations = new HashMap<String, JavaAnnotation>();
 
+    /**
+     * The members sorted by declaration, made once by sortMembers() so the tree view doesn't have to sort them.
+     */
+    private JavaClassOrInterface[] sortedNestedClasses;
+    private JavaMethod[] sortedMethods;
+    private JavaConstructor[] sortedConstructors;
+    private JavaEnum[] sortedEnums;
+    private JavaField[] sortedFields;
+
     /**
      * Constructor.
      *
@@ -73,12 +82,17 @@ public class JavaClassOrInterface extends AbstractJavaObject<ClassOrInterfaceDec
 
     public JavaClassOrInterface(ClassOrInterfaceDeclaration typeDec) {
         super(typeDec);
+        modifiers = typeDec.getModifiers();
         beginColumn = typeDec.getBeginColumn();
         endColumn = typeDec.getEndColumn();
         beginLine = typeDec.getBeginLine();
         endLine = typeDec.getEndLine();
     }
 
+    JavaClassOrInterface(Outline outline) {
+        super(outline);
+    }
+
     /**
      * Extract the full declaration.
      */
@@ -101,7 +115,7 @@ public class JavaClassOrInterface extends AbstractJavaObject<ClassOrInterfaceDec
 
     @Override
     public int getModifiers() {
-        return typeDeclaration.getModifiers();
+        return modifiers;
     }
 
     public boolean hasConstructors() {
@@ -195,6 +209,85 @@ public class JavaClassOrInterface extends AbstractJavaObject<ClassOrInterfaceDec
         nestedClasses.put(classOrInterface.declaration, classOrInterface);
     }
 
+    /**
+     * Add a member of any kind.
+     *
+     * @param member The member to add.
+     * @return false if this sort of object can't be a member.
+     */
+    boolean addMember(AbstractJavaObject member) {
+        if (member instanceof JavaClassOrInterface) {
+            addNestedClassOrInterface((JavaClassOrInterface) member);
+        } else if (member instanceof JavaMethod) {
+            addMethod((JavaMethod) member);
+        } else if (member instanceof JavaConstructor) {
+            addConstructor((JavaConstructor) member);
+        } else if (member instanceof JavaEnum) {
+            addEnum((JavaEnum) member);
+        } else if (member instanceof JavaField) {
+            addField((JavaField) member);
+        } else if (member instanceof JavaAnnotation) {
+            addAnnotation((JavaAnnotation) member);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sort the members of this class or interface, its nested classes and its enums by declaration.
+     * Called once the whole file has been parsed. Members added afterwards are sorted again when they're asked for.
+     */
+    void sortMembers() {
+        sortedNestedClasses = sortByDeclaration(nestedClasses.values(), new JavaClassOrInterface[nestedClasses.size()]);
+        sortedMethods = sortByDeclaration(methods.values(), new JavaMethod[methods.size()]);
+        sortedConstructors = sortByDeclaration(constructors.values(), new JavaConstructor[constructors.size()]);
+        sortedEnums = sortByDeclaration(enums.values(), new JavaEnum[enums.size()]);
+        sortedFields = sortByDeclaration(fields.values(), new JavaField[fields.size()]);
+
+        for (JavaClassOrInterface nestedClass : sortedNestedClasses) {
+            nestedClass.sortMembers();
+        }
+        for (JavaEnum javaEnum : sortedEnums) {
+            javaEnum.sortConstants();
+        }
+    }
+
+    public JavaClassOrInterface[] getSortedNestedClasses() {
+        if (sortedNestedClasses == null || sortedNestedClasses.length != nestedClasses.size()) {
+            sortedNestedClasses = sortByDeclaration(nestedClasses.values(), new JavaClassOrInterface[nestedClasses.size()]);
+        }
+        return sortedNestedClasses;
+    }
+
+    public JavaMethod[] getSortedMethods() {
+        if (sortedMethods == null || sortedMethods.length != methods.size()) {
+            sortedMethods = sortByDeclaration(methods.values(), new JavaMethod[methods.size()]);
+        }
+        return sortedMethods;
+    }
+
+    public JavaConstructor[] getSortedConstructors() {
+        if (sortedConstructors == null || sortedConstructors.length != constructors.size()) {
+            sortedConstructors = sortByDeclaration(constructors.values(), new JavaConstructor[constructors.size()]);
+        }
+        return sortedConstructors;
+    }
+
+    public JavaEnum[] getSortedEnums() {
+        if (sortedEnums == null || sortedEnums.length != enums.size()) {
+            sortedEnums = sortByDeclaration(enums.values(), new JavaEnum[enums.size()]);
+        }
+        return sortedEnums;
+    }
+
+    public JavaField[] getSortedFields() {
+        if (sortedFields == null || sortedFields.length != fields.size()) {
+            sortedFields = sortByDeclaration(fields.values(), new JavaField[fields.size()]);
+        }
+        return sortedFields;
+    }
+
     /**
      * Return this class or interfaces methods.
      *
@@ -34,6 +34,7 @@ public class JavaConstructor extends AbstractJavaObject<ConstructorDeclaration>
 
     public JavaConstructor(ConstructorDeclaration typeDec) {
         super(typeDec);
+        modifiers = typeDec.getModifiers();
         beginColumn = typeDec.getBeginColumn();
         endColumn = typeDec.getEndColumn();
         beginLine = typeDec.getBeginLine();
@@ -41,6 +42,10 @@ public class JavaConstructor extends AbstractJavaObject<ConstructorDeclaration>
         type = CONSTRUCTOR;
     }
 
+    JavaConstructor(Outline outline) {
+        super(outline);
+    }
+
     @Override
     void extractFullDeclaration() {
         fullDeclaration = new ConstructorDeclaration(null,
@@ -71,6 +76,6 @@ public class JavaConstructor extends AbstractJavaObject<ConstructorDeclaration>
 
     @Override
     public int getModifiers() {
-        return typeDeclaration.getModifiers();
+        return modifiers;
     }
 }
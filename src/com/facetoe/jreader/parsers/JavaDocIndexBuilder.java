@@ -0,0 +1,468 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.parsers;
+
+import com.facetoe.jreader.helpers.Util;
+import org.apache.log4j.Logger;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Builds the class name to relative path map for a Javadoc directory in a single streaming pass.
+ * <p/>
+ * Unlike JavaDocParser this never builds a DOM, so memory use doesn't grow with the size of the docs.
+ * It understands allclasses-noframe.html (up to Java 10), allclasses-index.html (Java 11 and later)
+ * and type-search-index.js (Java 9 and later).
+ */
+public class JavaDocIndexBuilder {
+    private static final Logger log = Logger.getLogger(JavaDocIndexBuilder.class);
+
+    public static final String ALL_CLASSES_NO_FRAME_FILE = "allclasses-noframe.html";
+    public static final String ALL_CLASSES_INDEX_FILE = "allclasses-index.html";
+    public static final String TYPE_SEARCH_INDEX_FILE = "type-search-index.js";
+    public static final String TYPE_SEARCH_INDEX_ZIP_FILE = "type-search-index.zip";
+
+    // The index files in the order we prefer them.
+    private static final String[] INDEX_FILES = {
+            ALL_CLASSES_NO_FRAME_FILE,
+            ALL_CLASSES_INDEX_FILE,
+            TYPE_SEARCH_INDEX_FILE,
+            TYPE_SEARCH_INDEX_ZIP_FILE
+    };
+
+    // The least time between progress events.
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ArrayList<ActionListener> listeners = new ArrayList<ActionListener>();
+
+    // The index file is read through our own buffer because Reader.read() is synchronized.
+    private final char[] buffer = new char[64 * 1024];
+    private Reader reader;
+    private int position;
+    private int limit;
+
+    private long totalChars;
+    private long charsRead;
+    private long lastProgressTime;
+
+    /**
+     * Finds the file that lists all the classes in a Javadoc directory.
+     *
+     * @param docDir The Javadoc directory.
+     * @return The index file, or null if there isn't one.
+     */
+    public static File findIndexFile(File docDir) {
+        for (String fileName : INDEX_FILES) {
+            File indexFile = new File(docDir, fileName);
+            if (indexFile.isFile()) {
+                return indexFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the class data for a Javadoc directory.
+     *
+     * @param docDir The Javadoc directory.
+     * @return A map with the class names as keys and their paths relative to docDir as values.
+     * @throws IOException if there is no index file or it can't be read.
+     */
+    public HashMap<String, String> build(File docDir) throws IOException {
+        File indexFile = findIndexFile(docDir);
+        if (indexFile == null) {
+            throw new IOException("No class index found in: " + docDir.getAbsolutePath());
+        }
+        return build(indexFile, new HashMap<String, String>());
+    }
+
+    private HashMap<String, String> build(File indexFile, HashMap<String, String> classData) throws IOException {
+        long start = System.currentTimeMillis();
+        String name = indexFile.getName();
+        charsRead = 0;
+        lastProgressTime = 0;
+        position = 0;
+        limit = 0;
+
+        if (name.equals(TYPE_SEARCH_INDEX_ZIP_FILE)) {
+            ZipFile zipFile = new ZipFile(indexFile);
+            try {
+                ZipEntry entry = zipFile.entries().nextElement();
+                totalChars = entry.getSize();
+                reader = open(zipFile.getInputStream(entry));
+                scanTypeSearchIndex(classData);
+            } finally {
+                reader = null;
+                zipFile.close();
+            }
+        } else {
+            totalChars = indexFile.length();
+            reader = open(new FileInputStream(indexFile));
+            try {
+                if (name.equals(TYPE_SEARCH_INDEX_FILE)) {
+                    scanTypeSearchIndex(classData);
+                } else {
+                    // The older format didn't have titles on all its links.
+                    scanLinks(name.equals(ALL_CLASSES_NO_FRAME_FILE), classData);
+                }
+            } finally {
+                reader.close();
+                reader = null;
+            }
+        }
+
+        fireEvent(ActionEvent.ACTION_PERFORMED, "Done", 100);
+        log.debug("Indexed " + classData.size() + " classes from " + name
+                + " in " + (System.currentTimeMillis() - start) + "ms");
+        return classData;
+    }
+
+    private static Reader open(InputStream in) {
+        return new InputStreamReader(in, UTF_8);
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+            charsRead += limit;
+        }
+        return buffer[position++];
+    }
+
+    /*
+     * Scans the HTML for <a> tags. Class links have a title like "class in java.lang",
+     * and their text, with any nested tags removed, is the class name.
+     */
+    private void scanLinks(boolean acceptUntitledLinks, HashMap<String, String> classData) throws IOException {
+        StringBuilder tag = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        int ch;
+        while ((ch = read()) != -1) {
+            if (ch != '<') {
+                continue;
+            }
+            readTag(tag);
+            if (!isTag(tag, "a")) {
+                continue;
+            }
+
+            String href = getAttribute(tag, "href");
+            String title = getAttribute(tag, "title");
+            boolean isClassLink = title != null ? title.contains(" in ") : acceptUntitledLinks;
+            if (href == null || !isClassLink || !isRelativeLink(href)) {
+                continue;
+            }
+
+            // Collect the link text up to the closing tag.
+            text.setLength(0);
+            while ((ch = read()) != -1) {
+                if (ch == '<') {
+                    readTag(tag);
+                    if (isTag(tag, "/a")) {
+                        break;
+                    }
+                } else {
+                    text.append((char) ch);
+                }
+            }
+
+            String className = decodeEntities(text.toString().trim());
+            if (!className.isEmpty()) {
+                classData.put(className, href);
+                maybeFireProgress(className);
+            }
+        }
+    }
+
+    // Reads everything up to the closing '>' of a tag.
+    private void readTag(StringBuilder tag) throws IOException {
+        tag.setLength(0);
+        int quote = 0;
+        int ch;
+        while ((ch = read()) != -1) {
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '"' || ch == '\'') {
+                quote = ch;
+            } else if (ch == '>') {
+                break;
+            }
+            tag.append((char) ch);
+        }
+    }
+
+    private static boolean isTag(StringBuilder tag, String name) {
+        int length = name.length();
+        if (tag.length() < length || !tag.substring(0, length).equalsIgnoreCase(name)) {
+            return false;
+        }
+        return tag.length() == length || Character.isWhitespace(tag.charAt(length));
+    }
+
+    // Finds an attribute value in the contents of a tag. Returns null if the attribute isn't there.
+    static String getAttribute(CharSequence tag, String name) {
+        int length = tag.length();
+        int i = 0;
+        // Skip the tag name.
+        while (i < length && !Character.isWhitespace(tag.charAt(i))) {
+            i++;
+        }
+        while (i < length) {
+            while (i < length && Character.isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            int nameStart = i;
+            while (i < length && tag.charAt(i) != '=' && !Character.isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            String attributeName = tag.subSequence(nameStart, i).toString();
+            while (i < length && Character.isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            if (i >= length || tag.charAt(i) != '=') {
+                // An attribute with no value.
+                if (i == nameStart) {
+                    i++;
+                }
+                continue;
+            }
+            i++;
+            while (i < length && Character.isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+
+            int valueStart;
+            int valueEnd;
+            if (i < length && (tag.charAt(i) == '"' || tag.charAt(i) == '\'')) {
+                char quote = tag.charAt(i);
+                valueStart = ++i;
+                while (i < length && tag.charAt(i) != quote) {
+                    i++;
+                }
+                valueEnd = i++;
+            } else {
+                valueStart = i;
+                while (i < length && !Character.isWhitespace(tag.charAt(i))) {
+                    i++;
+                }
+                valueEnd = i;
+            }
+
+            if (attributeName.equalsIgnoreCase(name)) {
+                return decodeEntities(tag.subSequence(valueStart, valueEnd).toString());
+            }
+        }
+        return null;
+    }
+
+    private static boolean isRelativeLink(String href) {
+        return !href.isEmpty()
+                && href.charAt(0) != '#'
+                && !href.contains("://")
+                && !href.startsWith("javascript:");
+    }
+
+    static String decodeEntities(String text) {
+        if (text.indexOf('&') == -1) {
+            return text;
+        }
+
+        StringBuilder decoded = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            char ch = text.charAt(i);
+            int end = ch == '&' ? text.indexOf(';', i) : -1;
+            if (end == -1) {
+                decoded.append(ch);
+                i++;
+                continue;
+            }
+
+            String entity = text.substring(i + 1, end);
+            if (entity.equals("amp")) {
+                decoded.append('&');
+            } else if (entity.equals("lt")) {
+                decoded.append('<');
+            } else if (entity.equals("gt")) {
+                decoded.append('>');
+            } else if (entity.equals("quot")) {
+                decoded.append('"');
+            } else if (entity.equals("apos")) {
+                decoded.append('\'');
+            } else if (entity.equals("nbsp")) {
+                decoded.append(' ');
+            } else if (entity.startsWith("#")) {
+                boolean hex = entity.startsWith("#x") || entity.startsWith("#X");
+                int codePoint = parseNumber(entity.substring(hex ? 2 : 1), hex ? 16 : 10);
+                if (Character.isValidCodePoint(codePoint)) {
+                    decoded.appendCodePoint(codePoint);
+                } else {
+                    // Not a character we can decode, keep it as it is.
+                    decoded.append(text, i, end + 1);
+                }
+            } else {
+                decoded.append(text, i, end + 1);
+            }
+            i = end + 1;
+        }
+        return decoded.toString();
+    }
+
+    /*
+     * Scans the search index javadoc generates for Java 9 and later. It looks like:
+     *     typeSearchIndex = [{"p":"java.lang","l":"Object"},{"m":"java.base","p":"java.util","l":"Map.Entry"},...]
+     * where "m" is the module, "p" the package, "l" the class name and "u" an optional explicit url.
+     */
+    private void scanTypeSearchIndex(HashMap<String, String> classData) throws IOException {
+        HashMap<String, String> fields = new HashMap<String, String>();
+        StringBuilder value = new StringBuilder();
+        String key = null;
+        boolean inObject = false;
+        int ch;
+        while ((ch = read()) != -1) {
+            if (ch == '{') {
+                inObject = true;
+                fields.clear();
+                key = null;
+            } else if (ch == '}' && inObject) {
+                inObject = false;
+                addSearchIndexEntry(fields, classData);
+            } else if (ch == '"' && inObject) {
+                readString(value);
+                if (key == null) {
+                    key = value.toString();
+                } else {
+                    fields.put(key, value.toString());
+                    key = null;
+                }
+            } else if (ch == ',' && inObject) {
+                key = null;
+            }
+        }
+    }
+
+    // Reads a JSON string up to the closing quote.
+    private void readString(StringBuilder value) throws IOException {
+        value.setLength(0);
+        int ch;
+        while ((ch = read()) != -1 && ch != '"') {
+            if (ch == '\\') {
+                ch = read();
+                if (ch == 'u') {
+                    StringBuilder hex = new StringBuilder(4);
+                    while (hex.length() < 4 && (ch = read()) != -1 && ch != '"') {
+                        hex.append((char) ch);
+                    }
+                    ch = hex.length() == 4 ? parseNumber(hex.toString(), 16) : -1;
+                    if (ch == -1) {
+                        // Not a valid escape, keep it as it is.
+                        value.append("\\u").append(hex);
+                        if (hex.length() < 4) {
+                            // The string or the file ended inside it.
+                            break;
+                        }
+                        continue;
+                    }
+                } else if (ch == 'n') {
+                    ch = '\n';
+                } else if (ch == 't') {
+                    ch = '\t';
+                } else if (ch == -1) {
+                    break;
+                }
+            }
+            value.append((char) ch);
+        }
+    }
+
+    // Parses a number that can't be negative, returning -1 if it isn't one.
+    private static int parseNumber(String number, int radix) {
+        try {
+            int value = Integer.parseInt(number, radix);
+            return value >= 0 ? value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void addSearchIndexEntry(HashMap<String, String> fields, HashMap<String, String> classData) {
+        String className = fields.get("l");
+        String packageName = fields.get("p");
+        if (className == null) {
+            return;
+        }
+
+        String url = fields.get("u");
+        if (url == null) {
+            // Entries like "All Classes" always have a url, so anything else without a package isn't a class.
+            if (packageName == null) {
+                return;
+            }
+            String moduleName = fields.get("m");
+            String packagePath = packageName.isEmpty() || packageName.equals("<Unnamed>")
+                    ? ""
+                    : packageName.replace('.', '/') + "/";
+            url = (moduleName != null ? moduleName + "/" : "") + packagePath + className + ".html";
+        } else if (packageName == null) {
+            return;
+        }
+
+        classData.put(className, url);
+        maybeFireProgress(className);
+    }
+
+    private void maybeFireProgress(String className) {
+        long now = System.currentTimeMillis();
+        if (now - lastProgressTime >= PROGRESS_INTERVAL_MILLIS) {
+            lastProgressTime = now;
+            fireEvent(ActionEvent.ACTION_PERFORMED, className, (long) Math.max(0, Math.min(99, Util.percent(charsRead, totalChars))));
+        }
+    }
+
+    void fireEvent(int eventType, String message, long progress) {
+        ActionEvent event = new ActionEvent(this, eventType, message, progress, 0);
+        for (ActionListener listener : listeners) {
+            listener.actionPerformed(event);
+        }
+    }
+
+    public void addActionListener(ActionListener listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,278 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.parsers;
+
+import com.facetoe.jreader.helpers.SortedIndexFile;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Extracts the methods, constructors and fields documented on each class page.
+ * <p/>
+ * Members are keyed like Javadoc links, {@code HashMap#put(K, V)}, with package names dropped from
+ * the parameter types. The values are the class page path and the member's anchor,
+ * {@code java/util/HashMap.html#put(K, V)}.
+ * <p/>
+ * A member anchor is an {@code <a name>}, {@code <a id>} or {@code <section id>} whose next heading is
+ * the member's name. That is true for every javadoc version from Java 6 on and skips the navigation
+ * and summary anchors.
+ */
+public class JavaDocMemberParser {
+    private static final Logger log = Logger.getLogger(JavaDocMemberParser.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The most class pages a fork/join task parses before splitting.
+    private static final int PAGES_PER_TASK = 32;
+
+    /**
+     * Parses the members of every class in classData, several pages at a time.
+     *
+     * @param docDir    The Javadoc directory.
+     * @param classData The class names and their paths relative to docDir.
+     * @return A map of member names to paths and anchors.
+     */
+    public HashMap<String, String> parse(File docDir, SortedIndexFile classData) {
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool();
+        HashMap<String, String> members;
+        try {
+            members = pool.invoke(new ParseTask(docDir, classData, 0, classData.size()));
+        } finally {
+            pool.shutdown();
+        }
+        log.debug("Found " + members.size() + " members in " + classData.size() + " classes in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return members;
+    }
+
+    /**
+     * Parses the members documented on one class page.
+     *
+     * @param className The class name, such as Map.Entry.
+     * @param path      The path of the page relative to the doc directory.
+     * @param html      The contents of the page.
+     * @param members   Where to put the members.
+     */
+    static void parsePage(String className, String path, String html, HashMap<String, String> members) {
+        String pendingAnchor = null;
+        int length = html.length();
+        int textStart = 0;
+        int i = html.indexOf('<');
+        while (i != -1) {
+            if (pendingAnchor != null && !isBlank(html, textStart, i)) {
+                // Something other than markup came between the anchor and a heading.
+                pendingAnchor = null;
+            }
+
+            int end;
+            if (html.startsWith("<!--", i)) {
+                end = html.indexOf("-->", i);
+                end = end == -1 ? -1 : end + 2;
+            } else {
+                end = html.indexOf('>', i);
+            }
+            if (end == -1) {
+                break;
+            }
+
+            String tag = html.substring(i + 1, end);
+            if (isTag(tag, "a") || isTag(tag, "section")) {
+                String anchor = JavaDocIndexBuilder.getAttribute(tag, "name");
+                if (anchor == null) {
+                    anchor = JavaDocIndexBuilder.getAttribute(tag, "id");
+                }
+                if (anchor != null) {
+                    pendingAnchor = anchor;
+                }
+            } else if (pendingAnchor != null && isHeading(tag)) {
+                int headingEnd = indexOfIgnoreCase(html, "</h", end);
+                if (headingEnd == -1) {
+                    break;
+                }
+                String heading = JavaDocIndexBuilder.decodeEntities(stripTags(html.substring(end + 1, headingEnd))).trim();
+                String member = toMemberName(className, pendingAnchor, heading);
+                if (member != null) {
+                    members.put(className + "#" + member, path + "#" + pendingAnchor);
+                }
+                pendingAnchor = null;
+                end = html.indexOf('>', headingEnd);
+                if (end == -1) {
+                    break;
+                }
+            }
+
+            textStart = end + 1;
+            i = textStart < length ? html.indexOf('<', textStart) : -1;
+        }
+    }
+
+    /*
+     * Turns an anchor into a member name if heading is the name of the member it belongs to.
+     * Anchors look like put(K, V) up to Java 7, put-K-V- in Java 8, and put(K,V) or <init>(int) after that.
+     */
+    static String toMemberName(String className, String anchor, String heading) {
+        String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
+        String name;
+        int nameEnd;
+        if (anchor.startsWith("<init>")) {
+            name = simpleClassName;
+            nameEnd = "<init>".length();
+        } else {
+            nameEnd = 0;
+            while (nameEnd < anchor.length() && isNameChar(anchor.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            name = anchor.substring(0, nameEnd);
+            // Nested class constructors are named Outer.Inner in the anchor and heading.
+            if (name.equals(className)) {
+                name = simpleClassName;
+                heading = heading.substring(heading.lastIndexOf('.') + 1);
+            }
+        }
+        if (name.isEmpty() || !name.equals(heading)) {
+            return null;
+        }
+
+        if (nameEnd == anchor.length()) {
+            // A field.
+            return name;
+        }
+
+        String parameters;
+        char open = anchor.charAt(nameEnd);
+        if (open == '(' && anchor.endsWith(")")) {
+            parameters = anchor.substring(nameEnd + 1, anchor.length() - 1);
+        } else if (open == '-' && anchor.endsWith("-")) {
+            parameters = anchor.substring(nameEnd + 1, Math.max(nameEnd + 1, anchor.length() - 1))
+                    .replace(":A", "[]")
+                    .replace('-', ',');
+        } else {
+            return null;
+        }
+
+        StringBuilder member = new StringBuilder(name).append('(');
+        if (!parameters.trim().isEmpty()) {
+            String[] types = parameters.split(",");
+            for (int i = 0; i < types.length; i++) {
+                member.append(i > 0 ? ", " : "").append(simpleTypeName(types[i].trim()));
+            }
+        }
+        return member.append(')').toString();
+    }
+
+    // Drops the package from a type, java.util.Map.Entry[] becomes Map.Entry[].
+    private static String simpleTypeName(String type) {
+        int start = 0;
+        int dot;
+        while ((dot = type.indexOf('.', start)) != -1
+                && dot > start
+                && Character.isLowerCase(type.charAt(start))
+                && !type.startsWith("...", dot)) {
+            start = dot + 1;
+        }
+        return type.substring(start);
+    }
+
+    private static boolean isNameChar(char ch) {
+        return Character.isJavaIdentifierPart(ch) || ch == '.';
+    }
+
+    private static boolean isTag(String tag, String name) {
+        return tag.length() > name.length()
+                && tag.regionMatches(true, 0, name, 0, name.length())
+                && Character.isWhitespace(tag.charAt(name.length()));
+    }
+
+    private static boolean isHeading(String tag) {
+        return tag.length() >= 2
+                && (tag.charAt(0) == 'h' || tag.charAt(0) == 'H')
+                && tag.charAt(1) >= '1' && tag.charAt(1) <= '6'
+                && (tag.length() == 2 || Character.isWhitespace(tag.charAt(2)));
+    }
+
+    private static boolean isBlank(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripTags(String html) {
+        return html.replaceAll("<[^>]*>", "");
+    }
+
+    private static int indexOfIgnoreCase(String text, String target, int from) {
+        for (int i = from; i <= text.length() - target.length(); i++) {
+            if (text.regionMatches(true, i, target, 0, target.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* Parses the class pages from start up to end, splitting the range between tasks if it's big. */
+    private static class ParseTask extends RecursiveTask<HashMap<String, String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File docDir;
+        private final SortedIndexFile classData;
+        private final int start;
+        private final int end;
+
+        ParseTask(File docDir, SortedIndexFile classData, int start, int end) {
+            this.docDir = docDir;
+            this.classData = classData;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected HashMap<String, String> compute() {
+            if (end - start > PAGES_PER_TASK) {
+                int middle = (start + end) >>> 1;
+                ParseTask second = new ParseTask(docDir, classData, middle, end);
+                second.fork();
+                HashMap<String, String> members = new ParseTask(docDir, classData, start, middle).compute();
+                members.putAll(second.join());
+                return members;
+            }
+
+            HashMap<String, String> members = new HashMap<String, String>();
+            for (int i = start; i < end; i++) {
+                String path = classData.getValue(i);
+                File page = new File(docDir, path);
+                try {
+                    parsePage(classData.getKey(i), path, new String(Files.readAllBytes(page.toPath()), UTF_8), members);
+                } catch (IOException e) {
+                    log.error("Failed to parse members of " + page.getAbsolutePath(), e);
+                }
+            }
+            return members;
+        }
+    }
+}
@@ -35,8 +35,12 @@ import java.util.HashMap;
 public class JavaEnum extends AbstractJavaObject<EnumDeclaration> {
     private final HashMap<String, JavaEnumConstantDeclaration> constants = new HashMap<String, JavaEnumConstantDeclaration>();
 
+    // The constants sorted by declaration, made once by sortConstants().
+    private AbstractJavaObject[] sortedConstants;
+
     public JavaEnum(EnumDeclaration typeDec) {
         super(typeDec);
+        modifiers = typeDec.getModifiers();
         extractFullDeclaration();
         extractDeclaration();
         extractConstants();
@@ -47,6 +51,10 @@ public class JavaEnum extends AbstractJavaObject<EnumDeclaration> {
         type = ENUM;
     }
 
+    JavaEnum(Outline outline) {
+        super(outline);
+    }
+
     private void extractConstants() {
         for (EnumConstantDeclaration constant : typeDeclaration.getEntries()) {
             constants.put(constant.getName(), new JavaEnumConstantDeclaration(constant));
@@ -69,40 +77,26 @@ public class JavaEnum extends AbstractJavaObject<EnumDeclaration> {
 
     @Override
     public int getModifiers() {
-        return typeDeclaration.getModifiers();
+        return modifiers;
     }
 
     public HashMap<String, JavaEnumConstantDeclaration> getConstants() {
         return constants;
     }
 
-}
-
-class JavaEnumConstantDeclaration extends AbstractJavaObject<EnumConstantDeclaration> {
-
-    public JavaEnumConstantDeclaration(EnumConstantDeclaration typeDec) {
-        super(typeDec);
-        extractDeclaration();
-        extractFullDeclaration();
-        beginColumn = typeDec.getBeginColumn();
-        endColumn = typeDec.getEndColumn();
-        beginLine = typeDec.getBeginLine();
-        endLine = typeDec.getEndLine();
-        type = ENUM;
+    void sortConstants() {
+        sortedConstants = sortByDeclaration(constants.values(), new JavaEnumConstantDeclaration[constants.size()]);
     }
 
-    @Override
-    void extractFullDeclaration() {
-        fullDeclaration = typeDeclaration.getName();
+    public AbstractJavaObject[] getSortedConstants() {
+        if (sortedConstants == null || sortedConstants.length != constants.size()) {
+            sortConstants();
+        }
+        return sortedConstants;
     }
 
-    @Override
-    void extractDeclaration() {
-        declaration = typeDeclaration.getName();
+    void addConstant(JavaEnumConstantDeclaration constant) {
+        constants.put(constant.declaration, constant);
     }
 
-    @Override
-    public int getModifiers() {
-        return -1;  // No modifiers for constants.
-    }
-}
\ No newline at end of file
+}
@@ -33,6 +33,7 @@ class JavaField extends AbstractJavaObject<FieldDeclaration> {
 
     public JavaField(FieldDeclaration typeDec) {
         super(typeDec);
+        modifiers = typeDec.getModifiers();
         beginColumn = typeDec.getBeginColumn();
         endColumn = typeDec.getEndColumn();
         beginLine = typeDec.getBeginLine();
@@ -40,6 +41,10 @@ class JavaField extends AbstractJavaObject<FieldDeclaration> {
         type = FIELD;
     }
 
+    JavaField(Outline outline) {
+        super(outline);
+    }
+
     @Override
     void extractFullDeclaration() {
         String field = new FieldDeclaration(typeDeclaration.getModifiers(),
@@ -61,6 +66,6 @@ class JavaField extends AbstractJavaObject<FieldDeclaration> {
 
     @Override
     public int getModifiers() {
-        return typeDeclaration.getModifiers();
+        return modifiers;
     }
 }
\ No newline at end of file
@@ -33,6 +33,7 @@ public class JavaMethod extends AbstractJavaObject<MethodDeclaration> {
 
     public JavaMethod(MethodDeclaration typeDec) {
         super(typeDec);
+        modifiers = typeDec.getModifiers();
         beginColumn = typeDec.getBeginColumn();
         endColumn = typeDec.getEndColumn();
         beginLine = typeDec.getBeginLine();
@@ -40,6 +41,10 @@ public class JavaMethod extends AbstractJavaObject<MethodDeclaration> {
         type = METHOD;
     }
 
+    JavaMethod(Outline outline) {
+        super(outline);
+    }
+
     @Override
     void extractFullDeclaration() {
         fullDeclaration = new MethodDeclaration(typeDeclaration.getModifiers(),
@@ -64,6 +69,6 @@ public class JavaMethod extends AbstractJavaObject<MethodDeclaration> {
 
     @Override
     public int getModifiers() {
-        return typeDeclaration.getModifiers();
+        return modifiers;
     }
 }
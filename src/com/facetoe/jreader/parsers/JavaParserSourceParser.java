@@ -0,0 +1,288 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.parsers;
+
+import japa.parser.JavaParser;
+import japa.parser.ParseException;
+import japa.parser.ast.CompilationUnit;
+import japa.parser.ast.body.*;
+import japa.parser.ast.visitor.GenericVisitorAdapter;
+
+import java.io.StringReader;
+
+/**
+ * Builds the outline from a full JavaParser syntax tree. This understands the Java 5 grammar, so it fails on
+ * sources that use newer syntax like lambdas.
+ */
+class JavaParserSourceParser implements SourceParser {
+    static final String NAME = "javaparser";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public JavaSourceFile parse(String source) throws ParseException {
+        CompilationUnit cu = JavaParser.parse(new StringReader(source));
+        JavaSourceFile sourceFile = (JavaSourceFile) new SourceFileVisitor().visit(cu, null);
+        new NameLocator(new SourceLines(source)).locate(sourceFile.getFileContents());
+        return sourceFile;
+    }
+
+    /**
+     * This class is responsible for extracting the information out of the file.
+     */
+    private static class SourceFileVisitor extends GenericVisitorAdapter {
+
+        /**
+         * Visits each type declaration and extracts full and partial declarations from it.
+         *
+         * @param cu  Compilation unit returned by JavaParser.parse()
+         * @param arg This isn't used.
+         * @return JavaSourceFile object containing all the data.
+         */
+        @Override
+        public Object visit(CompilationUnit cu, Object arg) {
+            JavaSourceFile sourceFile = new JavaSourceFile();
+            if (cu != null && cu.getTypes() != null) {
+                for (TypeDeclaration type : cu.getTypes()) {
+                    if (type instanceof ClassOrInterfaceDeclaration) {
+                        JavaClassOrInterface javaObj = (JavaClassOrInterface) visit((ClassOrInterfaceDeclaration) type, null);
+                        sourceFile.addObject(javaObj);
+
+                    } else if (type instanceof AnnotationDeclaration) {
+                        JavaAnnotation annotation = (JavaAnnotation) visit((AnnotationDeclaration) type, null);
+                        sourceFile.addObject(annotation);
+
+                    } else if (type instanceof EnumDeclaration) {
+                        JavaEnum javaEnum = (JavaEnum) visit((EnumDeclaration) type, null);
+                        sourceFile.addObject(javaEnum);
+                    }
+                }
+            }
+
+            /* Extract all the data here so we don't forget to later... */
+            sourceFile.extractAllObjectData();
+            return sourceFile;
+        }
+
+        @Override
+        public Object visit(ClassOrInterfaceDeclaration n, Object arg) {
+            JavaClassOrInterface javaObj = new JavaClassOrInterface(n);
+
+            for (BodyDeclaration declaration : n.getMembers()) {
+                if (declaration instanceof MethodDeclaration) {
+                    JavaMethod method = (JavaMethod) visit((MethodDeclaration) declaration, null);
+                    javaObj.addMethod(method);
+
+                } else if (declaration instanceof FieldDeclaration) {
+                    JavaField field = (JavaField) visit((FieldDeclaration) declaration, null);
+                    javaObj.addField(field);
+
+                } else if (declaration instanceof EnumDeclaration) {
+                    JavaEnum javaEnum = (JavaEnum) visit((EnumDeclaration) declaration, null);
+                    javaObj.addEnum(javaEnum);
+
+                } else if (declaration instanceof ConstructorDeclaration) {
+                    JavaConstructor constructor = (JavaConstructor) visit((ConstructorDeclaration) declaration, null);
+                    javaObj.addConstructor(constructor);
+
+                    /* If we have a nested class, recurse through it and each nested class that it contains
+                     * gathering the data.  */
+                } else if (declaration instanceof ClassOrInterfaceDeclaration) {
+                    JavaClassOrInterface classOrInterface = (JavaClassOrInterface) visit((ClassOrInterfaceDeclaration) declaration, null);
+                    javaObj.addNestedClassOrInterface(classOrInterface);
+
+                } else if (declaration instanceof AnnotationDeclaration) {
+                    JavaAnnotation annotation = (JavaAnnotation) visit((AnnotationDeclaration) declaration, null);
+                    javaObj.addAnnotation(annotation);
+                } // The only other things that would be caught here are EmptyTypeDeclaration, EmptyMemberDeclaration and InitializerDeclaration
+
+            }
+            return javaObj;
+        }
+
+        @Override
+        public Object visit(ConstructorDeclaration n, Object arg) {
+            return new JavaConstructor(n);
+        }
+
+        @Override
+        public Object visit(EnumDeclaration n, Object arg) {
+            return new JavaEnum(n);
+        }
+
+        @Override
+        public Object visit(FieldDeclaration n, Object arg) {
+            return new JavaField(n);
+        }
+
+        @Override
+        public Object visit(MethodDeclaration n, Object arg) {
+            return new JavaMethod(n);
+        }
+
+        @Override
+        public Object visit(AnnotationDeclaration n, Object arg) {
+            return new JavaAnnotation(n);
+        }
+    }
+
+    /**
+     * Finds the name of each declaration in the source, so it can be selected without searching for it.
+     * <p/>
+     * JavaParser only gives the line and column where a declaration starts, which can be an annotation or a
+     * modifier, so this scans forward from there for the name, skipping comments and literals. Line breaks
+     * count as one character so the offsets line up with a Swing document of the source.
+     */
+    private static class NameLocator {
+        private final SourceLines lines;
+        private final String text;
+
+        NameLocator(SourceLines lines) {
+            this.lines = lines;
+            text = lines.getText();
+        }
+
+        void locate(Iterable<? extends AbstractJavaObject> objects) {
+            for (AbstractJavaObject object : objects) {
+                locate(object);
+                if (object instanceof JavaClassOrInterface) {
+                    JavaClassOrInterface classOrInterface = (JavaClassOrInterface) object;
+                    locate(classOrInterface.getConstructors().values());
+                    locate(classOrInterface.getMethods().values());
+                    locate(classOrInterface.getFields().values());
+                    locate(classOrInterface.getEnums().values());
+                    locate(classOrInterface.getAnnotations().values());
+                    locate(classOrInterface.getNestedClasses().values());
+                } else if (object instanceof JavaEnum) {
+                    locate(((JavaEnum) object).getConstants().values());
+                }
+            }
+        }
+
+        private void locate(AbstractJavaObject object) {
+            String name = leadingIdentifier(object.getDeclaration());
+            int start = lines.getOffset(object.getBeginLine(), object.getBeginColumn());
+            int end = object.getEndLine() > 0 ? lines.getOffset(object.getEndLine(), object.getEndColumn()) + 1 : text.length();
+            if (name.isEmpty() || start < 0) {
+                return;
+            }
+            end = Math.min(Math.max(end, start), text.length());
+
+            String previousToken = "";
+            int i = start;
+            while (i < end) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (isCommentStart(i)) {
+                    i = skipComment(i);
+                } else if (c == '"' || c == '\'') {
+                    i = skipLiteral(i);
+                    previousToken = String.valueOf(c);
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    int identifierEnd = i + 1;
+                    while (identifierEnd < text.length() && Character.isJavaIdentifierPart(text.charAt(identifierEnd))) {
+                        identifierEnd++;
+                    }
+                    String identifier = text.substring(i, identifierEnd);
+                    if (identifier.equals(name) && isName(object, previousToken, nextSignificantChar(identifierEnd))) {
+                        object.nameStart = i;
+                        object.nameEnd = identifierEnd;
+                        return;
+                    }
+                    previousToken = identifier;
+                    i = identifierEnd;
+                } else {
+                    previousToken = String.valueOf(c);
+                    i++;
+                }
+            }
+        }
+
+        /**
+         * Check an identifier that matches the name is the name being declared, and not a type, annotation or
+         * parameter that happens to have the same name.
+         */
+        private static boolean isName(AbstractJavaObject object, String previousToken, char next) {
+            if (previousToken.equals("@") || previousToken.equals(".")) {
+                return false;
+            }
+            if (object instanceof JavaClassOrInterface || object instanceof JavaEnum || object instanceof JavaAnnotation) {
+                return previousToken.equals("class") || previousToken.equals("interface") || previousToken.equals("enum");
+            }
+            if (object instanceof JavaMethod || object instanceof JavaConstructor) {
+                return next == '(';
+            }
+            if (object instanceof JavaField) {
+                return next == '=' || next == ';' || next == ',' || next == '[';
+            }
+            return true;
+        }
+
+        private char nextSignificantChar(int i) {
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (isCommentStart(i)) {
+                    i = skipComment(i);
+                } else {
+                    return c;
+                }
+            }
+            return 0;
+        }
+
+        private boolean isCommentStart(int i) {
+            return text.charAt(i) == '/' && i + 1 < text.length()
+                    && (text.charAt(i + 1) == '/' || text.charAt(i + 1) == '*');
+        }
+
+        private int skipComment(int i) {
+            if (text.charAt(i + 1) == '/') {
+                int lineEnd = text.indexOf('\n', i);
+                return lineEnd < 0 ? text.length() : lineEnd + 1;
+            }
+            int commentEnd = text.indexOf("*/", i + 2);
+            return commentEnd < 0 ? text.length() : commentEnd + 2;
+        }
+
+        private int skipLiteral(int i) {
+            char quote = text.charAt(i);
+            i++;
+            while (i < text.length() && text.charAt(i) != quote && text.charAt(i) != '\n') {
+                i += text.charAt(i) == '\\' ? 2 : 1;
+            }
+            return Math.min(i + 1, text.length());
+        }
+
+        private static String leadingIdentifier(String declaration) {
+            if (declaration == null) {
+                return "";
+            }
+            int end = 0;
+            while (end < declaration.length() && Character.isJavaIdentifierPart(declaration.charAt(end))) {
+                end++;
+            }
+            return declaration.substring(0, end);
+        }
+    }
+}
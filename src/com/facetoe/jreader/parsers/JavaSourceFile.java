@@ -51,9 +51,11 @@ public class JavaSourceFile {
         for (AbstractJavaObject object : fileContents) {
             if (object instanceof JavaClassOrInterface) {
                 extractClassOrInterfaceData((JavaClassOrInterface) object);
+                ((JavaClassOrInterface) object).sortMembers();
 
             } else if (object instanceof JavaEnum) {
                 allObjects.putAll(((JavaEnum) object).getConstants());
+                ((JavaEnum) object).sortConstants();
 
             } else if (object instanceof JavaAnnotation) {
                 JavaAnnotation annotation = (JavaAnnotation) object;
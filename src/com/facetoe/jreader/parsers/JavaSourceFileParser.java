@@ -17,20 +17,85 @@
 */
 package com.facetoe.jreader.parsers;
 
-import japa.parser.JavaParser;
 import japa.parser.ParseException;
-import japa.parser.ast.CompilationUnit;
-import japa.parser.ast.body.*;
-import japa.parser.ast.visitor.GenericVisitorAdapter;
+import japa.parser.TokenMgrError;
+import org.apache.log4j.Logger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 
 /**
  * This class parses a Java source file and extracts all the classes, interfaces, methods, constructors and fields,
  * encapsulating them in a JavaSourceFile object.
+ * <p/>
+ * The parsing is done by a SourceParser. By default that is JavaParser, which builds a full syntax tree but only
+ * knows the Java 5 grammar, so if it fails the source is parsed again by the outline parser, which only reads
+ * the declarations and doesn't mind newer syntax.
  */
 public class JavaSourceFileParser {
+    private static final Logger log = Logger.getLogger(JavaSourceFileParser.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final SourceParser JAVA_PARSER = new JavaParserSourceParser();
+    private static final OutlineSourceParser OUTLINE_PARSER = new OutlineSourceParser();
+
+    private static volatile SourceParser parser = JAVA_PARSER;
+
+    /**
+     * Get a parser by the name it has in the config.
+     *
+     * @param name "javaparser" or "outline".
+     * @return The parser, or null if there isn't one with that name.
+     */
+    public static SourceParser getParser(String name) {
+        if (JAVA_PARSER.getName().equals(name)) {
+            return JAVA_PARSER;
+        } else if (OUTLINE_PARSER.getName().equals(name)) {
+            return OUTLINE_PARSER;
+        }
+        return null;
+    }
+
+    /**
+     * Get the parser source files are being parsed with.
+     *
+     * @return The parser.
+     */
+    public static SourceParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Set the parser to parse source files with.
+     *
+     * @param sourceParser The parser.
+     */
+    public static void setParser(SourceParser sourceParser) {
+        parser = sourceParser;
+    }
+
+    /**
+     * Check whether the parser does more than parseOutline(), in which case an outline from parseOutline()
+     * is worth replacing with the result of parse().
+     *
+     * @return false if parse() uses the outline parser too.
+     */
+    public static boolean hasFullParser() {
+        return parser != OUTLINE_PARSER;
+    }
+
+    /**
+     * Quickly extract the declarations with the outline parser. This never fails, declarations that can't be
+     * parsed are skipped, so it's used to show something straight away while parse() runs.
+     *
+     * @param source The source code.
+     * @return JavaSourceFile object with every declaration that could be found.
+     */
+    public static JavaSourceFile parseOutline(String source) {
+        return OUTLINE_PARSER.parse(source);
+    }
 
     /**
      * Parses a Java source file and extracts constructor, method, field and enum declarations.
@@ -41,112 +106,45 @@ public class JavaSourceFileParser {
      * @throws IOException
      */
     public static JavaSourceFile parse(InputStream inputStream) throws ParseException, IOException {
-        CompilationUnit cu = null;
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
         try {
-            cu = JavaParser.parse(inputStream);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                contents.write(buffer, 0, read);
+            }
         } finally {
             inputStream.close();
         }
-        return (JavaSourceFile) new SourceFileVisitor().visit(cu, null);
+        return parse(new String(contents.toByteArray(), UTF_8));
     }
 
     /**
-     * This class is responsible for extracting the information out of the file.
+     * Parses Java source and extracts constructor, method, field and enum declarations, along with the offsets
+     * of their names in the source.
+     *
+     * @param source The source code.
+     * @return JavaSourceFile object that contains the result of the parsing.
+     * @throws ParseException If the parser failed and there's nothing to fall back to.
      */
-    private static class SourceFileVisitor extends GenericVisitorAdapter {
-
-        /**
-         * Visits each type declaration and extracts full and partial declarations from it.
-         *
-         * @param cu  Compilation unit returned by JavaParser.parse()
-         * @param arg This isn't used.
-         * @return JavaSourceFile object containing all the data.
-         */
-        @Override
-        public Object visit(CompilationUnit cu, Object arg) {
-            JavaSourceFile sourceFile = new JavaSourceFile();
-            if (cu != null && cu.getTypes() != null) {
-                for (TypeDeclaration type : cu.getTypes()) {
-                    if (type instanceof ClassOrInterfaceDeclaration) {
-                        JavaClassOrInterface javaObj = (JavaClassOrInterface) visit((ClassOrInterfaceDeclaration) type, null);
-                        sourceFile.addObject(javaObj);
-
-                    } else if (type instanceof AnnotationDeclaration) {
-                        JavaAnnotation annotation = (JavaAnnotation) visit((AnnotationDeclaration) type, null);
-                        sourceFile.addObject(annotation);
-
-                    } else if (type instanceof EnumDeclaration) {
-                        JavaEnum javaEnum = (JavaEnum) visit((EnumDeclaration) type, null);
-                        sourceFile.addObject(javaEnum);
-                    }
-                }
-            }
-
-            /* Extract all the data here so we don't forget to later... */
-            sourceFile.extractAllObjectData();
-            return sourceFile;
-        }
-
-        @Override
-        public Object visit(ClassOrInterfaceDeclaration n, Object arg) {
-            JavaClassOrInterface javaObj = new JavaClassOrInterface(n);
-
-            for (BodyDeclaration declaration : n.getMembers()) {
-                if (declaration instanceof MethodDeclaration) {
-                    JavaMethod method = (JavaMethod) visit((MethodDeclaration) declaration, null);
-                    javaObj.addMethod(method);
-
-                } else if (declaration instanceof FieldDeclaration) {
-                    JavaField field = (JavaField) visit((FieldDeclaration) declaration, null);
-                    javaObj.addField(field);
-
-                } else if (declaration instanceof EnumDeclaration) {
-                    JavaEnum javaEnum = (JavaEnum) visit((EnumDeclaration) declaration, null);
-                    javaObj.addEnum(javaEnum);
-
-                } else if (declaration instanceof ConstructorDeclaration) {
-                    JavaConstructor constructor = (JavaConstructor) visit((ConstructorDeclaration) declaration, null);
-                    javaObj.addConstructor(constructor);
-
-                    /* If we have a nested class, recurse through it and each nested class that it contains
-                     * gathering the data.  */
-                } else if (declaration instanceof ClassOrInterfaceDeclaration) {
-                    JavaClassOrInterface classOrInterface = (JavaClassOrInterface) visit((ClassOrInterfaceDeclaration) declaration, null);
-                    javaObj.addNestedClassOrInterface(classOrInterface);
-
-                } else if (declaration instanceof AnnotationDeclaration) {
-                    JavaAnnotation annotation = (JavaAnnotation) visit((AnnotationDeclaration) declaration, null);
-                    javaObj.addAnnotation(annotation);
-                } // The only other things that would be caught here are EmptyTypeDeclaration, EmptyMemberDeclaration and InitializerDeclaration
-
+    public static JavaSourceFile parse(String source) throws ParseException {
+        SourceParser sourceParser = parser;
+        try {
+            return sourceParser.parse(source);
+        } catch (ParseException e) {
+            if (sourceParser == OUTLINE_PARSER) {
+                throw e;
             }
-            return javaObj;
-        }
-
-        @Override
-        public Object visit(ConstructorDeclaration n, Object arg) {
-            return new JavaConstructor(n);
-        }
-
-        @Override
-        public Object visit(EnumDeclaration n, Object arg) {
-            return new JavaEnum(n);
-        }
-
-        @Override
-        public Object visit(FieldDeclaration n, Object arg) {
-            return new JavaField(n);
-        }
-
-        @Override
-        public Object visit(MethodDeclaration n, Object arg) {
-            return new JavaMethod(n);
+            return parseWithFallback(source, e);
+        } catch (TokenMgrError e) {
+            // JavaParser throws this Error rather than a ParseException for characters it can't tokenize,
+            // like the quotes that start a text block.
+            return parseWithFallback(source, e);
         }
+    }
 
-        @Override
-        public Object visit(AnnotationDeclaration n, Object arg) {
-            return new JavaAnnotation(n);
-        }
+    private static JavaSourceFile parseWithFallback(String source, Throwable javaParserFailure) {
+        log.debug("Falling back to the outline parser: " + javaParserFailure.getMessage());
+        return OUTLINE_PARSER.parse(source);
     }
 }
-
@@ -0,0 +1,49 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.parsers;
+
+/**
+ * The fields of a declaration, used to build an AbstractJavaObject without a JavaParser type declaration.
+ * Outlines come from the SourceOutlineCache and from the OutlineSourceParser.
+ */
+class Outline {
+    final int type;
+    final int modifiers;
+    final String declaration;
+    final String fullDeclaration;
+    final int beginLine;
+    final int endLine;
+    final int beginColumn;
+    final int endColumn;
+    final int nameStart;
+    final int nameEnd;
+
+    Outline(int type, int modifiers, String declaration, String fullDeclaration,
+            int beginLine, int endLine, int beginColumn, int endColumn, int nameStart, int nameEnd) {
+        this.type = type;
+        this.modifiers = modifiers;
+        this.declaration = declaration;
+        this.fullDeclaration = fullDeclaration;
+        this.beginLine = beginLine;
+        this.endLine = endLine;
+        this.beginColumn = beginColumn;
+        this.endColumn = endColumn;
+        this.nameStart = nameStart;
+        this.nameEnd = nameEnd;
+    }
+}
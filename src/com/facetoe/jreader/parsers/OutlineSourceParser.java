@@ -0,0 +1,888 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.parsers;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Extracts the outline of a source file from its tokens, without building a syntax tree.
+ * <p/>
+ * Only the declarations are parsed. Method bodies, initializers and field values are skipped by matching
+ * brackets, which makes this several times faster than JavaParser, and means it doesn't mind syntax JavaParser
+ * doesn't know like lambdas, records and modules. A declaration it can't make sense of is skipped up to the next
+ * semicolon or block rather than failing the whole file. Declarations, full declarations and positions come out
+ * the way JavaParser prints them, so the outline is the same whichever parser made it.
+ */
+class OutlineSourceParser implements SourceParser {
+    static final String NAME = "outline";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Extract the declarations from Java source. This never fails, if the source isn't valid Java the
+     * declarations that could be found are returned.
+     *
+     * @param source The source code.
+     * @return JavaSourceFile object that contains the result of the parsing.
+     */
+    @Override
+    public JavaSourceFile parse(String source) {
+        return new Parser(new SourceLines(source)).parseCompilationUnit();
+    }
+
+    /**
+     * Reads the tokens of one source file. Only one token is read ahead, and bodies are skipped a character
+     * at a time rather than being split into tokens.
+     */
+    private static class Parser {
+        // What sort of token the current token is.
+        private static final int EOF = 0;
+        private static final int IDENTIFIER = 1;
+        private static final int LITERAL = 2;
+        private static final int SYMBOL = 3;
+
+        // The order JavaParser prints modifiers in.
+        private static final int[] MODIFIER_ORDER = {Modifier.PRIVATE, Modifier.PROTECTED, Modifier.PUBLIC,
+                Modifier.ABSTRACT, Modifier.STATIC, Modifier.FINAL, Modifier.NATIVE, Modifier.STRICT,
+                Modifier.SYNCHRONIZED, Modifier.TRANSIENT, Modifier.VOLATILE};
+
+        private static final HashMap<String, Integer> MODIFIERS = new HashMap<String, Integer>();
+
+        static {
+            for (int modifier : MODIFIER_ORDER) {
+                MODIFIERS.put(Modifier.toString(modifier), modifier);
+            }
+            // Newer modifiers JavaParser doesn't have a flag for.
+            MODIFIERS.put("default", 0);
+            MODIFIERS.put("sealed", 0);
+        }
+
+        private final SourceLines lines;
+        private final String text;
+
+        // Where scanning continues from.
+        private int pos;
+
+        // The current token.
+        private int kind;
+        private int start;
+        private int end;
+
+        // The offset of the last character of the token before the current one.
+        private int previousLast;
+
+        // The token after the current one, if it has been looked at.
+        private boolean peeked;
+        private int peekKind;
+        private int peekStart;
+        private int peekEnd;
+
+        Parser(SourceLines lines) {
+            this.lines = lines;
+            text = lines.getText();
+        }
+
+        JavaSourceFile parseCompilationUnit() {
+            JavaSourceFile sourceFile = new JavaSourceFile();
+            AbstractJavaObject lastType = null;
+            next();
+            while (kind != EOF) {
+                int declarationStart = start;
+                int modifiers = parseModifiers();
+                if (isTypeDeclaration()) {
+                    AbstractJavaObject type = parseTypeDeclaration(modifiers, declarationStart);
+                    if (type != null) {
+                        sourceFile.addObject(type);
+                        lastType = type;
+                    }
+                } else if (isSymbol('}')) {
+                    next();
+                } else if (lastType instanceof JavaClassOrInterface && !isWord("package") && !isWord("import")) {
+                    // A stray closing brace ended the class early, what follows is most likely more of its members.
+                    AbstractJavaObject member = parseMember(modifiers, declarationStart);
+                    if (member != null) {
+                        ((JavaClassOrInterface) lastType).addMember(member);
+                    }
+                } else {
+                    // Package, import and module declarations.
+                    skipStatement();
+                }
+            }
+
+            /* Extract all the data here so we don't forget to later... */
+            sourceFile.extractAllObjectData();
+            return sourceFile;
+        }
+
+        /**
+         * Parse a class, interface, record, enum or annotation declaration. The current token is the keyword.
+         *
+         * @return The declaration, or null if it couldn't be parsed.
+         */
+        private AbstractJavaObject parseTypeDeclaration(int modifiers, int declarationStart) {
+            String keyword;
+            if (isSymbol('@')) {
+                next();
+                keyword = "@interface";
+            } else {
+                keyword = tokenText();
+            }
+            next();
+            if (kind != IDENTIFIER) {
+                skipStatement();
+                return null;
+            }
+            String name = tokenText();
+            int nameStart = start;
+            int nameEnd = end;
+            next();
+
+            // Skip type parameters, record components and the extends, implements and permits clauses.
+            while (kind != EOF && !isSymbol('{') && !isSymbol(';') && !isSymbol('}')) {
+                if (isSymbol('(')) {
+                    skipParentheses();
+                }
+                next();
+            }
+            if (!isSymbol('{')) {
+                skipStatement();
+                return null;
+            }
+
+            String fullDeclaration = modifiersText(modifiers) + keyword + " " + name + " ";
+            if (keyword.equals("enum")) {
+                ArrayList<JavaEnumConstantDeclaration> constants = parseEnumBody();
+                JavaEnum javaEnum = new JavaEnum(outline(AbstractJavaObject.ENUM, modifiers, name, fullDeclaration,
+                        declarationStart, closeBody(), nameStart, nameEnd));
+                for (JavaEnumConstantDeclaration constant : constants) {
+                    javaEnum.addConstant(constant);
+                }
+                return javaEnum;
+
+            } else if (keyword.equals("@interface")) {
+                skipBlock();
+                return new JavaAnnotation(outline(AbstractJavaObject.ANNOTATION, modifiers, name, fullDeclaration,
+                        declarationStart, closeBody(), nameStart, nameEnd));
+            }
+
+            int type = keyword.equals("interface") ? AbstractJavaObject.INTERFACE : AbstractJavaObject.CLASS;
+            ArrayList<AbstractJavaObject> members = parseClassBody();
+            JavaClassOrInterface classOrInterface = new JavaClassOrInterface(outline(type, modifiers, name,
+                    fullDeclaration, declarationStart, closeBody(), nameStart, nameEnd));
+            for (AbstractJavaObject member : members) {
+                classOrInterface.addMember(member);
+            }
+            return classOrInterface;
+        }
+
+        /**
+         * Parse the members of a class, interface or record. The current token is the opening brace, and
+         * afterwards it is the closing brace.
+         */
+        private ArrayList<AbstractJavaObject> parseClassBody() {
+            ArrayList<AbstractJavaObject> members = new ArrayList<AbstractJavaObject>();
+            next();
+            while (kind != EOF && !isSymbol('}')) {
+                if (isSymbol(';')) {
+                    next();
+                } else {
+                    AbstractJavaObject member = parseMember();
+                    if (member != null) {
+                        members.add(member);
+                    }
+                }
+            }
+            return members;
+        }
+
+        private AbstractJavaObject parseMember() {
+            int declarationStart = start;
+            return parseMember(parseModifiers(), declarationStart);
+        }
+
+        /**
+         * Parse a member whose annotations and modifiers have been read.
+         *
+         * @return The member, or null if it's an initializer or couldn't be parsed.
+         */
+        private AbstractJavaObject parseMember(int modifiers, int declarationStart) {
+            if (isSymbol('{')) {
+                // An initializer.
+                skipBlock();
+                next();
+                return null;
+            }
+            if (isTypeDeclaration()) {
+                return parseTypeDeclaration(modifiers, declarationStart);
+            }
+
+            ArrayList<String> typeParameters = null;
+            if (isSymbol('<')) {
+                typeParameters = new ArrayList<String>();
+                collectTypeArguments(typeParameters);
+            }
+            if (kind != IDENTIFIER) {
+                skipStatement();
+                return null;
+            }
+
+            peek();
+            if (peekIsSymbol('(')) {
+                return parseMethodOrConstructor(modifiers, null, typeParameters, declarationStart);
+            }
+            if (peekIsSymbol('{')) {
+                // A compact record constructor.
+                next();
+                skipBlock();
+                next();
+                return null;
+            }
+
+            ArrayList<String> type = new ArrayList<String>();
+            if (!parseType(type) || kind != IDENTIFIER) {
+                skipStatement();
+                return null;
+            }
+            peek();
+            if (peekIsSymbol('(')) {
+                return parseMethodOrConstructor(modifiers, type, typeParameters, declarationStart);
+            }
+            return parseField(modifiers, type, declarationStart);
+        }
+
+        /**
+         * Parse a method, or a constructor if there's no return type. The current token is the name.
+         */
+        private AbstractJavaObject parseMethodOrConstructor(int modifiers, ArrayList<String> returnType,
+                                                            ArrayList<String> typeParameters, int declarationStart) {
+            String name = tokenText();
+            int nameStart = start;
+            int nameEnd = end;
+            next();
+            String parameters = join(parseParameters(), ", ");
+
+            // Old style array dimensions after the parameters.
+            while (isSymbol('[') || isSymbol(']')) {
+                next();
+            }
+
+            ArrayList<String> exceptions = new ArrayList<String>();
+            if (isWord("throws")) {
+                next();
+                while (kind != EOF && !isSymbol('{') && !isSymbol(';') && !isSymbol('}') && !isWord("default")) {
+                    exceptions.add(tokenText());
+                    next();
+                }
+            }
+
+            int declarationEnd;
+            if (isSymbol('{')) {
+                skipBlock();
+                declarationEnd = start;
+                next();
+            } else if (isSymbol(';')) {
+                declarationEnd = start;
+                next();
+            } else if (isWord("default")) {
+                declarationEnd = skipExpression();
+            } else {
+                declarationEnd = previousLast;
+            }
+
+            // JavaParser prints the parameter list with brackets which are then swapped for parentheses.
+            String declaration = (name + "(" + parameters + ")").replace('[', '(').replace(']', ')');
+            if (returnType == null) {
+                String fullDeclaration = modifiersText(modifiers)
+                        + (typeParameters != null ? join(typeParameters) + " " : "")
+                        + name + "(" + parameters + ")"
+                        + (exceptions.isEmpty() ? "" : " throws " + join(exceptions))
+                        + " ";
+                return new JavaConstructor(outline(AbstractJavaObject.CONSTRUCTOR, modifiers, declaration,
+                        fullDeclaration, declarationStart, declarationEnd, nameStart, nameEnd));
+            }
+
+            String fullDeclaration = modifiersText(modifiers) + join(returnType) + " " + name + "(" + parameters + ")";
+            return new JavaMethod(outline(AbstractJavaObject.METHOD, modifiers, declaration,
+                    fullDeclaration, declarationStart, declarationEnd, nameStart, nameEnd));
+        }
+
+        /**
+         * Parse a parameter list. The current token is the opening parenthesis, afterwards it is the token
+         * after the closing one.
+         */
+        private ArrayList<String> parseParameters() {
+            ArrayList<String> parameters = new ArrayList<String>();
+            ArrayList<String> tokens = new ArrayList<String>();
+            int depth = 0;
+            next();
+            while (kind != EOF && !isSymbol('{') && !isSymbol(';') && !isSymbol('}')) {
+                if (depth == 0 && (isSymbol(')') || isSymbol(','))) {
+                    if (!tokens.isEmpty()) {
+                        parameters.add(join(tokens));
+                        tokens.clear();
+                    }
+                    boolean last = isSymbol(')');
+                    next();
+                    if (last) {
+                        break;
+                    }
+                } else {
+                    if (isSymbol('(') || isSymbol('<')) {
+                        depth++;
+                    } else if (isSymbol(')') || isSymbol('>')) {
+                        depth--;
+                    }
+                    tokens.add(tokenText());
+                    next();
+                }
+            }
+            if (!tokens.isEmpty()) {
+                // The closing parenthesis is missing.
+                parameters.add(join(tokens));
+            }
+            return parameters;
+        }
+
+        /**
+         * Parse a field. The current token is the name of the first variable. The declaration is the last
+         * variable before the first one that has a value, like JavaParser makes it.
+         */
+        private AbstractJavaObject parseField(int modifiers, ArrayList<String> type, int declarationStart) {
+            StringBuilder variables = new StringBuilder();
+            int nameStart = -1;
+            int nameEnd = -1;
+            int declarationEnd;
+            while (true) {
+                if (kind != IDENTIFIER) {
+                    declarationEnd = skipExpression();
+                    break;
+                }
+                if (variables.length() > 0) {
+                    variables.append(", ");
+                }
+                variables.append(tokenText());
+                nameStart = start;
+                nameEnd = end;
+                next();
+                while (isSymbol('[') || isSymbol(']')) {
+                    variables.append(tokenText());
+                    next();
+                }
+
+                if (isSymbol(',')) {
+                    next();
+                } else if (isSymbol(';')) {
+                    declarationEnd = start;
+                    next();
+                    break;
+                } else {
+                    declarationEnd = skipExpression();
+                    break;
+                }
+            }
+
+            String fullDeclaration = modifiersText(modifiers) + join(type) + " " + variables;
+            String declaration = fullDeclaration.substring(fullDeclaration.lastIndexOf(' ') + 1);
+            return new JavaField(outline(AbstractJavaObject.FIELD, modifiers, declaration,
+                    fullDeclaration, declarationStart, declarationEnd, nameStart, nameEnd));
+        }
+
+        /**
+         * Parse the constants of an enum. The current token is the opening brace, and afterwards it is the
+         * closing brace. The rest of the body is skipped, JavaParser's outline of an enum only has its constants.
+         */
+        private ArrayList<JavaEnumConstantDeclaration> parseEnumBody() {
+            ArrayList<JavaEnumConstantDeclaration> constants = new ArrayList<JavaEnumConstantDeclaration>();
+            next();
+            while (kind != EOF && !isSymbol('}') && !isSymbol(';')) {
+                int constantStart = start;
+                parseModifiers();
+                if (kind != IDENTIFIER) {
+                    break;
+                }
+                String name = tokenText();
+                int nameStart = start;
+                int nameEnd = end;
+                int constantEnd = end - 1;
+                next();
+                if (isSymbol('(')) {
+                    skipParentheses();
+                    constantEnd = start;
+                    next();
+                }
+                if (isSymbol('{')) {
+                    skipBlock();
+                    constantEnd = start;
+                    next();
+                }
+                constants.add(new JavaEnumConstantDeclaration(outline(AbstractJavaObject.ENUM, -1, name, name,
+                        constantStart, constantEnd, nameStart, nameEnd)));
+
+                if (!isSymbol(',')) {
+                    break;
+                }
+                next();
+            }
+
+            while (kind != EOF && !isSymbol('}')) {
+                if (isSymbol('{')) {
+                    skipBlock();
+                }
+                next();
+            }
+            return constants;
+        }
+
+        /**
+         * Read a type, adding its tokens to the list. Afterwards the current token is the one after the type.
+         *
+         * @return false if there's no type here.
+         */
+        private boolean parseType(ArrayList<String> tokens) {
+            while (true) {
+                if (kind != IDENTIFIER) {
+                    return false;
+                }
+                tokens.add(tokenText());
+                next();
+                if (isSymbol('<')) {
+                    collectTypeArguments(tokens);
+                }
+                if (!isSymbol('.')) {
+                    break;
+                }
+                tokens.add(tokenText());
+                next();
+            }
+
+            while (isSymbol('[')) {
+                peek();
+                if (!peekIsSymbol(']')) {
+                    break;
+                }
+                tokens.add("[");
+                tokens.add("]");
+                next();
+                next();
+            }
+            return true;
+        }
+
+        /**
+         * Add the tokens between a pair of angle brackets, including the brackets, to the list.
+         */
+        private void collectTypeArguments(ArrayList<String> tokens) {
+            int depth = 0;
+            while (kind != EOF && !isSymbol(';') && !isSymbol('{') && !isSymbol('}')) {
+                if (isSymbol('<')) {
+                    depth++;
+                } else if (isSymbol('>')) {
+                    depth--;
+                }
+                tokens.add(tokenText());
+                next();
+                if (depth == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Skip annotations and read modifiers.
+         *
+         * @return The modifier flags.
+         */
+        private int parseModifiers() {
+            int modifiers = 0;
+            while (true) {
+                if (isSymbol('@')) {
+                    peek();
+                    if (peekIsWord("interface")) {
+                        return modifiers;
+                    }
+                    skipAnnotation();
+                } else if (kind == IDENTIFIER) {
+                    if (isWord("non") && text.startsWith("non-sealed", start)) {
+                        next();
+                        next();
+                        next();
+                        continue;
+                    }
+                    Integer modifier = MODIFIERS.get(tokenText());
+                    if (modifier == null) {
+                        return modifiers;
+                    }
+                    modifiers |= modifier;
+                    next();
+                } else {
+                    return modifiers;
+                }
+            }
+        }
+
+        private void skipAnnotation() {
+            next();
+            while (kind == IDENTIFIER) {
+                next();
+                if (!isSymbol('.')) {
+                    break;
+                }
+                next();
+            }
+            if (isSymbol('(')) {
+                skipParentheses();
+                next();
+            }
+        }
+
+        private boolean isTypeDeclaration() {
+            if (kind == IDENTIFIER) {
+                if (isWord("class") || isWord("interface") || isWord("enum")) {
+                    return true;
+                }
+                if (isWord("record")) {
+                    // record is only a keyword when it's followed by a name and components or type parameters.
+                    peek();
+                    if (peekKind == IDENTIFIER) {
+                        int next = skipWhitespaceAndComments(peekEnd);
+                        return next < text.length() && (text.charAt(next) == '(' || text.charAt(next) == '<');
+                    }
+                }
+                return false;
+            }
+            if (isSymbol('@')) {
+                peek();
+                return peekIsWord("interface");
+            }
+            return false;
+        }
+
+        /**
+         * Skip to the end of a statement: past a semicolon, past a block, or up to the brace that closes
+         * the enclosing body. Always moves past at least one token unless the current token is that brace.
+         */
+        private void skipStatement() {
+            while (kind != EOF && !isSymbol('}')) {
+                if (isSymbol(';')) {
+                    next();
+                    return;
+                }
+                if (isSymbol('{')) {
+                    skipBlock();
+                    next();
+                    return;
+                }
+                next();
+            }
+        }
+
+        /**
+         * Skip an expression up to and past the semicolon that ends it, skipping any blocks in it.
+         *
+         * @return The offset of the semicolon, or of the end of the expression if there isn't one.
+         */
+        private int skipExpression() {
+            int depth = 0;
+            while (kind != EOF) {
+                if (isSymbol('{')) {
+                    skipBlock();
+                } else if (isSymbol('(') || isSymbol('[')) {
+                    depth++;
+                } else if (isSymbol(')') || isSymbol(']')) {
+                    depth--;
+                } else if (isSymbol('}')) {
+                    return previousLast;
+                } else if (isSymbol(';') && depth <= 0) {
+                    int semicolon = start;
+                    next();
+                    return semicolon;
+                }
+                next();
+            }
+            return previousLast;
+        }
+
+        /**
+         * The current token is the opening parenthesis. Afterwards it is the closing one.
+         */
+        private void skipParentheses() {
+            int depth = 0;
+            while (kind != EOF) {
+                if (isSymbol('(')) {
+                    depth++;
+                } else if (isSymbol(')') && --depth == 0) {
+                    return;
+                } else if (isSymbol('{')) {
+                    skipBlock();
+                }
+                next();
+            }
+        }
+
+        /**
+         * The current token is an opening brace. This finds the matching closing brace without splitting
+         * what's in between into tokens, and makes it the current token.
+         */
+        private void skipBlock() {
+            int depth = 1;
+            int i = end;
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                if (c == '{') {
+                    depth++;
+                    i++;
+                } else if (c == '}') {
+                    if (--depth == 0) {
+                        break;
+                    }
+                    i++;
+                } else if (c == '"' || c == '\'') {
+                    i = skipLiteral(i);
+                } else if (c == '/' && isCommentStart(i)) {
+                    i = skipComment(i);
+                } else {
+                    i++;
+                }
+            }
+
+            previousLast = end - 1;
+            peeked = false;
+            if (i < text.length()) {
+                kind = SYMBOL;
+                start = i;
+                end = i + 1;
+            } else {
+                kind = EOF;
+                start = text.length();
+                end = text.length();
+            }
+            pos = end;
+        }
+
+        /**
+         * The current token is the brace that closes a type body.
+         *
+         * @return The offset of the brace.
+         */
+        private int closeBody() {
+            int brace = kind == EOF ? text.length() : start;
+            next();
+            return brace;
+        }
+
+        private void next() {
+            previousLast = end - 1;
+            if (peeked) {
+                kind = peekKind;
+                start = peekStart;
+                end = peekEnd;
+                peeked = false;
+            } else {
+                scan();
+            }
+        }
+
+        private void peek() {
+            if (peeked) {
+                return;
+            }
+            int currentKind = kind;
+            int currentStart = start;
+            int currentEnd = end;
+            scan();
+            peekKind = kind;
+            peekStart = start;
+            peekEnd = end;
+            kind = currentKind;
+            start = currentStart;
+            end = currentEnd;
+            peeked = true;
+        }
+
+        private void scan() {
+            pos = skipWhitespaceAndComments(pos);
+            start = pos;
+            if (pos >= text.length()) {
+                kind = EOF;
+            } else {
+                char c = text.charAt(pos);
+                if (Character.isJavaIdentifierStart(c)) {
+                    pos++;
+                    while (pos < text.length() && Character.isJavaIdentifierPart(text.charAt(pos))) {
+                        pos++;
+                    }
+                    kind = IDENTIFIER;
+                } else if (c == '"' || c == '\'') {
+                    pos = skipLiteral(pos);
+                    kind = LITERAL;
+                } else if (Character.isDigit(c)) {
+                    pos = skipNumber(pos);
+                    kind = LITERAL;
+                } else {
+                    pos += text.startsWith("...", pos) ? 3 : 1;
+                    kind = SYMBOL;
+                }
+            }
+            end = pos;
+        }
+
+        private int skipWhitespaceAndComments(int i) {
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '/' && isCommentStart(i)) {
+                    i = skipComment(i);
+                } else {
+                    break;
+                }
+            }
+            return i;
+        }
+
+        private boolean isCommentStart(int i) {
+            return i + 1 < text.length() && (text.charAt(i + 1) == '/' || text.charAt(i + 1) == '*');
+        }
+
+        private int skipComment(int i) {
+            if (text.charAt(i + 1) == '/') {
+                int lineEnd = text.indexOf('\n', i);
+                return lineEnd < 0 ? text.length() : lineEnd + 1;
+            }
+            int commentEnd = text.indexOf("*/", i + 2);
+            return commentEnd < 0 ? text.length() : commentEnd + 2;
+        }
+
+        private int skipLiteral(int i) {
+            if (text.startsWith("\"\"\"", i)) {
+                // A text block.
+                i += 3;
+                while (i < text.length() && !text.startsWith("\"\"\"", i)) {
+                    i += text.charAt(i) == '\\' ? 2 : 1;
+                }
+                return Math.min(i + 3, text.length());
+            }
+            char quote = text.charAt(i);
+            i++;
+            while (i < text.length() && text.charAt(i) != quote && text.charAt(i) != '\n') {
+                i += text.charAt(i) == '\\' ? 2 : 1;
+            }
+            return Math.min(i + 1, text.length());
+        }
+
+        private int skipNumber(int i) {
+            i++;
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                char previous = text.charAt(i - 1);
+                if (Character.isJavaIdentifierPart(c) || c == '.'
+                        || ((c == '+' || c == '-') && (previous == 'e' || previous == 'E' || previous == 'p' || previous == 'P'))) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            return i;
+        }
+
+        private boolean isSymbol(char c) {
+            return kind == SYMBOL && end - start == 1 && text.charAt(start) == c;
+        }
+
+        private boolean isWord(String word) {
+            return kind == IDENTIFIER && end - start == word.length() && text.startsWith(word, start);
+        }
+
+        private boolean peekIsSymbol(char c) {
+            return peekKind == SYMBOL && peekEnd - peekStart == 1 && text.charAt(peekStart) == c;
+        }
+
+        private boolean peekIsWord(String word) {
+            return peekKind == IDENTIFIER && peekEnd - peekStart == word.length() && text.startsWith(word, peekStart);
+        }
+
+        private String tokenText() {
+            return text.substring(start, end);
+        }
+
+        private Outline outline(int type, int modifiers, String declaration, String fullDeclaration,
+                                int declarationStart, int declarationEnd, int nameStart, int nameEnd) {
+            int beginLine = lines.getLine(declarationStart);
+            int endLine = lines.getLine(declarationEnd);
+            return new Outline(type, modifiers, declaration, fullDeclaration,
+                    beginLine, endLine, lines.getColumn(beginLine, declarationStart), lines.getColumn(endLine, declarationEnd),
+                    nameStart, nameEnd);
+        }
+
+        private static String modifiersText(int modifiers) {
+            StringBuilder text = new StringBuilder();
+            for (int modifier : MODIFIER_ORDER) {
+                if ((modifiers & modifier) != 0) {
+                    text.append(Modifier.toString(modifier)).append(' ');
+                }
+            }
+            return text.toString();
+        }
+
+        private static String join(ArrayList<String> strings, String separator) {
+            StringBuilder joined = new StringBuilder();
+            for (String string : strings) {
+                if (joined.length() > 0) {
+                    joined.append(separator);
+                }
+                joined.append(string);
+            }
+            return joined.toString();
+        }
+
+        /**
+         * Join tokens with spaces where JavaParser would print them.
+         */
+        private static String join(ArrayList<String> tokens) {
+            StringBuilder joined = new StringBuilder();
+            String previous = null;
+            for (String token : tokens) {
+                if (previous != null && needsSpace(previous, token)) {
+                    joined.append(' ');
+                }
+                joined.append(token);
+                previous = token;
+            }
+            return joined.toString();
+        }
+
+        private static boolean needsSpace(String previous, String token) {
+            if (token.equals("=") || previous.equals("=")) {
+                return true;
+            }
+            char first = token.charAt(0);
+            boolean startsWord = Character.isJavaIdentifierPart(first) || first == '"' || first == '\''
+                    || first == '@' || first == '?' || first == '&';
+            char last = previous.charAt(previous.length() - 1);
+            boolean endsWord = Character.isJavaIdentifierPart(last) || last == '"' || last == '\''
+                    || last == ')' || last == ']' || last == '>' || last == ',' || last == '&' || last == '?'
+                    || previous.equals("...");
+            return startsWord && endsWord;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.parsers;
+
+/**
+ * Converts between offsets in a source file and the lines and columns JavaParser reports.
+ * <p/>
+ * Line breaks are normalized to a single '\n' so offsets line up with a Swing document of the source,
+ * and tabs reach the next multiple of TAB_SIZE columns the way JavaParser counts them.
+ */
+class SourceLines {
+    // JavaParser counts a tab as reaching the next multiple of this many columns.
+    private static final int TAB_SIZE = 8;
+
+    private final String text;
+    private final int[] lineStarts;
+
+    SourceLines(String source) {
+        text = source.indexOf('\r') < 0 ? source : source.replace("\r\n", "\n").replace('\r', '\n');
+
+        int lineCount = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lineCount++;
+            }
+        }
+        lineStarts = new int[lineCount];
+        int line = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lineStarts[line++] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Get the source with its line breaks normalized.
+     *
+     * @return The text the offsets refer to.
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Convert a line and column to an offset.
+     *
+     * @return The offset, or -1 if the line or column is out of range.
+     */
+    int getOffset(int line, int column) {
+        if (line < 1 || line > lineStarts.length || column < 1) {
+            return -1;
+        }
+        int lineStart = lineStarts[line - 1];
+        int lineEnd = getLineEnd(line);
+        int currentColumn = 0;
+        for (int i = lineStart; i < lineEnd; i++) {
+            currentColumn = nextColumn(currentColumn, text.charAt(i));
+            if (currentColumn >= column) {
+                return i;
+            }
+        }
+        return lineEnd;
+    }
+
+    /**
+     * Get the line an offset is on, starting from 1.
+     */
+    int getLine(int offset) {
+        int low = 0;
+        int high = lineStarts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (lineStarts[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    /**
+     * Get the column of the character at an offset on the given line, starting from 1.
+     */
+    int getColumn(int line, int offset) {
+        int currentColumn = 0;
+        int end = Math.min(offset, getLineEnd(line) - 1);
+        for (int i = lineStarts[line - 1]; i <= end; i++) {
+            currentColumn = nextColumn(currentColumn, text.charAt(i));
+        }
+        return Math.max(currentColumn, 1);
+    }
+
+    private int getLineEnd(int line) {
+        return line < lineStarts.length ? lineStarts[line] - 1 : text.length();
+    }
+
+    private static int nextColumn(int column, char c) {
+        if (c == '\t') {
+            return column + TAB_SIZE - (column % TAB_SIZE);
+        }
+        return column + 1;
+    }
+}
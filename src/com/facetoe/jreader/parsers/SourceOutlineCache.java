@@ -0,0 +1,386 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.parsers;
+
+import com.facetoe.jreader.helpers.SourceFileLoader;
+import com.facetoe.jreader.helpers.Util;
+import japa.parser.ParseException;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the outline JavaSourceFileParser extracts from a source file so reopening the file doesn't parse it again.
+ * Recently opened files are kept in memory and every outline is also written to its own file in the cache directory.
+ * An outline is only used if the source file still has the same path, modification time and size, and it was
+ * made by the parser JavaSourceFileParser is currently using.
+ * <p/>
+ * Cache file layout, all integers big endian:
+ * <pre>
+ *   int magic, int version, UTF parser name
+ *   UTF source path, long modification time, long size
+ *   int object count, then each top level object
+ * </pre>
+ * Each object is a kind byte, its type, modifiers, declaration, full declaration, begin/end line/column and
+ * name offsets, followed by the objects it contains.
+ */
+public class SourceOutlineCache {
+    private static final Logger log = Logger.getLogger(SourceOutlineCache.class);
+
+    private static final int MAGIC = 0x4A52534F; // "JRSO"
+    private static final int VERSION = 3;
+    private static final String CACHE_FILE_EXTENSION = ".outline";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Which class each cached object should be restored as.
+    private static final byte CLASS_OR_INTERFACE = 0;
+    private static final byte METHOD = 1;
+    private static final byte CONSTRUCTOR = 2;
+    private static final byte FIELD = 3;
+    private static final byte ENUM = 4;
+    private static final byte ENUM_CONSTANT = 5;
+    private static final byte ANNOTATION = 6;
+
+    private final File cacheDir;
+    private final LinkedHashMap<String, CachedOutline> recentFiles;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheDir       Where to write the cached outlines. It's created if it doesn't exist.
+     * @param maxRecentFiles How many outlines to keep in memory.
+     */
+    public SourceOutlineCache(File cacheDir, final int maxRecentFiles) {
+        this.cacheDir = cacheDir;
+        recentFiles = new LinkedHashMap<String, CachedOutline>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedOutline> eldest) {
+                return size() > maxRecentFiles;
+            }
+        };
+    }
+
+    /**
+     * Get the outline of a source file, only parsing it if there's no usable cached outline.
+     *
+     * @param file The Java source file.
+     * @return The outline of the file.
+     * @throws ParseException If the file had to be parsed and it isn't valid Java.
+     * @throws IOException    If the file couldn't be read.
+     */
+    public JavaSourceFile parse(File file) throws ParseException, IOException {
+        return parse(file, null);
+    }
+
+    /**
+     * Get the outline of a source file that has already been read, only parsing it if there's no usable cached outline.
+     *
+     * @param file   The Java source file.
+     * @param source The contents of the file, or null to read them if they're needed.
+     * @return The outline of the file.
+     * @throws ParseException If the file had to be parsed and it isn't valid Java.
+     * @throws IOException    If the file couldn't be read.
+     */
+    public JavaSourceFile parse(File file, String source) throws ParseException, IOException {
+        JavaSourceFile sourceFile = getCached(file);
+        if (sourceFile != null) {
+            return sourceFile;
+        }
+
+        String path = file.getCanonicalPath();
+        long modified = file.lastModified();
+        long length = file.length();
+        if (source == null) {
+            source = SourceFileLoader.read(file, UTF_8);
+        }
+        sourceFile = JavaSourceFileParser.parse(source);
+        File cacheFile = getCacheFile(path);
+        try {
+            write(cacheFile, path, modified, length, sourceFile);
+        } catch (IOException e) {
+            log.warn("Failed to write outline cache file " + cacheFile.getAbsolutePath(), e);
+        }
+
+        synchronized (recentFiles) {
+            recentFiles.put(path, new CachedOutline(modified, length, sourceFile));
+        }
+        return sourceFile;
+    }
+
+    /**
+     * Get the outline of a source file only if it's cached, without parsing the file.
+     *
+     * @param file The Java source file.
+     * @return The cached outline, or null if there isn't a usable one.
+     * @throws IOException If the path of the file couldn't be resolved.
+     */
+    public JavaSourceFile getCached(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        long modified = file.lastModified();
+        long length = file.length();
+
+        JavaSourceFile sourceFile = getRecent(path, modified, length);
+        if (sourceFile != null) {
+            return sourceFile;
+        }
+
+        File cacheFile = getCacheFile(path);
+        try {
+            sourceFile = read(cacheFile, path, modified, length);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable outline cache file " + cacheFile.getAbsolutePath(), e);
+        }
+        if (sourceFile != null) {
+            synchronized (recentFiles) {
+                recentFiles.put(path, new CachedOutline(modified, length, sourceFile));
+            }
+        }
+        return sourceFile;
+    }
+
+    private JavaSourceFile getRecent(String path, long modified, long length) {
+        synchronized (recentFiles) {
+            CachedOutline cached = recentFiles.get(path);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.modified != modified || cached.length != length) {
+                recentFiles.remove(path);
+                return null;
+            }
+            return cached.sourceFile;
+        }
+    }
+
+    /**
+     * Each source file gets its own cache file named after a hash of its path.
+     */
+    File getCacheFile(String path) {
+        return new File(cacheDir, Util.md5Hex(path) + CACHE_FILE_EXTENSION);
+    }
+
+    /**
+     * Read a cached outline.
+     *
+     * @return The outline, or null if there isn't one for this version of the file.
+     */
+    private static JavaSourceFile read(File cacheFile, String path, long modified, long length) throws IOException {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !in.readUTF().equals(JavaSourceFileParser.getParser().getName())) {
+                return null;
+            }
+            if (!in.readUTF().equals(path) || in.readLong() != modified || in.readLong() != length) {
+                return null;
+            }
+
+            JavaSourceFile sourceFile = new JavaSourceFile();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                sourceFile.addObject(readObject(in));
+            }
+            sourceFile.extractAllObjectData();
+            return sourceFile;
+        } catch (EOFException e) {
+            throw new IOException("Outline cache file is truncated", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static AbstractJavaObject readObject(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        Outline outline = readOutline(in);
+        switch (kind) {
+            case CLASS_OR_INTERFACE:
+                JavaClassOrInterface classOrInterface = new JavaClassOrInterface(outline);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    AbstractJavaObject object = readObject(in);
+                    if (!classOrInterface.addMember(object)) {
+                        throw new IOException("Unexpected member in outline cache file: " + object.getClass());
+                    }
+                }
+                return classOrInterface;
+
+            case ENUM:
+                JavaEnum javaEnum = new JavaEnum(outline);
+                int constantCount = in.readInt();
+                for (int i = 0; i < constantCount; i++) {
+                    if (in.readByte() != ENUM_CONSTANT) {
+                        throw new IOException("Unexpected enum constant in outline cache file");
+                    }
+                    javaEnum.addConstant(new JavaEnumConstantDeclaration(readOutline(in)));
+                }
+                return javaEnum;
+
+            case METHOD:
+                return new JavaMethod(outline);
+            case CONSTRUCTOR:
+                return new JavaConstructor(outline);
+            case FIELD:
+                return new JavaField(outline);
+            case ANNOTATION:
+                return new JavaAnnotation(outline);
+            default:
+                throw new IOException("Unknown object kind in outline cache file: " + kind);
+        }
+    }
+
+    /**
+     * Write an outline to a temporary file then move it over the cache file, so a reader never sees half of it.
+     */
+    private void write(File cacheFile, String path, long modified, long length, JavaSourceFile sourceFile) throws IOException {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            throw new IOException("Failed to create " + cacheDir.getAbsolutePath());
+        }
+
+        File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(JavaSourceFileParser.getParser().getName());
+                out.writeUTF(path);
+                out.writeLong(modified);
+                out.writeLong(length);
+                writeObjects(out, sourceFile.getFileContents());
+            } finally {
+                out.close();
+            }
+            Util.moveOver(tempFile, cacheFile);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Failed to delete " + tempFile.getAbsolutePath());
+            }
+        }
+    }
+
+    private static void writeObjects(DataOutputStream out, Collection<? extends AbstractJavaObject> objects) throws IOException {
+        out.writeInt(objects.size());
+        for (AbstractJavaObject object : objects) {
+            writeObject(out, object);
+        }
+    }
+
+    private static void writeObject(DataOutputStream out, AbstractJavaObject object) throws IOException {
+        if (object instanceof JavaClassOrInterface) {
+            JavaClassOrInterface classOrInterface = (JavaClassOrInterface) object;
+            writeOutline(out, CLASS_OR_INTERFACE, object);
+            out.writeInt(classOrInterface.getNestedClasses().size()
+                    + classOrInterface.getMethods().size()
+                    + classOrInterface.getConstructors().size()
+                    + classOrInterface.getEnums().size()
+                    + classOrInterface.getFields().size()
+                    + classOrInterface.getAnnotations().size());
+            writeMembers(out, classOrInterface.getNestedClasses().values());
+            writeMembers(out, classOrInterface.getMethods().values());
+            writeMembers(out, classOrInterface.getConstructors().values());
+            writeMembers(out, classOrInterface.getEnums().values());
+            writeMembers(out, classOrInterface.getFields().values());
+            writeMembers(out, classOrInterface.getAnnotations().values());
+
+        } else if (object instanceof JavaEnum) {
+            writeOutline(out, ENUM, object);
+            Collection<JavaEnumConstantDeclaration> constants = ((JavaEnum) object).getConstants().values();
+            out.writeInt(constants.size());
+            for (JavaEnumConstantDeclaration constant : constants) {
+                writeOutline(out, ENUM_CONSTANT, constant);
+            }
+
+        } else if (object instanceof JavaMethod) {
+            writeOutline(out, METHOD, object);
+        } else if (object instanceof JavaConstructor) {
+            writeOutline(out, CONSTRUCTOR, object);
+        } else if (object instanceof JavaField) {
+            writeOutline(out, FIELD, object);
+        } else if (object instanceof JavaAnnotation) {
+            writeOutline(out, ANNOTATION, object);
+        } else {
+            throw new IOException("Can't cache " + object.getClass());
+        }
+    }
+
+    private static void writeMembers(DataOutputStream out, Collection<? extends AbstractJavaObject> members) throws IOException {
+        for (AbstractJavaObject member : members) {
+            writeObject(out, member);
+        }
+    }
+
+    private static void writeOutline(DataOutputStream out, byte kind, AbstractJavaObject object) throws IOException {
+        out.writeByte(kind);
+        out.writeByte(object.getType());
+        out.writeInt(object.getModifiers());
+        writeString(out, object.getDeclaration());
+        writeString(out, object.getFullDeclaration());
+        out.writeInt(object.getBeginLine());
+        out.writeInt(object.getEndLine());
+        out.writeInt(object.getBeginColumn());
+        out.writeInt(object.getEndColumn());
+        out.writeInt(object.getNameStart());
+        out.writeInt(object.getNameEnd());
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static Outline readOutline(DataInputStream in) throws IOException {
+        int type = in.readByte();
+        int modifiers = in.readInt();
+        String declaration = readString(in);
+        String fullDeclaration = readString(in);
+        int beginLine = in.readInt();
+        int endLine = in.readInt();
+        int beginColumn = in.readInt();
+        int endColumn = in.readInt();
+        int nameStart = in.readInt();
+        int nameEnd = in.readInt();
+        return new Outline(type, modifiers, declaration, fullDeclaration,
+                beginLine, endLine, beginColumn, endColumn, nameStart, nameEnd);
+    }
+
+    private static class CachedOutline {
+        final long modified;
+        final long length;
+        final JavaSourceFile sourceFile;
+
+        CachedOutline(long modified, long length, JavaSourceFile sourceFile) {
+            this.modified = modified;
+            this.length = length;
+            this.sourceFile = sourceFile;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.parsers;
+
+import japa.parser.ParseException;
+
+/**
+ * Something that can extract the classes, interfaces, methods, constructors and fields from Java source.
+ * JavaSourceFileParser passes each source file to the parser it has been set to use.
+ */
+public interface SourceParser {
+
+    /**
+     * Get the name this parser is chosen by in the config.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Extract the declarations from Java source, along with the offsets of their names in the source.
+     *
+     * @param source The source code.
+     * @return JavaSourceFile object that contains the result of the parsing.
+     * @throws ParseException If the source couldn't be parsed.
+     */
+    JavaSourceFile parse(String source) throws ParseException;
+}
@@ -1,5 +1,7 @@
 package com.facetoe.jreader.ui;
 
+import com.facetoe.jreader.helpers.PrefixSearchable;
+
 import java.util.ArrayList;
 
 /**
@@ -18,4 +20,11 @@ interface AutoCompletable {
      * @return ArrayList of autocomplete words.
      */
     ArrayList<String> getAutoCompleteWords();
+
+    /**
+     * Returns words that are too many to add to the auto-complete tree. They are only
+     * suggested when none of the auto-complete words match.
+     * @return The extra words or null if there aren't any.
+     */
+    PrefixSearchable getExtraAutoCompleteWords();
 }
\ No newline at end of file
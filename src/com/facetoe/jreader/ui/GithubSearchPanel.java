@@ -1,108 +1,272 @@
-
 package com.facetoe.jreader.ui;
 
 import com.facetoe.jreader.githubapi.GitHubAPI;
-import com.facetoe.jreader.githubapi.GithubAPIException;
+import com.facetoe.jreader.githubapi.GithubCancellationToken;
+import com.facetoe.jreader.githubapi.GithubRateLimits;
+import com.facetoe.jreader.githubapi.GithubResponseCache;
 import com.facetoe.jreader.githubapi.SearchQuery;
 import com.facetoe.jreader.githubapi.SearchResponse;
 import com.facetoe.jreader.githubapi.apiobjects.Item;
 import com.facetoe.jreader.githubapi.apiobjects.TextMatch;
 import com.facetoe.jreader.helpers.Util;
+import org.apache.log4j.Logger;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * This class defines a panel for displaying Github search results.
+ * <p/>
+ * The matches are shown in a list drawn by a single TextMatchItem, and each page of results is added to it at once
+ * on the EDT. While a page is shown the next one is fetched in the background, and it's added when the list is
+ * scrolled near the end.
+ * <p/>
+ * Every request for a search is made with the search's GithubCancellationToken. Starting another search or closing
+ * the panel cancels it, which aborts whatever is being downloaded and throws away pages that arrive late.
  */
 public class GithubSearchPanel extends JPanel {
-    private final JPanel panel = new JPanel();
-    private final JLabel loadingLabel = new JLabel("Loading matches, please wait...");
-    private final JLabel nothingFoundLabel = new JLabel("No results found.");
+    private final Logger log = Logger.getLogger(this.getClass());
+
+    private final JLabel messageLabel = new JLabel("Loading matches, please wait...");
+    private final SearchResultsModel resultsModel = new SearchResultsModel();
+    private final JList<TextMatch> resultsList = new JList<TextMatch>(resultsModel);
+    private final TextMatchItem textMatchItem = new TextMatchItem();
+    private final JScrollPane scrollPane = new JScrollPane(resultsList);
     private OnTextMatchItemClickedListener itemClickedListener;
     private final ArrayList<StatusUpdateListener> statusUpdateListeners = new ArrayList<StatusUpdateListener>();
+    private final GitHubAPI gitHubAPI;
+
+    // Search and paging state, only used on the EDT. nextPage is null once every page has been requested.
+    private GithubCancellationToken searchToken;
+    private SearchQuery nextPage;
+    private Future<SearchResponse> nextPageResponse;
+    private boolean loadingPage;
+    private int totalCount;
+    private int filesShown;
 
-    public GithubSearchPanel() {
+    public GithubSearchPanel(GitHubAPI gitHubAPI) {
+        this.gitHubAPI = gitHubAPI;
         initComponents();
     }
 
     private void initComponents() {
-        VerticalLayout layout = new VerticalLayout(5, VerticalLayout.BOTH, VerticalLayout.TOP);
-        panel.setLayout(layout);
-        panel.add(loadingLabel);
-        JScrollPane scrollPane = new JScrollPane(panel);
+        resultsList.setCellRenderer(textMatchItem);
+        resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        MouseAdapter mouseListener = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = getRowAt(e.getPoint());
+                if (index != -1 && (e.getClickCount() == 2 || isOverLink(index, e.getPoint()))) {
+                    openMatch(index);
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                int index = getRowAt(e.getPoint());
+                resultsList.setCursor(index != -1 && isOverLink(index, e.getPoint())
+                        ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR) : Cursor.getDefaultCursor());
+            }
+        };
+        resultsList.addMouseListener(mouseListener);
+        resultsList.addMouseMotionListener(mouseListener);
+        resultsList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "openMatch");
+        resultsList.getActionMap().put("openMatch", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (resultsList.getSelectedIndex() != -1) {
+                    openMatch(resultsList.getSelectedIndex());
+                }
+            }
+        });
+
         scrollPane.getVerticalScrollBar().setUnitIncrement(16); // Increase the scroll speed as otherwise it is too slow.
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(new AdjustmentListener() {
+            @Override
+            public void adjustmentValueChanged(AdjustmentEvent e) {
+                showNextPageIfNeeded();
+            }
+        });
         scrollPane.setBackground(Color.WHITE);
+        messageLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
         setLayout(new BorderLayout());
+        add(messageLabel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
     }
 
-    // TODO change this so it cancels the current task if it is called while one is already running
+    /**
+     * Show the results of a search, replacing the current one. If it's still loading it's canceled.
+     *
+     * @param searchTerm What to search for.
+     */
     public void searchGithub(final String searchTerm) {
-        new SwingWorker() {
+        cancelSearch();
+        searchToken = new GithubCancellationToken();
+        resultsModel.clear();
+        totalCount = 0;
+        filesShown = 0;
+
+        long wait = gitHubAPI.getRateLimits().getWait(GithubRateLimits.SEARCH);
+        if (wait > 0) {
+            updateStatus("Waiting " + (wait + 999) / 1000 + " seconds for GitHub's search rate limit to reset");
+        } else {
+            updateStatus("Searching for " + searchTerm);
+        }
+        updateProgress(0);
+        messageLabel.setText("Loading matches, please wait...");
+        SearchQuery query = new SearchQuery(searchTerm);
+        showPage(query, gitHubAPI.sendRequestAsync(query, GitHubAPI.Priority.INTERACTIVE, searchToken));
+    }
+
+    /**
+     * Stop loading the current search. The results already shown stay.
+     */
+    public void cancelSearch() {
+        if (searchToken != null) {
+            searchToken.cancel();
+        }
+        nextPage = null;
+        nextPageResponse = null;
+        loadingPage = false;
+    }
+
+    /**
+     * Stop loading the search, pages that are still on their way are thrown away.
+     * Called when the tab is closed.
+     */
+    public void close() {
+        cancelSearch();
+    }
+
+    // Wait for a page of results off the EDT, then add all of it to the list.
+    private void showPage(final SearchQuery query, final Future<SearchResponse> response) {
+        final GithubCancellationToken token = searchToken;
+        loadingPage = true;
+        new SwingWorker<SearchResponse, Void>() {
+            @Override
+            protected SearchResponse doInBackground() throws Exception {
+                return response.get();
+            }
+
             @Override
-            protected Object doInBackground() throws Exception {
-                syncronizedSearch(searchTerm);
-                return null;
+            protected void done() {
+                if (token.isCanceled()) {
+                    return;
+                }
+                loadingPage = false;
+                try {
+                    addPage(query, get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    showError(query, e.getCause());
+                }
             }
         }.execute();
     }
 
-    // This method needs to be syncronized otherwise multiple calls to searchGithub()
-    // will interleave adding their TextMatchItems to the panel resuting in jumbled results.
-    private synchronized void syncronizedSearch(String searchTerm) {
-        updateStatus("Searching for " + searchTerm);
-        updateProgress(0);
-        resetPanel();
-        panel.add(loadingLabel);
-        try {
-            SearchResponse response = (SearchResponse) GitHubAPI.sendRequest(new SearchQuery(searchTerm));
-            panel.remove(loadingLabel);
-            updateStatus("");
-            populatePanel(response);
-            if (panel.getComponents().length == 0) {
-                panel.add(nothingFoundLabel);
-                panel.revalidate();
-                panel.repaint();
+    private void addPage(SearchQuery query, SearchResponse response) {
+        ArrayList<TextMatch> matches = new ArrayList<TextMatch>();
+        for (Item item : response.getItems()) {
+            if (item.getText_matches() != null) {
+                Collections.addAll(matches, item.getText_matches());
             }
-        } catch (GithubAPIException e) {
-            e.printStackTrace();
         }
+        resultsModel.addAll(matches);
+        filesShown += response.getItems().size();
+        totalCount = response.getTotal_count() == null ? 0 : response.getTotal_count().intValue();
+
+        if (resultsModel.getSize() == 0) {
+            messageLabel.setText("No results found.");
+            updateStatus("");
+        } else {
+            String message = "Found " + totalCount + " files, showing " + resultsModel.getSize() + " matches in "
+                    + filesShown + " files.";
+            messageLabel.setText(message);
+            String stale = response.isStale() ? ", GitHub is limiting searches so these may be out of date" : "";
+            updateStatus(message + stale + getCacheStatistics());
+        }
+        updateProgress((int) Util.percent(filesShown, Math.min(totalCount, SearchQuery.MAX_RESULTS)));
+
+        // Fetch the next page while this one is looked at, leaving room for searches the user is waiting for.
+        if (query.hasNextPage(response)) {
+            nextPage = query.nextPage();
+            nextPageResponse = gitHubAPI.sendRequestAsync(nextPage, GitHubAPI.Priority.BACKGROUND, searchToken);
+        } else {
+            nextPage = null;
+            nextPageResponse = null;
+            updateProgress(100);
+        }
+        showNextPageIfNeeded();
     }
 
-    private void resetPanel() {
-        panel.removeAll();
-        panel.revalidate();
-        panel.repaint();
+    // Show the next page once the list is scrolled to within a screen of the end, or if it doesn't fill the screen.
+    private void showNextPageIfNeeded() {
+        if (loadingPage || nextPage == null) {
+            return;
+        }
+        Rectangle view = scrollPane.getViewport().getViewRect();
+        if (view.y + view.height * 2 < resultsList.getPreferredSize().height) {
+            return;
+        }
+
+        SearchQuery query = nextPage;
+        Future<SearchResponse> response = nextPageResponse;
+        nextPage = null;
+        nextPageResponse = null;
+        if (!response.isDone()) {
+            // The user is waiting for it now, asking again moves the background request up the queue.
+            response = gitHubAPI.sendRequestAsync(query, GitHubAPI.Priority.INTERACTIVE, searchToken);
+            updateStatus("Loading page " + query.getPage() + "...");
+        }
+        showPage(query, response);
     }
 
-    private void populatePanel(SearchResponse response) {
-        int totalMatches = countTextMatchItems(response);
-        updateStatus("Found " + totalMatches + " matches");
-        int cnt = 0;
-        for (Item item : response.getItems()) {
-            for (TextMatch textMatch : item.getText_matches()) {
-                updateProgress((int) Util.percent(++cnt, totalMatches));
-                addTextMatchItem(textMatch);
-            }
+    private void showError(SearchQuery query, Throwable cause) {
+        log.warn("Search failed: " + cause.getMessage(), cause);
+        String message = cause.getMessage() == null ? cause.toString() : cause.getMessage().trim().split("\n")[0];
+        if (query.getPage() == 1) {
+            messageLabel.setText("Search failed: " + message);
+            updateStatus("Search failed: " + message);
+        } else {
+            updateStatus("Couldn't load more results: " + message);
         }
     }
 
-    private int countTextMatchItems(SearchResponse response) {
-        int n = 0;
-        for (Item item : response.getItems()) {
-            n += item.getText_matches().length;
+    private String getCacheStatistics() {
+        GithubResponseCache responseCache = gitHubAPI.getResponseCache();
+        return responseCache == null ? "" : " (" + responseCache.getStatistics() + ")";
+    }
+
+    // The row under a point, or -1 if it's below the last row.
+    private int getRowAt(Point point) {
+        int index = resultsList.locationToIndex(point);
+        if (index == -1 || !resultsList.getCellBounds(index, index).contains(point)) {
+            return -1;
         }
-        return n;
+        return index;
     }
 
-    private void addTextMatchItem(TextMatch match) {
-        TextMatchItem item = new TextMatchItem(match);
-        if (itemClickedListener != null)
-            item.setOnTextMatchItemClickedListener(itemClickedListener);
-        panel.add(item);
-        panel.revalidate();
+    private boolean isOverLink(int index, Point point) {
+        Rectangle bounds = resultsList.getCellBounds(index, index);
+        return point.y - bounds.y < textMatchItem.getLinkHeight();
+    }
+
+    private void openMatch(int index) {
+        if (itemClickedListener != null) {
+            itemClickedListener.textMatchItemClicked(resultsModel.getElementAt(index));
+        }
     }
 
     public void setOnTextMatchItemClickedListener(OnTextMatchItemClickedListener listener) {
@@ -134,4 +298,41 @@ public class GithubSearchPanel extends JPanel {
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * The matches in the list. Each page is added with a single event so the list only lays itself out once.
+     */
+    private static class SearchResultsModel extends AbstractListModel<TextMatch> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<TextMatch> matches = new ArrayList<TextMatch>();
+
+        @Override
+        public int getSize() {
+            return matches.size();
+        }
+
+        @Override
+        public TextMatch getElementAt(int index) {
+            return matches.get(index);
+        }
+
+        void addAll(List<TextMatch> newMatches) {
+            if (newMatches.isEmpty()) {
+                return;
+            }
+            int first = matches.size();
+            matches.addAll(newMatches);
+            fireIntervalAdded(this, first, matches.size() - 1);
+        }
+
+        void clear() {
+            int size = matches.size();
+            if (size == 0) {
+                return;
+            }
+            matches.clear();
+            fireIntervalRemoved(this, 0, size - 1);
+        }
+    }
+}
@@ -17,10 +17,15 @@
 */
 package com.facetoe.jreader.ui;
 
+import com.facetoe.jreader.githubapi.GitHubAPI;
+import com.facetoe.jreader.githubapi.GithubResponseCache;
+import com.facetoe.jreader.helpers.Config;
 import com.facetoe.jreader.helpers.JReaderSetup;
 import com.facetoe.jreader.helpers.ProfileManager;
 import com.facetoe.jreader.helpers.Util;
 import com.facetoe.jreader.listeners.TextMatchItemClickedListener;
+import com.facetoe.jreader.parsers.JavaSourceFileParser;
+import com.facetoe.jreader.parsers.SourceParser;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import org.apache.log4j.Logger;
@@ -30,10 +35,13 @@ import javax.swing.event.ChangeEvent;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ContainerAdapter;
+import java.awt.event.ContainerEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.util.ArrayList;
 
@@ -44,11 +52,16 @@ import java.util.ArrayList;
 public class JReader implements StatusUpdateListener, ChangeListener<String> {
     private final Logger log = Logger.getLogger(this.getClass());
 
+    // How much disk space cached github responses may use.
+    private static final long GITHUB_CACHE_MAX_BYTES = 32 * 1024 * 1024;
+
     private JFrame frame;
     private MenuBar menuBar;
     private TopPanel topPanel;
     private BottomPanel bottomPanel;
     private final ProfileManager profileManager;
+    private final GitHubAPI gitHubAPI = new GitHubAPI(GitHubAPI.DEFAULT_API_ROOT, new GithubResponseCache(
+            new File(Config.dataDirectory, Config.GITHUB_CACHE_DIR_NAME), GITHUB_CACHE_MAX_BYTES));
     private JTabbedPane tabbedPane;
     private JPanel currentTab;
 
@@ -65,9 +78,17 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
         initActions();
         initListeners();
         createAndShowNewReaderTab();
-        initAutoCompleteWords();
         displayUI();
         currentTab = getCurrentTab();
+        reportStartupTime("first window");
+        initAutoCompleteWords();
+    }
+
+    // Log and show how long it took since the JVM started to reach a point in startup.
+    private void reportStartupTime(String milestone) {
+        long elapsed = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        log.debug("Time to " + milestone + ": " + elapsed + "ms");
+        updateStatus("Time to " + milestone + ": " + elapsed + "ms");
     }
 
     private void constructInterface() {
@@ -138,8 +159,30 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
         readerPanel.home();
     }
 
+    // The class names are loaded in the background so the window can be shown straight away.
     private void initAutoCompleteWords() {
-        topPanel.addAutoCompleteWords(profileManager.getClassNames());
+        new SwingWorker<ArrayList<String>, Void>() {
+            @Override
+            protected ArrayList<String> doInBackground() throws Exception {
+                return profileManager.getClassNames();
+            }
+
+            @Override
+            protected void done() {
+                // If a source tab is showing the class names are added when we switch back.
+                if (!(currentTab instanceof JReaderPanel))
+                    return;
+                try {
+                    topPanel.addAutoCompleteWords(get());
+                    topPanel.setAutoCompleteUsage(profileManager.getClassUsage());
+                    topPanel.setRankedAutoComplete(true);
+                    topPanel.setExtraAutoCompleteWords(((AutoCompletable) currentTab).getExtraAutoCompleteWords());
+                    reportStartupTime("first autocomplete");
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
+        }.execute();
     }
 
     private void initListeners() {
@@ -189,6 +232,29 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
                 handleTabChange();
             }
         });
+        tabbedPane.addContainerListener(new ContainerAdapter() {
+            @Override
+            public void componentRemoved(ContainerEvent e) {
+                // Source and search tabs may still be loading when they're closed.
+                if (e.getChild() instanceof JSourcePanel) {
+                    ((JSourcePanel) e.getChild()).close();
+                } else if (e.getChild() instanceof GithubSearchPanel) {
+                    ((GithubSearchPanel) e.getChild()).close();
+                }
+            }
+        });
+        profileManager.addSourceIndexListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                // Progress comes from the indexing threads.
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateStatus(e.getActionCommand() + " (" + e.getWhen() + "%)");
+                    }
+                });
+            }
+        });
     }
 
     private void displayUI() {
@@ -208,39 +274,39 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
             log.error("No such file: " + filePath);
             return;
         }
-        final JSourcePanel newTab = createNewSourcePanel(filePath, title);
-        new SwingWorker() {
-            @Override
-            protected Object doInBackground() throws Exception {
-                newTab.createDisplay();
-                return null;
-            }
-
-            @Override
-            protected void done() {
-                showNewSourceTab(newTab);
-                newTab.scrollToClassDeclaration();
-            }
-        }.execute();
+        JSourcePanel newTab = createNewSourcePanel(filePath, title);
+        showNewSourceTab(newTab);
+        newTab.createDisplay();
     }
 
     public void createAndShowNewSourceTab(URL url, String title, final String fragment) {
         final JSourcePanel newSourcePanel = new JSourcePanel(url, this);
         newSourcePanel.addStatusUpdateListener(this);
         addCloseButtonToTab(newSourcePanel, title);
-        new SwingWorker() {
+        setCurrentTab(newSourcePanel);
+        newSourcePanel.createDisplay(new Runnable() {
             @Override
-            protected Object doInBackground() throws Exception {
-                newSourcePanel.createDisplay();
-                return null;
+            public void run() {
+                newSourcePanel.find(fragment);
             }
+        });
+    }
 
+    /**
+     * Creates a new source tab for a file and selects the identifier that starts at offset once it's shown.
+     *
+     * @param file   The source file.
+     * @param offset Where the identifier starts.
+     */
+    public void createAndShowNewSourceTab(File file, final int offset) {
+        final JSourcePanel newTab = createNewSourcePanel(file.getPath(), file.getName());
+        showNewSourceTab(newTab);
+        newTab.createDisplay(new Runnable() {
             @Override
-            protected void done() {
-                setCurrentTab(newSourcePanel);
-                newSourcePanel.find(fragment);
+            public void run() {
+                newTab.selectIdentifier(offset);
             }
-        }.execute();
+        });
     }
 
     private JSourcePanel createNewSourcePanel(String filePath, String title) {
@@ -262,7 +328,7 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
     }
 
     public void createAndShowNewGithubSearchPanel(final String searchTerm) {
-        GithubSearchPanel gitPanel = new GithubSearchPanel();
+        GithubSearchPanel gitPanel = new GithubSearchPanel(gitHubAPI);
         gitPanel.setOnTextMatchItemClickedListener(new TextMatchItemClickedListener(this));
         gitPanel.addStatusUpdateListener(this);
         addCloseButtonToTab(gitPanel, "Github Search: " + searchTerm);
@@ -270,6 +336,14 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
         setCurrentTab(gitPanel);
     }
 
+    public void createAndShowNewUsagesPanel(String identifier) {
+        UsagesPanel usagesPanel = new UsagesPanel(this);
+        usagesPanel.addStatusUpdateListener(this);
+        addCloseButtonToTab(usagesPanel, "Usages: " + identifier);
+        usagesPanel.findUsages(identifier);
+        setCurrentTab(usagesPanel);
+    }
+
     // Handle changing tabs. Remove and add autocomplete words, enable/disable buttons.
     private void handleTabChange() {
         if (currentTab == null)
@@ -290,6 +364,10 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
         }
     }
 
+    public GitHubAPI getGitHubAPI() {
+        return gitHubAPI;
+    }
+
     public JPanel getCurrentTab() {
         int index = tabbedPane.getSelectedIndex();
         return index != -1 ? (JPanel) tabbedPane.getComponentAt(index): null;
@@ -298,12 +376,17 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
     private void handleSourceTabChange(AutoCompletable tab) {
         disableBrowserButtons();
         setToggleTreeButton((JSourcePanel) tab);
+        // Usage is only tracked for class names, so keep source members in alphabetical order.
+        topPanel.setRankedAutoComplete(false);
         topPanel.addAutoCompleteWords(tab.getAutoCompleteWords());
+        topPanel.setExtraAutoCompleteWords(tab.getExtraAutoCompleteWords());
     }
 
     private void handleReaderTabChange(AutoCompletable tab) {
         topPanel.setSourceButton(new NewSourceTabAction(this));
+        topPanel.setRankedAutoComplete(true);
         topPanel.addAutoCompleteWords(tab.getAutoCompleteWords());
+        topPanel.setExtraAutoCompleteWords(tab.getExtraAutoCompleteWords());
 
         JReaderPanel panel = (JReaderPanel) currentTab;
 
@@ -352,6 +435,7 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
 
     public void addAutoCompleteWords() {
         topPanel.addAutoCompleteWords(profileManager.getClassNames());
+        topPanel.setAutoCompleteUsage(profileManager.getClassUsage());
     }
 
     public void removeAutoCompleteWords() {
@@ -363,6 +447,19 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
         }
     }
 
+    /**
+     * Swap the autocomplete words of a source tab whose outline was replaced, if it's the current tab.
+     *
+     * @param sourcePanel The source tab.
+     * @param previousWords The words of its previous outline.
+     */
+    public void sourceOutlineChanged(JSourcePanel sourcePanel, ArrayList<String> previousWords) {
+        if (currentTab == sourcePanel) {
+            topPanel.removeAutoCompleteWords(previousWords);
+            topPanel.addAutoCompleteWords(sourcePanel.getAutoCompleteWords());
+        }
+    }
+
     public void resetSearchBar() {
         topPanel.resetSearchBar();
     }
@@ -371,6 +468,7 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
         try {
             log.debug("Saving profiles..");
             profileManager.saveProfiles();
+            Config.flush();
             log.debug("Success!");
             System.exit(0);
         } catch (IOException e) {
@@ -408,6 +506,7 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
 
     public static void main(String[] args) {
         setLookAndFeel();
+        setSourceParser();
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -416,6 +515,20 @@ public class JReader implements StatusUpdateListener, ChangeListener<String> {
         });
     }
 
+    // Parse source files with the parser chosen in the config, if one was.
+    private static void setSourceParser() {
+        String name = Config.getString(Config.SOURCE_PARSER);
+        if (name == null) {
+            return;
+        }
+        SourceParser parser = JavaSourceFileParser.getParser(name);
+        if (parser != null) {
+            JavaSourceFileParser.setParser(parser);
+        } else {
+            Logger.getLogger(JReader.class).warn("Unknown source parser " + name);
+        }
+    }
+
     // If we can't use Numbus fall back to system look and feel
     private static void setLookAndFeel() {
         try {
@@ -17,7 +17,10 @@
 */
 package com.facetoe.jreader.ui;
 
+import com.facetoe.jreader.helpers.DocSearchIndex;
+import com.facetoe.jreader.helpers.PrefixSearchable;
 import com.facetoe.jreader.helpers.ProfileManager;
+import com.facetoe.jreader.helpers.SortedIndexFile;
 import com.facetoe.jreader.helpers.Util;
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
@@ -32,10 +35,11 @@ import org.apache.log4j.Logger;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 import static javafx.concurrent.Worker.State.FAILED;
 
@@ -48,6 +52,9 @@ import static javafx.concurrent.Worker.State.FAILED;
 class JReaderPanel extends JPanel implements AutoCompletable, Navigatable {
     private final Logger log = Logger.getLogger(this.getClass());
 
+    // How many other matching pages are named in the status bar after a full text search.
+    private static final int OTHER_SEARCH_RESULTS = 4;
+
     private TopPanel topPanel;
     private WebEngine engine;
     private JFXPanel jfxPanel;
@@ -55,6 +62,27 @@ class JReaderPanel extends JPanel implements AutoCompletable, Navigatable {
     private final ArrayList<StatusUpdateListener> listeners = new ArrayList<StatusUpdateListener>();
     private String currentPath;
 
+    // Suggested when no class name starts with what was typed: members like HashMap#put(K, V), or classes
+    // the abbreviation fuzzy matches. Looked up in the current profile each time so profile changes are picked up.
+    private final PrefixSearchable extraWords = new PrefixSearchable() {
+        @Override
+        public void forEachWordWithPrefix(String prefix, int limit, WordConsumer consumer) {
+            if (prefix.indexOf('#') != -1) {
+                SortedIndexFile memberData = profileManager.getMemberData();
+                if (memberData != null) {
+                    memberData.forEachWordWithPrefix(prefix, limit, consumer);
+                }
+            } else if (profileManager.fuzzyClassSearchIsEnabled()) {
+                for (String match : profileManager.getFuzzyClassIndex().find(prefix, limit)) {
+                    consumer.accept(match);
+                }
+            }
+        }
+    };
+
+    // Shown with the next path in the status bar, so the other results of a search aren't hidden by it.
+    private volatile String searchResultsStatus;
+
     public JReaderPanel(TopPanel topPanel) {
         init();
         this.topPanel = topPanel;
@@ -107,7 +135,9 @@ class JReaderPanel extends JPanel implements AutoCompletable, Navigatable {
             public void changed(ObservableValue<? extends String> ov, String oldValue, final String newValue) {
                 log.debug("New Path: " + newValue);
                 currentPath = newValue;
-                updateStatus(newValue);
+                String searchResults = searchResultsStatus;
+                searchResultsStatus = null;
+                updateStatus(searchResults == null ? newValue : newValue + "    " + searchResults);
             }
         });
     }
@@ -153,13 +183,76 @@ class JReaderPanel extends JPanel implements AutoCompletable, Navigatable {
         return profileManager.getClassNames();
     }
 
+    @Override
+    public PrefixSearchable getExtraAutoCompleteWords() {
+        return extraWords;
+    }
+
     @Override
     public void handleAutoComplete(String key) {
-        HashMap<String, String> classData = profileManager.getClassData();
+        if (key.indexOf('#') != -1 && loadMember(key)) {
+            return;
+        }
+
+        SortedIndexFile classData = profileManager.getClassData();
+        if (!classData.containsKey(key) && profileManager.fuzzyClassSearchIsEnabled()) {
+            String match = profileManager.getFuzzyClassIndex().findBestMatch(key);
+            log.debug("Fuzzy match for " + key + ": " + match);
+            if (match != null) {
+                key = match;
+            }
+        }
+
         if (classData.containsKey(key)) {
             String relativePath = classData.get(key);
             loadURL(profileManager.getDocDir() + relativePath);
+
+            // Classes that are opened often are suggested first.
+            profileManager.recordClassUsage(key);
+            topPanel.autoCompleteUsageChanged();
+        } else {
+            searchDocs(key);
+        }
+    }
+
+    // Load the documentation for a member like HashMap#put(K, V), scrolled to its anchor.
+    private boolean loadMember(String key) {
+        SortedIndexFile memberData = profileManager.getMemberData();
+        String location = memberData != null ? memberData.get(key) : null;
+        if (location == null) {
+            return false;
+        }
+
+        int anchorStart = location.indexOf('#');
+        loadURL(profileManager.getDocDir() + location.substring(0, anchorStart), location.substring(anchorStart + 1));
+        String className = key.substring(0, key.indexOf('#'));
+        profileManager.recordClassUsage(className);
+        topPanel.autoCompleteUsageChanged();
+        return true;
+    }
+
+    // Search the text of every page for words that aren't class names, like method names.
+    private void searchDocs(String query) {
+        DocSearchIndex docSearchIndex = profileManager.getDocSearchIndex();
+        if (docSearchIndex == null) {
+            updateStatus("The search index for this profile is still being built");
+            return;
         }
+
+        ArrayList<String> results = docSearchIndex.search(query, OTHER_SEARCH_RESULTS + 1);
+        if (results.isEmpty()) {
+            updateStatus("No pages match: " + query);
+            return;
+        }
+
+        if (results.size() > 1) {
+            StringBuilder others = new StringBuilder("Also see: ");
+            for (int i = 1; i < results.size(); i++) {
+                others.append(i > 1 ? ", " : "").append(Util.extractFileName(results.get(i)));
+            }
+            searchResultsStatus = others.toString();
+        }
+        loadURL(profileManager.getDocDir() + results.get(0));
     }
 
     public void next() {
@@ -212,6 +305,25 @@ class JReaderPanel extends JPanel implements AutoCompletable, Navigatable {
         });
     }
 
+    /**
+     * Load a page and scroll to an anchor in it.
+     *
+     * @param path     The path of the page.
+     * @param fragment The anchor, it will be escaped.
+     */
+    void loadURL(String path, String fragment) {
+        try {
+            URI pageUri = Paths.get(path).toUri();
+            loadURL(new URI(pageUri.getScheme(), pageUri.getSchemeSpecificPart(), fragment).toString());
+        } catch (URISyntaxException ex) {
+            log.error(ex.getMessage(), ex);
+            loadURL(path);
+        } catch (InvalidPathException ex) {
+            log.error(ex.getMessage(), ex);
+            loadURL(path);
+        }
+    }
+
     public String getCurrentPath() {
         return currentPath;
     }
@@ -17,12 +17,13 @@
 */
 package com.facetoe.jreader.ui;
 
+import com.facetoe.jreader.helpers.IdentifierIndex;
+import com.facetoe.jreader.helpers.PrefixSearchable;
 import com.facetoe.jreader.helpers.ProfileManager;
 import com.facetoe.jreader.helpers.Util;
 import com.facetoe.jreader.parsers.AbstractJavaObject;
 import com.facetoe.jreader.parsers.JavaSourceFile;
 import com.facetoe.jreader.parsers.JavaSourceFileParser;
-import japa.parser.ParseException;
 import org.apache.log4j.Logger;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
@@ -31,19 +32,17 @@ import org.fife.ui.rtextarea.RTextScrollPane;
 import org.fife.ui.rtextarea.SearchContext;
 import org.fife.ui.rtextarea.SearchEngine;
 
-import javax.net.ssl.HttpsURLConnection;
 import javax.swing.*;
 import javax.swing.text.BadLocationException;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.PatternSyntaxException;
 
 /**
@@ -54,7 +53,7 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
 
     private RSyntaxTextArea codeArea;
     private RTextScrollPane codeScrollPane;
-    private JavaSourceFile javaSourceFile;
+    private volatile JavaSourceFile javaSourceFile = new JavaSourceFile();
     private File sourceFile;
     private URL fileURL;
     private ProfileManager profileManager;
@@ -67,6 +66,23 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
     private String sourceFileName;
     private JReader reader;
 
+    // The text in the code area, which is also what gets parsed so the declaration offsets match it.
+    private String code;
+
+    // Whether javaSourceFile is a quick outline that the full parse should replace.
+    private volatile boolean needsFullParse;
+
+    // Where each identifier is in the code, for searching. Null until the code has been parsed.
+    private IdentifierIndex identifierIndex;
+
+    // The word F3 steps through and how it's matched, from the last search for a word.
+    private String occurrenceWord;
+    private boolean occurrenceMatchCase;
+    private boolean occurrenceWholeWord;
+
+    // Set when the tab is closed, so the loading stages still running know to stop.
+    private volatile boolean closed;
+
     /**
      * Creates a new instance of JSourcePanel and displays the contents of sourceFile.
      *
@@ -94,6 +110,12 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
         profileManager = ProfileManager.getInstance();
         setLayout(new BorderLayout());
         createCodeArea();
+        configureOccurrenceActions();
+
+        // The tree starts out empty and gets the outline once the source has been parsed.
+        sourceTree = new SlideOutSourceTree(this);
+        add(sourceTree, BorderLayout.WEST);
+        add(codeScrollPane, BorderLayout.CENTER);
     }
 
     private void createCodeArea() {
@@ -103,12 +125,54 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
         codeArea.setAntiAliasingEnabled(true);
         codeArea.setEditable(false);
         codeArea.getPopupMenu().add(createGithubPopupItem());
+        codeArea.getPopupMenu().add(createUsagesPopupItem());
 
         RTextScrollPane scrollPane = new RTextScrollPane(codeArea);
         scrollPane.setFoldIndicatorEnabled(true);
         codeScrollPane = scrollPane;
     }
 
+    private JMenuItem createUsagesPopupItem() {
+        JMenuItem item = new JMenuItem("Find usages in source");
+        item.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String identifier = getSelectedIdentifier();
+                if (identifier != null) {
+                    reader.createAndShowNewUsagesPanel(identifier);
+                } else {
+                    updateStatus("Select an identifier to find its usages");
+                }
+            }
+        });
+        return item;
+    }
+
+    // The selected identifier, or if nothing is selected the one at the caret.
+    private String getSelectedIdentifier() {
+        String selected = codeArea.getSelectedText();
+        if (selected != null) {
+            return IdentifierIndex.isWord(selected.trim()) ? selected.trim() : null;
+        }
+        return identifierIndex != null ? identifierIndex.getWordAt(codeArea.getCaretPosition()) : null;
+    }
+
+    private void configureOccurrenceActions() {
+        addOccurrenceAction("F3", true);
+        addOccurrenceAction("shift F3", false);
+    }
+
+    private void addOccurrenceAction(String keyStrokeAndKey, final boolean forward) {
+        KeyStroke keyStroke = KeyStroke.getKeyStroke(keyStrokeAndKey);
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(keyStroke, keyStrokeAndKey);
+        getActionMap().put(keyStrokeAndKey, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                findOccurrence(forward);
+            }
+        });
+    }
+
     private JMenuItem createGithubPopupItem() {
         JMenuItem item = new JMenuItem("Search Github for selection");
         item.addActionListener(new ActionListener() {
@@ -121,89 +185,200 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
         return item;
     }
 
+    /**
+     * Load the source in stages so the code shows up as soon as it's read. The file is read on a background
+     * thread and put in the code area, then it's parsed on another and the outline is added to the tree.
+     * If the tab is closed part way through the rest of the stages are dropped.
+     */
     public void createDisplay() {
-        applyTheme();
-        setCodeAreaText();
-        parseSourceFile();
-        sourceTree = new SlideOutSourceTree(this);
-        add(sourceTree, BorderLayout.WEST);
-        add(codeScrollPane, BorderLayout.CENTER);
-        scrollToClassDeclaration(); // Scrolls to the top level class or interface
+        createDisplay(null);
     }
 
-    private void applyTheme() {
-        Theme theme = Util.loadTheme();
-        theme.apply(codeArea);
-    }
+    /**
+     * Load the source in stages, as createDisplay() does.
+     *
+     * @param onCodeShown Run on the EDT once the code is in the code area, before it's parsed.
+     *                    If it moves the caret the class declaration isn't scrolled to.
+     */
+    public void createDisplay(final Runnable onCodeShown) {
+        updateStatus("Loading: " + getDisplayName());
+        final long readStart = System.nanoTime();
+        new SwingWorker<String, Void>() {
+            private Theme theme;
 
-    private void setCodeAreaText() {
-        try {
-            String code;
-            if (sourceFile != null) {
-                code = Util.readFile(sourceFile.getAbsolutePath(), StandardCharsets.UTF_8);
-            } else {
-                code = Util.readURL(fileURL, StandardCharsets.UTF_8);
+            @Override
+            protected String doInBackground() throws Exception {
+                theme = Util.getTheme();
+                return readCode();
+            }
+
+            @Override
+            protected void done() {
+                if (closed) {
+                    return;
+                }
+                try {
+                    showCode(get(), theme);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    updateStatus("Failed to load " + getDisplayName());
+                    showError("Error Loading File", (Exception) e.getCause());
+                    return;
+                }
+                long readTime = System.nanoTime() - readStart;
+                updateStatus(String.format("Read %s in %.2f seconds, parsing...", getDisplayName(), seconds(readTime)));
+                if (onCodeShown != null) {
+                    onCodeShown.run();
+                }
+                startParse(readTime);
             }
+        }.execute();
+    }
 
-            codeArea.setText(code);
-        } catch (IOException e) {
-            showError("Error Loading File", e);
+    // Both give back text with \n line breaks, which is what the parser offsets assume.
+    private String readCode() throws IOException {
+        if (sourceFile != null) {
+            return profileManager.getSourceFileLoader().load(sourceFile);
         }
+        return Util.readURL(fileURL, StandardCharsets.UTF_8);
+    }
+
+    private void showCode(String text, Theme theme) {
+        code = text;
+        theme.apply(codeArea);
+        codeArea.setText(code);
+        codeArea.setCaretPosition(0);
     }
 
     /**
-     * Parse the source file and provide feedback to any listeners.
+     * Extract the outline and index the identifiers in the background, then show the outline in the tree.
+     *
+     * @param readTime How long it took to read and show the code, for the status bar.
      */
-    private void parseSourceFile() {
-        long startTime = System.nanoTime();
-        updateStatus("Parsing: " + sourceFileName);
-        parseSource();
-        updateStatus(buildParseTimeMessage(System.nanoTime() - startTime));
-    }
+    private void startParse(final long readTime) {
+        final long parseStart = System.nanoTime();
+        new SwingWorker<JavaSourceFile, Void>() {
+            private IdentifierIndex index;
 
-    private void parseSource() {
-        try {
-            if (sourceFile != null) {
-                javaSourceFile = parseSourceFile(sourceFile);
-            } else {
-                javaSourceFile = parseSourceURL(fileURL);
+            @Override
+            protected JavaSourceFile doInBackground() throws Exception {
+                if (closed) {
+                    return null;
+                }
+                index = new IdentifierIndex(code);
+                return parseSource();
             }
-        } catch (ParseException e) {
-            showError("Error Parsing File", e);
-        } catch (IOException e) {
-            showError("Error Loading File", e);
-        }
+
+            @Override
+            protected void done() {
+                if (closed) {
+                    return;
+                }
+                identifierIndex = index;
+                try {
+                    setJavaSourceFile(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    log.error("Failed to parse " + getDisplayName(), e.getCause());
+                    updateStatus("Failed to parse " + getDisplayName() + ": " + e.getCause().getMessage());
+                    return;
+                }
+
+                // Don't jump away from somewhere the user or onCodeShown already went.
+                if (codeArea.getCaretPosition() == 0) {
+                    scrollToClassDeclaration();
+                }
+                long parseTime = System.nanoTime() - parseStart;
+                updateStatus(String.format("Parsed %s in %.2f seconds (read %.2f, outline and index %.2f)",
+                        getDisplayName(), seconds(readTime + parseTime), seconds(readTime), seconds(parseTime)));
+                if (needsFullParse) {
+                    startFullParse();
+                }
+            }
+        }.execute();
     }
 
-    private JavaSourceFile parseSourceURL(URL url) throws IOException, ParseException {
-        HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-        InputStream in = null;
-        try {
-            in = connection.getInputStream();
-            return JavaSourceFileParser.parse(in);
-        } finally {
+    /**
+     * Use the cached outline if there is one. Otherwise extract a quick outline, which never fails, so the tree
+     * and autocomplete work straight away. The full parse replaces it once it's done.
+     */
+    private JavaSourceFile parseSource() {
+        if (sourceFile != null) {
             try {
-                if (in != null) {
-                    in.close();
+                JavaSourceFile cached = profileManager.getOutlineCache().getCached(sourceFile);
+                if (cached != null) {
+                    return cached;
                 }
             } catch (IOException e) {
-                log.error("Failed to close input stream", e);
+                log.warn("Failed to read cached outline of " + sourceFile, e);
             }
         }
+        needsFullParse = JavaSourceFileParser.hasFullParser();
+        return JavaSourceFileParser.parseOutline(code);
+    }
+
+    /**
+     * Parse the source properly in the background, caching the result, then show it in place of the quick outline.
+     * If parsing fails the quick outline stays.
+     */
+    private void startFullParse() {
+        final long parseStart = System.nanoTime();
+        new SwingWorker<JavaSourceFile, Void>() {
+            @Override
+            protected JavaSourceFile doInBackground() throws Exception {
+                if (closed) {
+                    return null;
+                }
+                if (sourceFile != null) {
+                    return profileManager.getOutlineCache().parse(sourceFile, code);
+                }
+                return JavaSourceFileParser.parse(code);
+            }
+
+            @Override
+            protected void done() {
+                if (closed) {
+                    return;
+                }
+                try {
+                    setJavaSourceFile(get());
+                    updateStatus(String.format("Fully parsed %s in %.2f seconds",
+                            getDisplayName(), seconds(System.nanoTime() - parseStart)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    log.warn("Keeping the partial outline of " + getDisplayName(), e.getCause());
+                    updateStatus("Showing a partial outline of " + getDisplayName() + ": " + e.getCause().getMessage());
+                }
+            }
+        }.execute();
     }
 
-    private JavaSourceFile parseSourceFile(File file) throws ParseException, IOException {
-        return JavaSourceFileParser.parse(new FileInputStream(file));
+    private void setJavaSourceFile(JavaSourceFile newSourceFile) {
+        JavaSourceFile previous = javaSourceFile;
+        javaSourceFile = newSourceFile;
+        sourceTree.sourceFileChanged(previous);
+        reader.sourceOutlineChanged(this, previous.getAllDeclarations());
     }
 
-    private String buildParseTimeMessage(double elapsedTime) {
-        return String.format(
-                "Parsed %s in %.2f %s",
-                (sourceFileName != null ?
-                        sourceFile :
-                        Util.extractFileName(fileURL.getPath())),
-                Util.percent(elapsedTime, 100000000000L),
-                "seconds");
+    /**
+     * Stop loading the source, the results of any stage that's still running are thrown away.
+     * Called when the tab is closed.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    private String getDisplayName() {
+        return sourceFile != null ? sourceFileName : Util.extractFileName(fileURL.getPath());
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1000000000.0;
     }
 
     @Override
@@ -211,6 +386,11 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
         return javaSourceFile.getAllDeclarations();
     }
 
+    @Override
+    public PrefixSearchable getExtraAutoCompleteWords() {
+        return null;
+    }
+
     @Override
     public void handleAutoComplete(String key) {
         AbstractJavaObject obj = javaSourceFile.getObject(key);
@@ -222,45 +402,65 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
     }
 
     public void scrollToClassDeclaration() {
-        highlightDeclaration(javaSourceFile.getEnclosingObject());
+        AbstractJavaObject enclosingObject = javaSourceFile.getEnclosingObject();
+        if (enclosingObject != null) {
+            highlightDeclaration(enclosingObject);
+        }
     }
 
+    /**
+     * Select the name of a declaration. The parser records where each name is, so there's nothing to search for.
+     * If it couldn't find the name the first line of the declaration is selected instead.
+     */
     public void highlightDeclaration(AbstractJavaObject object) {
-        highlightDeclaration(object.getBeginLine(), object.getEndLine(), object.getBeginColumn());
-    }
-
-    private void highlightDeclaration(int beginLine, int endLine, int beginCol) {
-        String selectText = extractDeclaration(beginLine, endLine, beginCol);
-        findString(selectText, new SearchContext(selectText));
+        int start = object.getNameStart();
+        int end = object.getNameEnd();
+        if (start < 0 || end > codeArea.getDocument().getLength()) {
+            try {
+                start = codeArea.getLineStartOffset(object.getBeginLine() - 1);
+                end = codeArea.getLineEndOffset(object.getBeginLine() - 1) - 1;
+            } catch (BadLocationException e) {
+                log.error(e);
+                return;
+            }
+        }
+        selectAndCenter(start, end);
     }
 
     /**
-     * This method is necessary because long method or function declarations are
-     * split across multiple lines in the source but not in the declaration returned
-     * by the JavaSourceFileParser.
+     * Select some text, scrolling it to the middle of the view if it isn't already visible.
+     * This is what SearchEngine.find() does with a match.
      */
-    private String extractDeclaration(int beginLine, int endLine, int beginCol) {
-        int start = 0;
-        int end = 0;
+    private void selectAndCenter(int start, int end) {
+        codeArea.getCaret().setSelectionVisible(true);
+        codeArea.setCaretPosition(end);
+        codeArea.moveCaretPosition(start);
         try {
-            start = codeArea.getLineStartOffset(beginLine - 1);
-            end = codeArea.getLineEndOffset(endLine - 1);
-        } catch (BadLocationException ex) {
-            // Shouldn't happen...
-            ex.printStackTrace();
-        }
-        String body = codeArea.getText();
-        //  If you don't do -1 it chops off the first character.
-        start += beginCol - 1;
-        String declaration = "";
-
-        for (int i = start; i < end; i++) {
-            if (body.charAt(i) == '{' || body.charAt(i) == ';') {
-                break;
+            // yForLineContaining() is -1 if the line is folded away.
+            int y = codeArea.yForLineContaining(start);
+            int lineHeight = codeArea.getLineHeight();
+            Rectangle visible = codeArea.getVisibleRect();
+            if (y >= 0 && (y < visible.y || y + lineHeight > visible.y + visible.height)) {
+                visible.y = Math.max(0, y - (visible.height - lineHeight) / 2);
+                codeArea.scrollRectToVisible(visible);
             }
-            declaration += body.charAt(i);
+        } catch (BadLocationException e) {
+            log.error(e);
+        }
+    }
+
+    /**
+     * Select the identifier that starts at an offset, such as a usage from SourceUsageIndex.
+     *
+     * @param offset Where the identifier starts.
+     */
+    public void selectIdentifier(int offset) {
+        int start = Math.min(offset, code.length());
+        int end = start;
+        while (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end))) {
+            end++;
         }
-        return declaration;
+        selectAndCenter(start, end);
     }
 
     public void find(String text) {
@@ -275,6 +475,11 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
      * It fires an ActionEvent if nothing is found or if there is a Regexp error.
      */
     private void findString(String text, SearchContext context) {
+        if (identifierIndex != null && !context.isRegularExpression() && IdentifierIndex.isWord(text)) {
+            findWord(text, context.getMatchCase(), context.getWholeWord(), true);
+            return;
+        }
+
         boolean found;
         int caretPos = codeArea.getCaretPosition();
         context.setSearchFor(text);
@@ -298,6 +503,49 @@ public class JSourcePanel extends JPanel implements AutoCompletable {
         }
     }
 
+    /**
+     * Select the next or previous place a word appears, using the identifier index rather than searching the text.
+     */
+    private void findWord(String word, boolean matchCase, boolean wholeWord, boolean forward) {
+        occurrenceWord = word;
+        occurrenceMatchCase = matchCase;
+        occurrenceWholeWord = wholeWord;
+
+        int[] offsets = identifierIndex.find(word, matchCase, wholeWord);
+        if (offsets.length == 0) {
+            updateStatus("Nothing found for: " + "\"" + word + "\"");
+            return;
+        }
+        int index = forward
+                ? IdentifierIndex.next(offsets, codeArea.getSelectionEnd())
+                : IdentifierIndex.previous(offsets, codeArea.getSelectionStart());
+        selectAndCenter(offsets[index], offsets[index] + word.length());
+        updateStatus(String.format("\"%s\" %d of %d", word, index + 1, offsets.length));
+    }
+
+    /**
+     * Step to the next or previous place the word from the last search appears. If something else is selected
+     * that's searched for instead, and if nothing is it's the identifier at the caret.
+     */
+    private void findOccurrence(boolean forward) {
+        if (identifierIndex == null) {
+            return;
+        }
+        String selected = codeArea.getSelectedText();
+        if (selected != null && occurrenceWord != null && (occurrenceMatchCase
+                ? selected.equals(occurrenceWord) : selected.equalsIgnoreCase(occurrenceWord))) {
+            findWord(occurrenceWord, occurrenceMatchCase, occurrenceWholeWord, forward);
+        } else if (selected != null && IdentifierIndex.isWord(selected)) {
+            SearchContext context = profileManager.getSearchContext();
+            findWord(selected, context.getMatchCase(), context.getWholeWord(), forward);
+        } else if (selected == null) {
+            String word = identifierIndex.getWordAt(codeArea.getCaretPosition());
+            if (word != null) {
+                findWord(word, true, true, forward);
+            }
+        }
+    }
+
     /**
      * Add a StatusUpdateListener listener.
      *
@@ -71,6 +71,10 @@ class MenuBar extends JMenuBar {
         subMenuDeleteProfile = buildDeleteProfileSubMenu();
         fileMenu.add(subMenuDeleteProfile);
 
+        fileMenu.addSeparator();
+        fileMenu.add(buildIndexSourcesCheckBox());
+        fileMenu.addSeparator();
+
         JMenuItem quitItem = buildQuitItem();
         fileMenu.add(quitItem);
         add(fileMenu);
@@ -200,6 +204,19 @@ class MenuBar extends JMenuBar {
         return item;
     }
 
+    private JCheckBoxMenuItem buildIndexSourcesCheckBox() {
+        final JCheckBoxMenuItem chkIndexSources = new JCheckBoxMenuItem("Index Sources in Background");
+        chkIndexSources.setToolTipText("Parse every source file in this profile in the background");
+        chkIndexSources.setState(profileManager.sourceIndexingIsEnabled());
+        chkIndexSources.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                profileManager.setSourceIndexingEnabled(chkIndexSources.getState());
+            }
+        });
+        return chkIndexSources;
+    }
+
     private JMenuItem buildQuitItem() {
         return new JMenuItem(new QuitAction(jReader));
     }
@@ -293,6 +310,23 @@ class MenuBar extends JMenuBar {
 
         JCheckBoxMenuItem chkRegexp = buildRegexpCheckBox();
         mnuFind.add(chkRegexp);
+
+        mnuFind.addSeparator();
+        JCheckBoxMenuItem chkFuzzyClassSearch = buildFuzzyClassSearchCheckBox();
+        mnuFind.add(chkFuzzyClassSearch);
+    }
+
+    private JCheckBoxMenuItem buildFuzzyClassSearchCheckBox() {
+        final JCheckBoxMenuItem chkFuzzyClassSearch = new JCheckBoxMenuItem("Fuzzy Class Search");
+        chkFuzzyClassSearch.setToolTipText("Open classes from abbreviations like CHM for ConcurrentHashMap");
+        chkFuzzyClassSearch.setState(profileManager.fuzzyClassSearchIsEnabled());
+        chkFuzzyClassSearch.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                profileManager.setFuzzyClassSearchEnabled(chkFuzzyClassSearch.getState());
+            }
+        });
+        return chkFuzzyClassSearch;
     }
 
     private JCheckBoxMenuItem buildRegexpCheckBox() {
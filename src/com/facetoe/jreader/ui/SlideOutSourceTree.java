@@ -1,6 +1,7 @@
 package com.facetoe.jreader.ui;
 
 import com.facetoe.jreader.parsers.AbstractJavaObject;
+import com.facetoe.jreader.parsers.JavaSourceFile;
 import org.jdesktop.swingx.JXCollapsiblePane;
 
 import javax.swing.*;
@@ -85,6 +86,18 @@ class SlideOutSourceTree extends JXCollapsiblePane {
         setCollapsed(true); // Don't show it until requested
     }
 
+    /**
+     * Show the source panels new outline, after the full parse replaced the quick one.
+     *
+     * @param previous The outline that was shown before.
+     */
+    void sourceFileChanged(JavaSourceFile previous) {
+        tree.setSourceFile(sourcePanel.getJavaSourceFile());
+        tree.expandRow(0);
+        searchField.removeWordsFromTrie(previous.getAllDeclarations());
+        searchField.addWordsToTrie(sourcePanel.getJavaSourceFile().getAllDeclarations());
+    }
+
     private void handleTreeSearch() {
         String text = searchField.getText();
         if (text.isEmpty()) {
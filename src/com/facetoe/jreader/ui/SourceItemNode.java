@@ -27,16 +27,25 @@ package com.facetoe.jreader.ui;
 import com.facetoe.jreader.parsers.AbstractJavaObject;
 
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
+import java.util.Enumeration;
 
 /**
  * SourceItemNode to be displayed in the SourceTreeView. Contains information used to render the icon and
  * scroll to definitions in the source when selected.
+ * <p/>
+ * A node can be given the objects for its children up front, the child nodes are only created the first
+ * time something asks for them, which is usually when the node is expanded.
  */
 class SourceItemNode extends DefaultMutableTreeNode {
     private AbstractJavaObject javaObject;
     private final String title;
     private int type;
 
+    // Objects that don't have nodes yet, in the order they're shown.
+    private AbstractJavaObject[] pendingChildren;
+
     public SourceItemNode(String title, AbstractJavaObject object) {
         this.javaObject = object;
         this.title = title;
@@ -48,6 +57,75 @@ class SourceItemNode extends DefaultMutableTreeNode {
         this.type = type;
     }
 
+    /**
+     * Constructor for a node whose children are created when they're first needed.
+     *
+     * @param title    The title.
+     * @param type     The type, used for the icon.
+     * @param children The objects to create child nodes for, already sorted.
+     */
+    public SourceItemNode(String title, int type, AbstractJavaObject[] children) {
+        this(title, type);
+        if (children.length > 0) {
+            pendingChildren = children;
+        }
+    }
+
+    private void createPendingChildren() {
+        if (pendingChildren != null) {
+            AbstractJavaObject[] objects = pendingChildren;
+            pendingChildren = null;
+            for (AbstractJavaObject object : objects) {
+                super.insert(SourceTree.createNode(object), super.getChildCount());
+            }
+        }
+    }
+
+    /**
+     * @return True if this node has children that haven't been created yet.
+     */
+    boolean hasPendingChildren() {
+        return pendingChildren != null;
+    }
+
+    @Override
+    public int getChildCount() {
+        return pendingChildren != null ? pendingChildren.length : super.getChildCount();
+    }
+
+    @Override
+    public TreeNode getChildAt(int index) {
+        createPendingChildren();
+        return super.getChildAt(index);
+    }
+
+    @Override
+    public int getIndex(TreeNode child) {
+        createPendingChildren();
+        return super.getIndex(child);
+    }
+
+    @Override
+    public Enumeration<TreeNode> children() {
+        createPendingChildren();
+        // DefaultMutableTreeNode.children() is raw before Java 9.
+        @SuppressWarnings("unchecked")
+        Enumeration<TreeNode> children = super.children();
+        return children;
+    }
+
+    @Override
+    public void insert(MutableTreeNode child, int index) {
+        createPendingChildren();
+        super.insert(child, index);
+    }
+
+    @Override
+    public void remove(int index) {
+        createPendingChildren();
+        super.remove(index);
+    }
+
     public int getType() {
         return javaObject == null ? type : javaObject.getType();
     }
@@ -33,10 +33,6 @@ import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeSelectionModel;
 import java.awt.*;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 
 /**
  * Provides a tree view of a source file's contents.
@@ -61,6 +57,15 @@ class SourceTree extends JTree {
         setCellRenderer(new SourceViewIconRenderer());
     }
 
+    /**
+     * Show a different outline of the file.
+     *
+     * @param sourceFile The file to display in the tree view.
+     */
+    void setSourceFile(JavaSourceFile sourceFile) {
+        createTree(sourceFile);
+    }
+
     private void createTree(JavaSourceFile sourceFile) {
         SourceItemNode rootNode = parseSource(sourceFile);
         DefaultTreeModel model = new DefaultTreeModel(rootNode);
@@ -70,16 +75,10 @@ class SourceTree extends JTree {
     private SourceItemNode parseSource(JavaSourceFile sourceFile) {
         SourceItemNode node = new SourceItemNode("Root", null);
         for (AbstractJavaObject object : sourceFile.getFileContents()) {
-            if (object instanceof JavaClassOrInterface) {
-                node.add(parseClass((JavaClassOrInterface) object));
-
-            } else if (object instanceof JavaEnum) {
-                JavaEnum javaEnum = (JavaEnum) object;
-                node.add(parseEnum(javaEnum));
-
-            } else if (object instanceof JavaAnnotation) {
-                JavaAnnotation annotation = (JavaAnnotation) object;
-                node.add(parseAnnotation(annotation));
+            if (object instanceof JavaClassOrInterface
+                    || object instanceof JavaEnum
+                    || object instanceof JavaAnnotation) {
+                node.add(createNode(object));
 
             } else {
                 log.warn("Unknown object in parseSource(): " + object.getClass());
@@ -88,96 +87,48 @@ class SourceTree extends JTree {
         return node;
     }
 
-    private SourceItemNode parseEnum(JavaEnum javaEnum) {
-        return objectsToNode(javaEnum.getDeclaration(), AbstractJavaObject.ENUM, javaEnum.getConstants());
-    }
+    /**
+     * Create the node for an object. Members of classes and enums get their nodes when they're expanded.
+     *
+     * @param object The object.
+     * @return The node.
+     */
+    static SourceItemNode createNode(AbstractJavaObject object) {
+        if (object instanceof JavaClassOrInterface) {
+            return parseClass((JavaClassOrInterface) object);
 
-    private SourceItemNode parseAnnotation(JavaAnnotation annotation) {
-        return new SourceItemNode(annotation.getDeclaration(), annotation);
+        } else if (object instanceof JavaEnum) {
+            JavaEnum javaEnum = (JavaEnum) object;
+            return new SourceItemNode(javaEnum.getDeclaration(), AbstractJavaObject.ENUM, javaEnum.getSortedConstants());
+
+        } else {
+            return new SourceItemNode(object.getDeclaration(), object);
+        }
     }
 
-    private SourceItemNode parseClass(JavaClassOrInterface aClass) {
+    private static SourceItemNode parseClass(JavaClassOrInterface aClass) {
         String nodeTitle = aClass.getDeclaration();
         SourceItemNode classNode = new SourceItemNode(nodeTitle, aClass);
 
-        if (aClass.hasConstructors()) {
-            classNode.add(extractConstructors(aClass));
-        }
-        if (aClass.hasMethods()) {
-            classNode.add(extractMethods(aClass));
-        }
-        if (aClass.hasFields()) {
-            classNode.add(extractFields(aClass));
-        }
-        if (aClass.hasEnums()) {
-            classNode.add(extractEnums(aClass));
-        }
-
-        if (aClass.hasNestedClasses()) {
-            ArrayList<SourceItemNode> nestedClasses = parseAndSortNestedClasses(aClass);
-
-            SourceItemNode nestedClassNode = new SourceItemNode("Nested Classes", AbstractJavaObject.CLASS);
-            for (SourceItemNode node : nestedClasses) {
-                nestedClassNode.add(node);
-                classNode.add(nestedClassNode);
-            }
-        }
+        addGroup(classNode, "Constructors", AbstractJavaObject.CONSTRUCTOR, aClass.getSortedConstructors());
+        addGroup(classNode, "Methods", AbstractJavaObject.METHOD, aClass.getSortedMethods());
+        addGroup(classNode, "Fields", AbstractJavaObject.FIELD, aClass.getSortedFields());
+        addGroup(classNode, "Enums", AbstractJavaObject.ENUM, aClass.getSortedEnums());
+        addGroup(classNode, "Nested Classes", AbstractJavaObject.CLASS, aClass.getSortedNestedClasses());
         return classNode;
     }
 
-    private SourceItemNode extractConstructors(JavaClassOrInterface aClass) {
-        return objectsToNode("Constructors", AbstractJavaObject.CONSTRUCTOR, aClass.getConstructors());
-    }
-
-    private SourceItemNode extractMethods(JavaClassOrInterface aClass) {
-        return objectsToNode("Methods", AbstractJavaObject.METHOD, aClass.getMethods());
-    }
-
-    private SourceItemNode extractFields(JavaClassOrInterface aClass) {
-        return objectsToNode("Fields", AbstractJavaObject.FIELD, aClass.getFields());
-    }
-
-    private SourceItemNode extractEnums(JavaClassOrInterface aClass) {
-        SourceItemNode enumsNode = new SourceItemNode("Enums", AbstractJavaObject.ENUM);
-        for (String key : aClass.getEnums().keySet()) {
-            JavaEnum anEnum = aClass.getEnums().get(key);
-            enumsNode.add(objectsToNode(anEnum.getDeclaration(), AbstractJavaObject.ENUM, anEnum.getConstants()));
-        }
-        return enumsNode;
-    }
-
-    private ArrayList<SourceItemNode> parseAndSortNestedClasses(JavaClassOrInterface aClass) {
-        ArrayList<SourceItemNode> nestedClasses = new ArrayList<SourceItemNode>();
-        for (JavaClassOrInterface nestedClass : aClass.getNestedClassesAsArrayList()) {
-            nestedClasses.add(parseClass(nestedClass));
-        }
-
-        Collections.sort(nestedClasses, new Comparator<SourceItemNode>() {
-            @Override
-            public int compare(SourceItemNode firstObj, SourceItemNode secondObj) {
-                return firstObj.toString().compareTo(secondObj.toString());
-            }
-        });
-        return nestedClasses;
-    }
-
     /**
-     * Adds all the objects to a SourceItemNode.
+     * Adds a node for a group of objects, unless there aren't any.
      *
-     * @param objects The objects to add.
-     * @return SourceItemNode containing the objects.
+     * @param objects The objects in the group, sorted.
      */
-    private SourceItemNode objectsToNode(String nodeTitle, int type, HashMap<String, ? extends AbstractJavaObject> objects) {
-        SourceItemNode rootNode = new SourceItemNode(nodeTitle, type);
-        ArrayList<String> items = new ArrayList<String>(objects.keySet());
-        Collections.sort(items);
-        for (String item : items) {
-            rootNode.add(new SourceItemNode(item, objects.get(item)));
+    private static void addGroup(SourceItemNode classNode, String nodeTitle, int type, AbstractJavaObject[] objects) {
+        if (objects.length > 0) {
+            classNode.add(new SourceItemNode(nodeTitle, type, objects));
         }
-        return rootNode;
     }
 
-
     /**
      * Class to render icons in the tree view.
      */
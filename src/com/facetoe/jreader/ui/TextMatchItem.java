@@ -15,8 +15,9 @@ import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Highlighter;
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.font.TextAttribute;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * JReader
@@ -25,52 +26,78 @@ import java.awt.event.ActionListener;
 
 
 /**
- * Creates a code fragment view for TextMatchItem results from a github search.
+ * Draws a code fragment from a github search in the results list. A single TextMatchItem is the renderer for every
+ * row, so the theme is applied to one code area and only the visible rows are drawn.
  */
-class TextMatchItem extends JPanel {
+class TextMatchItem extends JPanel implements ListCellRenderer<TextMatch> {
     private final Logger log = Logger.getLogger(this.getClass());
 
-    private TextMatch textMatch;
-    private OnTextMatchItemClickedListener listener;
+    private static final Color LINK_COLOR = new Color(0, 0, 238);
 
-    public TextMatchItem(TextMatch textMatch) {
-        this.textMatch = textMatch;
+    private final JLabel fileLabel = new JLabel();
+    private final RSyntaxTextArea codeArea = new RSyntaxTextArea();
+
+    public TextMatchItem() {
         createLayout();
     }
 
     private void createLayout() {
         setLayout(new BorderLayout());
         setBorder(new CompoundBorder(new EmptyBorder(0, 0, 5, 5), BorderFactory.createLineBorder(Color.BLACK, 1)));
-        JPanel buttonPanel = new JPanel(new BorderLayout());
 
-        JButton button = createHtmlButton();
-        buttonPanel.add(button, BorderLayout.WEST);
-        add(buttonPanel, BorderLayout.NORTH);
+        // Looks like a link, clicks are handled by the list.
+        Map<TextAttribute, Object> underline = new HashMap<TextAttribute, Object>();
+        underline.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
+        fileLabel.setFont(fileLabel.getFont().deriveFont(underline));
+        fileLabel.setForeground(LINK_COLOR);
+        fileLabel.setBorder(new EmptyBorder(4, 12, 4, 4));
+        fileLabel.setOpaque(true);
+        add(fileLabel, BorderLayout.NORTH);
         add(createCodeArea(), BorderLayout.CENTER);
     }
 
     private RSyntaxTextArea createCodeArea() {
-        RSyntaxTextArea codeArea = new RSyntaxTextArea();
-        Theme theme = Util.loadTheme();
-        theme.apply(codeArea);
+        Theme theme = Util.getTheme();
+        if (theme != null) {
+            theme.apply(codeArea);
+        }
 
         codeArea.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_JAVA);
         codeArea.setCodeFoldingEnabled(false);
         codeArea.setAntiAliasingEnabled(true);
         codeArea.setEditable(false);
-        codeArea.setText(textMatch.getFragment());
-        highlightMatches(codeArea);
+        codeArea.setHighlightCurrentLine(false);
         return codeArea;
     }
 
-    private void highlightMatches(RSyntaxTextArea codeArea) {
+    @Override
+    public Component getListCellRendererComponent(JList<? extends TextMatch> list, TextMatch textMatch, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        String fileName = Util.extractFileName(textMatch.getObject_url());
+        fileLabel.setText(fileName);
+        fileLabel.setToolTipText("Click to view " + fileName);
+        fileLabel.setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+        codeArea.setText(textMatch.getFragment());
+        highlightMatches(textMatch);
+        return this;
+    }
+
+    /**
+     * @return How far from the top of a row the file name link ends.
+     */
+    public int getLinkHeight() {
+        return getInsets().top + fileLabel.getPreferredSize().height;
+    }
+
+    private void highlightMatches(TextMatch textMatch) {
+        Highlighter highlighter = codeArea.getHighlighter();
+        highlighter.removeAllHighlights();
         Match[]  matches = textMatch.getMatches();
         for (Match match : matches) {
             int[] indices = match.getIndices();
             if(indices.length < 2) {
                 return;
             }
-            Highlighter highlighter = codeArea.getHighlighter();
             try {
                 highlighter.addHighlight(indices[0], indices[1], DefaultHighlighter.DefaultPainter);
             } catch (BadLocationException e) {
@@ -78,31 +105,4 @@ class TextMatchItem extends JPanel {
             }
         }
     }
-
-    // Adds a button that looks like a link.
-    private JButton createHtmlButton() {
-        String url = textMatch.getObject_url();
-        String fileName = Util.extractFileName(url);
-        String html = "<HTML><a href=\"\">" + fileName + "</a></HTML>";
-        JButton button = new JButton(html);
-
-        button.setToolTipText("Click to view " + fileName);
-        button.setBorderPainted(false);
-        button.setContentAreaFilled(false);
-        button.setOpaque(false);
-
-        button.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (listener != null) {
-                    listener.textMatchItemClicked(textMatch);
-                }
-            }
-        });
-        return button;
-    }
-
-    public void setOnTextMatchItemClickedListener(OnTextMatchItemClickedListener listener) {
-        this.listener = listener;
-    }
 }
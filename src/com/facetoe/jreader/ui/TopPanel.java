@@ -17,6 +17,7 @@
 */
 package com.facetoe.jreader.ui;
 
+import com.facetoe.jreader.helpers.PrefixSearchable;
 import com.facetoe.jreader.helpers.Util;
 import javafx.scene.web.WebHistory;
 
@@ -24,6 +25,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.Map;
 
 /**
  * Created with IntelliJ IDEA.
@@ -181,6 +183,22 @@ class TopPanel extends JPanel {
         searchBar.removeWordsFromTrie(words);
     }
 
+    public void setRankedAutoComplete(boolean ranked) {
+        searchBar.setRanked(ranked);
+    }
+
+    public void setAutoCompleteUsage(Map<String, Integer> usageCounts) {
+        searchBar.setUsageCounts(usageCounts);
+    }
+
+    public void autoCompleteUsageChanged() {
+        searchBar.usageCountsChanged();
+    }
+
+    public void setExtraAutoCompleteWords(PrefixSearchable extraWords) {
+        searchBar.setExtraWords(extraWords);
+    }
+
     public void clearSearchBar() {
         searchBar.setText("");
     }
@@ -0,0 +1,175 @@
+/*   
+*    Copyright (C) 2013  facetoe - facetoe@ymail.com
+*
+*    This program is free software; you can redistribute it and/or modify
+*    it under the terms of the GNU General Public License as published by
+*    the Free Software Foundation; either version 2 of the License, or
+*    (at your option) any later version.
+*
+*    This program is distributed in the hope that it will be useful,
+*    but WITHOUT ANY WARRANTY; without even the implied warranty of
+*    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*    GNU General Public License for more details.
+*
+*    You should have received a copy of the GNU General Public License along
+*    with this program; if not, write to the Free Software Foundation, Inc.,
+*    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+*/
+package com.facetoe.jreader.ui;
+
+import com.facetoe.jreader.helpers.ProfileManager;
+import com.facetoe.jreader.helpers.SourceUsageIndex;
+import com.facetoe.jreader.helpers.SourceUsageIndex.Usage;
+import org.apache.log4j.Logger;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Displays the places an identifier is used in the current profiles source. Double clicking one, or pressing
+ * enter, opens the file in a new source tab with the identifier selected.
+ */
+public class UsagesPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private final Logger log = Logger.getLogger(this.getClass());
+
+    // The most usages to list, common names like size are used thousands of times.
+    private static final int MAX_USAGES = 5000;
+
+    private final JReader reader;
+    private final ProfileManager profileManager = ProfileManager.getInstance();
+    private final JLabel messageLabel = new JLabel("Finding usages, please wait...");
+    private final JList<Usage> usagesList = new JList<Usage>();
+    private final ArrayList<StatusUpdateListener> statusUpdateListeners = new ArrayList<StatusUpdateListener>();
+
+    public UsagesPanel(JReader reader) {
+        this.reader = reader;
+        initComponents();
+    }
+
+    private void initComponents() {
+        usagesList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        usagesList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        usagesList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelectedUsage();
+                }
+            }
+        });
+        usagesList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "openUsage");
+        usagesList.getActionMap().put("openUsage", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openSelectedUsage();
+            }
+        });
+
+        messageLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        JScrollPane scrollPane = new JScrollPane(usagesList);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        setLayout(new BorderLayout());
+        add(messageLabel, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    /**
+     * Update the usage index if any source files have changed, then list the usages of an identifier.
+     *
+     * @param identifier The identifier, case matters.
+     */
+    public void findUsages(final String identifier) {
+        updateStatus("Finding usages of " + identifier);
+        new SwingWorker<ArrayList<Usage>, Void>() {
+            @Override
+            protected ArrayList<Usage> doInBackground() throws Exception {
+                SourceUsageIndex index = profileManager.updateSourceUsageIndex(new ActionListener() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        updateStatus(e.getActionCommand() + " (" + e.getWhen() + "%)");
+                        updateProgress((int) e.getWhen());
+                    }
+                });
+                return index.findUsages(identifier, MAX_USAGES);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    showUsages(identifier, get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    log.error("Failed to find usages of " + identifier, e.getCause());
+                    messageLabel.setText("Failed to find usages of " + identifier + ": " + e.getCause().getMessage());
+                    updateStatus("");
+                }
+            }
+        }.execute();
+    }
+
+    private void showUsages(String identifier, ArrayList<Usage> usages) {
+        // Filled before the list sees it, so there's one update instead of one for each usage.
+        DefaultListModel<Usage> usagesModel = new DefaultListModel<Usage>();
+        HashSet<String> files = new HashSet<String>();
+        for (Usage usage : usages) {
+            usagesModel.addElement(usage);
+            files.add(usage.getPath());
+        }
+        usagesList.setModel(usagesModel);
+
+        String message;
+        if (usages.isEmpty()) {
+            message = "No usages of " + identifier + " found.";
+        } else if (usages.size() >= MAX_USAGES) {
+            message = "Showing the first " + usages.size() + " usages of " + identifier + ".";
+        } else {
+            message = "Found " + usages.size() + " usages of " + identifier + " in " + files.size() + " files.";
+        }
+        messageLabel.setText(message);
+        updateStatus(message);
+        updateProgress(100);
+    }
+
+    private void openSelectedUsage() {
+        Usage usage = usagesList.getSelectedValue();
+        if (usage != null) {
+            reader.createAndShowNewSourceTab(usage.getFile(), usage.getOffset());
+        }
+    }
+
+    public void addStatusUpdateListener(StatusUpdateListener listener) {
+        statusUpdateListeners.add(listener);
+    }
+
+    void updateStatus(final String message) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                for (StatusUpdateListener statusUpdateListener : statusUpdateListeners) {
+                    statusUpdateListener.updateStatus(message);
+                }
+            }
+        });
+    }
+
+    void updateProgress(final int progress) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                for (StatusUpdateListener statusUpdateListener : statusUpdateListeners) {
+                    statusUpdateListener.updateProgressBar(progress);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,476 @@
+package com.facetoe.jreader.githubapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks GitHubAPI against a local server standing in for github.
+ */
+public class GitHubAPITest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private GitHubAPI gitHubAPI;
+    private final List<String> acceptHeaders = Collections.synchronizedList(new ArrayList<String>());
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final List<String> searchTerms = Collections.synchronizedList(new ArrayList<String>());
+    private final List<File> cacheDirs = new ArrayList<File>();
+
+    // Searches for terms starting with "gated" wait for a permit before they're answered.
+    private final Semaphore gate = new Semaphore(0);
+    // Searches for terms starting with "slow" send part of the response, then trickle out spaces until the client
+    // hangs up, which takes up to SLOW_RESPONSE_TIME.
+    private static final long SLOW_RESPONSE_TIME = 30000;
+    private final List<String> slowResponsesStarted = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> slowResponsesAborted = Collections.synchronizedList(new ArrayList<String>());
+    // Status codes to answer with instead of results, by search term.
+    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Integer>> failures =
+            new ConcurrentHashMap<String, ConcurrentLinkedQueue<Integer>>();
+    // The rate limit headers searches are answered with, if remaining isn't -1.
+    private volatile int rateLimitRemaining = -1;
+    private volatile long rateLimitReset;
+    private volatile String retryAfter;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverThreads);
+        server.createContext("/search/code", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                record(exchange);
+                String rawQuery = exchange.getRequestURI().getRawQuery();
+                String term = URLDecoder.decode(rawQuery.substring(2, rawQuery.indexOf('+')), "UTF-8");
+                searchTerms.add(term);
+                if (term.startsWith("gated")) {
+                    gate.acquireUninterruptibly();
+                }
+                if (term.startsWith("slow")) {
+                    respondSlowly(exchange, term);
+                    return;
+                }
+                if (rateLimitRemaining >= 0) {
+                    exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(rateLimitRemaining));
+                    exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(rateLimitReset));
+                }
+                ConcurrentLinkedQueue<Integer> termFailures = failures.get(term);
+                Integer failure = termFailures == null ? null : termFailures.poll();
+                if (failure != null) {
+                    if (retryAfter != null) {
+                        exchange.getResponseHeaders().set("Retry-After", retryAfter);
+                    }
+                    respond(exchange, failure, "{\"message\":\"Failed with " + failure + "\"}");
+                    return;
+                }
+                if (term.equals("invalid")) {
+                    respond(exchange, 422, "{\"message\":\"Validation Failed\"}");
+                    return;
+                }
+                String etag = "\"" + term + "\"";
+                exchange.getResponseHeaders().set("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                pause(term.length());
+                respond(exchange, 200, "{\"total_count\":" + term.length() + ",\"items\":[{\"name\":\"" + term
+                        + ".java\",\"text_matches\":[{\"fragment\":\"class " + term + "\"}]}]}");
+            }
+        });
+        server.createContext("/objects/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                record(exchange);
+                String name = exchange.getRequestURI().getPath().substring("/objects/".length());
+                pause(name.length());
+                respond(exchange, 200, "{\"name\":\"" + name + "\",\"html_url\":\"https://github.com/" + name + "\"}");
+            }
+        });
+        server.start();
+        gitHubAPI = new GitHubAPI("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    @After
+    public void tearDown() {
+        gitHubAPI.shutdown();
+        gate.release(100);
+        server.stop(0);
+        serverThreads.shutdownNow();
+        for (File cacheDir : cacheDirs) {
+            for (File file : cacheDir.listFiles()) {
+                file.delete();
+            }
+            cacheDir.delete();
+        }
+    }
+
+    @Test
+    public void testSearchAndObjectRequests() throws Exception {
+        SearchResponse search = gitHubAPI.sendRequest(new SearchQuery("JXTable"));
+        assertEquals(7, search.getTotal_count().intValue());
+        assertEquals("JXTable.java", search.getItems().get(0).getName());
+        assertEquals("class JXTable", search.getItems().get(0).getText_matches()[0].getFragment());
+
+        ObjectResponse object = gitHubAPI.sendRequest(new ObjectQuery(gitHubAPI.getApiRoot() + "/objects/JXTree"));
+        assertEquals("JXTree", object.getName());
+        assertEquals("https://github.com/JXTree", object.getHtml_url());
+        assertEquals(Collections.nCopies(2, "application/vnd.github.v3.text-match+json"), acceptHeaders);
+    }
+
+    @Test
+    public void testConcurrentRequestsGetTheirOwnResponses() throws Exception {
+        List<Future<SearchResponse>> searches = new ArrayList<Future<SearchResponse>>();
+        List<Future<ObjectResponse>> objects = new ArrayList<Future<ObjectResponse>>();
+        for (int i = 1; i <= 20; i++) {
+            searches.add(gitHubAPI.sendRequestAsync(new SearchQuery(term(i))));
+            objects.add(gitHubAPI.sendRequestAsync(new ObjectQuery(gitHubAPI.getApiRoot() + "/objects/" + term(i))));
+        }
+        for (int i = 1; i <= 20; i++) {
+            SearchResponse search = searches.get(i - 1).get();
+            assertEquals(i, search.getTotal_count().intValue());
+            assertEquals(term(i) + ".java", search.getItems().get(0).getName());
+            assertEquals(term(i), objects.get(i - 1).get().getName());
+        }
+    }
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        try {
+            gitHubAPI.sendRequest(new SearchQuery("invalid"));
+            fail("Expected a GithubAPIException");
+        } catch (GithubAPIException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Validation Failed"));
+        }
+
+        // The connection is still usable after an error.
+        assertEquals(4, gitHubAPI.sendRequest(new SearchQuery(term(4))).getTotal_count().intValue());
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, gitHubAPI.sendRequest(new SearchQuery(term(i))).getTotal_count().intValue());
+        }
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void testCachedResponses() throws Exception {
+        File cacheDir = createCacheDir();
+        GitHubAPI cachingAPI = new GitHubAPI(gitHubAPI.getApiRoot(), new GithubResponseCache(cacheDir, 1024 * 1024));
+        try {
+            // The second search is younger than the TTL so it doesn't reach the server.
+            assertEquals(3, cachingAPI.sendRequest(new SearchQuery("abc")).getTotal_count().intValue());
+            assertEquals(3, cachingAPI.sendRequest(new SearchQuery("abc")).getTotal_count().intValue());
+            assertEquals(1, acceptHeaders.size());
+
+            // Without a TTL the cached response is revalidated, and the server says it hasn't changed.
+            SearchResponse revalidated = cachingAPI.sendRequest(uncachedSearch("abc"));
+            assertEquals(3, revalidated.getTotal_count().intValue());
+            assertEquals("abc.java", revalidated.getItems().get(0).getName());
+            assertFalse(revalidated.isStale());
+            assertEquals(2, acceptHeaders.size());
+
+            GithubResponseCache responseCache = cachingAPI.getResponseCache();
+            assertEquals(2, responseCache.getHits());
+            assertEquals(1, responseCache.getMisses());
+            assertEquals("Response cache: 2 hits, 1 misses", responseCache.getStatistics());
+
+            // The cache is still there for the next run.
+            GitHubAPI nextRun = new GitHubAPI(gitHubAPI.getApiRoot(), new GithubResponseCache(cacheDir, 1024 * 1024));
+            assertEquals(3, nextRun.sendRequest(new SearchQuery("abc")).getTotal_count().intValue());
+            assertEquals(2, acceptHeaders.size());
+            nextRun.shutdown();
+        } finally {
+            cachingAPI.shutdown();
+        }
+    }
+
+    @Test
+    public void testIdenticalQueriesAreCoalesced() throws Exception {
+        List<Future<SearchResponse>> responses = new ArrayList<Future<SearchResponse>>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(gitHubAPI.sendRequestAsync(new SearchQuery("gated")));
+        }
+        for (Future<SearchResponse> response : responses) {
+            assertSame(responses.get(0), response);
+        }
+        gate.release();
+        assertEquals(5, responses.get(4).get().getTotal_count().intValue());
+        assertEquals(1, searchTerms.size());
+
+        // Once it's finished the same query is sent again.
+        gate.release();
+        assertEquals(5, gitHubAPI.sendRequest(new SearchQuery("gated")).getTotal_count().intValue());
+        assertEquals(2, searchTerms.size());
+    }
+
+    @Test
+    public void testInteractiveRequestsGoFirst() throws Exception {
+        // Keep every worker busy so the next two requests have to queue.
+        List<Future<SearchResponse>> busy = new ArrayList<Future<SearchResponse>>();
+        for (int i = 1; i <= 4; i++) {
+            busy.add(gitHubAPI.sendRequestAsync(new SearchQuery("gated" + term(i))));
+        }
+        waitFor(4, searchTerms);
+
+        Future<SearchResponse> background =
+                gitHubAPI.sendRequestAsync(new SearchQuery("background"), GitHubAPI.Priority.BACKGROUND);
+        Future<SearchResponse> interactive = gitHubAPI.sendRequestAsync(new SearchQuery("interactive"));
+        // Free one worker, which takes the interactive request first even though it was queued second.
+        gate.release();
+        assertEquals(10, background.get().getTotal_count().intValue());
+        assertEquals(11, interactive.get().getTotal_count().intValue());
+        assertTrue(searchTerms.toString(), searchTerms.indexOf("interactive") < searchTerms.indexOf("background"));
+        gate.release(3);
+        for (Future<SearchResponse> response : busy) {
+            response.get();
+        }
+    }
+
+    @Test
+    public void testRaisedPriorityIsSentOnce() throws Exception {
+        List<Future<SearchResponse>> busy = new ArrayList<Future<SearchResponse>>();
+        for (int i = 1; i <= 4; i++) {
+            busy.add(gitHubAPI.sendRequestAsync(new SearchQuery("gated" + term(i))));
+        }
+        waitFor(4, searchTerms);
+
+        Future<SearchResponse> background =
+                gitHubAPI.sendRequestAsync(new SearchQuery("raised"), GitHubAPI.Priority.BACKGROUND);
+        Future<SearchResponse> interactive = gitHubAPI.sendRequestAsync(new SearchQuery("interactive"));
+        // Asking for the background query again interactively moves it ahead of the other request.
+        assertSame(background, gitHubAPI.sendRequestAsync(new SearchQuery("raised")));
+        gate.release();
+        assertEquals(6, background.get().getTotal_count().intValue());
+        assertEquals(11, interactive.get().getTotal_count().intValue());
+        assertTrue(searchTerms.toString(), searchTerms.indexOf("raised") < searchTerms.indexOf("interactive"));
+        assertEquals(searchTerms.toString(), searchTerms.indexOf("raised"), searchTerms.lastIndexOf("raised"));
+        gate.release(3);
+        for (Future<SearchResponse> response : busy) {
+            response.get();
+        }
+    }
+
+    @Test
+    public void testBackgroundRequestsLeaveRoomForInteractive() throws Exception {
+        rateLimitRemaining = 2;
+        rateLimitReset = System.currentTimeMillis() / 1000 + 2;
+        gitHubAPI.sendRequest(new SearchQuery("first"));
+        assertEquals(2, gitHubAPI.getRateLimits().getRemaining(GithubRateLimits.SEARCH));
+
+        Future<SearchResponse> background =
+                gitHubAPI.sendRequestAsync(new SearchQuery("background"), GitHubAPI.Priority.BACKGROUND);
+        assertEquals(11, gitHubAPI.sendRequest(new SearchQuery("interactive")).getTotal_count().intValue());
+        assertFalse(background.isDone());
+
+        // It's sent once the limit resets.
+        assertEquals(10, background.get().getTotal_count().intValue());
+        assertTrue(System.currentTimeMillis() >= (rateLimitReset - 1) * 1000);
+    }
+
+    @Test
+    public void testRateLimitedRequestIsSentAgain() throws Exception {
+        failures.put("limited", new ConcurrentLinkedQueue<Integer>(Collections.singleton(403)));
+        retryAfter = "1";
+        long start = System.currentTimeMillis();
+        assertEquals(7, gitHubAPI.sendRequest(new SearchQuery("limited")).getTotal_count().intValue());
+        assertTrue(System.currentTimeMillis() - start >= 900);
+        assertEquals(Arrays.asList("limited", "limited"), searchTerms);
+    }
+
+    @Test
+    public void testServerErrorIsRetried() throws Exception {
+        failures.put("flaky", new ConcurrentLinkedQueue<Integer>(Collections.singleton(503)));
+        assertEquals(5, gitHubAPI.sendRequest(new SearchQuery("flaky")).getTotal_count().intValue());
+        assertEquals(Arrays.asList("flaky", "flaky"), searchTerms);
+    }
+
+    @Test
+    public void testStaleResponseWhenRateLimited() throws Exception {
+        GitHubAPI cachingAPI = new GitHubAPI(gitHubAPI.getApiRoot(), new GithubResponseCache(createCacheDir(), 1024 * 1024));
+        try {
+            assertFalse(cachingAPI.sendRequest(uncachedSearch("abc")).isStale());
+
+            // The limit won't reset for an hour, so rather than wait the cached results are used.
+            failures.put("abc", new ConcurrentLinkedQueue<Integer>(Collections.singleton(403)));
+            rateLimitRemaining = 0;
+            rateLimitReset = System.currentTimeMillis() / 1000 + 3600;
+            SearchResponse stale = cachingAPI.sendRequest(uncachedSearch("abc"));
+            assertTrue(stale.isStale());
+            assertEquals(3, stale.getTotal_count().intValue());
+
+            // Without a cached response the limit is reported, without asking the server.
+            try {
+                cachingAPI.sendRequest(new SearchQuery("abcd"));
+                fail("Expected a GithubRateLimitException");
+            } catch (GithubRateLimitException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("try again after"));
+            }
+            assertEquals(Arrays.asList("abc", "abc"), searchTerms);
+        } finally {
+            cachingAPI.shutdown();
+        }
+    }
+
+    @Test
+    public void testCanceledRequestsAreAborted() throws Exception {
+        // Every worker is busy reading a response that's taking its time.
+        GithubCancellationToken token = new GithubCancellationToken();
+        List<Future<SearchResponse>> slow = new ArrayList<Future<SearchResponse>>();
+        for (int i = 1; i <= 4; i++) {
+            slow.add(gitHubAPI.sendRequestAsync(new SearchQuery("slow" + term(i)), GitHubAPI.Priority.INTERACTIVE,
+                    token));
+        }
+        waitFor(4, slowResponsesStarted);
+
+        // A new search doesn't have to wait for them once they're canceled.
+        long start = System.currentTimeMillis();
+        token.cancel();
+        for (Future<SearchResponse> response : slow) {
+            assertTrue(response.isCancelled());
+        }
+        assertEquals(4, gitHubAPI.sendRequest(new SearchQuery("next")).getTotal_count().intValue());
+        assertTrue(System.currentTimeMillis() - start < SLOW_RESPONSE_TIME / 2);
+        waitFor(4, slowResponsesAborted);
+
+        // Requests made with a token that's already canceled aren't sent.
+        assertTrue(gitHubAPI.sendRequestAsync(new SearchQuery("abc"), GitHubAPI.Priority.INTERACTIVE, token)
+                .isCancelled());
+        assertFalse(searchTerms.contains("abc"));
+    }
+
+    @Test
+    public void testSharedRequestIsCanceledByLastCaller() throws Exception {
+        GithubCancellationToken first = new GithubCancellationToken();
+        GithubCancellationToken second = new GithubCancellationToken();
+        Future<SearchResponse> response =
+                gitHubAPI.sendRequestAsync(new SearchQuery("slow"), GitHubAPI.Priority.BACKGROUND, first);
+        assertSame(response, gitHubAPI.sendRequestAsync(new SearchQuery("slow"), GitHubAPI.Priority.INTERACTIVE,
+                second));
+        waitFor(1, slowResponsesStarted);
+
+        first.cancel();
+        assertFalse(response.isDone());
+        second.cancel();
+        assertTrue(response.isCancelled());
+        waitFor(1, slowResponsesAborted);
+
+        // Someone without a token still wants the response, so it isn't canceled.
+        GithubCancellationToken third = new GithubCancellationToken();
+        Future<SearchResponse> shared =
+                gitHubAPI.sendRequestAsync(new SearchQuery("gated"), GitHubAPI.Priority.INTERACTIVE, third);
+        assertSame(shared, gitHubAPI.sendRequestAsync(new SearchQuery("gated")));
+        third.cancel();
+        assertFalse(shared.isDone());
+        gate.release();
+        assertEquals(5, shared.get().getTotal_count().intValue());
+    }
+
+    private File createCacheDir() throws IOException {
+        File cacheDir = Files.createTempDirectory("GitHubAPITest").toFile();
+        cacheDirs.add(cacheDir);
+        return cacheDir;
+    }
+
+    // A search that always asks the server whether the cached response is still current.
+    private static SearchQuery uncachedSearch(String term) {
+        return new SearchQuery(term) {
+            @Override
+            public long getCacheTtl() {
+                return 0;
+            }
+        };
+    }
+
+    private static void waitFor(int size, List<?> list) throws InterruptedException {
+        for (int i = 0; i < 500 && list.size() < size; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, list.size());
+    }
+
+    // A search term i letters long.
+    private static String term(int i) {
+        return "abcdefghijklmnopqrstuvwxyz".substring(0, i);
+    }
+
+    private void record(HttpExchange exchange) {
+        acceptHeaders.add(exchange.getRequestHeaders().getFirst("Accept"));
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+    }
+
+    // Vary how long each response takes so concurrent requests finish out of order.
+    private static void pause(int seed) {
+        try {
+            Thread.sleep((seed * 7) % 20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respondSlowly(HttpExchange exchange, String term) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write("{\"total_count\":1,\"items\":[".getBytes(UTF_8));
+            out.flush();
+            slowResponsesStarted.add(term);
+            long end = System.currentTimeMillis() + SLOW_RESPONSE_TIME;
+            while (System.currentTimeMillis() < end) {
+                Thread.sleep(20);
+                out.write(' ');
+                out.flush();
+            }
+            out.write("]}".getBytes(UTF_8));
+            out.close();
+        } catch (IOException e) {
+            slowResponsesAborted.add(term);
+        } catch (InterruptedException e) {
+            // The server is stopping.
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.facetoe.jreader.githubapi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks GithubRateLimits counts requests against each limit and forgets a limit once it resets.
+ */
+public class GithubRateLimitsTest {
+
+    @Test
+    public void testRequestsAreCounted() throws Exception {
+        GithubRateLimits rateLimits = new GithubRateLimits();
+        assertEquals(0, rateLimits.reserve(GithubRateLimits.SEARCH, 0));
+        assertEquals(-1, rateLimits.getRemaining(GithubRateLimits.SEARCH));
+
+        rateLimits.update(GithubRateLimits.SEARCH, 3, System.currentTimeMillis() + 60000);
+        assertEquals(0, rateLimits.reserve(GithubRateLimits.SEARCH, 2));
+        assertEquals(2, rateLimits.getRemaining(GithubRateLimits.SEARCH));
+
+        // Two are left for requests that don't reserve any.
+        long wait = rateLimits.reserve(GithubRateLimits.SEARCH, 2);
+        assertTrue(wait > 59000 && wait <= 60000);
+        assertEquals(0, rateLimits.reserve(GithubRateLimits.SEARCH, 0));
+        assertEquals(0, rateLimits.reserve(GithubRateLimits.SEARCH, 0));
+        assertTrue(rateLimits.reserve(GithubRateLimits.SEARCH, 0) > 0);
+        assertTrue(rateLimits.getWait(GithubRateLimits.SEARCH) > 0);
+
+        // The core limit is separate.
+        assertEquals(0, rateLimits.getWait(GithubRateLimits.CORE));
+    }
+
+    @Test
+    public void testLimitIsForgottenWhenItResets() throws Exception {
+        GithubRateLimits rateLimits = new GithubRateLimits();
+        rateLimits.update(GithubRateLimits.CORE, 0, System.currentTimeMillis() + 100);
+        assertTrue(rateLimits.getWait(GithubRateLimits.CORE) > 0);
+        Thread.sleep(150);
+        assertEquals(0, rateLimits.getWait(GithubRateLimits.CORE));
+        assertEquals(-1, rateLimits.getRemaining(GithubRateLimits.CORE));
+    }
+}
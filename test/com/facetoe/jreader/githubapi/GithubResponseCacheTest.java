@@ -0,0 +1,114 @@
+package com.facetoe.jreader.githubapi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks GithubResponseCache stores responses between runs and evicts the least recently used ones.
+ */
+public class GithubResponseCacheTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = Files.createTempDirectory("GithubResponseCacheTest").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : cacheDir.listFiles()) {
+            file.delete();
+        }
+        cacheDir.delete();
+    }
+
+    @Test
+    public void testStoredBetweenRuns() throws Exception {
+        GithubResponseCache cache = new GithubResponseCache(cacheDir, 1024 * 1024);
+        assertNull(cache.get("https://api.github.com/search/code?q=JXTable"));
+        cache.put("https://api.github.com/search/code?q=JXTable", "\"etag\"", gzip("{\"total_count\":1}"));
+        cache.put("https://api.github.com/search/code?q=JXTree", null, gzip("{\"total_count\":2}"));
+
+        cache = new GithubResponseCache(cacheDir, 1024 * 1024);
+        GithubResponseCache.CachedResponse table = cache.get("https://api.github.com/search/code?q=JXTable");
+        assertEquals("\"etag\"", table.getEtag());
+        assertEquals("{\"total_count\":1}", gunzip(table));
+        assertTrue(table.isFresh(60000));
+        assertTrue(!table.isFresh(0));
+
+        GithubResponseCache.CachedResponse tree = cache.get("https://api.github.com/search/code?q=JXTree");
+        assertNull(tree.getEtag());
+        assertEquals("{\"total_count\":2}", gunzip(tree));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAreEvicted() throws Exception {
+        byte[] body = gzip(randomText(10000));
+        long limit = 3 * body.length + 1000;
+        GithubResponseCache cache = new GithubResponseCache(cacheDir, limit);
+        cache.put("a", null, body);
+        cache.put("b", null, body);
+        cache.put("c", null, body);
+        assertNotNull(cache.get("a"));
+
+        // b is the least recently used, so it makes room for d.
+        cache.put("d", null, body);
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertTrue(cache.getSize() <= limit);
+        assertEquals(3, cacheDir.listFiles().length);
+
+        // A smaller limit next run evicts down to the most recently used.
+        cache = new GithubResponseCache(cacheDir, body.length + 1000);
+        cache.put("e", null, body);
+        assertEquals(1, cacheDir.listFiles().length);
+        assertNotNull(cache.get("e"));
+    }
+
+    private static String randomText(int length) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+
+    private static byte[] gzip(String text) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(text.getBytes(UTF_8));
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static String gunzip(GithubResponseCache.CachedResponse response) throws Exception {
+        InputStream in = response.openBody();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(bytes.toByteArray(), UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+package com.facetoe.jreader.githubapi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SearchQuery asks for the right page and knows when github has run out of pages.
+ */
+public class SearchQueryTest {
+
+    @Test
+    public void testPageIsInQuery() throws Exception {
+        SearchQuery query = new SearchQuery("ArrayList", "facetoe");
+        assertEquals(1, query.getPage());
+        assertTrue(query.getEncodedQuery("http://localhost").endsWith("+user:facetoe&per_page=30&page=1"));
+
+        SearchQuery next = query.nextPage();
+        assertEquals(2, next.getPage());
+        assertEquals("http://localhost/search/code?q=ArrayList+in:file+language:java+extension:java"
+                + "+user:facetoe&per_page=30&page=2", next.getEncodedQuery("http://localhost"));
+    }
+
+    @Test
+    public void testHasNextPage() throws Exception {
+        SearchQuery query = new SearchQuery("ArrayList");
+        assertFalse(query.hasNextPage(response(0)));
+        assertFalse(query.hasNextPage(response(30)));
+        assertTrue(query.hasNextPage(response(31)));
+        assertFalse(query.hasNextPage(new SearchResponse()));
+
+        // Github won't return more than the first 1000 results.
+        SearchQuery last = new SearchQuery("ArrayList", "apache", 34);
+        assertFalse(last.hasNextPage(response(5000)));
+        assertTrue(new SearchQuery("ArrayList", "apache", 33).hasNextPage(response(5000)));
+    }
+
+    private static SearchResponse response(int totalCount) {
+        SearchResponse response = new SearchResponse();
+        response.setTotal_count(totalCount);
+        return response;
+    }
+}
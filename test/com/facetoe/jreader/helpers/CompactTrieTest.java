@@ -0,0 +1,150 @@
+package com.facetoe.jreader.helpers;
+
+import com.facetoe.jreader.JReaderTest;
+import com.facetoe.jreader.parsers.JavaDocParser;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks CompactTrie behaves like Trie and reports how much memory each one uses.
+ */
+public class CompactTrieTest extends JReaderTest {
+    private static ArrayList<String> swingxClassNames;
+
+    @BeforeClass
+    public static void setUpClass() {
+        JavaDocParser parser = new JavaDocParser();
+        swingxClassNames = new ArrayList<String>(
+                parser.parse(new File(TEST_PROFILE_DOC_DIR + "allclasses-noframe.html")).keySet());
+    }
+
+    @Test
+    public void testSameWordsAsTrie() throws Exception {
+        Trie trie = new Trie(swingxClassNames);
+        CompactTrie compactTrie = new CompactTrie(swingxClassNames);
+        assertEquals(swingxClassNames.size(), compactTrie.size());
+
+        for (String className : swingxClassNames) {
+            for (int i = 1; i <= Math.min(3, className.length()); i++) {
+                String prefix = className.substring(0, i);
+                ArrayList<String> expected = trie.getWordsForPrefix(prefix);
+                Collections.sort(expected);
+                assertEquals(expected, compactTrie.getWordsForPrefix(prefix));
+            }
+        }
+    }
+
+    @Test
+    public void testForEachWordWithPrefixStopsAtLimit() throws Exception {
+        PrefixTree[] tries = {new Trie(swingxClassNames), new CompactTrie(swingxClassNames)};
+        ArrayList<String> allWords = new CompactTrie(swingxClassNames).getWordsForPrefix("J");
+        assertTrue(allWords.size() > 5);
+
+        for (PrefixTree trie : tries) {
+            final ArrayList<String> foundWords = new ArrayList<String>();
+            trie.forEachWordWithPrefix("J", 5, new PrefixTree.WordConsumer() {
+                @Override
+                public void accept(String word) {
+                    foundWords.add(word);
+                }
+            });
+            assertEquals(allWords.subList(0, 5), foundWords);
+
+            foundWords.clear();
+            trie.forEachWordWithPrefix("J", 0, new PrefixTree.WordConsumer() {
+                @Override
+                public void accept(String word) {
+                    foundWords.add(word);
+                }
+            });
+            assertTrue(foundWords.isEmpty());
+        }
+    }
+
+    @Test
+    public void testRankedSuggestions() throws Exception {
+        CompactTrie compactTrie = new CompactTrie(swingxClassNames);
+        compactTrie.setRanked(true);
+
+        // With no usage the shortest names come first.
+        ArrayList<String> suggestions = compactTrie.getWordsForPrefix("JX");
+        assertEquals(CompactTrie.RANKED_SUGGESTIONS, suggestions.size());
+        for (int i = 1; i < suggestions.size(); i++) {
+            assertTrue(suggestions.get(i - 1).length() <= suggestions.get(i).length());
+        }
+
+        HashMap<String, Integer> usageCounts = new HashMap<String, Integer>();
+        compactTrie.setUsageCounts(usageCounts);
+        usageCounts.put("JXTreeTable", 2);
+        usageCounts.put("JXTable", 1);
+        compactTrie.usageCountsChanged();
+
+        suggestions = compactTrie.getWordsForPrefix("JX");
+        assertEquals("JXTreeTable", suggestions.get(0));
+        assertEquals("JXTable", suggestions.get(1));
+        assertEquals("JXTreeTable", compactTrie.getWordsForPrefix("JXTr").get(0));
+
+        // Removed words drop out of the ranked lists.
+        ArrayList<String> removed = new ArrayList<String>();
+        removed.add("JXTreeTable");
+        compactTrie.removeWords(removed);
+        assertEquals("JXTable", compactTrie.getWordsForPrefix("JX").get(0));
+    }
+
+    @Test
+    public void testRemoveWords() throws Exception {
+        CompactTrie compactTrie = new CompactTrie(swingxClassNames);
+        int nodeCount = compactTrie.getNodeCount();
+
+        ArrayList<String> extraWords = new ArrayList<String>();
+        extraWords.add("JXTotallyMadeUpName");
+        extraWords.add("ZzzNotAClass");
+        compactTrie.addWords(extraWords);
+        compactTrie.removeWords(extraWords);
+
+        assertEquals(swingxClassNames.size(), compactTrie.size());
+        assertEquals(nodeCount, compactTrie.getNodeCount());
+        assertEquals(0, compactTrie.getWordsForPrefix("Zzz").size());
+        assertTrue(compactTrie.getWordsForPrefix("JX").contains("JXTable"));
+    }
+
+    // Builds both tries from the JDK class names and prints how much heap each one takes.
+    @Test
+    public void testMemoryFootprint() throws Exception {
+        pm.setCurrentProfile(Config.DEFAULT_PROFILE_NAME);
+        ArrayList<String> classNames = new ArrayList<String>(new JavaDocParser()
+                .parse(new File(pm.getDocDir() + Config.ALL_CLASSSES_DOC_FILE)).keySet());
+
+        long before = usedMemory();
+        Trie trie = new Trie(classNames);
+        long trieBytes = usedMemory() - before;
+
+        before = usedMemory();
+        CompactTrie compactTrie = new CompactTrie(classNames);
+        long compactTrieBytes = usedMemory() - before;
+
+        System.out.println("Memory footprint for " + classNames.size() + " class names:");
+        System.out.println(String.format("  Trie:        %,d bytes", trieBytes));
+        System.out.println(String.format("  CompactTrie: %,d bytes (%d nodes)", compactTrieBytes, compactTrie.getNodeCount()));
+
+        assertNotNull(trie.getWordsForPrefix("J"));
+        assertTrue(compactTrieBytes < trieBytes);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
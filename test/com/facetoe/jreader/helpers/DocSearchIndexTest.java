@@ -0,0 +1,97 @@
+package com.facetoe.jreader.helpers;
+
+import com.facetoe.jreader.JReaderTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks DocSearchIndex finds the pages that declare a member and survives a round trip through a file.
+ */
+public class DocSearchIndexTest extends JReaderTest {
+    private static DocSearchIndex docSearchIndex;
+    private static File indexFile;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        docSearchIndex = DocSearchIndex.build(new File(TEST_PROFILE_DOC_DIR));
+        indexFile = File.createTempFile("docSearch", ".idx");
+        docSearchIndex.write(indexFile);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        indexFile.delete();
+    }
+
+    @Test
+    public void testDeclaringClassComesFirst() throws Exception {
+        ArrayList<String> results = docSearchIndex.search("setHighlighters", 5);
+        assertEquals("org/jdesktop/swingx/JXTable.html", results.get(0));
+        assertTrue(results.contains("org/jdesktop/swingx/JXList.html"));
+
+        // The case of the query doesn't matter.
+        assertEquals(results, docSearchIndex.search("SETHIGHLIGHTERS", 5));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        assertEquals(3, docSearchIndex.search("sort order", 3).size());
+        assertTrue(docSearchIndex.search("notAWordInTheseDocs", 10).isEmpty());
+        assertTrue(docSearchIndex.search("", 10).isEmpty());
+        assertTrue(docSearchIndex.search("setHighlighters", 0).isEmpty());
+    }
+
+    @Test
+    public void testListPagesAreSkipped() throws Exception {
+        for (String path : docSearchIndex.search("JXTable", docSearchIndex.getPageCount())) {
+            assertFalse(path, path.startsWith("index-all") || path.startsWith("allclasses"));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        DocSearchIndex mapped = DocSearchIndex.open(indexFile);
+        assertEquals(docSearchIndex.getPageCount(), mapped.getPageCount());
+        assertEquals(docSearchIndex.getTermCount(), mapped.getTermCount());
+        for (String query : new String[]{"setHighlighters", "sort order", "JXTable", "painter"}) {
+            assertEquals(docSearchIndex.search(query, 20), mapped.search(query, 20));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws Exception {
+        File otherFile = File.createTempFile("classData", ".idx");
+        try {
+            SortedIndexFile.fromMap(new HashMap<String, String>()).write(otherFile);
+            DocSearchIndex.open(otherFile);
+        } finally {
+            otherFile.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedFile() throws Exception {
+        byte[] contents = Files.readAllBytes(indexFile.toPath());
+        File truncated = File.createTempFile("docSearch", ".idx");
+        try {
+            FileOutputStream outputStream = new FileOutputStream(truncated);
+            outputStream.write(contents, 0, contents.length - 5);
+            outputStream.close();
+            DocSearchIndex.open(truncated);
+        } finally {
+            truncated.delete();
+        }
+    }
+}
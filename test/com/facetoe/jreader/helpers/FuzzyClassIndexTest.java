@@ -0,0 +1,87 @@
+package com.facetoe.jreader.helpers;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks FuzzyClassIndex matches abbreviations and reports how long a lookup takes.
+ */
+public class FuzzyClassIndexTest {
+    private static final List<String> CLASS_NAMES = Arrays.asList(
+            "ConcurrentHashMap", "HashMap", "CodeHTML", "Character", "CharsetMapping",
+            "NullPointerException", "NoSuchElementException", "ArrayIndexOutOfBoundsException",
+            "HTMLEditorKit", "String", "StringBuilder", "StringBuffer", "Stream");
+
+    private final FuzzyClassIndex index = new FuzzyClassIndex(CLASS_NAMES);
+
+    @Test
+    public void testHumpMatches() throws Exception {
+        assertEquals("ConcurrentHashMap", index.findBestMatch("CHM"));
+        assertEquals("ConcurrentHashMap", index.findBestMatch("concHashMap"));
+        assertEquals("NullPointerException", index.findBestMatch("NPE"));
+        assertEquals("ArrayIndexOutOfBoundsException", index.findBestMatch("AIOOBE"));
+        assertEquals("HTMLEditorKit", index.findBestMatch("HEK"));
+        assertEquals("StringBuilder", index.findBestMatch("StrBui"));
+    }
+
+    @Test
+    public void testMatchOrder() throws Exception {
+        // Prefix matches first, shortest first.
+        assertEquals(Arrays.asList("Stream", "String", "StringBuffer", "StringBuilder"), index.find("str", 10));
+
+        // Hump matches from the first hump beat those that start later.
+        ArrayList<String> results = index.find("HM", 10);
+        assertEquals("HashMap", results.get(0));
+        assertTrue(results.contains("ConcurrentHashMap"));
+
+        // Acronyms are a single hump, so CodeHTML only matches CHM as a subsequence.
+        results = index.find("CHM", 10);
+        assertEquals("ConcurrentHashMap", results.get(0));
+        assertTrue(results.indexOf("CodeHTML") > results.indexOf("ConcurrentHashMap"));
+
+        assertEquals(2, index.find("str", 2).size());
+        assertNull(index.findBestMatch("xyz"));
+        assertTrue(index.find("  ", 10).isEmpty());
+    }
+
+    // Builds an index of 50,000 made up class names and prints how long lookups take.
+    @Test
+    public void testLookupSpeed() throws Exception {
+        String[] humps = {"Abstract", "Array", "Buffer", "Concurrent", "Default", "Event", "Factory", "Hash",
+                "Input", "List", "Map", "Node", "Output", "Provider", "Reader", "Stream", "Table", "Writer"};
+        Random random = new Random(1);
+        ArrayList<String> classNames = new ArrayList<String>();
+        for (int i = 0; i < 50000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int j = 0; j < 2 + random.nextInt(3); j++) {
+                name.append(humps[random.nextInt(humps.length)]);
+            }
+            classNames.add(name.append(i).toString());
+        }
+        FuzzyClassIndex bigIndex = new FuzzyClassIndex(classNames);
+
+        String[] queries = {"C", "CH", "CHM", "conc", "concHashMap", "aio", "sb", "xyz", "AbsLiRe"};
+        for (int i = 0; i < 200; i++) {
+            for (String query : queries) {
+                bigIndex.find(query, 20);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            for (String query : queries) {
+                assertTrue(bigIndex.find(query, 20).size() <= 20);
+            }
+        }
+        long micros = (System.nanoTime() - start) / 1000 / (100 * queries.length);
+        System.out.println("FuzzyClassIndex: " + micros + "us per lookup over " + bigIndex.size() + " names");
+    }
+}
@@ -0,0 +1,95 @@
+package com.facetoe.jreader.helpers;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks IdentifierIndex finds the same matches as searching the text, and steps through them.
+ */
+public class IdentifierIndexTest {
+    private static final File JXTABLE_SOURCE = new File("testFiles/swingx-all-1.6.4-sources/org/jdesktop/swingx/JXTable.java");
+
+    private static String source;
+    private static IdentifierIndex index;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        source = SourceFileLoader.read(JXTABLE_SOURCE, Charset.forName("UTF-8"));
+        index = new IdentifierIndex(source);
+    }
+
+    @Test
+    public void testSameMatchesAsSearchingText() throws Exception {
+        for (String word : new String[]{"JXTable", "jxtable", "Table", "row", "getRowHeight", "e", "x", "NotThere"}) {
+            for (boolean matchCase : new boolean[]{true, false}) {
+                for (boolean wholeWord : new boolean[]{true, false}) {
+                    String description = word + " matchCase=" + matchCase + " wholeWord=" + wholeWord;
+                    assertArrayEquals(description, search(word, matchCase, wholeWord),
+                            index.find(word, matchCase, wholeWord));
+                }
+            }
+        }
+        assertTrue(index.find("JXTable", true, true).length > 10);
+        assertEquals(0, index.find("NotThere", false, false).length);
+    }
+
+    @Test
+    public void testNextAndPrevious() throws Exception {
+        int[] offsets = {10, 20, 30};
+        assertEquals(0, IdentifierIndex.next(offsets, 0));
+        assertEquals(1, IdentifierIndex.next(offsets, 20));
+        assertEquals(2, IdentifierIndex.next(offsets, 21));
+        assertEquals(0, IdentifierIndex.next(offsets, 31));
+        assertEquals(2, IdentifierIndex.previous(offsets, 31));
+        assertEquals(0, IdentifierIndex.previous(offsets, 20));
+        assertEquals(2, IdentifierIndex.previous(offsets, 10));
+        assertEquals(-1, IdentifierIndex.next(new int[0], 0));
+        assertEquals(-1, IdentifierIndex.previous(new int[0], 0));
+    }
+
+    @Test
+    public void testWordAt() throws Exception {
+        IdentifierIndex small = new IdentifierIndex("int count = max_1;");
+        assertEquals("int", small.getWordAt(0));
+        assertEquals("int", small.getWordAt(3));
+        assertEquals("count", small.getWordAt(6));
+        assertNull(small.getWordAt(10));
+        assertEquals("max_1", small.getWordAt(17));
+        assertNull(small.getWordAt(18));
+
+        assertTrue(IdentifierIndex.isWord("get$Row_1"));
+        assertFalse(IdentifierIndex.isWord("getRow()"));
+        assertFalse(IdentifierIndex.isWord(""));
+    }
+
+    // What a plain text search finds, with whole words bounded by non-identifier characters.
+    private static int[] search(String word, boolean matchCase, boolean wholeWord) {
+        String regex = Pattern.quote(word);
+        if (wholeWord) {
+            regex = "(?<![\\p{javaJavaIdentifierPart}])" + regex + "(?![\\p{javaJavaIdentifierPart}])";
+        }
+        Matcher matcher = Pattern.compile(regex, matchCase ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)
+                .matcher(source);
+        ArrayList<Integer> found = new ArrayList<Integer>();
+        while (matcher.find()) {
+            found.add(matcher.start());
+        }
+        int[] offsets = new int[found.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = found.get(i);
+        }
+        return offsets;
+    }
+}
@@ -41,6 +41,8 @@ public class ProfileManagerTest extends JReaderTest {
         assertEquals(true, (Util.getFileFromPathElements(TEST_PROFILE_DIR, TEST_PROFILE_NAME + ".ser")).exists());
         assertEquals(true, (Util.getFileFromPathElements(TEST_PROFILE_DIR)).exists());
         assertEquals(true, (Util.getFileFromPathElements(TEST_PROFILE_DIR, Config.CLASS_DATA_FILE_NAME)).exists());
+        assertEquals(true, (Util.getFileFromPathElements(TEST_PROFILE_DIR, Config.MEMBER_DATA_FILE_NAME)).exists());
+        assertEquals(true, (Util.getFileFromPathElements(TEST_PROFILE_DIR, Config.DOC_SEARCH_INDEX_FILE_NAME)).exists());
     }
 
     @Test
@@ -82,7 +84,7 @@ public class ProfileManagerTest extends JReaderTest {
         int len = profiles.size();
         for (int i = 0; i < len; i++) {
             assertEquals(true, (profiles.get(i).equals(profileDirs[i].getName())));
-            assertEquals(2, profileDirs[i].listFiles().length); // There are two files generated for each profile.
+            assertEquals(4, profileDirs[i].listFiles().length); // There are four files generated for each profile.
         }
     }
 
@@ -0,0 +1,115 @@
+package com.facetoe.jreader.helpers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks PropertiesFile caches values, writes them later and notices outside edits.
+ */
+public class PropertiesFileTest {
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("config", ".properties");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testWritesAreDelayed() throws Exception {
+        PropertiesFile properties = new PropertiesFile(file, 200, 0);
+        properties.set("currentProfile", "Default");
+        properties.set("hasDefaultProfile", "true");
+        assertEquals("Default", properties.get("currentProfile"));
+        assertNull(readFile().getProperty("currentProfile"));
+
+        Thread.sleep(1000);
+        Properties written = readFile();
+        assertEquals("Default", written.getProperty("currentProfile"));
+        assertEquals("true", written.getProperty("hasDefaultProfile"));
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        PropertiesFile properties = new PropertiesFile(file, 60000, 0);
+        properties.set("currentProfile", "Default");
+        properties.flush();
+        assertEquals("Default", readFile().getProperty("currentProfile"));
+
+        File[] leftovers = file.getParentFile().listFiles();
+        for (File leftover : leftovers) {
+            assertFalse(leftover.getName().startsWith(file.getName()) && leftover.getName().endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void testOutsideEditsAreReloaded() throws Exception {
+        PropertiesFile properties = new PropertiesFile(file, 60000, 0);
+        assertNull(properties.get("currentProfile"));
+
+        Properties edited = new Properties();
+        edited.setProperty("currentProfile", "Swingx");
+        edited.setProperty("profileDir", "/tmp/profiles");
+        writeFile(edited);
+        assertEquals("Swingx", properties.get("currentProfile"));
+
+        // Our own unsaved changes win over the file, and the rest of the file is kept.
+        properties.set("currentProfile", "Default");
+        writeFile(edited);
+        assertEquals("Default", properties.get("currentProfile"));
+        properties.flush();
+        assertEquals("Default", readFile().getProperty("currentProfile"));
+        assertEquals("/tmp/profiles", readFile().getProperty("profileDir"));
+    }
+
+    @Test
+    public void testFileIsOnlyCheckedEveryInterval() throws Exception {
+        PropertiesFile properties = new PropertiesFile(file, 60000, 60000);
+        assertNull(properties.get("currentProfile"));
+
+        Properties edited = new Properties();
+        edited.setProperty("currentProfile", "Swingx");
+        writeFile(edited);
+        assertTrue(file.length() > 0);
+        assertNull(properties.get("currentProfile"));
+    }
+
+    private Properties readFile() throws IOException {
+        Properties properties = new Properties();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    // Writes the file and makes sure it looks different to the last version.
+    private void writeFile(Properties properties) throws IOException {
+        long lastModified = file.lastModified();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "edited");
+        } finally {
+            out.close();
+        }
+        file.setLastModified(lastModified + 2000);
+    }
+}
@@ -0,0 +1,127 @@
+package com.facetoe.jreader.helpers;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SortedIndexFile survives a round trip through a file and finds keys and prefixes.
+ */
+public class SortedIndexFileTest {
+    private static final HashMap<String, String> classData = new HashMap<String, String>();
+    private static File indexFile;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        classData.put("JXTable", "org/jdesktop/swingx/JXTable.html");
+        classData.put("JXTreeTable", "org/jdesktop/swingx/JXTreeTable.html");
+        classData.put("JXList", "org/jdesktop/swingx/JXList.html");
+        classData.put("AbstractAction", "javax/swing/AbstractAction.html");
+        classData.put("\u00dcberklasse", "de/\u00dcberklasse.html");
+        indexFile = File.createTempFile("classData", ".idx");
+        SortedIndexFile.fromMap(classData).write(indexFile);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        indexFile.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        SortedIndexFile index = SortedIndexFile.open(indexFile);
+        assertEquals(classData.size(), index.size());
+        for (String className : classData.keySet()) {
+            assertTrue(index.containsKey(className));
+            assertEquals(classData.get(className), index.get(className));
+        }
+        assertNull(index.get("JXTab"));
+        assertFalse(index.containsKey("ZZZ"));
+
+        ArrayList<String> sortedNames = new ArrayList<String>(classData.keySet());
+        Collections.sort(sortedNames);
+        assertEquals(sortedNames, index.getKeys());
+    }
+
+    @Test
+    public void testPrefixRange() throws Exception {
+        SortedIndexFile index = SortedIndexFile.open(indexFile);
+        assertEquals(Arrays.asList("JXList", "JXTable", "JXTreeTable"), index.getKeysWithPrefix("JX"));
+        assertEquals(Arrays.asList("JXTable", "JXTreeTable"), index.getKeysWithPrefix("JXT"));
+        assertEquals(Arrays.asList("\u00dcberklasse"), index.getKeysWithPrefix("\u00dc"));
+        assertTrue(index.getKeysWithPrefix("Q").isEmpty());
+        assertTrue(index.getKeysWithPrefix("JXTableWithALongerName").isEmpty());
+    }
+
+    @Test
+    public void testForEachWordWithPrefixStopsAtLimit() throws Exception {
+        SortedIndexFile index = SortedIndexFile.open(indexFile);
+        final ArrayList<String> foundWords = new ArrayList<String>();
+        PrefixSearchable.WordConsumer collector = new PrefixSearchable.WordConsumer() {
+            @Override
+            public void accept(String word) {
+                foundWords.add(word);
+            }
+        };
+
+        index.forEachWordWithPrefix("JX", 2, collector);
+        assertEquals(Arrays.asList("JXList", "JXTable"), foundWords);
+
+        foundWords.clear();
+        index.forEachWordWithPrefix("JXT", 10, collector);
+        assertEquals(Arrays.asList("JXTable", "JXTreeTable"), foundWords);
+
+        foundWords.clear();
+        index.forEachWordWithPrefix("JX", 0, collector);
+        assertTrue(foundWords.isEmpty());
+    }
+
+    @Test
+    public void testEmptyIndex() throws Exception {
+        SortedIndexFile index = SortedIndexFile.fromMap(new HashMap<String, String>());
+        assertEquals(0, index.size());
+        assertNull(index.get("JXTable"));
+        assertTrue(index.getKeysWithPrefix("J").isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws Exception {
+        File notAnIndex = File.createTempFile("classData", ".ser");
+        try {
+            FileOutputStream outputStream = new FileOutputStream(notAnIndex);
+            outputStream.write("This is not an index file".getBytes("UTF-8"));
+            outputStream.close();
+            SortedIndexFile.open(notAnIndex);
+        } finally {
+            notAnIndex.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedFile() throws Exception {
+        byte[] contents = Files.readAllBytes(indexFile.toPath());
+        File truncated = File.createTempFile("classData", ".idx");
+        try {
+            FileOutputStream outputStream = new FileOutputStream(truncated);
+            outputStream.write(contents, 0, contents.length - 5);
+            outputStream.close();
+            SortedIndexFile.open(truncated);
+        } finally {
+            truncated.delete();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.facetoe.jreader.helpers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SourceFileLoader reads the same text as Files.readAllBytes with normalized line breaks, and reuses
+ * recent files.
+ */
+public class SourceFileLoaderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final File SWINGX_SOURCES = new File("testFiles/swingx-all-1.6.4-sources/org/jdesktop/swingx/");
+
+    private File tempFile;
+
+    @Before
+    public void setUp() throws Exception {
+        tempFile = File.createTempFile("SourceFileLoaderTest", ".java");
+    }
+
+    @After
+    public void tearDown() {
+        tempFile.delete();
+    }
+
+    @Test
+    public void testSameTextAsReadAllBytes() throws Exception {
+        // JXTable is mapped and JXButton is read.
+        for (String name : new String[]{"JXTable.java", "JXButton.java"}) {
+            File file = new File(SWINGX_SOURCES, name);
+            String expected = new String(Files.readAllBytes(file.toPath()), UTF_8)
+                    .replace("\r\n", "\n").replace('\r', '\n');
+            assertEquals(name, expected, SourceFileLoader.read(file, UTF_8));
+        }
+        assertTrue(new File(SWINGX_SOURCES, "JXTable.java").length() >= SourceFileLoader.MAP_THRESHOLD);
+        assertTrue(new File(SWINGX_SOURCES, "JXButton.java").length() < SourceFileLoader.MAP_THRESHOLD);
+    }
+
+    @Test
+    public void testLineBreaksAndBadInput() throws Exception {
+        byte[] bytes = {'a', '\r', '\n', (byte) 0xC3, (byte) 0xA9, '\r', 'b', (byte) 0xFF, '\n', '\r'};
+        Files.write(tempFile.toPath(), bytes);
+        assertEquals("a\né\nb�\n\n", SourceFileLoader.read(tempFile, UTF_8));
+
+        Files.write(tempFile.toPath(), new byte[0]);
+        assertEquals("", SourceFileLoader.read(tempFile, UTF_8));
+    }
+
+    @Test
+    public void testReopenUsesRecentFile() throws Exception {
+        Files.write(tempFile.toPath(), "class A {}\r\n".getBytes(UTF_8));
+        SourceFileLoader loader = new SourceFileLoader(2);
+        String text = loader.load(tempFile);
+        assertEquals("class A {}\n", text);
+        assertSame(text, loader.load(tempFile));
+
+        // Changing the file means it's read again.
+        Files.write(tempFile.toPath(), "class AB {}\n".getBytes(UTF_8));
+        String changed = loader.load(tempFile);
+        assertEquals("class AB {}\n", changed);
+
+        // Only the most recent files are kept.
+        loader.load(new File(SWINGX_SOURCES, "JXTable.java"));
+        loader.load(new File(SWINGX_SOURCES, "JXButton.java"));
+        assertNotSame(changed, loader.load(tempFile));
+    }
+}
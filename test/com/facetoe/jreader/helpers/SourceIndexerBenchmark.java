@@ -0,0 +1,35 @@
+package com.facetoe.jreader.helpers;
+
+import com.facetoe.jreader.parsers.SourceOutlineCache;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Prints how long indexing the SwingX sources takes at full speed and at a quarter of the CPUs.
+ * Run it by hand, it isn't part of the unit tests since the timings depend on the machine.
+ */
+public class SourceIndexerBenchmark {
+    private static final File SWINGX_SOURCES = new File("testFiles/swingx-all-1.6.4-sources/");
+
+    public static void main(String[] args) throws Exception {
+        File tempDir = Files.createTempDirectory("sourceIndexerBenchmark").toFile();
+        try {
+            long fullMillis = time(tempDir, "full", 1);
+            long quarterMillis = time(tempDir, "quarter", 0.25);
+
+            System.out.println("Indexing " + SWINGX_SOURCES + " on " + Runtime.getRuntime().availableProcessors() + " CPUs:");
+            System.out.println("  100% CPU: " + fullMillis + "ms");
+            System.out.println("  25% CPU:  " + quarterMillis + "ms");
+        } finally {
+            Util.deleteDirectoryAndContents(tempDir);
+        }
+    }
+
+    private static long time(File tempDir, String name, double cpuShare) throws Exception {
+        long start = System.currentTimeMillis();
+        File symbolDataFile = new File(tempDir, name + ".idx");
+        new SourceIndexer(SWINGX_SOURCES, symbolDataFile, new SourceOutlineCache(new File(tempDir, name), 4), cpuShare).index();
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,99 @@
+package com.facetoe.jreader.helpers;
+
+import com.facetoe.jreader.parsers.SourceOutlineCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SourceIndexer builds a symbol table from a source tree and can be canceled and resumed.
+ */
+public class SourceIndexerTest {
+    private static final File SWINGX_SOURCES = new File("testFiles/swingx-all-1.6.4-sources/");
+
+    private File tempDir;
+    private File symbolDataFile;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("sourceIndexer").toFile();
+        symbolDataFile = new File(tempDir, Config.SYMBOL_DATA_FILE_NAME);
+        cacheDir = new File(tempDir, Config.SOURCE_OUTLINE_CACHE_DIR_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        Util.deleteDirectoryAndContents(tempDir);
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        SourceIndexer indexer = new SourceIndexer(SWINGX_SOURCES, symbolDataFile, new SourceOutlineCache(cacheDir, 4), 1);
+        SortedIndexFile symbolData = indexer.index();
+        assertNotNull(symbolData);
+        assertTrue(symbolDataFile.exists());
+
+        // Declarations start at their annotations, like they do in JavaSourceFileParser.
+        assertEquals("org/jdesktop/swingx/JXTable.java:352", symbolData.get("org.jdesktop.swingx.JXTable"));
+        assertEquals("org/jdesktop/swingx/JXTable.java:519", symbolData.get("org.jdesktop.swingx.JXTable#JXTable()"));
+        assertEquals("org/jdesktop/swingx/JXTable.java:1207", symbolData.get("org.jdesktop.swingx.JXTable#packAll()"));
+        assertNotNull(symbolData.get("org.jdesktop.swingx.JXTable.TableAdapter"));
+
+        assertEquals(symbolData.size(), SortedIndexFile.open(symbolDataFile).size());
+    }
+
+    @Test
+    public void testCancelAndResume() throws Exception {
+        final SourceIndexer indexer = new SourceIndexer(SWINGX_SOURCES, symbolDataFile, new SourceOutlineCache(cacheDir, 4), 1);
+        indexer.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                indexer.cancel();
+            }
+        });
+
+        assertNull(indexer.index());
+        assertTrue(indexer.isCanceled());
+        assertFalse(symbolDataFile.exists());
+
+        String[] cachedOutlines = cacheDir.list();
+        assertNotNull(cachedOutlines);
+        assertTrue(cachedOutlines.length > 0);
+
+        // The second run picks up the outlines the first one parsed.
+        SortedIndexFile symbolData = new SourceIndexer(
+                SWINGX_SOURCES, symbolDataFile, new SourceOutlineCache(cacheDir, 4), 1).index();
+        assertNotNull(symbolData);
+        assertTrue(symbolDataFile.exists());
+        assertTrue(cacheDir.list().length >= cachedOutlines.length);
+    }
+
+    // Throttling only changes how fast the sources are indexed, not what ends up in the symbol table.
+    @Test
+    public void testThrottle() throws Exception {
+        SortedIndexFile full = new SourceIndexer(
+                SWINGX_SOURCES, symbolDataFile, new SourceOutlineCache(new File(tempDir, "full"), 4), 1).index();
+        File quarterFile = new File(tempDir, "quarter.idx");
+        SortedIndexFile quarter = new SourceIndexer(
+                SWINGX_SOURCES, quarterFile, new SourceOutlineCache(new File(tempDir, "quarter"), 4), 0.25).index();
+        assertNotNull(full);
+        assertNotNull(quarter);
+
+        assertEquals(full.getKeys(), quarter.getKeys());
+        for (int i = 0; i < full.size(); i++) {
+            assertEquals(full.getValue(i), quarter.getValue(i));
+        }
+    }
+}
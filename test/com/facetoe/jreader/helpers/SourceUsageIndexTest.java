@@ -0,0 +1,133 @@
+package com.facetoe.jreader.helpers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SourceUsageIndex finds identifiers in code but not in comments or strings, and that updating it
+ * gives the same index as building it again.
+ */
+public class SourceUsageIndexTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final File SWINGX_SOURCES = new File("testFiles/swingx-all-1.6.4-sources/");
+
+    private File srcDir;
+    private File indexDir;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws Exception {
+        srcDir = Files.createTempDirectory("usageSources").toFile();
+        indexDir = Files.createTempDirectory("usageIndex").toFile();
+        indexFile = new File(indexDir, "sourceUsages.idx");
+    }
+
+    @After
+    public void tearDown() {
+        Util.deleteDirectoryAndContents(srcDir);
+        Util.deleteDirectoryAndContents(indexDir);
+    }
+
+    @Test
+    public void testSkipsCommentsStringsAndKeywords() throws Exception {
+        writeSource("p/A.java", "package p;\n" +
+                "/** Uses count in a comment */\n" +
+                "class A {\n" +
+                "    int count = 0x1F; // count\n" +
+                "    String s = \"count \\\" count\";\n" +
+                "    char c = '\\'';\n" +
+                "    String block = \"\"\"\n" +
+                "        count\n" +
+                "        \"\"\";\n" +
+                "    void inc() { count++; /* count */ }\n" +
+                "}\n");
+        SourceUsageIndex index = SourceUsageIndex.update(srcDir, indexFile, null, null);
+
+        ArrayList<SourceUsageIndex.Usage> usages = index.findUsages("count", 10);
+        assertEquals(2, usages.size());
+        assertEquals(4, usages.get(0).getLine());
+        assertEquals("int count = 0x1F; // count", usages.get(0).getText());
+        assertEquals(10, usages.get(1).getLine());
+        assertEquals("p/A.java", usages.get(1).getPath());
+
+        assertEquals(1, index.findUsages("inc", 10).size());
+        assertEquals(0, index.findUsages("class", 10).size());
+        assertEquals(0, index.findUsages("Count", 10).size());
+        assertEquals(0, index.findUsages("x1F", 10).size());
+        assertEquals(1, index.findUsages("count", 1).size());
+    }
+
+    @Test
+    public void testUpdateMatchesRebuild() throws Exception {
+        writeSource("p/A.java", "class A { int size; int size() { return size; } }\n");
+        File b = writeSource("p/B.java", "class B { A a; int n = a.size(); }\n");
+        File c = writeSource("q/C.java", "class C { B b; }\n");
+        SourceUsageIndex index = SourceUsageIndex.update(srcDir, indexFile, null, null);
+        assertEquals(3, index.getFileCount());
+        assertEquals(4, index.findUsages("size", 10).size());
+
+        // Nothing changed, so the same index comes back.
+        assertSame(index, SourceUsageIndex.update(srcDir, indexFile, index, null));
+
+        Files.write(b.toPath(), "class B { A a; int n = a.size() + a.size; B next; }\n".getBytes(UTF_8));
+        b.setLastModified(b.lastModified() + 2000);
+        c.delete();
+        writeSource("r/D.java", "class D { A first, second; }\n");
+        SourceUsageIndex updated = SourceUsageIndex.update(srcDir, indexFile, index, null);
+        assertNotSame(index, updated);
+        assertEquals(5, updated.findUsages("size", 10).size());
+        assertEquals(3, updated.findUsages("A", 10).size());
+        assertEquals(0, updated.findUsages("C", 10).size());
+
+        // Each update went to a new generation and the old one was deleted.
+        assertEquals(Arrays.asList("sourceUsages.idx.2"), Arrays.asList(indexDir.list()));
+
+        SourceUsageIndex reopened = SourceUsageIndex.update(srcDir, indexFile, null, null);
+        SourceUsageIndex rebuilt = SourceUsageIndex.update(srcDir, new File(indexDir, "rebuilt.idx"), null, null);
+        for (String identifier : new String[]{"size", "A", "B", "D", "a", "next", "first", "n"}) {
+            assertEquals(identifier, describe(rebuilt, identifier), describe(updated, identifier));
+            assertEquals(identifier, describe(rebuilt, identifier), describe(reopened, identifier));
+        }
+        assertEquals(rebuilt.getIdentifierCount(), updated.getIdentifierCount());
+    }
+
+    @Test
+    public void testFindsCallsInSwingX() throws Exception {
+        SourceUsageIndex index = SourceUsageIndex.update(SWINGX_SOURCES, indexFile, null, null);
+        ArrayList<SourceUsageIndex.Usage> usages = index.findUsages("getColumnExt", 1000);
+        assertTrue(usages.size() > 5);
+
+        HashSet<String> files = new HashSet<String>();
+        for (SourceUsageIndex.Usage usage : usages) {
+            String text = SourceFileLoader.read(usage.getFile(), UTF_8);
+            assertEquals("getColumnExt", text.substring(usage.getOffset(), usage.getOffset() + "getColumnExt".length()));
+            assertTrue(usage.getText().contains("getColumnExt"));
+            files.add(usage.getPath());
+        }
+        assertTrue(files.contains("org/jdesktop/swingx/JXTable.java"));
+    }
+
+    private String describe(SourceUsageIndex index, String identifier) {
+        return index.findUsages(identifier, 100).toString();
+    }
+
+    private File writeSource(String path, String source) throws Exception {
+        File file = new File(srcDir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), source.getBytes(UTF_8));
+        return file;
+    }
+}
@@ -90,6 +90,12 @@ public class UtilTest extends JReaderTest {
         }
     }
 
+    @Test
+    public void testMd5Hex() throws Exception {
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", Util.md5Hex(""));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", Util.md5Hex("abc"));
+    }
+
     @Test
     public void testIsGoodSourcePath() throws Exception {
         File testSourceDir = new File(TEST_PROFILE_SOURCE_DIR);
@@ -0,0 +1,35 @@
+package com.facetoe.jreader.parsers;
+
+import com.facetoe.jreader.helpers.Config;
+
+import java.io.File;
+import java.util.HashMap;
+
+/**
+ * Prints how long JavaDocParser and JavaDocIndexBuilder take to index a Javadoc directory, such as the JDK docs.
+ * Run it by hand with the directory as the argument, it isn't part of the unit tests since the timings depend
+ * on the machine.
+ */
+public class JavaDocIndexBuilderBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: JavaDocIndexBuilderBenchmark <javadoc dir>");
+            System.exit(1);
+        }
+        File docDir = new File(args[0]);
+        File classFile = new File(docDir, Config.ALL_CLASSSES_DOC_FILE);
+
+        long start = System.currentTimeMillis();
+        new JavaDocParser().parse(classFile);
+        long parserMillis = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        HashMap<String, String> classData = new JavaDocIndexBuilder().build(docDir);
+        long builderMillis = System.currentTimeMillis() - start;
+
+        System.out.println("Indexing " + classData.size() + " classes:");
+        System.out.println("  JavaDocParser:       " + parserMillis + "ms");
+        System.out.println("  JavaDocIndexBuilder: " + builderMillis + "ms");
+    }
+}
@@ -0,0 +1,119 @@
+package com.facetoe.jreader.parsers;
+
+import com.facetoe.jreader.JReaderTest;
+import com.facetoe.jreader.helpers.Config;
+import com.facetoe.jreader.helpers.Util;
+import org.junit.Test;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks JavaDocIndexBuilder finds the same classes as JavaDocParser and reads the newer index formats.
+ */
+public class JavaDocIndexBuilderTest extends JReaderTest {
+
+    @Test
+    public void testSameClassesAsJavaDocParser() throws Exception {
+        HashMap<String, String> expected = new JavaDocParser().parse(new File(TEST_PROFILE_DOC_DIR + "allclasses-noframe.html"));
+        assertEquals(expected, new JavaDocIndexBuilder().build(new File(TEST_PROFILE_DOC_DIR)));
+    }
+
+    @Test
+    public void testAllClassesIndex() throws Exception {
+        File docDir = createDocDir("allclasses-index.html",
+                "<nav><a href=\"index.html\">Overview</a><a href=\"#skip-navbar-top\" title=\"Skip navigation links\"></a></nav>\n" +
+                "<div class=\"col-first even-row-color\"><a href=\"java.base/java/lang/Object.html\" title=\"class in java.lang\">Object</a></div>\n" +
+                "<div class=\"col-first odd-row-color\"><a href=\"java.base/java/util/Map.Entry.html\" title=\"interface in java.util\">Map.Entry</a></div>\n" +
+                "<th class=\"colFirst\" scope=\"row\"><a href=\"java.base/java/util/List.html\" title=\"interface in java.util\"><span class=\"interfaceName\">List</span></a></th>\n");
+        HashMap<String, String> classData = new JavaDocIndexBuilder().build(docDir);
+
+        assertEquals(3, classData.size());
+        assertEquals("java.base/java/lang/Object.html", classData.get("Object"));
+        assertEquals("java.base/java/util/Map.Entry.html", classData.get("Map.Entry"));
+        assertEquals("java.base/java/util/List.html", classData.get("List"));
+        Util.deleteDirectoryAndContents(docDir);
+    }
+
+    @Test
+    public void testTypeSearchIndex() throws Exception {
+        File docDir = createDocDir("type-search-index.js",
+                "typeSearchIndex = [{\"l\":\"All Classes\",\"u\":\"allclasses-index.html\"}," +
+                "{\"p\":\"java.lang\",\"l\":\"Object\"}," +
+                "{\"m\":\"java.base\",\"p\":\"java.util\",\"l\":\"Map.Entry\"}," +
+                "{\"p\":\"<Unnamed>\",\"l\":\"Main\"}];updateSearchResults();");
+        HashMap<String, String> classData = new JavaDocIndexBuilder().build(docDir);
+
+        assertEquals(3, classData.size());
+        assertEquals("java/lang/Object.html", classData.get("Object"));
+        assertEquals("java.base/java/util/Map.Entry.html", classData.get("Map.Entry"));
+        assertEquals("Main.html", classData.get("Main"));
+        assertNull(classData.get("All Classes"));
+        Util.deleteDirectoryAndContents(docDir);
+    }
+
+    @Test
+    public void testMalformedEscapesAreKept() throws Exception {
+        assertEquals("<a &#xZZ; &#; &#99999999999; &#-1; &bogus; &",
+                JavaDocIndexBuilder.decodeEntities("&lt;a &#xZZ; &#; &#99999999999; &#-1; &bogus; &#x26;"));
+
+        File docDir = createDocDir("type-search-index.js",
+                "typeSearchIndex = [{\"p\":\"a\",\"l\":\"Caf\\u00e9\"}," +
+                "{\"p\":\"b\",\"l\":\"Bad\\uZZ12\"}," +
+                "{\"p\":\"c\",\"l\":\"Short\\u12\"}," +
+                "{\"p\":\"d\",\"l\":\"Cut\\u0");
+        HashMap<String, String> classData = new JavaDocIndexBuilder().build(docDir);
+
+        assertEquals("a/Caf\u00e9.html", classData.get("Caf\u00e9"));
+        assertEquals("b/Bad\\uZZ12.html", classData.get("Bad\\uZZ12"));
+        assertEquals("c/Short\\u12.html", classData.get("Short\\u12"));
+        Util.deleteDirectoryAndContents(docDir);
+    }
+
+    @Test
+    public void testProgressIsThrottled() throws Exception {
+        final ArrayList<Long> progress = new ArrayList<Long>();
+        JavaDocIndexBuilder builder = new JavaDocIndexBuilder();
+        builder.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                progress.add(e.getWhen());
+            }
+        });
+        int numClasses = builder.build(new File(TEST_PROFILE_DOC_DIR)).size();
+
+        assertTrue(progress.size() < numClasses);
+        assertEquals(100L, (long) progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void testSameClassesOnJava7Docs() throws Exception {
+        pm.setCurrentProfile(Config.DEFAULT_PROFILE_NAME);
+        File docDir = new File(pm.getDocDir());
+        HashMap<String, String> expected = new JavaDocParser().parse(new File(docDir, Config.ALL_CLASSSES_DOC_FILE));
+        assertEquals(expected, new JavaDocIndexBuilder().build(docDir));
+    }
+
+    private static File createDocDir(String fileName, String contents) throws IOException {
+        File docDir = File.createTempFile("javadoc", "");
+        assertTrue(docDir.delete() && docDir.mkdir());
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(docDir, fileName)), "UTF-8");
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+        return docDir;
+    }
+}
@@ -0,0 +1,75 @@
+package com.facetoe.jreader.parsers;
+
+import com.facetoe.jreader.JReaderTest;
+import com.facetoe.jreader.helpers.SortedIndexFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks JavaDocMemberParser finds the members on class pages from each javadoc version.
+ */
+public class JavaDocMemberParserTest extends JReaderTest {
+
+    @Test
+    public void testParseSwingXDocs() throws Exception {
+        File docDir = new File(TEST_PROFILE_DOC_DIR);
+        SortedIndexFile classData = SortedIndexFile.fromMap(new JavaDocIndexBuilder().build(docDir));
+        HashMap<String, String> members = new JavaDocMemberParser().parse(docDir, classData);
+
+        assertEquals("org/jdesktop/swingx/JXTable.html#setHighlighters(org.jdesktop.swingx.decorator.Highlighter...)",
+                members.get("JXTable#setHighlighters(Highlighter...)"));
+        assertEquals("org/jdesktop/swingx/JXTable.html#JXTable(int, int)", members.get("JXTable#JXTable(int, int)"));
+        assertEquals("org/jdesktop/swingx/JXTable.html#USE_DTCR_COLORMEMORY_HACK",
+                members.get("JXTable#USE_DTCR_COLORMEMORY_HACK"));
+        assertEquals("org/jdesktop/swingx/JXTable.GenericEditor.html#JXTable.GenericEditor()",
+                members.get("JXTable.GenericEditor#GenericEditor()"));
+
+        // Navigation and summary anchors aren't members.
+        for (String member : members.keySet()) {
+            assertFalse(member, member.contains("navbar") || member.contains("summary"));
+        }
+    }
+
+    @Test
+    public void testAnchorFormats() throws Exception {
+        // Java 7 and earlier.
+        assertEquals("put(K, V)", JavaDocMemberParser.toMemberName("HashMap", "put(K, V)", "put"));
+        assertEquals("equals(Object)", JavaDocMemberParser.toMemberName("HashMap", "equals(java.lang.Object)", "equals"));
+        // Java 8.
+        assertEquals("computeIfAbsent(K, Function)",
+                JavaDocMemberParser.toMemberName("HashMap", "computeIfAbsent-K-java.util.function.Function-", "computeIfAbsent"));
+        assertEquals("size()", JavaDocMemberParser.toMemberName("HashMap", "size--", "size"));
+        assertEquals("toArray(T[])", JavaDocMemberParser.toMemberName("ArrayList", "toArray-T:A-", "toArray"));
+        // Java 11 and later.
+        assertEquals("HashMap(int)", JavaDocMemberParser.toMemberName("HashMap", "<init>(int)", "HashMap"));
+        assertEquals("entrySet()", JavaDocMemberParser.toMemberName("HashMap", "entrySet()", "entrySet"));
+        // Fields.
+        assertEquals("CASE_INSENSITIVE_ORDER",
+                JavaDocMemberParser.toMemberName("String", "CASE_INSENSITIVE_ORDER", "CASE_INSENSITIVE_ORDER"));
+
+        assertNull(JavaDocMemberParser.toMemberName("HashMap", "method_summary", "Method Summary"));
+        assertNull(JavaDocMemberParser.toMemberName("HashMap", "navbar.top", "Class HashMap<K,V>"));
+    }
+
+    @Test
+    public void testParsePage() throws Exception {
+        String html = "<section class=\"detail\" id=\"computeIfAbsent(K,java.util.function.Function)\">\n" +
+                "<h3>computeIfAbsent</h3>\n<div class=\"member-signature\">...</div></section>\n" +
+                "<a id=\"method.summary\"><!--   --></a>\n<h2>Method Summary</h2>\n" +
+                "<a name=\"put-K-V-\">\n<!--   -->\n</a>\n<ul class=\"blockList\">\n<li class=\"blockList\">\n<h4>put</h4>\n" +
+                "<a name=\"clear()\"></a>Some text<h4>clear</h4>";
+        HashMap<String, String> members = new HashMap<String, String>();
+        JavaDocMemberParser.parsePage("HashMap", "java/util/HashMap.html", html, members);
+
+        assertEquals(2, members.size());
+        assertEquals("java/util/HashMap.html#computeIfAbsent(K,java.util.function.Function)",
+                members.get("HashMap#computeIfAbsent(K, Function)"));
+        assertEquals("java/util/HashMap.html#put-K-V-", members.get("HashMap#put(K, V)"));
+    }
+}
@@ -7,8 +7,12 @@ import japa.parser.ParseException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by facetoe on 15/01/14.
@@ -34,4 +38,72 @@ public class JavaSourceFileParserTest extends JReaderTest {
             }
         }
     }
+
+    @org.junit.Test
+    public void testNameOffsets() throws Exception {
+        String source = "package test;\r\n" +
+                "\r\n" +
+                "/** The Overloads class, see overloaded(int). */\r\n" +
+                "@Named(\"Overloads\")\r\n" +
+                "public class Overloads {\r\n" +
+                "\tprivate int count, overloaded = 1;\r\n" +
+                "\t@Overloads.Named public Overloads() {}\r\n" +
+                "\t/* overloaded( */ void overloaded() {}\r\n" +
+                "\tString overloaded(int overloaded) { return \"overloaded(\"; }\r\n" +
+                "\tenum Kind { FIRST, /* SECOND */ SECOND }\r\n" +
+                "}\r\n";
+        String documentText = source.replace("\r\n", "\n");
+        JavaSourceFile sourceFile = JavaSourceFileParser.parse(source);
+
+        JavaClassOrInterface overloads = (JavaClassOrInterface) sourceFile.getEnclosingObject();
+        assertNameAt(documentText, overloads, "public class ");
+        assertNameAt(documentText, overloads.getConstructors().get("Overloads()"), "@Overloads.Named public ");
+        assertNameAt(documentText, overloads.getMethods().get("overloaded()"), "*/ void ");
+        assertNameAt(documentText, overloads.getMethods().get("overloaded(int overloaded)"), "String ");
+        assertNameAt(documentText, overloads.getFields().get("overloaded"), "count, ");
+        JavaEnum kind = overloads.getEnums().get("Kind");
+        assertNameAt(documentText, kind, "enum ");
+        assertNameAt(documentText, kind.getConstants().get("SECOND"), "*/ ");
+    }
+
+    private static void assertNameAt(String text, AbstractJavaObject object, String before) {
+        String name = text.substring(object.getNameStart(), object.getNameEnd());
+        assertTrue(object.getDeclaration().startsWith(name));
+        assertTrue(text.substring(0, object.getNameStart()).endsWith(before));
+    }
+
+    // Every declaration in the SwingX sources should have its name found.
+    @org.junit.Test
+    public void testNameOffsetsFound() throws Exception {
+        ArrayList<File> sourceFiles = new ArrayList<File>();
+        findSourceFiles(new File("testFiles/swingx-all-1.6.4-sources/"), sourceFiles);
+        assertTrue(sourceFiles.size() > 0);
+
+        int declarations = 0;
+        for (File file : sourceFiles) {
+            String text = new String(Files.readAllBytes(file.toPath()), "UTF-8").replace("\r\n", "\n");
+            JavaSourceFile sourceFile = JavaSourceFileParser.parse(text);
+            for (String declaration : sourceFile.getAllDeclarations()) {
+                AbstractJavaObject object = sourceFile.getObject(declaration);
+                assertTrue(file + " " + declaration, object.getNameStart() >= 0);
+                String name = text.substring(object.getNameStart(), object.getNameEnd());
+                assertTrue(file + " " + declaration, declaration.startsWith(name));
+                declarations++;
+            }
+        }
+        assertTrue(declarations > 1000);
+    }
+
+    private static void findSourceFiles(File dir, ArrayList<File> sourceFiles) {
+        File[] contents = dir.listFiles();
+        if (contents != null) {
+            for (File content : contents) {
+                if (content.isDirectory()) {
+                    findSourceFiles(content, sourceFiles);
+                } else if (content.getName().endsWith(".java")) {
+                    sourceFiles.add(content);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package com.facetoe.jreader.parsers;
+
+import com.facetoe.jreader.helpers.Util;
+import japa.parser.ParseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/**
+ * Prints how long JavaParser and OutlineSourceParser take on the SwingX sources, and how long it takes to get
+ * the outline of JXTable by parsing it, from its cache file and from memory. Run it by hand, it isn't part of
+ * the unit tests since the timings depend on the machine.
+ */
+public class OutlineBenchmark {
+    private static final File SWINGX_SOURCES = new File("testFiles/swingx-all-1.6.4-sources/");
+    private static final File JXTABLE_SOURCE = new File(SWINGX_SOURCES, "org/jdesktop/swingx/JXTable.java");
+
+    public static void main(String[] args) throws Exception {
+        timeParsers();
+        timeCache();
+    }
+
+    private static void timeParsers() throws Exception {
+        ArrayList<String> sources = OutlineSourceParserTest.readSources();
+        SourceParser javaParser = JavaSourceFileParser.getParser("javaparser");
+        SourceParser outlineParser = JavaSourceFileParser.getParser("outline");
+
+        long javaParserNanos = Long.MAX_VALUE;
+        long outlineNanos = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            javaParserNanos = Math.min(javaParserNanos, time(javaParser, sources));
+            outlineNanos = Math.min(outlineNanos, time(outlineParser, sources));
+        }
+
+        System.out.println("Outline of " + sources.size() + " SwingX source files:");
+        System.out.println(String.format("  JavaParser: %d ms", javaParserNanos / 1000000));
+        System.out.println(String.format("  Outline:    %d ms", outlineNanos / 1000000));
+    }
+
+    private static long time(SourceParser parser, ArrayList<String> sources) throws ParseException {
+        long start = System.nanoTime();
+        for (String source : sources) {
+            parser.parse(source);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void timeCache() throws Exception {
+        File cacheDir = Files.createTempDirectory("outlineBenchmark").toFile();
+        try {
+            int runs = 20;
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                JavaSourceFileParser.parse(new FileInputStream(JXTABLE_SOURCE));
+            }
+            long parseNanos = (System.nanoTime() - start) / runs;
+
+            new SourceOutlineCache(cacheDir, 4).parse(JXTABLE_SOURCE);
+            start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                new SourceOutlineCache(cacheDir, 4).parse(JXTABLE_SOURCE);
+            }
+            long diskNanos = (System.nanoTime() - start) / runs;
+
+            SourceOutlineCache cache = new SourceOutlineCache(cacheDir, 4);
+            cache.parse(JXTABLE_SOURCE);
+            start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                cache.parse(JXTABLE_SOURCE);
+            }
+            long memoryNanos = (System.nanoTime() - start) / runs;
+
+            System.out.println("Outline of " + JXTABLE_SOURCE.getName() + ":");
+            System.out.println(String.format("  Parse:       %.2f ms", parseNanos / 1000000.0));
+            System.out.println(String.format("  Cache file:  %.2f ms", diskNanos / 1000000.0));
+            System.out.println(String.format("  Memory:      %.3f ms", memoryNanos / 1000000.0));
+        } finally {
+            Util.deleteDirectoryAndContents(cacheDir);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.facetoe.jreader.parsers;
+
+import japa.parser.ParseException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks OutlineSourceParser finds the same declarations as JavaParser and copes with newer syntax.
+ */
+public class OutlineSourceParserTest {
+    private static final File SWINGX_SOURCES = new File("testFiles/swingx-all-1.6.4-sources/");
+
+    private static final String MODERN_SOURCE = "package shapes;\n" +
+            "\n" +
+            "import java.util.function.Function;\n" +
+            "\n" +
+            "public sealed interface Shape permits Shape.Circle, Shape.Square {\n" +
+            "    double area();\n" +
+            "\n" +
+            "    default Shape scaled(double factor) {\n" +
+            "        Function<Double, Double> scale = x -> { return x * factor; };\n" +
+            "        return this;\n" +
+            "    }\n" +
+            "\n" +
+            "    record Circle(double radius) implements Shape {\n" +
+            "        public Circle {\n" +
+            "            if (radius < 0) throw new IllegalArgumentException(\"\"\"\n" +
+            "                    negative } radius\n" +
+            "                    \"\"\");\n" +
+            "        }\n" +
+            "\n" +
+            "        public double area() { return Math.PI * radius * radius; }\n" +
+            "    }\n" +
+            "\n" +
+            "    non-sealed class Square implements Shape {\n" +
+            "        private final double side = 2;\n" +
+            "        Runnable printer = () -> System.out.println('}'), other;\n" +
+            "\n" +
+            "        public double area() {\n" +
+            "            var sides = 4;\n" +
+            "            return switch (sides) { case 4 -> side * side; default -> { yield 0; } };\n" +
+            "        }\n" +
+            "    }\n" +
+            "\n" +
+            "    enum Kind { ROUND, SQUARE; Kind() {} }\n" +
+            "}\n";
+
+    @After
+    public void tearDown() {
+        JavaSourceFileParser.setParser(JavaSourceFileParser.getParser("javaparser"));
+    }
+
+    @Test
+    public void testSameOutlineAsJavaParser() throws Exception {
+        SourceParser javaParser = JavaSourceFileParser.getParser("javaparser");
+        SourceParser outlineParser = JavaSourceFileParser.getParser("outline");
+        for (String source : readSources()) {
+            assertEquals(describe(javaParser.parse(source)), describe(outlineParser.parse(source)));
+        }
+    }
+
+    @Test
+    public void testModernSyntax() throws Exception {
+        try {
+            JavaSourceFileParser.getParser("javaparser").parse(MODERN_SOURCE);
+            fail("JavaParser shouldn't understand records");
+        } catch (ParseException expected) {
+        }
+
+        // The default parser falls back to the outline parser.
+        JavaSourceFile sourceFile = JavaSourceFileParser.parse(MODERN_SOURCE);
+        JavaClassOrInterface shape = (JavaClassOrInterface) sourceFile.getEnclosingObject();
+        assertEquals("public interface Shape ", shape.getFullDeclaration());
+        assertEquals(AbstractJavaObject.INTERFACE, shape.getType());
+        assertEquals(new TreeSet<String>(Arrays.asList("area()", "scaled(double factor)")),
+                new TreeSet<String>(shape.getMethods().keySet()));
+        assertEquals(5, shape.getBeginLine());
+        assertEquals(34, shape.getEndLine());
+
+        JavaClassOrInterface circle = shape.getNestedClasses().get("Circle");
+        assertEquals(AbstractJavaObject.CLASS, circle.getType());
+        assertEquals("public double area()", circle.getMethods().get("area()").getFullDeclaration());
+        assertTrue(circle.getConstructors().isEmpty());
+        assertEquals(21, circle.getEndLine());
+
+        JavaClassOrInterface square = shape.getNestedClasses().get("Square");
+        assertEquals("private final double side", square.getFields().get("side").getFullDeclaration());
+        assertEquals("Runnable printer", square.getFields().get("printer").getFullDeclaration());
+        assertEquals(30, square.getMethods().get("area()").getEndLine());
+        assertNull(square.getFields().get("other"));
+
+        JavaEnum kind = shape.getEnums().get("Kind");
+        assertEquals(new TreeSet<String>(Arrays.asList("ROUND", "SQUARE")),
+                new TreeSet<String>(kind.getConstants().keySet()));
+
+        AbstractJavaObject area = square.getMethods().get("area()");
+        assertEquals("area", MODERN_SOURCE.substring(area.getNameStart(), area.getNameEnd()));
+        assertTrue(MODERN_SOURCE.substring(0, area.getNameStart()).endsWith("public double "));
+    }
+
+    @Test
+    public void testFallbackWhenJavaParserCantTokenize() throws Exception {
+        String source = "class Quoted {\n" +
+                "    String text = \"\"\"\n" +
+                "            hello\n" +
+                "            \"\"\";\n" +
+                "    void after() {}\n" +
+                "}\n";
+        JavaSourceFile sourceFile = JavaSourceFileParser.parse(source);
+        assertEquals("Quoted", sourceFile.getEnclosingObject().getDeclaration());
+        assertNotNull(sourceFile.getObject("after()"));
+    }
+
+    @Test
+    public void testBrokenSourceStillHasOutline() throws Exception {
+        String source = "public class Broken {\n" +
+                "    int count = ;\n" +
+                "    void first() { if ( }\n" +
+                "    void second(String s {}\n" +
+                "    private String name;\n" +
+                "}\n";
+        JavaSourceFile sourceFile = JavaSourceFileParser.getParser("outline").parse(source);
+        assertEquals("Broken", sourceFile.getEnclosingObject().getDeclaration());
+        assertNotNull(sourceFile.getObject("count"));
+        assertNotNull(sourceFile.getObject("first()"));
+        assertNotNull(sourceFile.getObject("second(String s)"));
+        assertNotNull(sourceFile.getObject("name"));
+    }
+
+    @Test
+    public void testStrayBraceKeepsLaterMembers() throws Exception {
+        String source = "public class Stray {\n" +
+                "    void first() { if (true) { } } }\n" +
+                "    void second() {}\n" +
+                "    int third;\n" +
+                "}\n";
+        JavaSourceFile sourceFile = JavaSourceFileParser.parseOutline(source);
+        assertEquals(1, sourceFile.getFileContents().size());
+        JavaClassOrInterface stray = (JavaClassOrInterface) sourceFile.getEnclosingObject();
+        assertEquals(new TreeSet<String>(Arrays.asList("first()", "second()")),
+                new TreeSet<String>(stray.getMethods().keySet()));
+        assertNotNull(stray.getFields().get("third"));
+        assertEquals(3, stray.getMethods().get("second()").getBeginLine());
+    }
+
+    @Test
+    public void testParserCanBeChosen() throws Exception {
+        SourceParser outlineParser = JavaSourceFileParser.getParser("outline");
+        assertNull(JavaSourceFileParser.getParser("unknown"));
+        JavaSourceFileParser.setParser(outlineParser);
+        assertSame(outlineParser, JavaSourceFileParser.getParser());
+
+        JavaSourceFile sourceFile = JavaSourceFileParser.parse("class A { void a() {} }");
+        assertNull(sourceFile.getEnclosingObject().typeDeclaration);
+        assertNotNull(sourceFile.getObject("a()"));
+    }
+
+    // The outline parser is faster because it never builds a syntax tree, so none of its objects have one.
+    @Test
+    public void testOutlineHasNoSyntaxTree() throws Exception {
+        SourceParser javaParser = JavaSourceFileParser.getParser("javaparser");
+        SourceParser outlineParser = JavaSourceFileParser.getParser("outline");
+        for (String source : readSources()) {
+            for (AbstractJavaObject object : outlineParser.parse(source).getFileContents()) {
+                assertNull(object.typeDeclaration);
+            }
+            for (AbstractJavaObject object : javaParser.parse(source).getFileContents()) {
+                assertNotNull(object.typeDeclaration);
+            }
+        }
+    }
+
+    static ArrayList<String> readSources() throws Exception {
+        ArrayList<File> sourceFiles = new ArrayList<File>();
+        findSourceFiles(SWINGX_SOURCES, sourceFiles);
+        assertFalse(sourceFiles.isEmpty());
+
+        ArrayList<String> sources = new ArrayList<String>();
+        for (File sourceFile : sourceFiles) {
+            sources.add(new String(Files.readAllBytes(sourceFile.toPath()), "UTF-8"));
+        }
+        return sources;
+    }
+
+    private static String describe(JavaSourceFile sourceFile) {
+        ArrayList<String> lines = new ArrayList<String>();
+        for (AbstractJavaObject object : sourceFile.getFileContents()) {
+            describe(object, lines);
+        }
+        Collections.sort(lines);
+        return lines.toString();
+    }
+
+    // Describes an object and everything it contains, since overloads in different classes share a declaration.
+    private static void describe(AbstractJavaObject object, ArrayList<String> lines) {
+        lines.add(object.getClass().getSimpleName() + " " + object.getType() + " " + object.getModifiers()
+                + " " + object.getDeclaration() + " | " + object.getFullDeclaration()
+                + " " + object.getBeginLine() + ":" + object.getBeginColumn()
+                + "-" + object.getEndLine() + ":" + object.getEndColumn()
+                + " " + object.getNameStart() + "-" + object.getNameEnd());
+        if (object instanceof JavaClassOrInterface) {
+            JavaClassOrInterface classOrInterface = (JavaClassOrInterface) object;
+            describeAll(classOrInterface.getNestedClasses().values(), lines);
+            describeAll(classOrInterface.getMethods().values(), lines);
+            describeAll(classOrInterface.getConstructors().values(), lines);
+            describeAll(classOrInterface.getEnums().values(), lines);
+            describeAll(classOrInterface.getFields().values(), lines);
+            describeAll(classOrInterface.getAnnotations().values(), lines);
+        } else if (object instanceof JavaEnum) {
+            describeAll(((JavaEnum) object).getConstants().values(), lines);
+        }
+    }
+
+    private static void describeAll(Iterable<? extends AbstractJavaObject> objects, ArrayList<String> lines) {
+        for (AbstractJavaObject object : objects) {
+            describe(object, lines);
+        }
+    }
+
+    private static void findSourceFiles(File dir, ArrayList<File> sourceFiles) {
+        File[] contents = dir.listFiles();
+        if (contents != null) {
+            for (File content : contents) {
+                if (content.isDirectory()) {
+                    findSourceFiles(content, sourceFiles);
+                } else if (content.getName().endsWith(".java")) {
+                    sourceFiles.add(content);
+                }
+            }
+        }
+    }
+}
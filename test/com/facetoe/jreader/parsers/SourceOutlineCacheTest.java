@@ -0,0 +1,195 @@
+package com.facetoe.jreader.parsers;
+
+import com.facetoe.jreader.helpers.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SourceOutlineCache gives back the same outline as the parser without parsing again.
+ */
+public class SourceOutlineCacheTest {
+    private static final File SWINGX_SOURCES = new File("testFiles/swingx-all-1.6.4-sources/");
+    private static final File JXTABLE_SOURCE = new File(SWINGX_SOURCES, "org/jdesktop/swingx/JXTable.java");
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = Files.createTempDirectory("outlineCache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        Util.deleteDirectoryAndContents(cacheDir);
+    }
+
+    @Test
+    public void testCachedOutlineMatchesParser() throws Exception {
+        ArrayList<File> sourceFiles = new ArrayList<File>();
+        findSourceFiles(SWINGX_SOURCES, sourceFiles);
+        assertFalse(sourceFiles.isEmpty());
+
+        SourceOutlineCache cache = new SourceOutlineCache(cacheDir, 4);
+        for (File sourceFile : sourceFiles) {
+            cache.parse(sourceFile);
+        }
+
+        // A new cache has nothing in memory so everything comes from the cache files.
+        cache = new SourceOutlineCache(cacheDir, 4);
+        for (File sourceFile : sourceFiles) {
+            JavaSourceFile parsed = JavaSourceFileParser.parse(new FileInputStream(sourceFile));
+            JavaSourceFile cached = cache.parse(sourceFile);
+            assertEquals(sourceFile.getPath(), describe(parsed), describe(cached));
+            if (cached.getEnclosingObject() != null) {
+                assertNull(cached.getEnclosingObject().typeDeclaration);
+            }
+        }
+    }
+
+    @Test
+    public void testRecentFilesStayInMemory() throws Exception {
+        SourceOutlineCache cache = new SourceOutlineCache(cacheDir, 1);
+        File otherSource = new File(SWINGX_SOURCES, "org/jdesktop/swingx/JXDatePicker.java");
+
+        JavaSourceFile sourceFile = cache.parse(JXTABLE_SOURCE);
+        assertSame(sourceFile, cache.parse(JXTABLE_SOURCE));
+
+        // Only one file fits, so the first one has to be read back from its cache file.
+        cache.parse(otherSource);
+        JavaSourceFile reread = cache.parse(JXTABLE_SOURCE);
+        assertFalse(sourceFile == reread);
+        assertEquals(describe(sourceFile), describe(reread));
+    }
+
+    @Test
+    public void testGetCachedDoesNotParse() throws Exception {
+        SourceOutlineCache cache = new SourceOutlineCache(cacheDir, 4);
+        assertNull(cache.getCached(JXTABLE_SOURCE));
+        assertFalse(cache.getCacheFile(JXTABLE_SOURCE.getCanonicalPath()).exists());
+
+        JavaSourceFile parsed = cache.parse(JXTABLE_SOURCE);
+        assertSame(parsed, cache.getCached(JXTABLE_SOURCE));
+
+        JavaSourceFile cached = new SourceOutlineCache(cacheDir, 4).getCached(JXTABLE_SOURCE);
+        assertNotNull(cached);
+        assertEquals(describe(parsed), describe(cached));
+    }
+
+    @Test
+    public void testChangedFileIsParsedAgain() throws Exception {
+        File sourceFile = new File(cacheDir, "JXTable.java");
+        Files.copy(JXTABLE_SOURCE.toPath(), sourceFile.toPath());
+
+        SourceOutlineCache cache = new SourceOutlineCache(cacheDir, 4);
+        JavaSourceFile original = cache.parse(sourceFile);
+        assertNotNull(original.getEnclosingObject().typeDeclaration);
+        assertNull(new SourceOutlineCache(cacheDir, 4).parse(sourceFile).getEnclosingObject().typeDeclaration);
+
+        FileWriter writer = new FileWriter(sourceFile, true);
+        try {
+            writer.write("\nclass AddedLater {\n    void added() {}\n}\n");
+        } finally {
+            writer.close();
+        }
+
+        JavaSourceFile changed = cache.parse(sourceFile);
+        assertFalse(original == changed);
+        assertNotNull(changed.getEnclosingObject().typeDeclaration);
+        assertEquals(original.getFileContents().size() + 1, changed.getFileContents().size());
+
+        changed = new SourceOutlineCache(cacheDir, 4).parse(sourceFile);
+        assertNull(changed.getEnclosingObject().typeDeclaration);
+        assertEquals(original.getFileContents().size() + 1, changed.getFileContents().size());
+    }
+
+    @Test
+    public void testCorruptCacheFileIsIgnored() throws Exception {
+        SourceOutlineCache cache = new SourceOutlineCache(cacheDir, 4);
+        JavaSourceFile parsed = cache.parse(JXTABLE_SOURCE);
+
+        File cacheFile = cache.getCacheFile(JXTABLE_SOURCE.getCanonicalPath());
+        assertTrue(cacheFile.exists());
+        byte[] contents = Files.readAllBytes(cacheFile.toPath());
+        Files.write(cacheFile.toPath(), Arrays.copyOf(contents, contents.length / 2));
+
+        JavaSourceFile reparsed = new SourceOutlineCache(cacheDir, 4).parse(JXTABLE_SOURCE);
+        assertNotNull(reparsed.getEnclosingObject().typeDeclaration);
+        assertEquals(describe(parsed), describe(reparsed));
+    }
+
+    @Test
+    public void testReopenSkipsParser() throws Exception {
+        JavaSourceFile parsed = new SourceOutlineCache(cacheDir, 4).parse(JXTABLE_SOURCE);
+        assertNotNull(parsed.getEnclosingObject().typeDeclaration);
+
+        // Reopening reads the cache file instead of parsing, so there's no syntax tree.
+        SourceOutlineCache cache = new SourceOutlineCache(cacheDir, 4);
+        JavaSourceFile cached = cache.parse(JXTABLE_SOURCE);
+        assertNull(cached.getEnclosingObject().typeDeclaration);
+        assertEquals(describe(parsed), describe(cached));
+
+        // After that it comes from memory.
+        assertSame(cached, cache.parse(JXTABLE_SOURCE));
+    }
+
+    private static String describe(JavaSourceFile sourceFile) {
+        ArrayList<String> lines = new ArrayList<String>();
+        for (AbstractJavaObject object : sourceFile.getFileContents()) {
+            lines.add("top " + describe(object));
+        }
+        for (String declaration : sourceFile.getAllDeclarations()) {
+            lines.add(declaration + " = " + describe(sourceFile.getObject(declaration)));
+        }
+        Collections.sort(lines);
+        return lines.toString();
+    }
+
+    private static String describe(AbstractJavaObject object) {
+        String description = object.getClass().getSimpleName() + " " + object.getType() + " " + object.getModifiers()
+                + " " + object.getDeclaration() + " | " + object.getFullDeclaration()
+                + " " + object.getBeginLine() + ":" + object.getBeginColumn()
+                + "-" + object.getEndLine() + ":" + object.getEndColumn();
+        if (object instanceof JavaClassOrInterface) {
+            JavaClassOrInterface classOrInterface = (JavaClassOrInterface) object;
+            description += " " + new TreeSet<String>(classOrInterface.getNestedClasses().keySet())
+                    + new TreeSet<String>(classOrInterface.getMethods().keySet())
+                    + new TreeSet<String>(classOrInterface.getConstructors().keySet())
+                    + new TreeSet<String>(classOrInterface.getEnums().keySet())
+                    + new TreeSet<String>(classOrInterface.getFields().keySet())
+                    + new TreeSet<String>(classOrInterface.getAnnotations().keySet());
+        } else if (object instanceof JavaEnum) {
+            description += " " + new TreeSet<String>(((JavaEnum) object).getConstants().keySet());
+        }
+        return description;
+    }
+
+    private static void findSourceFiles(File dir, ArrayList<File> sourceFiles) {
+        File[] contents = dir.listFiles();
+        if (contents != null) {
+            for (File content : contents) {
+                if (content.isDirectory()) {
+                    findSourceFiles(content, sourceFiles);
+                } else if (content.getName().endsWith(".java")) {
+                    sourceFiles.add(content);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.facetoe.jreader.ui;
+
+import com.facetoe.jreader.parsers.JavaSourceFile;
+import com.facetoe.jreader.parsers.JavaSourceFileParser;
+
+import java.io.ByteArrayInputStream;
+import java.util.Enumeration;
+
+/**
+ * Prints how long opening the source tree of a big file takes compared to creating every node in it.
+ * Run it by hand, it isn't part of the unit tests since the timings depend on the machine.
+ */
+public class SourceTreeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String source = SourceTreeTest.bigSource();
+        int lineCount = 0;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lineCount++;
+            }
+        }
+        JavaSourceFile sourceFile = JavaSourceFileParser.parse(new ByteArrayInputStream(source.getBytes("UTF-8")));
+
+        int runs = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            SourceTree tree = new SourceTree(sourceFile);
+            tree.expandRow(0);
+        }
+        long openNanos = (System.nanoTime() - start) / runs;
+
+        start = System.nanoTime();
+        int nodeCount = 0;
+        for (int i = 0; i < runs; i++) {
+            SourceTree tree = new SourceTree(sourceFile);
+            nodeCount = 0;
+            Enumeration<?> e = ((SourceItemNode) tree.getModel().getRoot()).depthFirstEnumeration();
+            while (e.hasMoreElements()) {
+                e.nextElement();
+                nodeCount++;
+            }
+        }
+        long allNodesNanos = (System.nanoTime() - start) / runs;
+
+        System.out.println("Source tree for a " + lineCount + " line file:");
+        System.out.println(String.format("  Open:             %.2f ms", openNanos / 1000000.0));
+        System.out.println(String.format("  Create all nodes: %.2f ms (%d nodes)", allNodesNanos / 1000000.0, nodeCount));
+    }
+}
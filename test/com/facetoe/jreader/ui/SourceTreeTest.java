@@ -0,0 +1,114 @@
+package com.facetoe.jreader.ui;
+
+import com.facetoe.jreader.parsers.JavaSourceFile;
+import com.facetoe.jreader.parsers.JavaSourceFileParser;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.swing.tree.TreeNode;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SourceTree only creates nodes when they're expanded.
+ */
+public class SourceTreeTest {
+    private static final int METHODS = 3000;
+    private static final int FIELDS = 3000;
+    private static final int NESTED_CLASSES = 40;
+    private static final int NESTED_METHODS = 40;
+
+    private static JavaSourceFile bigSourceFile;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        bigSourceFile = JavaSourceFileParser.parse(new ByteArrayInputStream(bigSource().getBytes("UTF-8")));
+    }
+
+    /**
+     * @return A class with thousands of members and some nested classes.
+     */
+    static String bigSource() {
+        StringBuilder source = new StringBuilder("package generated;\n\npublic class Big {\n");
+        for (int i = 0; i < FIELDS; i++) {
+            source.append("    private int field").append(i).append(";\n");
+        }
+        for (int i = 0; i < METHODS; i++) {
+            source.append("    public int method").append(i).append("(int value) {\n")
+                    .append("        return value + ").append(i).append(";\n")
+                    .append("    }\n\n");
+        }
+        for (int i = 0; i < NESTED_CLASSES; i++) {
+            source.append("    static class Nested").append(i).append(" {\n");
+            for (int j = 0; j < NESTED_METHODS; j++) {
+                source.append("        void nestedMethod").append(j).append("() {\n")
+                        .append("            System.out.println(").append(j).append(");\n")
+                        .append("        }\n\n");
+            }
+            source.append("    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    @Test
+    public void testChildrenAreSorted() throws Exception {
+        SourceTree tree = new SourceTree(bigSourceFile);
+        TreeNode classNode = ((TreeNode) tree.getModel().getRoot()).getChildAt(0);
+        assertEquals("Big", classNode.toString());
+
+        // One group for each kind of member, and only one Nested Classes node however many there are.
+        ArrayList<String> groups = new ArrayList<String>();
+        for (int i = 0; i < classNode.getChildCount(); i++) {
+            groups.add(((SourceItemNode) classNode.getChildAt(i)).getTitle());
+        }
+        assertEquals("[Methods, Fields, Nested Classes]", groups.toString());
+
+        TreeNode methods = classNode.getChildAt(0);
+        assertEquals(METHODS, methods.getChildCount());
+        for (int i = 1; i < methods.getChildCount(); i++) {
+            assertTrue(methods.getChildAt(i - 1).toString().compareTo(methods.getChildAt(i).toString()) < 0);
+        }
+
+        TreeNode nestedClasses = classNode.getChildAt(2);
+        assertEquals(NESTED_CLASSES, nestedClasses.getChildCount());
+        assertEquals("Nested0", nestedClasses.getChildAt(0).toString());
+        assertEquals(NESTED_METHODS, nestedClasses.getChildAt(0).getChildAt(0).getChildCount());
+    }
+
+    @Test
+    public void testGroupsAreNotLeaves() throws Exception {
+        SourceTree tree = new SourceTree(bigSourceFile);
+        tree.expandRow(0);
+        assertEquals(4, tree.getRowCount());
+        for (int row = 1; row < tree.getRowCount(); row++) {
+            assertTrue(!tree.getModel().isLeaf(tree.getPathForRow(row).getLastPathComponent()));
+        }
+
+        tree.expandRow(1);
+        assertEquals(4 + METHODS, tree.getRowCount());
+    }
+
+    // Opening the tree only creates the class and group nodes, the members are created when a group is expanded.
+    @Test
+    public void testOpenIsLazy() throws Exception {
+        SourceTree tree = new SourceTree(bigSourceFile);
+        tree.expandRow(0);
+        SourceItemNode classNode = (SourceItemNode) tree.getPathForRow(0).getLastPathComponent();
+        assertEquals("Big", classNode.toString());
+        assertFalse(classNode.hasPendingChildren());
+        for (int row = 1; row < tree.getRowCount(); row++) {
+            assertTrue(((SourceItemNode) tree.getPathForRow(row).getLastPathComponent()).hasPendingChildren());
+        }
+
+        tree.expandRow(1);
+        assertFalse(((SourceItemNode) tree.getPathForRow(1).getLastPathComponent()).hasPendingChildren());
+        int fieldsRow = 2 + METHODS;
+        assertEquals("Fields", tree.getPathForRow(fieldsRow).getLastPathComponent().toString());
+        assertTrue(((SourceItemNode) tree.getPathForRow(fieldsRow).getLastPathComponent()).hasPendingChildren());
+    }
+}